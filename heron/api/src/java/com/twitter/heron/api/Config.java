@@ -286,6 +286,75 @@ public class Config extends HashMap<String, Object> {
   public static final String TOPOLOGY_DROPTUPLES_UPON_BACKPRESSURE =
       "topology.droptuples.upon.backpressure";
 
+  /**
+   * Do we want bolts to deserialize the values of an input tuple only when they are read.
+   * Values a bolt emits unchanged from its input tuple are then forwarded without being
+   * serialized again. Values must only be read from the thread executing the bolt.
+   */
+  public static final String TOPOLOGY_LAZY_TUPLE_DESERIALIZATION =
+      "topology.lazy.tuple.deserialization";
+
+  /**
+   * The number of threads executing a bolt in each of its instances. With more than one
+   * thread, the bolt, the custom groupings of the streams it emits to and its task hooks are
+   * called concurrently from these threads, so they must all be thread-safe. Tuples of a
+   * stream with a fields grouping are executed by the same thread for a given key, and
+   * tuples of other streams are spread round-robin. Usually set for a single bolt, with
+   * BoltDeclarer.addConfiguration().
+   */
+  public static final String TOPOLOGY_BOLT_EXECUTOR_THREADS = "topology.bolt.executor.threads";
+
+  /**
+   * Do we want tuple values of primitive types (long, int, double, boolean, String and byte[])
+   * to be encoded compactly instead of with the topology serializer. Other values are still
+   * serialized with the topology serializer. All instances of the topology must agree on it,
+   * so it cannot be changed for a single component.
+   */
+  public static final String TOPOLOGY_TYPED_TUPLE_VALUES = "topology.typed.tuple.values";
+
+  /**
+   * The classes the Kryo serializer of streamlet topologies registers, as a list or a
+   * comma-separated string of class names. Values of a registered class are written with a
+   * small id instead of their class name. Ids are given in order, so all instances of the
+   * topology must register the same classes in the same order.
+   */
+  public static final String TOPOLOGY_KRYO_REGISTERED_CLASSES =
+      "topology.kryo.registered.classes";
+
+  /**
+   * Do we want the Kryo serializer of streamlet topologies to read and write numbers with
+   * direct memory accesses. It is faster, but writes ints and longs in the native byte order
+   * of the machine, so all machines running the topology must have the same one.
+   */
+  public static final String TOPOLOGY_KRYO_UNSAFE_IO = "topology.kryo.unsafe.io";
+
+  /**
+   * Do we want the Kryo serializer of streamlet topologies to register its classes with fixed
+   * ids, which do not depend on the classes Kryo registers by default. It is off by default:
+   * the classes are then registered with the ids they had in earlier versions, so tuples and
+   * checkpoints written by them can still be read. Turning it on changes these ids, so it must
+   * only be done for a topology started without any checkpoint to restore, e.g., a new
+   * topology, or one whose checkpoints have been cleaned.
+   */
+  public static final String TOPOLOGY_KRYO_FIXED_REGISTRATION_IDS =
+      "topology.kryo.fixed.registration.ids";
+
+  /**
+   * The number of key groups the keys of streamlet joins and reductions are hashed into.
+   * Key groups are assigned to the tasks of a component in contiguous ranges, so it bounds
+   * the useful parallelism of these components: tasks beyond the number of key groups receive
+   * no keys. It must not change while the topology holds state, 128 by default.
+   */
+  public static final String TOPOLOGY_KEY_GROUPS = "topology.key.groups";
+
+  /**
+   * How often (in milliseconds) the instances of a bolt implementing ICombiner send out the
+   * tuples they combined, 100 ms by default. Longer intervals combine more tuples, but delay
+   * them more.
+   */
+  public static final String TOPOLOGY_COMBINER_FLUSH_INTERVAL_MS =
+      "topology.combiner.flush.interval.ms";
+
   private static final long serialVersionUID = 2550967708478837032L;
   // We maintain a list of all user exposed vars
   private static Set<String> apiVars = new HashSet<>();
@@ -323,6 +392,14 @@ public class Config extends HashMap<String, Object> {
     apiVars.add(TOPOLOGY_UPDATE_REACTIVATE_WAIT_SECS);
     apiVars.add(TOPOLOGY_REMOTE_DEBUGGING_ENABLE);
     apiVars.add(TOPOLOGY_DROPTUPLES_UPON_BACKPRESSURE);
+    apiVars.add(TOPOLOGY_LAZY_TUPLE_DESERIALIZATION);
+    apiVars.add(TOPOLOGY_BOLT_EXECUTOR_THREADS);
+    apiVars.add(TOPOLOGY_TYPED_TUPLE_VALUES);
+    apiVars.add(TOPOLOGY_KRYO_REGISTERED_CLASSES);
+    apiVars.add(TOPOLOGY_KRYO_UNSAFE_IO);
+    apiVars.add(TOPOLOGY_KRYO_FIXED_REGISTRATION_IDS);
+    apiVars.add(TOPOLOGY_KEY_GROUPS);
+    apiVars.add(TOPOLOGY_COMBINER_FLUSH_INTERVAL_MS);
   }
 
   public Config() {
@@ -709,4 +786,36 @@ public class Config extends HashMap<String, Object> {
   public void setTopologyDropTuplesUponBackpressure(boolean dropTuples) {
     this.put(Config.TOPOLOGY_DROPTUPLES_UPON_BACKPRESSURE, String.valueOf(dropTuples));
   }
+
+  public void setTopologyLazyTupleDeserialization(boolean lazy) {
+    this.put(Config.TOPOLOGY_LAZY_TUPLE_DESERIALIZATION, String.valueOf(lazy));
+  }
+
+  public void setTopologyBoltExecutorThreads(int threads) {
+    this.put(Config.TOPOLOGY_BOLT_EXECUTOR_THREADS, Integer.toString(threads));
+  }
+
+  public void setTopologyTypedTupleValues(boolean typed) {
+    this.put(Config.TOPOLOGY_TYPED_TUPLE_VALUES, String.valueOf(typed));
+  }
+
+  public void setTopologyKryoRegisteredClasses(List<String> classNames) {
+    this.put(Config.TOPOLOGY_KRYO_REGISTERED_CLASSES, String.join(",", classNames));
+  }
+
+  public void setTopologyKryoUnsafeIo(boolean unsafe) {
+    this.put(Config.TOPOLOGY_KRYO_UNSAFE_IO, String.valueOf(unsafe));
+  }
+
+  public void setTopologyKryoFixedRegistrationIds(boolean fixed) {
+    this.put(Config.TOPOLOGY_KRYO_FIXED_REGISTRATION_IDS, String.valueOf(fixed));
+  }
+
+  public void setTopologyKeyGroups(int numKeyGroups) {
+    this.put(Config.TOPOLOGY_KEY_GROUPS, Integer.toString(numKeyGroups));
+  }
+
+  public void setTopologyCombinerFlushIntervalMs(long millis) {
+    this.put(Config.TOPOLOGY_COMBINER_FLUSH_INTERVAL_MS, Long.toString(millis));
+  }
 }
@@ -315,6 +315,24 @@ public abstract class BaseWindowedBolt implements IWindowedBolt {
     return this;
   }
 
+  /**
+   * Spill the window to local disk once it holds more than the given number of tuples, so
+   * windows larger than the heap can be held. The newest tuples are kept in memory.
+   *
+   * @param inMemoryCount the number of newest tuples kept in memory
+   */
+  public BaseWindowedBolt withSpillThreshold(Count inMemoryCount) {
+    if (inMemoryCount == null) {
+      throw new IllegalArgumentException("Spill threshold cannot be set null");
+    }
+    if (inMemoryCount.value < 0) {
+      throw new IllegalArgumentException("Spill threshold cannot be negative ["
+          + inMemoryCount.value + "]");
+    }
+    windowConfiguration.setTopologyBoltsWindowSpillThresholdCount(inMemoryCount.value);
+    return this;
+  }
+
   /**
    * Sets a custom eviction policy to use for this bolt
    *
@@ -0,0 +1,59 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.api.bolt;
+
+import java.util.List;
+
+import com.twitter.heron.api.Config;
+
+/**
+ * A bolt implementing ICombiner has the tuples it emits for frequent keys partially combined in
+ * its instances before they are sent out. Under a fields grouping, a few skewed keys would
+ * otherwise turn the downstream instances owning them into bottlenecks.
+ * <p>
+ * Each instance estimates the frequency of the keys it emits with a small sketch. Tuples of the
+ * keys found to be frequent are combined with the pending tuple of the same key, if any, and the
+ * pending tuples are sent out every {@link Config#TOPOLOGY_COMBINER_FLUSH_INTERVAL_MS}. Other
+ * tuples are sent out as usual. Only unanchored tuples are combined, so combining does not
+ * change what is acked. The values of combined tuples are kept until they are sent out, so they
+ * must not be modified once emitted. Emitting a tuple which is combined returns an empty list
+ * of task ids, since the tuple is not sent to any task at that time.
+ * <p>
+ * Combining is only valid when the downstream bolts aggregate the tuples of a key with an
+ * associative and commutative function, e.g., counts or sums, and do not depend on the time
+ * tuples are received at.
+ */
+public interface ICombiner {
+  /**
+   * Get the key of a tuple about to be emitted. Tuples of the same stream with the same key may
+   * be combined together.
+   *
+   * @param streamId the stream the tuple is emitted on
+   * @param tuple the values of the tuple
+   * @return the key, or null if the tuple must not be combined
+   */
+  Object getCombinerKey(String streamId, List<Object> tuple);
+
+  /**
+   * Combine two tuples of the same stream with the same key into one
+   *
+   * @param streamId the stream the tuples are emitted on
+   * @param first the values of the tuple emitted first
+   * @param second the values of the tuple emitted next
+   * @return the values of the combined tuple
+   */
+  List<Object> combine(String streamId, List<Object> first, List<Object> second);
+}
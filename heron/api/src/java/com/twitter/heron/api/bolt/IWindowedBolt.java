@@ -32,10 +32,12 @@
 
 package com.twitter.heron.api.bolt;
 
+import java.util.List;
 import java.util.Map;
 
 import com.twitter.heron.api.topology.IComponent;
 import com.twitter.heron.api.topology.TopologyContext;
+import com.twitter.heron.api.tuple.Tuple;
 import com.twitter.heron.api.windowing.TimestampExtractor;
 import com.twitter.heron.api.windowing.TupleWindow;
 
@@ -57,6 +59,23 @@ public interface IWindowedBolt extends IComponent {
    */
   void execute(TupleWindow inputWindow);
 
+  /**
+   * Called when a tuple is added to the window, before any window holding it is activated.
+   * Late tuples, which are never added, are not reported. Bolts keeping state about the tuples
+   * across windows can index them here, so that they also know the tuples which are evicted
+   * before being part of any window.
+   */
+  default void onArrival(Tuple tuple) {
+  }
+
+  /**
+   * Called when tuples are evicted from the window, before they are acked. Bolts keeping
+   * state about the tuples across windows can drop it here, instead of diffing the windows.
+   * The tuples emitted from this method are anchored to the expired tuples.
+   */
+  default void onExpiry(List<Tuple> expiredTuples) {
+  }
+
   void cleanup();
 
   /**
@@ -32,7 +32,10 @@
 
 package com.twitter.heron.api.bolt;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Files;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -54,6 +57,7 @@ import com.twitter.heron.api.tuple.Tuple;
 import com.twitter.heron.api.tuple.Values;
 import com.twitter.heron.api.windowing.Event;
 import com.twitter.heron.api.windowing.EvictionPolicy;
+import com.twitter.heron.api.windowing.SpillableEventQueue;
 import com.twitter.heron.api.windowing.TimestampExtractor;
 import com.twitter.heron.api.windowing.TriggerPolicy;
 import com.twitter.heron.api.windowing.TupleWindowImpl;
@@ -69,6 +73,7 @@ import com.twitter.heron.api.windowing.triggers.CountTriggerPolicy;
 import com.twitter.heron.api.windowing.triggers.TimeTriggerPolicy;
 import com.twitter.heron.api.windowing.triggers.WatermarkCountTriggerPolicy;
 import com.twitter.heron.api.windowing.triggers.WatermarkTimeTriggerPolicy;
+import com.twitter.heron.common.basics.FileUtils;
 import com.twitter.heron.common.basics.TypeUtils;
 
 import static com.twitter.heron.api.bolt.BaseWindowedBolt.Count;
@@ -83,11 +88,16 @@ public class WindowedBoltExecutor implements IRichBolt,
   private static final Logger LOG = Logger.getLogger(WindowedBoltExecutor.class.getName());
   private static final int DEFAULT_WATERMARK_EVENT_INTERVAL_MS = 1000; // 1s
   private static final int DEFAULT_MAX_LAG_MS = 0; // no lag
+  private static final long DEFAULT_SPILL_SEGMENT_SIZE_BYTES = 64 * 1024 * 1024;
+  private static final int SPILL_METRICS_INTERVAL_SECS = 60;
   public static final String LATE_TUPLE_FIELD = "late_tuple";
   private final IWindowedBolt bolt;
   private transient WindowedOutputCollector windowedOutputCollector;
   private transient WindowLifecycleListener<Tuple> listener;
   private transient WindowManager<Tuple> windowManager;
+  // Only set if the window spills to disk
+  private transient SpillableEventQueue<Tuple> spillQueue;
+  private transient File spillDirectory;
   private transient int maxLagMs;
   private TimestampExtractor timestampExtractor;
   private transient String lateTupleStream;
@@ -346,7 +356,39 @@ public class WindowedBoltExecutor implements IRichBolt,
   @Override
   public void prepare(Map<String, Object> topoConf, TopologyContext context, OutputCollector
       collector) {
-    doPrepare(topoConf, context, collector, new ConcurrentLinkedQueue<>());
+    doPrepare(topoConf, context, collector, newEventQueue(topoConf, context));
+  }
+
+  private Collection<Event<Tuple>> newEventQueue(Map<String, Object> topoConf,
+                                                 TopologyContext context) {
+    if (!topoConf.containsKey(WindowingConfigs.TOPOLOGY_BOLTS_WINDOW_SPILL_THRESHOLD_COUNT)) {
+      return new ConcurrentLinkedQueue<>();
+    }
+    int threshold = ((Number) topoConf.get(
+        WindowingConfigs.TOPOLOGY_BOLTS_WINDOW_SPILL_THRESHOLD_COUNT)).intValue();
+    long segmentSize = DEFAULT_SPILL_SEGMENT_SIZE_BYTES;
+    if (topoConf.containsKey(WindowingConfigs.TOPOLOGY_BOLTS_WINDOW_SPILL_SEGMENT_SIZE_BYTES)) {
+      segmentSize = ((Number) topoConf.get(
+          WindowingConfigs.TOPOLOGY_BOLTS_WINDOW_SPILL_SEGMENT_SIZE_BYTES)).longValue();
+    }
+    try {
+      if (topoConf.containsKey(WindowingConfigs.TOPOLOGY_BOLTS_WINDOW_SPILL_DIRECTORY)) {
+        File parent = new File(
+            (String) topoConf.get(WindowingConfigs.TOPOLOGY_BOLTS_WINDOW_SPILL_DIRECTORY));
+        parent.mkdirs();
+        spillDirectory = Files.createTempDirectory(parent.toPath(), "heron-window-").toFile();
+      } else {
+        spillDirectory = Files.createTempDirectory("heron-window-").toFile();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to create the window spill directory", e);
+    }
+    spillQueue = new SpillableEventQueue<>(threshold,
+        (int) Math.min(segmentSize, Integer.MAX_VALUE), spillDirectory);
+    spillQueue.registerMetrics(context, SPILL_METRICS_INTERVAL_SECS);
+    LOG.info(String.format("Spilling windows of more than %d tuples to %s", threshold,
+        spillDirectory));
+    return spillQueue;
   }
 
   // NOTE: the queue has to be thread safe.
@@ -369,6 +411,7 @@ public class WindowedBoltExecutor implements IRichBolt,
     if (isTupleTs()) {
       long ts = timestampExtractor.extractTimestamp(input);
       if (waterMarkEventGenerator.track(input.getSourceGlobalStreamId(), ts)) {
+        bolt.onArrival(input);
         windowManager.add(input, ts);
       } else {
         if (lateTupleStream != null) {
@@ -381,6 +424,7 @@ public class WindowedBoltExecutor implements IRichBolt,
         windowedOutputCollector.ack(input);
       }
     } else {
+      bolt.onArrival(input);
       windowManager.add(input);
     }
   }
@@ -390,6 +434,13 @@ public class WindowedBoltExecutor implements IRichBolt,
     if (windowManager != null) {
       windowManager.shutdown();
     }
+    if (spillQueue != null) {
+      spillQueue.close();
+      // Segments that could not be deleted, e.g., still mapped, would keep the directory
+      if (!FileUtils.deleteDir(spillDirectory, true)) {
+        LOG.warning("Failed to delete the window spill directory " + spillDirectory);
+      }
+    }
     bolt.cleanup();
   }
 
@@ -418,6 +469,8 @@ public class WindowedBoltExecutor implements IRichBolt,
     return new WindowLifecycleListener<Tuple>() {
       @Override
       public void onExpiry(List<Tuple> tuples) {
+        windowedOutputCollector.setContext(tuples);
+        bolt.onExpiry(tuples);
         for (Tuple tuple : tuples) {
           windowedOutputCollector.ack(tuple);
         }
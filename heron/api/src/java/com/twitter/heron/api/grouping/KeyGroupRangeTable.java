@@ -0,0 +1,95 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.api.grouping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The table mapping the key groups of a component to its tasks. The task ids are sorted, and
+ * each task owns a contiguous range of key groups, the ranges following the order of the
+ * task ids. This class is immutable.
+ */
+public class KeyGroupRangeTable {
+  private final int numKeyGroups;
+  private final List<Integer> taskIds;
+  // The single target task of each key group, as returned to the runtime
+  private final List<List<Integer>> targets;
+
+  public KeyGroupRangeTable(int numKeyGroups, List<Integer> taskIds) {
+    if (numKeyGroups <= 0) {
+      throw new IllegalArgumentException(
+          "The number of key groups must be positive: " + numKeyGroups);
+    }
+    if (taskIds.isEmpty()) {
+      throw new IllegalArgumentException("There must be at least one task");
+    }
+    List<Integer> sorted = new ArrayList<>(taskIds);
+    Collections.sort(sorted);
+    this.numKeyGroups = numKeyGroups;
+    this.taskIds = Collections.unmodifiableList(sorted);
+    this.targets = new ArrayList<>(numKeyGroups);
+    for (int keyGroup = 0; keyGroup < numKeyGroups; keyGroup++) {
+      targets.add(Collections.singletonList(getTask(keyGroup)));
+    }
+  }
+
+  public int getNumKeyGroups() {
+    return numKeyGroups;
+  }
+
+  public List<Integer> getTaskIds() {
+    return taskIds;
+  }
+
+  /**
+   * Get the task owning a key group
+   */
+  public int getTask(int keyGroup) {
+    return taskIds.get(KeyGroups.taskIndexOf(keyGroup, numKeyGroups, taskIds.size()));
+  }
+
+  /**
+   * Get the task owning a key group, as an immutable list
+   */
+  public List<Integer> getTargets(int keyGroup) {
+    return targets.get(keyGroup);
+  }
+
+  /**
+   * Get the first key group owned by a task
+   */
+  public int getStartKeyGroup(int taskId) {
+    return KeyGroups.firstKeyGroupOf(indexOf(taskId), numKeyGroups, taskIds.size());
+  }
+
+  /**
+   * Get the key group following the last one owned by a task. A task owns no key group
+   * when there are more tasks than key groups.
+   */
+  public int getEndKeyGroup(int taskId) {
+    return KeyGroups.firstKeyGroupOf(indexOf(taskId) + 1, numKeyGroups, taskIds.size());
+  }
+
+  private int indexOf(int taskId) {
+    int index = Collections.binarySearch(taskIds, taskId);
+    if (index < 0) {
+      throw new IllegalArgumentException("Task " + taskId + " is not in " + taskIds);
+    }
+    return index;
+  }
+}
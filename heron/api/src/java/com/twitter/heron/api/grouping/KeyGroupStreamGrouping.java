@@ -0,0 +1,37 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.api.grouping;
+
+import java.util.List;
+
+/**
+ * A grouping routing each tuple to the task owning the key group of the tuple. The runtime
+ * routes such tuples with the {@link KeyGroupRangeTable} of the target component, without
+ * calling {@link #chooseTasks(List)}.
+ */
+public interface KeyGroupStreamGrouping extends CustomStreamGrouping {
+  /**
+   * Get the number of key groups, known once the grouping is prepared
+   */
+  int getNumKeyGroups();
+
+  /**
+   * Get the key group of a tuple, between 0 and getNumKeyGroups() - 1
+   *
+   * @param values the values of the tuple
+   */
+  int getKeyGroup(List<Object> values);
+}
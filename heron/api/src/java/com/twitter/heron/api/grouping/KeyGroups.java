@@ -0,0 +1,93 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.api.grouping;
+
+import java.util.List;
+import java.util.Map;
+
+import com.twitter.heron.api.Config;
+
+/**
+ * Helpers to partition keys into key groups. Keys hash into a fixed number of key groups, and
+ * the key groups of a component are split into contiguous ranges, one per task, by a
+ * {@link KeyGroupRangeTable}. Since the number of key groups does not depend on the
+ * parallelism, changing the parallelism of a component moves whole key groups between tasks
+ * with overlapping ranges, rather than rehashing every key; doubling the parallelism splits
+ * each range in two.
+ */
+public final class KeyGroups {
+  public static final int DEFAULT_NUM_KEY_GROUPS = 128;
+
+  private KeyGroups() {
+  }
+
+  /**
+   * Get the number of key groups of the topology, set by {@link Config#TOPOLOGY_KEY_GROUPS}
+   */
+  public static int getNumKeyGroups(Map<String, Object> conf) {
+    Object value = conf.get(Config.TOPOLOGY_KEY_GROUPS);
+    if (value == null) {
+      return DEFAULT_NUM_KEY_GROUPS;
+    }
+    int numKeyGroups = Integer.parseInt(String.valueOf(value));
+    if (numKeyGroups <= 0) {
+      throw new IllegalArgumentException(
+          "The number of key groups must be positive: " + numKeyGroups);
+    }
+    return numKeyGroups;
+  }
+
+  /**
+   * Get the key group of a key. The hash code of the key is mixed first, so that keys with
+   * close hash codes, e.g., small integers, are spread over the key groups.
+   *
+   * @return a key group between 0 and numKeyGroups - 1
+   */
+  public static int keyGroupOf(Object key, int numKeyGroups) {
+    int h = key == null ? 0 : key.hashCode();
+    // The finalization step of MurmurHash3
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return Math.floorMod(h, numKeyGroups);
+  }
+
+  /**
+   * Get the index, in the sorted list of the tasks of a component, of the task owning a key group
+   */
+  public static int taskIndexOf(int keyGroup, int numKeyGroups, int numTasks) {
+    return (int) ((long) keyGroup * numTasks / numKeyGroups);
+  }
+
+  /**
+   * Get the first key group owned by the task at the given index in the sorted list of
+   * the tasks of a component. The task owns the key groups up to, excluding, the first
+   * key group of the next task.
+   */
+  public static int firstKeyGroupOf(int taskIndex, int numKeyGroups, int numTasks) {
+    return (int) (((long) taskIndex * numKeyGroups + numTasks - 1) / numTasks);
+  }
+
+  /**
+   * Get the task of a key, among the given target tasks
+   */
+  public static int taskOf(Object key, int numKeyGroups, List<Integer> sortedTaskIds) {
+    int keyGroup = keyGroupOf(key, numKeyGroups);
+    return sortedTaskIds.get(taskIndexOf(keyGroup, numKeyGroups, sortedTaskIds.size()));
+  }
+}
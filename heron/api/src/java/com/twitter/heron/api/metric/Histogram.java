@@ -0,0 +1,164 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.api.metric;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of non-negative long values, with fixed log-linear buckets.
+ * <p>
+ * Values under 2^SUB_BUCKET_BITS have a bucket each. Above that, every power of two is split
+ * into 2^SUB_BUCKET_BITS buckets of equal width, so the relative error of a percentile is at
+ * most 1 / 2^(SUB_BUCKET_BITS + 1) whatever the magnitude of the values. All histograms have
+ * the same buckets, so histograms recorded separately, e.g., by different instances, can be
+ * merged without losing precision.
+ * <p>
+ * Recording a value does not allocate anything. This class is not thread-safe.
+ */
+public class Histogram {
+  static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  // The linear buckets, then SUB_BUCKET_COUNT buckets for each power of two up to 2^62
+  static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (Long.SIZE - SUB_BUCKET_BITS);
+
+  private final long[] counts = new long[BUCKET_COUNT];
+  private long totalCount;
+  private long sum;
+  private long min = Long.MAX_VALUE;
+  private long max;
+
+  /**
+   * Record a value. Negative values are recorded as 0.
+   */
+  public void record(long value) {
+    long v = Math.max(value, 0);
+    counts[bucketOf(v)]++;
+    totalCount++;
+    sum += v;
+    if (v < min) {
+      min = v;
+    }
+    if (v > max) {
+      max = v;
+    }
+  }
+
+  /**
+   * Add all the values recorded by another histogram to this one
+   */
+  public void merge(Histogram other) {
+    if (other.totalCount == 0) {
+      return;
+    }
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  public void reset() {
+    if (totalCount > 0) {
+      Arrays.fill(counts, 0);
+    }
+    totalCount = 0;
+    sum = 0;
+    min = Long.MAX_VALUE;
+    max = 0;
+  }
+
+  public long getCount() {
+    return totalCount;
+  }
+
+  public long getMin() {
+    return totalCount == 0 ? 0 : min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public double getMean() {
+    return totalCount == 0 ? 0 : sum / (double) totalCount;
+  }
+
+  /**
+   * Get the value under which the given percentage of the recorded values are
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the middle of the bucket holding the percentile, or 0 if nothing was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    double fraction = Math.min(Math.max(percentile, 0), 100) / 100;
+    long rank = Math.max(1, (long) Math.ceil(fraction * totalCount));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        long value = lowestValueOf(i) + (bucketWidthOf(i) - 1) / 2;
+        return Math.max(min, Math.min(max, value));
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Get how many values were recorded in a bucket. Bucket i holds the values from
+   * getBucketLowerBound(i) up to getBucketLowerBound(i + 1) - 1.
+   *
+   * @param bucket the bucket, between 0 and getBucketCount() - 1
+   */
+  public long getCountAtBucket(int bucket) {
+    return counts[bucket];
+  }
+
+  public static int getBucketCount() {
+    return BUCKET_COUNT;
+  }
+
+  public static long getBucketLowerBound(int bucket) {
+    return lowestValueOf(bucket);
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    // Drop the leading one bit, and keep the next SUB_BUCKET_BITS bits
+    int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    return SUB_BUCKET_COUNT * (shift + 1) + subBucket;
+  }
+
+  static long lowestValueOf(int bucket) {
+    if (bucket < SUB_BUCKET_COUNT) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKET_COUNT - 1;
+    long subBucket = bucket % SUB_BUCKET_COUNT;
+    return (SUB_BUCKET_COUNT + subBucket) << shift;
+  }
+
+  static long bucketWidthOf(int bucket) {
+    return bucket < SUB_BUCKET_COUNT ? 1 : 1L << (bucket / SUB_BUCKET_COUNT - 1);
+  }
+}
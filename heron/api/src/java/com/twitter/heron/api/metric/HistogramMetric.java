@@ -0,0 +1,44 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.api.metric;
+
+/**
+ * A metric recording values into a {@link Histogram}, so percentiles, and not only the mean,
+ * of the values of each interval are exported.
+ * <p>
+ * The metric keeps two histograms, and switches to the other one at every interval, so it does
+ * not allocate anything once created. The histogram returned by getValueAndReset() is only
+ * valid until the next call.
+ */
+public class HistogramMetric implements IMetric<Histogram> {
+  private Histogram current = new Histogram();
+  private Histogram previous = new Histogram();
+
+  public void update(long value) {
+    current.record(value);
+  }
+
+  /**
+   * @return the histogram of the values since the last call, or null if there is none
+   */
+  @Override
+  public Histogram getValueAndReset() {
+    Histogram ret = current;
+    current = previous;
+    current.reset();
+    previous = ret;
+    return ret.getCount() > 0 ? ret : null;
+  }
+}
@@ -0,0 +1,46 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.api.metric;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A histogram metric that can hold multiple scoped values.
+ */
+public class MultiHistogramMetric implements IMetric<Map<String, Histogram>> {
+  private final Map<String, HistogramMetric> value = new HashMap<>();
+
+  public HistogramMetric scope(String key) {
+    HistogramMetric metric = value.get(key);
+    if (metric == null) {
+      metric = new HistogramMetric();
+      value.put(key, metric);
+    }
+    return metric;
+  }
+
+  @Override
+  public Map<String, Histogram> getValueAndReset() {
+    Map<String, Histogram> ret = new HashMap<>();
+    for (Map.Entry<String, HistogramMetric> entry : value.entrySet()) {
+      Histogram histogram = entry.getValue().getValueAndReset();
+      if (histogram != null) {
+        ret.put(entry.getKey(), histogram);
+      }
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,36 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.api.serializer;
+
+import java.io.OutputStream;
+
+/**
+ * An IPluggableSerializer that is able to write an object directly into an OutputStream
+ * supplied by the caller, rather than returning a freshly allocated byte[].
+ * <p>
+ * When the topology serializer implements this interface, the instance serializes
+ * tuple values straight into its reusable output buffer, avoiding an intermediate
+ * byte[] and an extra copy per emitted value.
+ */
+public interface IStreamSerializer extends IPluggableSerializer {
+  /**
+   * Serialize the object into the given stream.
+   * The stream is owned by the caller and must not be closed.
+   *
+   * @param object the object to serialize
+   * @param out the stream to write the serialized bytes to
+   */
+  void serializeTo(Object object, OutputStream out);
+}
@@ -38,9 +38,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.util.Map;
 
-public class JavaSerializer implements IPluggableSerializer {
+public class JavaSerializer implements IStreamSerializer {
 
   @Override
   public void initialize(Map<String, Object> config) {
@@ -49,14 +50,19 @@ public class JavaSerializer implements IPluggableSerializer {
   @Override
   public byte[] serialize(Object object) {
     ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    serializeTo(object, bos);
+    return bos.toByteArray();
+  }
+
+  @Override
+  public void serializeTo(Object object, OutputStream out) {
     try {
-      ObjectOutputStream oos = new ObjectOutputStream(bos);
+      ObjectOutputStream oos = new ObjectOutputStream(out);
       oos.writeObject(object);
       oos.flush();
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-    return bos.toByteArray();
   }
 
   @Override
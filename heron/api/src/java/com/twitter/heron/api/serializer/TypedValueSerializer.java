@@ -0,0 +1,180 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.api.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Encodes tuple values of primitive types compactly, and delegates the other values to the
+ * topology serializer.
+ * <p>
+ * Every value starts with a one byte tag giving its type. Longs and ints follow as zig-zag
+ * varints, doubles as their 8 bytes, strings as their UTF-8 bytes and byte arrays as they are.
+ * Other values follow as serialized by the wrapped serializer. With the java serializer, a
+ * long then takes 2 to 11 bytes instead of 82.
+ * <p>
+ * Equal values are always encoded into equal bytes, as fields grouping relies on.
+ */
+public class TypedValueSerializer implements IStreamSerializer {
+  static final byte NULL = 0;
+  static final byte LONG = 1;
+  static final byte INTEGER = 2;
+  static final byte DOUBLE = 3;
+  static final byte FALSE = 4;
+  static final byte TRUE = 5;
+  static final byte STRING = 6;
+  static final byte BYTES = 7;
+  static final byte OBJECT = 8;
+
+  private final IPluggableSerializer serializer;
+  // Non-null if the wrapped serializer can write into a stream
+  private final IStreamSerializer streamSerializer;
+
+  /**
+   * @param serializer the initialized serializer of values not of a primitive type
+   */
+  public TypedValueSerializer(IPluggableSerializer serializer) {
+    this.serializer = serializer;
+    this.streamSerializer =
+        serializer instanceof IStreamSerializer ? (IStreamSerializer) serializer : null;
+  }
+
+  @Override
+  public void initialize(Map<String, Object> config) {
+  }
+
+  @Override
+  public byte[] serialize(Object object) {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(16);
+    serializeTo(object, bos);
+    return bos.toByteArray();
+  }
+
+  @Override
+  public void serializeTo(Object object, OutputStream out) {
+    try {
+      if (object == null) {
+        out.write(NULL);
+      } else if (object instanceof Long) {
+        out.write(LONG);
+        writeVarint(out, zigZag((Long) object));
+      } else if (object instanceof Integer) {
+        out.write(INTEGER);
+        writeVarint(out, zigZag((Integer) object));
+      } else if (object instanceof Double) {
+        out.write(DOUBLE);
+        long bits = Double.doubleToLongBits((Double) object);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+          out.write((int) (bits >>> shift));
+        }
+      } else if (object instanceof Boolean) {
+        out.write((Boolean) object ? TRUE : FALSE);
+      } else if (object instanceof String) {
+        out.write(STRING);
+        writeString(out, (String) object);
+      } else if (object instanceof byte[]) {
+        out.write(BYTES);
+        out.write((byte[]) object);
+      } else {
+        out.write(OBJECT);
+        if (streamSerializer != null) {
+          streamSerializer.serializeTo(object, out);
+        } else {
+          out.write(serializer.serialize(object));
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public Object deserialize(byte[] input) {
+    switch (input[0]) {
+      case NULL:
+        return null;
+      case LONG:
+        return unZigZag(readVarint(input));
+      case INTEGER:
+        return (int) unZigZag(readVarint(input));
+      case DOUBLE:
+        long bits = 0;
+        for (int i = 1; i <= 8; i++) {
+          bits = (bits << 8) | (input[i] & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+      case FALSE:
+        return Boolean.FALSE;
+      case TRUE:
+        return Boolean.TRUE;
+      case STRING:
+        return new String(input, 1, input.length - 1, StandardCharsets.UTF_8);
+      case BYTES:
+        return Arrays.copyOfRange(input, 1, input.length);
+      case OBJECT:
+        return serializer.deserialize(Arrays.copyOfRange(input, 1, input.length));
+      default:
+        throw new IllegalArgumentException("Unknown value type: " + input[0]);
+    }
+  }
+
+  private static void writeString(OutputStream out, String s) throws IOException {
+    int length = s.length();
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x80) {
+        // Not ASCII: let the JDK encode the rest
+        out.write(s.substring(i).getBytes(StandardCharsets.UTF_8));
+        return;
+      }
+      out.write(c);
+    }
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static void writeVarint(OutputStream out, long value) throws IOException {
+    long v = value;
+    while ((v & ~0x7FL) != 0) {
+      out.write((int) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    out.write((int) v);
+  }
+
+  // Read the varint following the tag
+  private static long readVarint(byte[] input) {
+    long value = 0;
+    for (int i = 1, shift = 0; i < input.length; i++, shift += 7) {
+      byte b = input[i];
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Truncated varint");
+  }
+}
@@ -0,0 +1,429 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.api.windowing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Logger;
+
+import com.twitter.heron.api.metric.CountMetric;
+import com.twitter.heron.api.metric.IMetric;
+import com.twitter.heron.api.topology.TopologyContext;
+
+/**
+ * An event queue for the {@link WindowManager} that does not need to hold the whole window
+ * in the java heap.
+ * <p>
+ * The newest events are kept in memory, up to a threshold. Older events are spilled to disk:
+ * they are serialized and appended to segment files mapped in memory, so the OS pages them in
+ * and out as the window is scanned. Events leave the queue from the oldest ones in the common
+ * case, so a segment is deleted as soon as all its events are removed.
+ * <p>
+ * The events returned by this queue have an identity that survives spilling: two events read
+ * back from the same record are equal, so the window manager can still tell new events from the
+ * ones of the previous window. Only a few bytes per spilled event stay in the heap.
+ * The wrapped objects are, however, deserialized again on every {@link Event#get()}, so the
+ * objects of a spilled event are copies, and must be Serializable with java serialization.
+ * The window manager keeps the objects it reads back until the activation of the window ends.
+ * <p>
+ * This class is not thread-safe. Like the rest of the window manager, it is only accessed from
+ * the thread executing the bolt, which also runs the trigger timers.
+ */
+public class SpillableEventQueue<T extends Serializable> extends AbstractCollection<Event<T>>
+    implements Serializable, Closeable {
+  private static final long serialVersionUID = 8046573625137429372L;
+  private static final Logger LOG = Logger.getLogger(SpillableEventQueue.class.getName());
+  private static final int INITIAL_SEGMENT_RECORDS = 1024;
+  // Each record is prefixed by its length
+  private static final int RECORD_HEADER_SIZE = 4;
+
+  private final int inMemoryThreshold;
+  private final int segmentSize;
+  private final File directory;
+
+  // The newest events, still holding their objects
+  private final ArrayDeque<StoredEvent<T>> inMemoryEvents = new ArrayDeque<>();
+  // The spilled events, from the oldest segment to the newest one
+  private final List<Segment> segments = new ArrayList<>();
+  private final ExposedByteArrayOutputStream serializationBuffer =
+      new ExposedByteArrayOutputStream();
+  private long nextSequence;
+  private int size;
+
+  private final CountMetric spillCount = new CountMetric();
+  private final CountMetric spillBytes = new CountMetric();
+  private final CountMetric readCount = new CountMetric();
+  private final CountMetric readBytes = new CountMetric();
+
+  /**
+   * @param inMemoryThreshold the # of newest events kept in memory
+   * @param segmentSize the size in bytes of the segment files
+   * @param directory where the segment files are created
+   */
+  public SpillableEventQueue(int inMemoryThreshold, int segmentSize, File directory) {
+    if (inMemoryThreshold < 0) {
+      throw new IllegalArgumentException("Invalid spill threshold: " + inMemoryThreshold);
+    }
+    if (segmentSize <= RECORD_HEADER_SIZE) {
+      throw new IllegalArgumentException("Invalid spill segment size: " + segmentSize);
+    }
+    this.inMemoryThreshold = inMemoryThreshold;
+    this.segmentSize = segmentSize;
+    this.directory = directory;
+  }
+
+  /**
+   * Register the spill and read-back throughput, and the disk space used, as metrics
+   */
+  public void registerMetrics(TopologyContext context, int intervalSecs) {
+    context.registerMetric("__window-spill-count", spillCount, intervalSecs);
+    context.registerMetric("__window-spill-bytes", spillBytes, intervalSecs);
+    context.registerMetric("__window-read-count", readCount, intervalSecs);
+    context.registerMetric("__window-read-bytes", readBytes, intervalSecs);
+    context.registerMetric("__window-spill-disk-bytes",
+        (IMetric<Long>) this::getDiskBytes, intervalSecs);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean add(Event<T> event) {
+    StoredEvent<T> storedEvent;
+    if (event instanceof StoredEvent) {
+      // Restored from a checkpoint, so it keeps its identity
+      storedEvent = (StoredEvent<T>) event;
+      nextSequence = Math.max(nextSequence, storedEvent.sequence + 1);
+    } else {
+      storedEvent = new StoredEvent<>(nextSequence++, event.getTimestamp(), event.get());
+    }
+    inMemoryEvents.addLast(storedEvent);
+    size++;
+
+    while (inMemoryEvents.size() > inMemoryThreshold) {
+      spill(inMemoryEvents.pollFirst());
+    }
+    return true;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Iterate over the events from the oldest to the newest. The iterator supports remove(),
+   * but the queue must not be modified otherwise while iterating.
+   */
+  @Override
+  public Iterator<Event<T>> iterator() {
+    return new EventIterator();
+  }
+
+  /**
+   * Delete all the segment files
+   */
+  @Override
+  public void close() {
+    for (Segment segment : segments) {
+      segment.delete();
+    }
+    segments.clear();
+    inMemoryEvents.clear();
+    size = 0;
+  }
+
+  // The # of segments holding spilled events, for unit tests
+  int getSegmentCount() {
+    return segments.size();
+  }
+
+  private long getDiskBytes() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      bytes += segment.capacity();
+    }
+    return bytes;
+  }
+
+  private void spill(StoredEvent<T> event) {
+    serializationBuffer.reset();
+    try (ObjectOutputStream out = new ObjectOutputStream(serializationBuffer)) {
+      out.writeObject(event.event);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to serialize a window event", e);
+    }
+    int length = serializationBuffer.size();
+
+    Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    if (segment == null || !segment.hasRoomFor(length)) {
+      // An event larger than the segment size gets its own segment
+      segment = new Segment(Math.max(segmentSize, RECORD_HEADER_SIZE + length));
+      segments.add(segment);
+    }
+    int index = segment.append(event, serializationBuffer.buffer(), length);
+
+    // Drop the object, so only the location of the event stays in memory
+    event.event = null;
+    event.segment = segment;
+    event.index = index;
+    spillCount.incr();
+    spillBytes.incrBy(RECORD_HEADER_SIZE + length);
+  }
+
+  // Checkpoints hold the events themselves, not the segment files
+  private Object writeReplace() throws ObjectStreamException {
+    return new ArrayList<>(this);
+  }
+
+  /**
+   * An event with a sequence number, which defines its identity. Its object is either held in
+   * memory, or read back from a segment.
+   */
+  static final class StoredEvent<T extends Serializable> implements Event<T> {
+    private static final long serialVersionUID = -2960358287441262051L;
+    private final long sequence;
+    private final long ts;
+    private transient T event;
+    private transient SpillableEventQueue<T>.Segment segment;
+    private transient int index;
+
+    private StoredEvent(long sequence, long ts, T event) {
+      this.sequence = sequence;
+      this.ts = ts;
+      this.event = event;
+    }
+
+    private StoredEvent(long sequence, long ts, SpillableEventQueue<T>.Segment segment,
+                        int index) {
+      this.sequence = sequence;
+      this.ts = ts;
+      this.segment = segment;
+      this.index = index;
+    }
+
+    @Override
+    public long getTimestamp() {
+      return ts;
+    }
+
+    @Override
+    public T get() {
+      return event != null ? event : segment.read(index);
+    }
+
+    @Override
+    public boolean isWatermark() {
+      return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof StoredEvent && ((StoredEvent<?>) o).sequence == sequence;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(sequence);
+    }
+
+    @Override
+    public String toString() {
+      return "StoredEvent{" + "sequence=" + sequence + ", ts=" + ts + '}';
+    }
+
+    // Checkpoints carry the object itself
+    private void writeObject(ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+      out.writeObject(get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      event = (T) in.readObject();
+    }
+  }
+
+  /**
+   * An append-only file mapped in memory, holding length-prefixed serialized events
+   */
+  final class Segment {
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final MappedByteBuffer buffer;
+    // The position, timestamp and sequence number of each record
+    private int[] offsets = new int[INITIAL_SEGMENT_RECORDS];
+    private long[] timestamps = new long[INITIAL_SEGMENT_RECORDS];
+    private long[] sequences = new long[INITIAL_SEGMENT_RECORDS];
+    private final BitSet removed = new BitSet();
+    private int recordCount;
+    private int liveCount;
+
+    private Segment(int capacity) {
+      try {
+        file = File.createTempFile("window-", ".segment", directory);
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to create a window segment in " + directory, e);
+      }
+    }
+
+    private boolean hasRoomFor(int length) {
+      return buffer.remaining() >= RECORD_HEADER_SIZE + length;
+    }
+
+    private int capacity() {
+      return buffer.capacity();
+    }
+
+    private int append(StoredEvent<T> event, byte[] bytes, int length) {
+      if (recordCount == offsets.length) {
+        offsets = Arrays.copyOf(offsets, recordCount * 2);
+        timestamps = Arrays.copyOf(timestamps, recordCount * 2);
+        sequences = Arrays.copyOf(sequences, recordCount * 2);
+      }
+      offsets[recordCount] = buffer.position();
+      timestamps[recordCount] = event.ts;
+      sequences[recordCount] = event.sequence;
+      buffer.putInt(length);
+      buffer.put(bytes, 0, length);
+      liveCount++;
+      return recordCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T read(int index) {
+      ByteBuffer record = buffer.duplicate();
+      record.position(offsets[index]);
+      int length = record.getInt();
+      byte[] bytes = new byte[length];
+      record.get(bytes);
+      readCount.incr();
+      readBytes.incrBy(RECORD_HEADER_SIZE + length);
+      try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+        return (T) in.readObject();
+      } catch (IOException | ClassNotFoundException e) {
+        throw new RuntimeException("Failed to read back a window event from " + file, e);
+      }
+    }
+
+    private StoredEvent<T> eventAt(int index) {
+      return new StoredEvent<>(sequences[index], timestamps[index], this, index);
+    }
+
+    private void remove(int index) {
+      removed.set(index);
+      if (--liveCount == 0) {
+        segments.remove(this);
+        delete();
+      }
+    }
+
+    // The mapping itself is released once the buffer is garbage collected
+    private void delete() {
+      try {
+        randomAccessFile.close();
+      } catch (IOException e) {
+        LOG.warning("Failed to close window segment " + file + ": " + e);
+      }
+      if (!file.delete()) {
+        LOG.warning("Failed to delete window segment " + file);
+      }
+    }
+  }
+
+  private final class EventIterator implements Iterator<Event<T>> {
+    // The segments may be deleted while iterating, so iterate over a copy of the list
+    private final List<Segment> segmentsToScan = new ArrayList<>(segments);
+    private int segmentIndex;
+    private int recordIndex;
+    private Iterator<StoredEvent<T>> inMemoryIterator;
+    // Where the last returned event is, if it is spilled
+    private Segment lastSegment;
+    private int lastRecordIndex;
+    private boolean canRemove;
+
+    @Override
+    public boolean hasNext() {
+      while (segmentIndex < segmentsToScan.size()) {
+        Segment segment = segmentsToScan.get(segmentIndex);
+        recordIndex = segment.removed.nextClearBit(recordIndex);
+        if (recordIndex < segment.recordCount) {
+          return true;
+        }
+        segmentIndex++;
+        recordIndex = 0;
+      }
+      if (inMemoryIterator == null) {
+        inMemoryIterator = inMemoryEvents.iterator();
+      }
+      return inMemoryIterator.hasNext();
+    }
+
+    @Override
+    public Event<T> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      canRemove = true;
+      if (segmentIndex < segmentsToScan.size()) {
+        lastSegment = segmentsToScan.get(segmentIndex);
+        lastRecordIndex = recordIndex++;
+        return lastSegment.eventAt(lastRecordIndex);
+      }
+      lastSegment = null;
+      return inMemoryIterator.next();
+    }
+
+    @Override
+    public void remove() {
+      if (!canRemove) {
+        throw new IllegalStateException();
+      }
+      canRemove = false;
+      if (lastSegment != null) {
+        lastSegment.remove(lastRecordIndex);
+      } else {
+        inMemoryIterator.remove();
+      }
+      size--;
+    }
+  }
+
+  private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+    private byte[] buffer() {
+      return buf;
+    }
+  }
+}
@@ -34,6 +34,7 @@
 package com.twitter.heron.api.windowing;
 
 import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -41,6 +42,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -168,14 +170,17 @@ public class WindowManager<T extends Serializable> implements TriggerHandler {
     windowEvents = scanEvents(true);
     expired = new ArrayList<>(expiredEvents);
     expiredEvents.clear();
-    List<T> events = new ArrayList<>();
-    List<T> newEvents = new ArrayList<>();
+    List<Event<T>> newWindowEvents = new ArrayList<>();
     for (Event<T> event : windowEvents) {
-      events.add(event.get());
       if (!prevWindowEvents.contains(event)) {
-        newEvents.add(event.get());
+        newWindowEvents.add(event);
       }
     }
+    // Views, so the events of a spilled window are only read back when the bolt iterates them,
+    // and at most once per activation
+    boolean cacheValues = queue instanceof SpillableEventQueue;
+    EventValueList<T> events = new EventValueList<>(windowEvents, cacheValues);
+    EventValueList<T> newEvents = new EventValueList<>(newWindowEvents, cacheValues);
     prevWindowEvents.clear();
     if (!events.isEmpty()) {
       prevWindowEvents.addAll(windowEvents);
@@ -183,6 +188,9 @@ public class WindowManager<T extends Serializable> implements TriggerHandler {
           + "window.", events.size()));
       windowLifecycleListener.onActivation(events, newEvents, expired,
           evictionPolicy.getContext().getReferenceTime());
+      // The lists may outlive the activation, e.g., as anchors, but not the values read back
+      events.dropCachedValues();
+      newEvents.dropCachedValues();
     } else {
       LOG.fine("No events in the window, skipping onActivation");
     }
@@ -373,4 +381,45 @@ public class WindowManager<T extends Serializable> implements TriggerHandler {
     ret.put(EVENTS_SINCE_LAST_EXPIRY, this.eventsSinceLastExpiry.get());
     return ret;
   }
+
+  /**
+   * The objects wrapped by a list of events, optionally keeping the objects once they are read
+   */
+  private static final class EventValueList<T extends Serializable> extends AbstractList<T>
+      implements RandomAccess {
+    private final List<Event<T>> events;
+    private final boolean cacheValues;
+    private Object[] values;
+
+    private EventValueList(List<Event<T>> events, boolean cacheValues) {
+      this.events = events;
+      this.cacheValues = cacheValues;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+      if (!cacheValues) {
+        return events.get(index).get();
+      }
+      if (values == null) {
+        values = new Object[events.size()];
+      }
+      Object value = values[index];
+      if (value == null) {
+        value = events.get(index).get();
+        values[index] = value;
+      }
+      return (T) value;
+    }
+
+    private void dropCachedValues() {
+      values = null;
+    }
+
+    @Override
+    public int size() {
+      return events.size();
+    }
+  }
 }
@@ -92,12 +92,47 @@ public class WindowingConfigs extends HashMap<String, Object> {
   public static final String TOPOLOGY_BOLTS_WATERMARK_EVENT_INTERVAL_MS = "topology.bolts"
       + ".watermark.event.interval.ms";
 
+  /**
+   * How long, in milliseconds, a streamlet source carrying event time may emit nothing before
+   * its watermark starts advancing on its own, so that an idle source does not hold back the
+   * event time windows downstream. The watermark of an idle source then advances as the wall
+   * clock does, from the largest timestamp it emitted, minus this timeout.
+   */
+  public static final String TOPOLOGY_STREAMLET_WATERMARK_IDLE_TIMEOUT_MS = "topology.streamlet"
+      + ".watermark.idle.timeout.ms";
+
   public static final String TOPOLOGY_BOLTS_WINDOW_CUSTOM_EVICTOR =
           "topology.bolts.window.custom.evictor";
 
   public static final String TOPOLOGY_BOLTS_WINDOW_CUSTOM_TRIGGER =
           "topology.bolts.window.custom.trigger";
 
+  /**
+   * Bolt-specific configuration for windowed bolts to specify the number of newest tuples kept
+   * in memory. Older tuples of the window are spilled to memory-mapped files on local disk, so
+   * windows larger than the heap can be held. Tuples are never spilled if it is not set.
+   * <p>
+   * Tuples emitted by the bolt are anchored to the whole window, as when it does not spill.
+   * The tuples of a spilled window are read back at most once per activation, and held in memory
+   * until the bolt returns from it.
+   */
+  public static final String TOPOLOGY_BOLTS_WINDOW_SPILL_THRESHOLD_COUNT =
+          "topology.bolts.window.spill.threshold.count";
+
+  /**
+   * Bolt-specific configuration for windowed bolts to specify the size in bytes of the files
+   * the window is spilled to. It is 64MB if not set.
+   */
+  public static final String TOPOLOGY_BOLTS_WINDOW_SPILL_SEGMENT_SIZE_BYTES =
+          "topology.bolts.window.spill.segment.size.bytes";
+
+  /**
+   * Bolt-specific configuration for windowed bolts to specify the local directory the window is
+   * spilled to. A temporary directory is used if not set.
+   */
+  public static final String TOPOLOGY_BOLTS_WINDOW_SPILL_DIRECTORY =
+          "topology.bolts.window.spill.directory";
+
   public void setTopologyBoltsWindowLengthCount(long value) {
     setTopologyBoltsWindowLengthCount(this, value);
   }
@@ -156,6 +191,15 @@ public class WindowingConfigs extends HashMap<String, Object> {
     conf.put(TOPOLOGY_BOLTS_WATERMARK_EVENT_INTERVAL_MS, value);
   }
 
+  public void setTopologyStreamletWatermarkIdleTimeoutMs(long value) {
+    setTopologyStreamletWatermarkIdleTimeoutMs(this, value);
+  }
+
+  public static void setTopologyStreamletWatermarkIdleTimeoutMs(
+      Map<String, Object> conf, long value) {
+    conf.put(TOPOLOGY_STREAMLET_WATERMARK_IDLE_TIMEOUT_MS, value);
+  }
+
   public void setTopologyBoltsWindowCustomEvictor(EvictionPolicy<Tuple, ?> value) {
     setTopologyBoltsWindowCustomEvictor(this, value);
   }
@@ -165,6 +209,32 @@ public class WindowingConfigs extends HashMap<String, Object> {
     conf.put(TOPOLOGY_BOLTS_WINDOW_CUSTOM_EVICTOR, value);
   }
 
+  public void setTopologyBoltsWindowSpillThresholdCount(long value) {
+    setTopologyBoltsWindowSpillThresholdCount(this, value);
+  }
+
+  public static void setTopologyBoltsWindowSpillThresholdCount(
+      Map<String, Object> conf, long value) {
+    conf.put(TOPOLOGY_BOLTS_WINDOW_SPILL_THRESHOLD_COUNT, value);
+  }
+
+  public void setTopologyBoltsWindowSpillSegmentSizeBytes(long value) {
+    setTopologyBoltsWindowSpillSegmentSizeBytes(this, value);
+  }
+
+  public static void setTopologyBoltsWindowSpillSegmentSizeBytes(
+      Map<String, Object> conf, long value) {
+    conf.put(TOPOLOGY_BOLTS_WINDOW_SPILL_SEGMENT_SIZE_BYTES, value);
+  }
+
+  public void setTopologyBoltsWindowSpillDirectory(String value) {
+    setTopologyBoltsWindowSpillDirectory(this, value);
+  }
+
+  public static void setTopologyBoltsWindowSpillDirectory(Map<String, Object> conf, String value) {
+    conf.put(TOPOLOGY_BOLTS_WINDOW_SPILL_DIRECTORY, value);
+  }
+
   public void setTopologyBoltsWindowCustomTrigger(TriggerPolicy<Tuple, ?> value) {
     setTopologyBoltsWindowCustomTrigger(this, value);
   }
@@ -39,4 +39,28 @@ public interface Builder {
    * @return
    */
   <R> Streamlet<R> newSource(Source<R> generator);
+
+  /**
+   * Creates a new Streamlet whose elements carry an event time, which event time windows
+   * rely on. The event time is carried along through map, flatMap, filter, transform,
+   * repartition and union, and the progress of the event time is tracked with watermarks.
+   * The supplier returns null when it has no element to emit, and the source is idle once it
+   * has none for topology.streamlet.watermark.idle.timeout.ms.
+   * @param supplier The supplier function that is used to create the streamlet
+   * @param timestampExtractor The function extracting the event time of an element,
+   * in milliseconds
+   */
+  <R> Streamlet<R> newSource(SerializableSupplier<R> supplier,
+                             SerializableFunction<R, Long> timestampExtractor);
+
+  /**
+   * Creates a new Streamlet using the underlying generator, whose elements carry an event time.
+   * The source is idle once the generator has returned no element for
+   * topology.streamlet.watermark.idle.timeout.ms.
+   * @param generator The generator that generates the tuples of the streamlet
+   * @param timestampExtractor The function extracting the event time of an element,
+   * in milliseconds
+   */
+  <R> Streamlet<R> newSource(Source<R> generator,
+                             SerializableFunction<R, Long> timestampExtractor);
 }
@@ -148,6 +148,25 @@ public interface Streamlet<R> {
              SerializableFunction<S, K> otherKeyExtractor, WindowConfig windowCfg,
              JoinType joinType, SerializableBiFunction<R, S, ? extends T> joinFunction);
 
+  /**
+   * Return a new KVStreamlet by joining 'this streamlet with ‘other’ streamlet, incrementally.
+   * Unlike join, which joins every window from scratch, the tuples of the window are kept
+   * indexed by key across windows, and each matching pair of tuples is emitted only once,
+   * when the later of the two arrives. For outer joins, a tuple that leaves the window without
+   * having matched any tuple is emitted with a null counterpart when it is evicted.
+   * @param other The Streamlet that we are joining with.
+   * @param thisKeyExtractor The function applied to a tuple of this streamlet to get the key
+   * @param otherKeyExtractor The function applied to a tuple of the other streamlet to get the key
+   * @param windowCfg This is a specification of what kind of windowing strategy you like to
+   * have. Typical windowing strategies are sliding windows and tumbling windows
+   * @param joinType Type of Join. Options {@link JoinType}
+   * @param joinFunction The join function that needs to be applied
+   */
+  <K, S, T> Streamlet<KeyValue<KeyedWindow<K>, T>>
+        incrementalJoin(Streamlet<S> other, SerializableFunction<R, K> thisKeyExtractor,
+                        SerializableFunction<S, K> otherKeyExtractor, WindowConfig windowCfg,
+                        JoinType joinType, SerializableBiFunction<R, S, ? extends T> joinFunction);
+
   /**
    * Return a new Streamlet accumulating tuples of this streamlet over a Window defined by
    * windowCfg and applying reduceFn on those tuples.
@@ -162,6 +181,30 @@ public interface Streamlet<R> {
       SerializableFunction<R, K> keyExtractor, SerializableFunction<R, V> valueExtractor,
       WindowConfig windowCfg, SerializableBinaryOperator<V> reduceFn);
 
+  /**
+   * Return a new Streamlet accumulating tuples of this streamlet over a Window defined by
+   * windowCfg and applying reduceFn on those tuples, incrementally. Values leaving a sliding
+   * window are removed from the reduced value with inverseReduceFn rather than re-reducing the
+   * window, so each slide only costs the tuples that entered and left the window. Without
+   * inverseReduceFn, the values that arrive in each slide are reduced once into a pane, and the
+   * panes are combined when the window fires: only the oldest pane is re-reduced, when it
+   * partially leaves the window.
+   * @param keyExtractor The function applied to a tuple of this streamlet to get the key
+   * @param valueExtractor The function applied to a tuple of this streamlet to extract the value
+   * to be reduced on
+   * @param windowCfg This is a specification of what kind of windowing strategy you like to have.
+   * Typical windowing strategies are sliding windows and tumbling windows
+   * @param reduceFn The associative reduce function that you want to apply to all the values
+   * of a key.
+   * @param inverseReduceFn The inverse of reduceFn, i.e., inverseReduceFn(reduceFn(a, b), b)
+   * must be equal to a. For instance, subtraction is the inverse of a sum. It can be null when
+   * reduceFn has no inverse.
+   */
+  <K, V> Streamlet<KeyValue<KeyedWindow<K>, V>> reduceByKeyAndWindow(
+      SerializableFunction<R, K> keyExtractor, SerializableFunction<R, V> valueExtractor,
+      WindowConfig windowCfg, SerializableBinaryOperator<V> reduceFn,
+      SerializableBinaryOperator<V> inverseReduceFn);
+
   /**
    * Return a new Streamlet accumulating tuples of this streamlet over a Window defined by
    * windowCfg and applying reduceFn on those tuples. For each window, the value identity is used
@@ -26,6 +26,10 @@ import com.twitter.heron.streamlet.impl.WindowConfigImpl;
  * WindowConfig allows Streamlet API users to program window configuration for operations
  * that rely on windowing. Currently we only support time/count based
  * sliding/tumbling windows.
+ * <p>
+ * Time windows are based on the processing time, except for the event time windows,
+ * which are based on the timestamps of the tuples. Event time windows can only be applied to
+ * streamlets whose source was given a timestamp extractor.
  */
 public interface WindowConfig {
   /**
@@ -48,6 +52,33 @@ public interface WindowConfig {
     return new WindowConfigImpl(windowDuration, slideInterval);
   }
 
+  /**
+   * Creates an event time based tumbling window of windowDuration. A window is complete, and
+   * its result is emitted, once the watermark passes the end of the window by allowedLateness.
+   * Tuples arriving after all their windows are complete are dropped.
+   * @param windowDuration the duration of the tumbling window
+   * @param allowedLateness how long to wait for tuples arriving out of order
+   * @return WindowConfig that can be passed to the transformation
+   */
+  static WindowConfig TumblingEventTimeWindow(Duration windowDuration, Duration allowedLateness) {
+    return new WindowConfigImpl(windowDuration, windowDuration, allowedLateness);
+  }
+
+  /**
+   * Creates an event time based sliding window with windowDuration as the window duration
+   * and slideInterval as slideInterval. A window is complete, and its result is emitted, once
+   * the watermark passes the end of the window by allowedLateness.
+   * Tuples arriving after all their windows are complete are dropped.
+   * @param windowDuration The Sliding Window duration
+   * @param slideInterval The sliding duration, at most windowDuration
+   * @param allowedLateness how long to wait for tuples arriving out of order
+   * @return WindowConfig that can be passed to the transformation
+   */
+  static WindowConfig SlidingEventTimeWindow(Duration windowDuration, Duration slideInterval,
+                                             Duration allowedLateness) {
+    return new WindowConfigImpl(windowDuration, slideInterval, allowedLateness);
+  }
+
   /**
    * Creates a count based tumbling window of size windowSize
    * @param windowSize the size of the tumbling window
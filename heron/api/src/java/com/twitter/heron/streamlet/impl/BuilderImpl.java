@@ -22,6 +22,7 @@ import java.util.Set;
 
 import com.twitter.heron.api.topology.TopologyBuilder;
 import com.twitter.heron.streamlet.Builder;
+import com.twitter.heron.streamlet.SerializableFunction;
 import com.twitter.heron.streamlet.SerializableSupplier;
 import com.twitter.heron.streamlet.Source;
 import com.twitter.heron.streamlet.Streamlet;
@@ -54,6 +55,24 @@ public final class BuilderImpl implements Builder {
     return retval;
   }
 
+  @Override
+  public <R> Streamlet<R> newSource(SerializableSupplier<R> supplier,
+                                    SerializableFunction<R, Long> timestampExtractor) {
+    StreamletImpl<R> retval = StreamletImpl.createSupplierStreamlet(supplier, timestampExtractor);
+    retval.setNumPartitions(1);
+    sources.add(retval);
+    return retval;
+  }
+
+  @Override
+  public <R> Streamlet<R> newSource(Source<R> generator,
+                                    SerializableFunction<R, Long> timestampExtractor) {
+    StreamletImpl<R> retval = StreamletImpl.createGeneratorStreamlet(generator, timestampExtractor);
+    retval.setNumPartitions(1);
+    sources.add(retval);
+    return retval;
+  }
+
   /**
    * We start traversing from all sources and build each node.
    * @return TopologyBuilder class that represents the built topology
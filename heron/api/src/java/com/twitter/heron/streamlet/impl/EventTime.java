@@ -0,0 +1,53 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.streamlet.impl;
+
+import com.twitter.heron.api.topology.OutputFieldsDeclarer;
+import com.twitter.heron.api.tuple.Fields;
+
+/**
+ * The streams and fields shared by the streamlet components that carry event time.
+ * <p>
+ * The tuples of an event time streamlet hold their timestamp next to their value, and each
+ * component of the streamlet also emits watermarks on a separate stream. A watermark promises
+ * that the task emitting it will not emit tuples older than it anymore. Downstream components
+ * subscribe to the watermark stream of their parents with an all grouping, so that every task
+ * learns about the progress of every upstream task.
+ */
+public final class EventTime {
+  public static final String WATERMARK_STREAM_ID = "_streamlet_watermark_";
+  public static final String TIMESTAMP_FIELD_NAME = "timestamp";
+  public static final String WATERMARK_FIELD_NAME = "watermark";
+  // The index of the timestamp in the tuples of an event time streamlet
+  public static final int TIMESTAMP_INDEX = 1;
+
+  private EventTime() {
+  }
+
+  /**
+   * Declare the output stream of a streamlet component, and its watermark stream if it
+   * carries event time
+   */
+  public static void declareStreams(OutputFieldsDeclarer declarer, String outputFieldName,
+                                    boolean eventTime) {
+    if (eventTime) {
+      declarer.declare(new Fields(outputFieldName, TIMESTAMP_FIELD_NAME));
+      declarer.declareStream(WATERMARK_STREAM_ID, new Fields(WATERMARK_FIELD_NAME));
+    } else {
+      declarer.declare(new Fields(outputFieldName));
+    }
+  }
+}
@@ -14,30 +14,63 @@
 
 package com.twitter.heron.streamlet.impl;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.UnsafeInput;
+import com.esotericsoftware.kryo.io.UnsafeOutput;
 import com.esotericsoftware.kryo.serializers.CollectionSerializer;
 import com.esotericsoftware.kryo.serializers.DefaultSerializers;
 import com.esotericsoftware.kryo.serializers.MapSerializer;
 
-import com.twitter.heron.api.serializer.IPluggableSerializer;
+import com.twitter.heron.api.Config;
+import com.twitter.heron.api.serializer.IStreamSerializer;
+import com.twitter.heron.streamlet.KeyValue;
+import com.twitter.heron.streamlet.KeyedWindow;
+import com.twitter.heron.streamlet.Window;
 
 /**
  * KryoSerializer is a wrapper around Heron's IPluggableSerializer.
  * Streamlet based topologies turning on kryo serialization are based off of it.
+ * <p>
+ * Each thread gets its own Kryo, with its own Output and Input buffers, reused across values,
+ * so one serializer can be shared by several threads. The streamlet types and the classes
+ * of Config.TOPOLOGY_KRYO_REGISTERED_CLASSES are registered, and their values are written with
+ * their ids instead of their class names.
+ * <p>
+ * By default, the classes registered by earlier versions keep the ids Kryo gave them, in the
+ * same order, and the other classes are registered after them. Values written by earlier
+ * versions, e.g., in checkpoints, can then still be read: the classes they did not register
+ * were written with their class names. With Config.TOPOLOGY_KRYO_FIXED_REGISTRATION_IDS, all
+ * the classes are registered with fixed ids instead, which do not depend on the classes Kryo
+ * registers by default.
  */
-public class KryoSerializer implements IPluggableSerializer {
-  private Kryo kryo;
-  private Output kryoOut;
-  private Input kryoIn;
+public class KryoSerializer implements IStreamSerializer {
+  // The fixed ids of the classes we register, after the ones Kryo registers by default
+  private static final int FIRST_REGISTRATION_ID = 100;
+  // The ids of the classes from the topology config
+  private static final int FIRST_USER_REGISTRATION_ID = 1000;
+
+  private static final int INITIAL_BUFFER_SIZE = 2000;
+  private static final int MAX_BUFFER_SIZE = 2000000000;
+  // An output buffer grown past this size by a large value is dropped after the value
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+  private List<Class<?>> registeredClasses;
+  private boolean unsafeIo;
+  private boolean fixedRegistrationIds;
+  private ThreadLocal<KryoContext> contexts;
 
   /**
    * A quick utility function that determines whether kryo has been linked
@@ -49,34 +82,153 @@ public class KryoSerializer implements IPluggableSerializer {
 
   @Override
   public void initialize(Map<String, Object> config) {
-    kryo = getKryo();
-    kryoOut = new Output(2000, 2000000000);
-    kryoIn = new Input(1);
+    registeredClasses = getRegisteredClasses(config);
+    Object unsafe = config == null ? null : config.get(Config.TOPOLOGY_KRYO_UNSAFE_IO);
+    unsafeIo = unsafe != null && Boolean.parseBoolean(unsafe.toString());
+    Object fixedIds =
+        config == null ? null : config.get(Config.TOPOLOGY_KRYO_FIXED_REGISTRATION_IDS);
+    fixedRegistrationIds = fixedIds != null && Boolean.parseBoolean(fixedIds.toString());
+    contexts = ThreadLocal.withInitial(() -> new KryoContext(getKryo(), unsafeIo));
   }
 
   @Override
   public byte[] serialize(Object object) {
-    kryoOut.clear();
-    kryo.writeClassAndObject(kryoOut, object);
-    return kryoOut.toBytes();
+    KryoContext context = contexts.get();
+    Output output = context.write(object);
+    byte[] bytes = output.toBytes();
+    context.releaseOutput();
+    return bytes;
+  }
+
+  @Override
+  public void serializeTo(Object object, OutputStream out) {
+    KryoContext context = contexts.get();
+    Output output = context.write(object);
+    try {
+      out.write(output.getBuffer(), 0, output.position());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      context.releaseOutput();
+    }
   }
 
   @Override
   public Object deserialize(byte[] input) {
-    kryoIn.setBuffer(input);
-    return kryo.readClassAndObject(kryoIn);
+    KryoContext context = contexts.get();
+    context.input.setBuffer(input);
+    return context.kryo.readClassAndObject(context.input);
   }
 
   private Kryo getKryo() {
     Kryo k = new Kryo();
     k.setRegistrationRequired(false);
     k.setReferences(false);
+    if (fixedRegistrationIds) {
+      registerWithFixedIds(k);
+    } else {
+      registerInLegacyOrder(k);
+    }
+    return k;
+  }
+
+  // Kryo gives the next free id to each class, so the classes registered by earlier versions
+  // must come first, in the same order
+  private void registerInLegacyOrder(Kryo k) {
     k.register(byte[].class);
     k.register(ArrayList.class, new ArrayListSerializer());
     k.register(HashMap.class, new HashMapSerializer());
     k.register(HashSet.class, new HashSetSerializer());
     k.register(BigInteger.class, new DefaultSerializers.BigIntegerSerializer());
-    return k;
+    k.register(KeyValue.class);
+    k.register(KeyedWindow.class);
+    k.register(Window.class);
+    for (Class<?> registeredClass : registeredClasses) {
+      k.register(registeredClass);
+    }
+  }
+
+  private void registerWithFixedIds(Kryo k) {
+    int id = FIRST_REGISTRATION_ID;
+    k.register(byte[].class, id++);
+    k.register(ArrayList.class, new ArrayListSerializer(), id++);
+    k.register(HashMap.class, new HashMapSerializer(), id++);
+    k.register(HashSet.class, new HashSetSerializer(), id++);
+    k.register(BigInteger.class, new DefaultSerializers.BigIntegerSerializer(), id++);
+    k.register(KeyValue.class, id++);
+    k.register(KeyedWindow.class, id++);
+    k.register(Window.class, id++);
+
+    id = FIRST_USER_REGISTRATION_ID;
+    for (Class<?> registeredClass : registeredClasses) {
+      k.register(registeredClass, id++);
+    }
+  }
+
+  private static List<Class<?>> getRegisteredClasses(Map<String, Object> config) {
+    Object classNames =
+        config == null ? null : config.get(Config.TOPOLOGY_KRYO_REGISTERED_CLASSES);
+    if (classNames == null) {
+      return Collections.emptyList();
+    }
+
+    List<String> names = new ArrayList<>();
+    if (classNames instanceof Collection) {
+      for (Object name : (Collection<?>) classNames) {
+        names.add(name.toString());
+      }
+    } else {
+      Collections.addAll(names, classNames.toString().split(","));
+    }
+
+    List<Class<?>> classes = new ArrayList<>(names.size());
+    for (String name : names) {
+      if (name.trim().isEmpty()) {
+        continue;
+      }
+      try {
+        classes.add(Class.forName(name.trim()));
+      } catch (ClassNotFoundException e) {
+        throw new RuntimeException("Class to register with Kryo not found: " + name, e);
+      }
+    }
+    return classes;
+  }
+
+  /**
+   * The Kryo and the buffers of one thread
+   */
+  private static final class KryoContext {
+    private final Kryo kryo;
+    private final boolean unsafeIo;
+    private final Input input;
+    private Output output;
+
+    private KryoContext(Kryo kryo, boolean unsafeIo) {
+      this.kryo = kryo;
+      this.unsafeIo = unsafeIo;
+      this.input = unsafeIo ? new UnsafeInput(1) : new Input(1);
+      this.output = newOutput();
+    }
+
+    private Output write(Object object) {
+      output.clear();
+      kryo.writeClassAndObject(output, object);
+      return output;
+    }
+
+    // Drop the output buffer if a large value made it grow too much
+    private void releaseOutput() {
+      if (output.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+        output = newOutput();
+      }
+    }
+
+    private Output newOutput() {
+      return unsafeIo
+          ? new UnsafeOutput(INITIAL_BUFFER_SIZE, MAX_BUFFER_SIZE)
+          : new Output(INITIAL_BUFFER_SIZE, MAX_BUFFER_SIZE);
+    }
   }
 
   private class ArrayListSerializer extends CollectionSerializer {
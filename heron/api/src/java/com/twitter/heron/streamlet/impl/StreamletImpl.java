@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
 
+import com.twitter.heron.api.topology.BoltDeclarer;
 import com.twitter.heron.api.topology.TopologyBuilder;
 import com.twitter.heron.streamlet.JoinType;
 import com.twitter.heron.streamlet.KeyValue;
@@ -75,11 +76,21 @@ public abstract class StreamletImpl<R> implements Streamlet<R> {
   protected int nPartitions;
   private List<StreamletImpl<?>> children;
   private boolean built;
+  // Whether the tuples of this streamlet carry event time
+  private boolean eventTime;
 
   public boolean isBuilt() {
     return built;
   }
 
+  public boolean isEventTime() {
+    return eventTime;
+  }
+
+  protected void setEventTime(boolean eventTime) {
+    this.eventTime = eventTime;
+  }
+
   public boolean allBuilt() {
     if (!built) {
       return false;
@@ -216,6 +227,18 @@ public abstract class StreamletImpl<R> implements Streamlet<R> {
   // computed and add a spout/bolt to the TopologyBuilder
   protected abstract boolean doBuild(TopologyBuilder bldr, Set<String> stageNames);
 
+  /**
+   * Subscribe the bolt of this streamlet to the watermarks of all the tasks of its parents,
+   * if this streamlet carries event time
+   */
+  protected void subscribeWatermarks(BoltDeclarer declarer, StreamletImpl<?>... parents) {
+    if (eventTime) {
+      for (StreamletImpl<?> parent : parents) {
+        declarer.allGrouping(parent.getName(), EventTime.WATERMARK_STREAM_ID);
+      }
+    }
+  }
+
   public <T> void addChild(StreamletImpl<T> child) {
     children.add(child);
   }
@@ -242,6 +265,16 @@ public abstract class StreamletImpl<R> implements Streamlet<R> {
     return new SupplierStreamlet<T>(supplier);
   }
 
+  /**
+   * Create a Streamlet carrying event time based on the supplier function
+   * @param supplier The Supplier function to generate the elements
+   * @param timestampExtractor The function extracting the event time of the elements
+   */
+  static <T> StreamletImpl<T> createSupplierStreamlet(SerializableSupplier<T> supplier,
+      SerializableFunction<T, Long> timestampExtractor) {
+    return new SupplierStreamlet<T>(supplier, timestampExtractor);
+  }
+
   /**
    * Create a Streamlet based on the generator function
    * @param generator The Generator function to generate the elements
@@ -250,6 +283,16 @@ public abstract class StreamletImpl<R> implements Streamlet<R> {
     return new SourceStreamlet<T>(generator);
   }
 
+  /**
+   * Create a Streamlet carrying event time based on the generator function
+   * @param generator The Generator function to generate the elements
+   * @param timestampExtractor The function extracting the event time of the elements
+   */
+  static <T> StreamletImpl<T> createGeneratorStreamlet(Source<T> generator,
+      SerializableFunction<T, Long> timestampExtractor) {
+    return new SourceStreamlet<T>(generator, timestampExtractor);
+  }
+
   /**
    * Return a new Streamlet by applying mapFn to each element of this Streamlet
    * @param mapFn The Map Function that should be applied to each element
@@ -371,6 +414,32 @@ public abstract class StreamletImpl<R> implements Streamlet<R> {
     return retval;
   }
 
+  /**
+   * Return a new KVStreamlet by joining 'this streamlet with ‘other’ streamlet, incrementally.
+   * The tuples of the window are kept indexed by key across windows, so each matching pair is
+   * emitted once instead of once per window.
+   * @param other The Streamlet that we are joining with.
+   * @param thisKeyExtractor The function applied to a tuple of this streamlet to get the key
+   * @param otherKeyExtractor The function applied to a tuple of the other streamlet to get the key
+   * @param windowCfg This is a specification of what kind of windowing strategy you like to
+   * have. Typical windowing strategies are sliding windows and tumbling windows
+   * @param joinType Type of Join. Options {@link JoinType}
+   * @param joinFunction The join function that needs to be applied
+   */
+  @Override
+  public <K, S, T> Streamlet<KeyValue<KeyedWindow<K>, T>>
+        incrementalJoin(Streamlet<S> other, SerializableFunction<R, K> thisKeyExtractor,
+                        SerializableFunction<S, K> otherKeyExtractor, WindowConfig windowCfg,
+                        JoinType joinType, SerializableBiFunction<R, S, ? extends T> joinFunction) {
+
+    StreamletImpl<S> joinee = (StreamletImpl<S>) other;
+    JoinStreamlet<K, R, S, T> retval = JoinStreamlet.createIncrementalJoinStreamlet(
+        this, joinee, thisKeyExtractor, otherKeyExtractor, windowCfg, joinType, joinFunction);
+    addChild(retval);
+    joinee.addChild(retval);
+    return retval;
+  }
+
   /**
    * Return a new Streamlet accumulating tuples of this streamlet over a Window defined by
    * windowCfg and applying reduceFn on those tuples.
@@ -392,6 +461,32 @@ public abstract class StreamletImpl<R> implements Streamlet<R> {
     return retval;
   }
 
+  /**
+   * Return a new Streamlet accumulating tuples of this streamlet over a Window defined by
+   * windowCfg and applying reduceFn on those tuples, incrementally. Values leaving a sliding
+   * window are removed from the reduced value with inverseReduceFn rather than re-reducing the
+   * window, or, without it, the window is aggregated by pane.
+   * @param keyExtractor The function applied to a tuple of this streamlet to get the key
+   * @param valueExtractor The function applied to a tuple of this streamlet to extract the value
+   * to be reduced on
+   * @param windowCfg This is a specification of what kind of windowing strategy you like to have.
+   * Typical windowing strategies are sliding windows and tumbling windows
+   * @param reduceFn The associative reduce function that you want to apply to all the values
+   * of a key.
+   * @param inverseReduceFn The inverse of reduceFn, or null
+   */
+  @Override
+  public <K, V> Streamlet<KeyValue<KeyedWindow<K>, V>> reduceByKeyAndWindow(
+      SerializableFunction<R, K> keyExtractor, SerializableFunction<R, V> valueExtractor,
+      WindowConfig windowCfg, SerializableBinaryOperator<V> reduceFn,
+      SerializableBinaryOperator<V> inverseReduceFn) {
+    ReduceByKeyAndWindowStreamlet<K, V, R> retval =
+        new ReduceByKeyAndWindowStreamlet<>(this, keyExtractor, valueExtractor,
+            windowCfg, reduceFn, inverseReduceFn);
+    addChild(retval);
+    return retval;
+  }
+
   /**
    * Return a new Streamlet accumulating tuples of this streamlet over a Window defined by
    * windowCfg and applying reduceFn on those tuples. For each window, the value identity is used
@@ -27,12 +27,13 @@ import com.twitter.heron.streamlet.WindowConfig;
  * WindowConfigImpl implements the WindowConfig interface.
  */
 public final class WindowConfigImpl implements WindowConfig {
-  private enum WindowType { TIME, COUNT, CUSTOM }
+  private enum WindowType { TIME, COUNT, CUSTOM, EVENT_TIME }
   private WindowType windowType;
   private int windowSize;
   private int slideInterval;
   private Duration windowDuration;
   private Duration slidingIntervalDuration;
+  private Duration allowedLateness;
   private TriggerPolicy<Tuple, ?> triggerPolicy;
   private EvictionPolicy<Tuple, ?> evictionPolicy;
 
@@ -41,6 +42,24 @@ public final class WindowConfigImpl implements WindowConfig {
     this.windowDuration = windowDuration;
     this.slidingIntervalDuration = slidingIntervalDuration;
   }
+  public WindowConfigImpl(Duration windowDuration, Duration slidingIntervalDuration,
+                          Duration allowedLateness) {
+    if (windowDuration.toMillis() <= 0 || slidingIntervalDuration.toMillis() <= 0) {
+      throw new IllegalArgumentException("Event time windows must last at least a millisecond");
+    }
+    if (slidingIntervalDuration.compareTo(windowDuration) > 0) {
+      // The tuples falling between two windows would belong to no window
+      throw new IllegalArgumentException("The slide interval of event time windows can not be "
+          + "longer than their duration");
+    }
+    if (allowedLateness.isNegative()) {
+      throw new IllegalArgumentException("Allowed lateness can not be negative");
+    }
+    this.windowType = WindowType.EVENT_TIME;
+    this.windowDuration = windowDuration;
+    this.slidingIntervalDuration = slidingIntervalDuration;
+    this.allowedLateness = allowedLateness;
+  }
   public WindowConfigImpl(int windowSize, int slideInterval) {
     this.windowType = WindowType.COUNT;
     this.windowSize = windowSize;
@@ -53,6 +72,22 @@ public final class WindowConfigImpl implements WindowConfig {
     this.evictionPolicy = evictionPolicy;
   }
 
+  public boolean isEventTime() {
+    return windowType == WindowType.EVENT_TIME;
+  }
+
+  public long getWindowDurationMs() {
+    return windowDuration.toMillis();
+  }
+
+  public long getSlidingIntervalMs() {
+    return slidingIntervalDuration.toMillis();
+  }
+
+  public long getAllowedLatenessMs() {
+    return allowedLateness.toMillis();
+  }
+
   public void attachWindowConfig(BaseWindowedBolt bolt) {
     switch(windowType) {
       case COUNT:
@@ -66,6 +101,8 @@ public final class WindowConfigImpl implements WindowConfig {
         bolt.withCustomEvictor(evictionPolicy);
         bolt.withCustomTrigger(triggerPolicy);
         break;
+      case EVENT_TIME:
+        throw new IllegalStateException("Event time windows are not run by windowed bolts");
       default:
         throw new RuntimeException("Unknown windowType " + String.valueOf(windowType));
     }
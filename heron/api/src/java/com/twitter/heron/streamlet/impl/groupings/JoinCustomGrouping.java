@@ -14,11 +14,6 @@
 
 package com.twitter.heron.streamlet.impl.groupings;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import com.twitter.heron.api.grouping.CustomStreamGrouping;
-import com.twitter.heron.api.topology.TopologyContext;
 import com.twitter.heron.streamlet.SerializableFunction;
 
 /**
@@ -26,28 +21,10 @@ import com.twitter.heron.streamlet.SerializableFunction;
  * JoinOperator. It essentially ensures that the values being routed are of type
  * KeyValue uses the key to route the tuple to the destination.
  */
-public class JoinCustomGrouping<K, V> implements CustomStreamGrouping {
+public class JoinCustomGrouping<K, V> extends KeyGroupCustomGrouping<K, V> {
   private static final long serialVersionUID = 2007892247960031525L;
-  private SerializableFunction<V, K> keyExtractor;
-  private List<Integer> taskIds;
 
   public JoinCustomGrouping(SerializableFunction<V, K> keyExtractor) {
-    this.keyExtractor = keyExtractor;
-  }
-
-  @Override
-  public void prepare(TopologyContext context, String component,
-                      String streamId, List<Integer> targetTasks) {
-    this.taskIds = targetTasks;
-  }
-
-  @SuppressWarnings("unchecked")
-  @Override
-  public List<Integer> chooseTasks(List<Object> values) {
-    List<Integer> ret = new ArrayList<>();
-    V obj = (V) values.get(0);
-    int index = keyExtractor.apply(obj).hashCode() % taskIds.size();
-    ret.add(taskIds.get(index));
-    return ret;
+    super(keyExtractor);
   }
 }
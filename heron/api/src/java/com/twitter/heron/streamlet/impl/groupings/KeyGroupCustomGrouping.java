@@ -0,0 +1,65 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.streamlet.impl.groupings;
+
+import java.util.List;
+
+import com.twitter.heron.api.grouping.KeyGroupRangeTable;
+import com.twitter.heron.api.grouping.KeyGroupStreamGrouping;
+import com.twitter.heron.api.grouping.KeyGroups;
+import com.twitter.heron.api.topology.TopologyContext;
+import com.twitter.heron.streamlet.SerializableFunction;
+
+/**
+ * KeyGroupCustomGrouping is the base of the groupings routing the tuples of a streamlet
+ * by key. The key of a tuple is hashed into one of a fixed number of key groups, and
+ * the key group is routed to the task owning its range, so the same key always reaches
+ * the same task however the tuples are emitted.
+ */
+public abstract class KeyGroupCustomGrouping<K, V> implements KeyGroupStreamGrouping {
+  private static final long serialVersionUID = -3194728264511723054L;
+  private SerializableFunction<V, K> keyExtractor;
+  private int numKeyGroups;
+  private KeyGroupRangeTable rangeTable;
+
+  protected KeyGroupCustomGrouping(SerializableFunction<V, K> keyExtractor) {
+    this.keyExtractor = keyExtractor;
+  }
+
+  @Override
+  public void prepare(TopologyContext context, String component,
+                      String streamId, List<Integer> targetTasks) {
+    this.numKeyGroups = KeyGroups.getNumKeyGroups(context.getTopologyConfig());
+    this.rangeTable = new KeyGroupRangeTable(numKeyGroups, targetTasks);
+  }
+
+  @Override
+  public int getNumKeyGroups() {
+    return numKeyGroups;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public int getKeyGroup(List<Object> values) {
+    V obj = (V) values.get(0);
+    return KeyGroups.keyGroupOf(keyExtractor.apply(obj), numKeyGroups);
+  }
+
+  @Override
+  public List<Integer> chooseTasks(List<Object> values) {
+    return rangeTable.getTargets(getKeyGroup(values));
+  }
+}
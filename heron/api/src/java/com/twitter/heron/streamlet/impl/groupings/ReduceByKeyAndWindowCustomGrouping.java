@@ -14,11 +14,6 @@
 
 package com.twitter.heron.streamlet.impl.groupings;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import com.twitter.heron.api.grouping.CustomStreamGrouping;
-import com.twitter.heron.api.topology.TopologyContext;
 import com.twitter.heron.streamlet.SerializableFunction;
 
 /**
@@ -28,28 +23,10 @@ import com.twitter.heron.streamlet.SerializableFunction;
  * The current implementation is identical to JoinCustomGrouping but it might
  * evolve in the future.
  */
-public class ReduceByKeyAndWindowCustomGrouping<K, V> implements CustomStreamGrouping {
+public class ReduceByKeyAndWindowCustomGrouping<K, V> extends KeyGroupCustomGrouping<K, V> {
   private static final long serialVersionUID = -7630948017550637716L;
-  private SerializableFunction<V, K> keyExtractor;
-  private List<Integer> taskIds;
 
   public ReduceByKeyAndWindowCustomGrouping(SerializableFunction<V, K> keyExtractor) {
-    this.keyExtractor = keyExtractor;
-  }
-
-  @Override
-  public void prepare(TopologyContext context, String component,
-                      String streamId, List<Integer> targetTasks) {
-    this.taskIds = targetTasks;
-  }
-
-  @SuppressWarnings("unchecked")
-  @Override
-  public List<Integer> chooseTasks(List<Object> values) {
-    List<Integer> ret = new ArrayList<>();
-    V obj = (V) values.get(0);
-    int index = keyExtractor.apply(obj).hashCode() % taskIds.size();
-    ret.add(taskIds.get(index));
-    return ret;
+    super(keyExtractor);
   }
 }
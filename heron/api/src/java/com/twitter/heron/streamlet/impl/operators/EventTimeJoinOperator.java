@@ -0,0 +1,129 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.streamlet.impl.operators;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.twitter.heron.api.tuple.Tuple;
+import com.twitter.heron.streamlet.JoinType;
+import com.twitter.heron.streamlet.KeyValue;
+import com.twitter.heron.streamlet.KeyedWindow;
+import com.twitter.heron.streamlet.SerializableBiFunction;
+import com.twitter.heron.streamlet.SerializableFunction;
+import com.twitter.heron.streamlet.Window;
+import com.twitter.heron.streamlet.impl.WindowConfigImpl;
+
+/**
+ * EventTimeJoinOperator implements the join functionality over event time windows.
+ * Each window keeps the values of both sides indexed by key as they arrive, and when the
+ * window is complete, the values of each key are joined according to the join type, as
+ * {@link JoinOperator} does.
+ */
+public final class EventTimeJoinOperator<K, V1, V2, VR>
+    extends EventTimeWindowOperator<EventTimeJoinOperator.WindowState<K, V1, V2>> {
+  private static final long serialVersionUID = 6137962845297830741L;
+  private JoinType joinType;
+  // The source component that represent the left join component
+  private String leftComponent;
+  private SerializableFunction<V1, K> leftKeyExtractor;
+  private SerializableFunction<V2, K> rightKeyExtractor;
+  // The user supplied join function
+  private SerializableBiFunction<V1, V2, ? extends VR> joinFn;
+
+  public EventTimeJoinOperator(JoinType joinType, String leftComponent,
+                               SerializableFunction<V1, K> leftKeyExtractor,
+                               SerializableFunction<V2, K> rightKeyExtractor,
+                               SerializableBiFunction<V1, V2, ? extends VR> joinFn,
+                               WindowConfigImpl windowCfg) {
+    super(windowCfg);
+    this.joinType = joinType;
+    this.leftComponent = leftComponent;
+    this.leftKeyExtractor = leftKeyExtractor;
+    this.rightKeyExtractor = rightKeyExtractor;
+    this.joinFn = joinFn;
+  }
+
+  @Override
+  protected WindowState<K, V1, V2> newWindowState() {
+    return new WindowState<>();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  protected void addToWindow(WindowState<K, V1, V2> state, Tuple tuple) {
+    state.count++;
+    Object value = tuple.getValue(0);
+    if (value == null) {
+      return;
+    }
+    if (tuple.getSourceComponent().equals(leftComponent)) {
+      V1 tup = (V1) value;
+      state.valuesOf(leftKeyExtractor.apply(tup)).left.add(tup);
+    } else {
+      V2 tup = (V2) value;
+      state.valuesOf(rightKeyExtractor.apply(tup)).right.add(tup);
+    }
+  }
+
+  @Override
+  protected void emitWindow(long startTime, long endTime, WindowState<K, V1, V2> state) {
+    Window window = new Window(startTime, endTime, state.count);
+    for (Map.Entry<K, KeyValues<V1, V2>> entry : state.keys.entrySet()) {
+      KeyedWindow<K> keyedWindow = new KeyedWindow<>(entry.getKey(), window);
+      List<V1> left = entry.getValue().left;
+      List<V2> right = entry.getValue().right;
+      if (!left.isEmpty() && !right.isEmpty()) {
+        for (V1 val1 : left) {
+          for (V2 val2 : right) {
+            emitResult(endTime, new KeyValue<>(keyedWindow, joinFn.apply(val1, val2)));
+          }
+        }
+      } else if (joinType == JoinType.OUTER_LEFT || joinType == JoinType.OUTER) {
+        for (V1 val1 : left) {
+          emitResult(endTime, new KeyValue<>(keyedWindow, joinFn.apply(val1, null)));
+        }
+      }
+      if (left.isEmpty() && (joinType == JoinType.OUTER_RIGHT || joinType == JoinType.OUTER)) {
+        for (V2 val2 : right) {
+          emitResult(endTime, new KeyValue<>(keyedWindow, joinFn.apply(null, val2)));
+        }
+      }
+    }
+  }
+
+  /**
+   * The values of a window indexed by key, and the # of tuples of the window
+   */
+  static final class WindowState<K, V1, V2> implements Serializable {
+    private static final long serialVersionUID = -5917843340522416728L;
+    private final Map<K, KeyValues<V1, V2>> keys = new HashMap<>();
+    private int count;
+
+    private KeyValues<V1, V2> valuesOf(K key) {
+      return keys.computeIfAbsent(key, k -> new KeyValues<>());
+    }
+  }
+
+  private static final class KeyValues<V1, V2> implements Serializable {
+    private static final long serialVersionUID = 2744830296715541693L;
+    private final List<V1> left = new ArrayList<>();
+    private final List<V2> right = new ArrayList<>();
+  }
+}
@@ -0,0 +1,129 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.streamlet.impl.operators;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.twitter.heron.api.tuple.Tuple;
+import com.twitter.heron.streamlet.KeyValue;
+import com.twitter.heron.streamlet.KeyedWindow;
+import com.twitter.heron.streamlet.SerializableBiFunction;
+import com.twitter.heron.streamlet.SerializableBinaryOperator;
+import com.twitter.heron.streamlet.SerializableFunction;
+import com.twitter.heron.streamlet.Window;
+import com.twitter.heron.streamlet.impl.WindowConfigImpl;
+
+/**
+ * EventTimeReduceByKeyAndWindowOperator implements reduceByKeyAndWindow over event time windows.
+ * Each window keeps a running aggregate per key, into which the tuples are reduced as they
+ * arrive. When the window is complete, it emits a KeyedWindow, reduced Value KeyPair per key.
+ * <p>
+ * The values are either reduced with a binary operator, or folded into an identity value,
+ * as the two flavors of reduceByKeyAndWindow do.
+ */
+public final class EventTimeReduceByKeyAndWindowOperator<K, R, T> extends
+    EventTimeWindowOperator<HashMap<K, EventTimeReduceByKeyAndWindowOperator.Aggregate<T>>> {
+  private static final long serialVersionUID = -2176431846620512342L;
+  private SerializableFunction<R, K> keyExtractor;
+  // Set when the values are reduced with a binary operator
+  private SerializableFunction<R, T> valueExtractor;
+  private SerializableBinaryOperator<T> reduceFn;
+  // Set when the values are folded into an identity value
+  private T identity;
+  private SerializableBiFunction<T, R, ? extends T> foldFn;
+
+  public static <A, B, C> EventTimeReduceByKeyAndWindowOperator<A, B, C>
+      createReduceOperator(SerializableFunction<B, A> keyExtractor,
+                           SerializableFunction<B, C> valueExtractor,
+                           SerializableBinaryOperator<C> reduceFn,
+                           WindowConfigImpl windowCfg) {
+    return new EventTimeReduceByKeyAndWindowOperator<>(keyExtractor, valueExtractor, reduceFn,
+        null, null, windowCfg);
+  }
+
+  public static <A, B, C> EventTimeReduceByKeyAndWindowOperator<A, B, C>
+      createFoldOperator(SerializableFunction<B, A> keyExtractor, C identity,
+                         SerializableBiFunction<C, B, ? extends C> foldFn,
+                         WindowConfigImpl windowCfg) {
+    return new EventTimeReduceByKeyAndWindowOperator<>(keyExtractor, null, null,
+        identity, foldFn, windowCfg);
+  }
+
+  private EventTimeReduceByKeyAndWindowOperator(SerializableFunction<R, K> keyExtractor,
+                                                SerializableFunction<R, T> valueExtractor,
+                                                SerializableBinaryOperator<T> reduceFn,
+                                                T identity,
+                                                SerializableBiFunction<T, R, ? extends T> foldFn,
+                                                WindowConfigImpl windowCfg) {
+    super(windowCfg);
+    this.keyExtractor = keyExtractor;
+    this.valueExtractor = valueExtractor;
+    this.reduceFn = reduceFn;
+    this.identity = identity;
+    this.foldFn = foldFn;
+  }
+
+  @Override
+  protected HashMap<K, Aggregate<T>> newWindowState() {
+    return new HashMap<>();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  protected void addToWindow(HashMap<K, Aggregate<T>> state, Tuple tuple) {
+    R tup = (R) tuple.getValue(0);
+    K key = keyExtractor.apply(tup);
+    Aggregate<T> aggregate = state.get(key);
+    if (aggregate == null) {
+      T value = reduceFn == null ? foldFn.apply(identity, tup) : valueExtractor.apply(tup);
+      state.put(key, new Aggregate<>(value));
+    } else {
+      aggregate.value = reduceFn == null
+          ? foldFn.apply(aggregate.value, tup)
+          : reduceFn.apply(aggregate.value, valueExtractor.apply(tup));
+      aggregate.count++;
+    }
+  }
+
+  @Override
+  protected void emitWindow(long startTime, long endTime, HashMap<K, Aggregate<T>> state) {
+    for (Map.Entry<K, Aggregate<T>> entry : state.entrySet()) {
+      Window window = new Window(startTime, endTime, entry.getValue().count);
+      KeyedWindow<K> keyedWindow = new KeyedWindow<>(entry.getKey(), window);
+      emitResult(endTime, new KeyValue<>(keyedWindow, entry.getValue().value));
+    }
+  }
+
+  /**
+   * A reduced value, and the # of tuples it was reduced from
+   */
+  static final class Aggregate<T> implements Serializable {
+    private static final long serialVersionUID = 4306312489123503712L;
+    private T value;
+    private int count;
+
+    // For Kryo, which restores the checkpointed windows with a no-arg constructor
+    private Aggregate() {
+    }
+
+    private Aggregate(T value) {
+      this.value = value;
+      this.count = 1;
+    }
+  }
+}
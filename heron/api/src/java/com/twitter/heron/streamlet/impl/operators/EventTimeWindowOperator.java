@@ -0,0 +1,162 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.streamlet.impl.operators;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.twitter.heron.api.bolt.OutputCollector;
+import com.twitter.heron.api.metric.CountMetric;
+import com.twitter.heron.api.state.State;
+import com.twitter.heron.api.topology.TopologyContext;
+import com.twitter.heron.api.tuple.Tuple;
+import com.twitter.heron.api.tuple.Values;
+import com.twitter.heron.streamlet.impl.EventTime;
+import com.twitter.heron.streamlet.impl.WindowConfigImpl;
+
+/**
+ * EventTimeWindowOperator is the base class of the operators computing event time windows.
+ * <p>
+ * A tuple is added to the state of every window containing its timestamp as soon as it arrives,
+ * so the windows are computed incrementally. The windows are kept ordered by start time. When
+ * the watermark passes the end of a window by the allowed lateness, the window is complete:
+ * its result is emitted, and it is dropped from the head of the windows without looking at
+ * the other ones. A tuple whose windows are all complete is late, and is dropped.
+ * <p>
+ * The results of a window carry the last millisecond of the window as their event time, and
+ * the watermark emitted by the operator trails the one of its inputs by the allowed lateness,
+ * so the results are never late for the windows of the operators downstream.
+ * <p>
+ * Tuples are acked once they are added to their windows. In stateful topologies, the windows
+ * that are not complete yet are saved with the checkpoints, and restored with them.
+ */
+public abstract class EventTimeWindowOperator<S extends Serializable> extends StreamletOperator {
+  private static final long serialVersionUID = 3458702148316227845L;
+  private static final int METRICS_INTERVAL_SECS = 60;
+  private static final String WINDOWS_STATE_KEY = "_streamlet_event_time_windows_";
+  private static final String COMPLETE_BEFORE_STATE_KEY = "_streamlet_event_time_complete_before_";
+
+  private long windowLengthMs;
+  private long slideIntervalMs;
+  private long allowedLatenessMs;
+  private OutputCollector collector;
+
+  // The state of the windows that are not complete yet, by start time
+  private transient TreeMap<Long, S> windows;
+  // The windows ending at or before this time are complete
+  private transient long completeBefore;
+  private transient CountMetric lateTuples;
+  private transient State<Serializable, Serializable> state;
+
+  protected EventTimeWindowOperator(WindowConfigImpl windowCfg) {
+    this.windowLengthMs = windowCfg.getWindowDurationMs();
+    this.slideIntervalMs = windowCfg.getSlidingIntervalMs();
+    this.allowedLatenessMs = windowCfg.getAllowedLatenessMs();
+    setEventTime(true);
+  }
+
+  @Override
+  public void initState(State<Serializable, Serializable> startupState) {
+    this.state = startupState;
+  }
+
+  @Override
+  public void preSave(String checkpointId) {
+    // The state is serialized right after, before any other tuple is executed
+    state.put(WINDOWS_STATE_KEY, windows);
+    state.put(COMPLETE_BEFORE_STATE_KEY, completeBefore);
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Override
+  public void prepare(Map map, TopologyContext topologyContext, OutputCollector outputCollector) {
+    collector = outputCollector;
+    prepareWatermarks(topologyContext);
+    if (state != null && state.containsKey(WINDOWS_STATE_KEY)) {
+      windows = (TreeMap<Long, S>) state.get(WINDOWS_STATE_KEY);
+      completeBefore = (Long) state.get(COMPLETE_BEFORE_STATE_KEY);
+    } else {
+      windows = new TreeMap<>();
+      completeBefore = Long.MIN_VALUE;
+    }
+    lateTuples = new CountMetric();
+    topologyContext.registerMetric("__late-tuples", lateTuples, METRICS_INTERVAL_SECS);
+  }
+
+  @Override
+  public void execute(Tuple tuple) {
+    if (isWatermark(tuple)) {
+      if (updateWatermark(tuple)) {
+        completeWindows(getWatermark() - allowedLatenessMs);
+      }
+    } else {
+      addToWindows(tuple);
+    }
+    collector.ack(tuple);
+  }
+
+  private void addToWindows(Tuple tuple) {
+    long timestamp = tuple.getLong(EventTime.TIMESTAMP_INDEX);
+    boolean added = false;
+    // From the last window containing the tuple, back to the first one that is not complete
+    long start = Math.floorDiv(timestamp, slideIntervalMs) * slideIntervalMs;
+    while (start > timestamp - windowLengthMs && start + windowLengthMs > completeBefore) {
+      S state = windows.get(start);
+      if (state == null) {
+        state = newWindowState();
+        windows.put(start, state);
+      }
+      addToWindow(state, tuple);
+      added = true;
+      start -= slideIntervalMs;
+    }
+    if (!added) {
+      lateTuples.incr();
+    }
+  }
+
+  private void completeWindows(long time) {
+    while (!windows.isEmpty() && windows.firstKey() + windowLengthMs <= time) {
+      Map.Entry<Long, S> window = windows.pollFirstEntry();
+      long start = window.getKey();
+      emitWindow(start, start + windowLengthMs, window.getValue());
+    }
+    completeBefore = time;
+    emitWatermark(collector, time);
+  }
+
+  /**
+   * Emit a result of the window ending at endTime
+   */
+  protected void emitResult(long endTime, Object value) {
+    collector.emit(new Values(value, endTime - 1));
+  }
+
+  // The # of windows that are not complete yet, for unit tests
+  int getOpenWindowCount() {
+    return windows.size();
+  }
+
+  protected abstract S newWindowState();
+
+  protected abstract void addToWindow(S state, Tuple tuple);
+
+  /**
+   * Emit the results of a complete window, from startTime included to endTime excluded
+   */
+  protected abstract void emitWindow(long startTime, long endTime, S state);
+}
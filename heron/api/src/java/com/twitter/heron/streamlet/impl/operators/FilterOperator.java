@@ -19,7 +19,6 @@ import java.util.Map;
 import com.twitter.heron.api.bolt.OutputCollector;
 import com.twitter.heron.api.topology.TopologyContext;
 import com.twitter.heron.api.tuple.Tuple;
-import com.twitter.heron.api.tuple.Values;
 import com.twitter.heron.streamlet.SerializablePredicate;
 
 /**
@@ -42,14 +41,19 @@ public class FilterOperator<R> extends StreamletOperator {
   @Override
   public void prepare(Map map, TopologyContext topologyContext, OutputCollector outputCollector) {
     collector = outputCollector;
+    prepareWatermarks(topologyContext);
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public void execute(Tuple tuple) {
+    if (isWatermark(tuple)) {
+      forwardWatermark(collector, tuple);
+      return;
+    }
     R obj = (R) tuple.getValue(0);
     if (filterFn.test(obj)) {
-      collector.emit(new Values(obj));
+      collector.emit(outputValues(tuple, obj));
     }
     collector.ack(tuple);
   }
@@ -19,7 +19,6 @@ import java.util.Map;
 import com.twitter.heron.api.bolt.OutputCollector;
 import com.twitter.heron.api.topology.TopologyContext;
 import com.twitter.heron.api.tuple.Tuple;
-import com.twitter.heron.api.tuple.Values;
 import com.twitter.heron.streamlet.SerializableFunction;
 
 /**
@@ -43,15 +42,20 @@ public class FlatMapOperator<R, T> extends StreamletOperator {
   @Override
   public void prepare(Map map, TopologyContext topologyContext, OutputCollector outputCollector) {
     collector = outputCollector;
+    prepareWatermarks(topologyContext);
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public void execute(Tuple tuple) {
+    if (isWatermark(tuple)) {
+      forwardWatermark(collector, tuple);
+      return;
+    }
     R obj = (R) tuple.getValue(0);
     Iterable<? extends T> result = flatMapFn.apply(obj);
     for (T o : result) {
-      collector.emit(new Values(o));
+      collector.emit(outputValues(tuple, o));
     }
     collector.ack(tuple);
   }
@@ -14,17 +14,23 @@
 
 package com.twitter.heron.streamlet.impl.operators;
 
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 import com.twitter.heron.api.Pair;
 import com.twitter.heron.api.bolt.OutputCollector;
+import com.twitter.heron.api.metric.IMetric;
 import com.twitter.heron.api.topology.TopologyContext;
 import com.twitter.heron.api.tuple.Tuple;
 import com.twitter.heron.api.tuple.Values;
 import com.twitter.heron.api.windowing.TupleWindow;
+import com.twitter.heron.api.windowing.WindowingConfigs;
 import com.twitter.heron.streamlet.JoinType;
 import com.twitter.heron.streamlet.KeyValue;
 import com.twitter.heron.streamlet.KeyedWindow;
@@ -37,11 +43,24 @@ import com.twitter.heron.streamlet.Window;
  * It embeds the logic of the type of join(outer, left, inner) which it takes in as
  * a config parameter. Also taken as parameters are which source is left and right.
  * This is needed for the semantics of outer/left/inner joins.
+ * <p>
+ * By default every window is joined from scratch, so a pair of tuples staying in a sliding
+ * window is emitted again on every trigger. In incremental mode, the operator is a symmetric
+ * hash join instead: it keeps an index of the left and right tuples of the window per key
+ * across triggers. Tuples are indexed as soon as they arrive, under their arrival sequence
+ * number. On a trigger, each new tuple is matched against the tuples of the other side which
+ * already were part of a window, so every matching pair is emitted exactly once. Tuples are
+ * removed from the indexes when they are evicted from the window. For outer joins, a tuple that
+ * is evicted without having matched any tuple, including one evicted before being part of any
+ * window, is emitted with a null counterpart at that time.
  */
 public class JoinOperator<K, V1, V2, VR> extends StreamletWindowOperator {
   private static final long serialVersionUID = 4875450390444745407L;
   private static final String LEFT_COMPONENT_NAME = "_streamlet_joinbolt_left_component_name_";
   private static final String RIGHT_COMPONENT_NAME = "_streamlet_joinbolt_right_component_name_";
+  private static final int METRICS_INTERVAL_SECS = 60;
+  // The # of largest keys whose state is reported
+  private static final int TOP_KEYS_REPORTED = 10;
 
   private JoinType joinType;
   // The source component that represent the left join component
@@ -52,24 +71,62 @@ public class JoinOperator<K, V1, V2, VR> extends StreamletWindowOperator {
   private SerializableFunction<V2, K> rightKeyExtractor;
   // The user supplied join function
   private SerializableBiFunction<V1, V2, ? extends VR> joinFn;
+  private boolean incremental;
   private OutputCollector collector;
 
+  // The tuples of the current window indexed by key, only maintained in incremental mode
+  private transient Map<K, KeyState<V1, V2>> joinState;
+  // The sequence number of every indexed tuple
+  private transient Map<Tuple, Long> sequences;
+  private transient long nextSequence;
+  private transient long indexedTupleCount;
+  // The last window, also reported with the tuples emitted on expiry
+  private transient Window lastWindow;
+
   public JoinOperator(JoinType joinType, String leftComponent, String rightComponent,
                       SerializableFunction<V1, K> leftKeyExtractor,
                       SerializableFunction<V2, K> rightKeyExtractor,
                       SerializableBiFunction<V1, V2, ? extends VR> joinFn) {
+    this(joinType, leftComponent, rightComponent, leftKeyExtractor, rightKeyExtractor, joinFn,
+        false);
+  }
+
+  public JoinOperator(JoinType joinType, String leftComponent, String rightComponent,
+                      SerializableFunction<V1, K> leftKeyExtractor,
+                      SerializableFunction<V2, K> rightKeyExtractor,
+                      SerializableBiFunction<V1, V2, ? extends VR> joinFn,
+                      boolean incremental) {
     this.joinType = joinType;
     this.leftComponent = leftComponent;
     this.rightComponent = rightComponent;
     this.leftKeyExtractor = leftKeyExtractor;
     this.rightKeyExtractor = rightKeyExtractor;
     this.joinFn = joinFn;
+    this.incremental = incremental;
   }
 
   @SuppressWarnings("rawtypes")
   @Override
   public void prepare(Map map, TopologyContext topologyContext, OutputCollector outputCollector) {
     collector = outputCollector;
+    if (incremental) {
+      // Expired tuples are matched by identity, but spilled tuples are read back as copies
+      if (map.containsKey(WindowingConfigs.TOPOLOGY_BOLTS_WINDOW_SPILL_THRESHOLD_COUNT)) {
+        throw new IllegalArgumentException(
+            "An incremental join can not spill its window to disk");
+      }
+      joinState = new HashMap<>();
+      sequences = new IdentityHashMap<>();
+      nextSequence = 0;
+      indexedTupleCount = 0;
+      lastWindow = new Window(0, 0, 0);
+      topologyContext.registerMetric("__join-state-keys",
+          (IMetric<Integer>) () -> joinState.size(), METRICS_INTERVAL_SECS);
+      topologyContext.registerMetric("__join-state-tuples",
+          (IMetric<Long>) () -> indexedTupleCount, METRICS_INTERVAL_SECS);
+      topologyContext.registerMetric("__join-state-tuples-by-key",
+          (IMetric<Map<String, Integer>>) this::getLargestKeys, METRICS_INTERVAL_SECS);
+    }
   }
 
   @Override
@@ -83,6 +140,10 @@ public class JoinOperator<K, V1, V2, VR> extends StreamletWindowOperator {
   @SuppressWarnings("unchecked")
   @Override
   public void execute(TupleWindow inputWindow) {
+    if (incremental) {
+      joinNewTuples(inputWindow);
+      return;
+    }
     Map<K, Pair<List<V1>, List<V2>>> joinMap = new HashMap<>();
     for (Tuple tuple : inputWindow.get()) {
       if (tuple.getSourceComponent().equals(leftComponent)) {
@@ -100,6 +161,140 @@ public class JoinOperator<K, V1, V2, VR> extends StreamletWindowOperator {
     evaluateJoinMap(joinMap, inputWindow);
   }
 
+  @Override
+  public void onArrival(Tuple tuple) {
+    if (incremental) {
+      index(tuple);
+    }
+  }
+
+  // Add a tuple to the index of its side, and return its sequence number
+  @SuppressWarnings("unchecked")
+  private Long index(Tuple tuple) {
+    Object value = tuple.getValue(0);
+    if (value == null) {
+      return null;
+    }
+    Long sequence = nextSequence++;
+    if (tuple.getSourceComponent().equals(leftComponent)) {
+      K key = leftKeyExtractor.apply((V1) value);
+      joinState.computeIfAbsent(key, k -> new KeyState<>()).left
+          .put(sequence, new IndexedTuple<>((V1) value));
+    } else {
+      K key = rightKeyExtractor.apply((V2) value);
+      joinState.computeIfAbsent(key, k -> new KeyState<>()).right
+          .put(sequence, new IndexedTuple<>((V2) value));
+    }
+    sequences.put(tuple, sequence);
+    indexedTupleCount++;
+    return sequence;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void joinNewTuples(TupleWindow inputWindow) {
+    lastWindow = getWindow(inputWindow);
+
+    for (Tuple tuple : inputWindow.getNew()) {
+      Long sequence = sequences.get(tuple);
+      if (sequence == null) {
+        // Not reported by onArrival, e.g., when the bolt is driven directly
+        sequence = index(tuple);
+        if (sequence == null) {
+          continue;
+        }
+      }
+      if (tuple.getSourceComponent().equals(leftComponent)) {
+        V1 tup = (V1) tuple.getValue(0);
+        K key = leftKeyExtractor.apply(tup);
+        KeyState<V1, V2> state = joinState.get(key);
+        IndexedTuple<V1> indexed = state.left.get(sequence);
+        for (IndexedTuple<V2> other : state.right.values()) {
+          if (other.joined) {
+            emit(key, joinFn.apply(tup, other.value));
+            other.matched = true;
+            indexed.matched = true;
+          }
+        }
+        indexed.joined = true;
+      } else {
+        V2 tup = (V2) tuple.getValue(0);
+        K key = rightKeyExtractor.apply(tup);
+        KeyState<V1, V2> state = joinState.get(key);
+        IndexedTuple<V2> indexed = state.right.get(sequence);
+        for (IndexedTuple<V1> other : state.left.values()) {
+          if (other.joined) {
+            emit(key, joinFn.apply(other.value, tup));
+            other.matched = true;
+            indexed.matched = true;
+          }
+        }
+        indexed.joined = true;
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void onExpiry(List<Tuple> expiredTuples) {
+    if (!incremental) {
+      return;
+    }
+    for (Tuple tuple : expiredTuples) {
+      Long sequence = sequences.remove(tuple);
+      if (sequence == null) {
+        // A null value, which is never indexed
+        continue;
+      }
+      if (tuple.getSourceComponent().equals(leftComponent)) {
+        V1 tup = (V1) tuple.getValue(0);
+        K key = leftKeyExtractor.apply(tup);
+        KeyState<V1, V2> state = joinState.get(key);
+        IndexedTuple<V1> indexed = state.left.remove(sequence);
+        if (!indexed.matched && (joinType == JoinType.OUTER_LEFT || joinType == JoinType.OUTER)) {
+          emit(key, joinFn.apply(tup, null));
+        }
+        onTupleRemoved(key, state);
+      } else {
+        V2 tup = (V2) tuple.getValue(0);
+        K key = rightKeyExtractor.apply(tup);
+        KeyState<V1, V2> state = joinState.get(key);
+        IndexedTuple<V2> indexed = state.right.remove(sequence);
+        if (!indexed.matched && (joinType == JoinType.OUTER_RIGHT || joinType == JoinType.OUTER)) {
+          emit(key, joinFn.apply(null, tup));
+        }
+        onTupleRemoved(key, state);
+      }
+    }
+  }
+
+  private void onTupleRemoved(K key, KeyState<V1, V2> state) {
+    indexedTupleCount--;
+    if (state.left.isEmpty() && state.right.isEmpty()) {
+      joinState.remove(key);
+    }
+  }
+
+  private void emit(K key, VR value) {
+    collector.emit(new Values(new KeyValue<>(new KeyedWindow<>(key, lastWindow), value)));
+  }
+
+  // The # of indexed tuples of the keys holding the most tuples
+  private Map<String, Integer> getLargestKeys() {
+    PriorityQueue<Map.Entry<K, KeyState<V1, V2>>> largest = new PriorityQueue<>(
+        Comparator.comparingInt(entry -> entry.getValue().size()));
+    for (Map.Entry<K, KeyState<V1, V2>> entry : joinState.entrySet()) {
+      largest.offer(entry);
+      if (largest.size() > TOP_KEYS_REPORTED) {
+        largest.poll();
+      }
+    }
+    Map<String, Integer> result = new HashMap<>();
+    for (Map.Entry<K, KeyState<V1, V2>> entry : largest) {
+      result.put(String.valueOf(entry.getKey()), entry.getValue().size());
+    }
+    return result;
+  }
+
   private void evaluateJoinMap(Map<K, Pair<List<V1>, List<V2>>> joinMap, TupleWindow tupleWindow) {
     for (K key : joinMap.keySet()) {
       Pair<List<V1>, List<V2>> val = joinMap.get(key);
@@ -155,6 +350,10 @@ public class JoinOperator<K, V1, V2, VR> extends StreamletWindowOperator {
   }
 
   private KeyedWindow<K> getKeyedWindow(K key, TupleWindow tupleWindow) {
+    return new KeyedWindow<>(key, getWindow(tupleWindow));
+  }
+
+  private static Window getWindow(TupleWindow tupleWindow) {
     long startWindow;
     long endWindow;
     if (tupleWindow.getStartTimestamp() == null) {
@@ -167,8 +366,7 @@ public class JoinOperator<K, V1, V2, VR> extends StreamletWindowOperator {
     } else {
       endWindow = tupleWindow.getEndTimestamp();
     }
-    Window window = new Window(startWindow, endWindow, tupleWindow.get().size());
-    return new KeyedWindow<>(key, window);
+    return new Window(startWindow, endWindow, tupleWindow.get().size());
   }
 
   private void innerJoinAndEmit(K key, TupleWindow tupleWindow, Pair<List<V1>, List<V2>> val) {
@@ -196,4 +394,29 @@ public class JoinOperator<K, V1, V2, VR> extends StreamletWindowOperator {
           joinFn.apply(null, val2))));
     }
   }
+
+  /**
+   * The indexed left and right tuples of a key by sequence number, in arrival order
+   */
+  private static final class KeyState<V1, V2> {
+    private final Map<Long, IndexedTuple<V1>> left = new LinkedHashMap<>();
+    private final Map<Long, IndexedTuple<V2>> right = new LinkedHashMap<>();
+
+    private int size() {
+      return left.size() + right.size();
+    }
+  }
+
+  private static final class IndexedTuple<V> {
+    private final V value;
+    // Whether the tuple has been part of a window, so new tuples of the other side are joined
+    // with it
+    private boolean joined;
+    // Whether the tuple has been joined with any tuple of the other side
+    private boolean matched;
+
+    private IndexedTuple(V value) {
+      this.value = value;
+    }
+  }
 }
@@ -19,7 +19,6 @@ import java.util.Map;
 import com.twitter.heron.api.bolt.OutputCollector;
 import com.twitter.heron.api.topology.TopologyContext;
 import com.twitter.heron.api.tuple.Tuple;
-import com.twitter.heron.api.tuple.Values;
 import com.twitter.heron.streamlet.SerializableFunction;
 
 /**
@@ -41,14 +40,19 @@ public class MapOperator<R, T> extends StreamletOperator {
   @Override
   public void prepare(Map map, TopologyContext topologyContext, OutputCollector outputCollector) {
     collector = outputCollector;
+    prepareWatermarks(topologyContext);
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public void execute(Tuple tuple) {
+    if (isWatermark(tuple)) {
+      forwardWatermark(collector, tuple);
+      return;
+    }
     R obj = (R) tuple.getValue(0);
     T result = mapFn.apply(obj);
-    collector.emit(new Values(result));
+    collector.emit(outputValues(tuple, result));
     collector.ack(tuple);
   }
 }
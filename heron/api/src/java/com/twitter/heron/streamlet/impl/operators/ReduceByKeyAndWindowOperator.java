@@ -14,7 +14,9 @@
 
 package com.twitter.heron.streamlet.impl.operators;
 
+import java.util.ArrayDeque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.twitter.heron.api.bolt.OutputCollector;
@@ -31,39 +33,110 @@ import com.twitter.heron.streamlet.Window;
 /**
  * ReduceByKeyAndWindowOperator is the class that implements reduceByKeyAndWindow functionality.
  * It takes in a reduceFunction Function as an input.
- * For every time window, the bolt goes over all the tuples in that window and applies the reduce
- * function grouped by keys. It emits a KeyedWindow, reduced Value KeyPairs as outputs
+ * For every time window, the bolt applies the reduce function grouped by keys over all the
+ * tuples in that window. It emits a KeyedWindow, reduced Value KeyPairs as outputs
+ * <p>
+ * In incremental mode, the window is aggregated incrementally instead of being re-reduced on
+ * every trigger. The tuples that arrive between two triggers, i.e., in one slide interval, form
+ * a pane that keeps its own partial aggregates per key. On trigger, the tuples reported as
+ * expired are dropped from the oldest panes, a pane is added for the new tuples, and the partial
+ * aggregates of all the panes are combined. Panes do not keep their tuples: the only pane that
+ * can lose some of its tuples is the oldest one, and it is re-reduced from the tuples left at the
+ * start of the window.
+ * <p>
+ * When an inverse function is given, a single running aggregate per key is kept instead:
+ * new values are reduced into it and expired values are subtracted from it with the inverse,
+ * so the cost of a trigger only depends on the number of tuples that entered and left the window.
+ * <p>
+ * The window expires tuples in the order they arrived, so the expired tuples are matched with the
+ * oldest tracked ones by count, and never by identity: a spilled window hands out tuples read back
+ * from disk. The window manager does not report the tuples that expire while the window is empty,
+ * since it does not activate empty windows, so the panes are rebuilt from the window whenever the
+ * tracked, new and expired counts do not add up to the size of the window. After a gap, the window
+ * only holds new tuples, so this costs no more than a regular trigger.
+ * <p>
+ * The reduce function must be associative in incremental mode, since partial aggregates are
+ * combined in a different grouping than a left fold over the window would use.
  */
 public class ReduceByKeyAndWindowOperator<K, V, R> extends StreamletWindowOperator {
   private static final long serialVersionUID = 2833576046687750496L;
   private SerializableFunction<R, K> keyExtractor;
   private SerializableFunction<R, V> valueExtractor;
   private SerializableBinaryOperator<V> reduceFn;
+  private SerializableBinaryOperator<V> inverseReduceFn;
+  private boolean incremental;
   private OutputCollector collector;
 
+  // The panes of the current window, from the oldest to the newest
+  private transient ArrayDeque<Pane<K, V>> panes;
+  // The running aggregates of the whole window, only maintained with an inverse function
+  private transient Map<K, Aggregate<V>> totals;
+  // The # of tuples held in the panes
+  private transient int trackedCount;
+  // Whether the panes track the window, which they don't until the first trigger
+  private transient boolean tracking;
+
+  /**
+   * Reduce the whole window on every trigger
+   */
   public ReduceByKeyAndWindowOperator(SerializableFunction<R, K> keyExtractor,
                                       SerializableFunction<R, V> valueExtractor,
                                       SerializableBinaryOperator<V> reduceFn) {
     this.keyExtractor = keyExtractor;
     this.valueExtractor = valueExtractor;
     this.reduceFn = reduceFn;
+    this.incremental = false;
+  }
+
+  /**
+   * Aggregate the window incrementally
+   *
+   * @param inverseReduceFn the function removing a value from a reduced value, i.e.,
+   * inverseReduceFn(reduceFn(a, b), b) == a; it can be null if the reduction is not subtractable,
+   * the window is then aggregated by pane
+   */
+  public ReduceByKeyAndWindowOperator(SerializableFunction<R, K> keyExtractor,
+                                      SerializableFunction<R, V> valueExtractor,
+                                      SerializableBinaryOperator<V> reduceFn,
+                                      SerializableBinaryOperator<V> inverseReduceFn) {
+    this(keyExtractor, valueExtractor, reduceFn);
+    this.inverseReduceFn = inverseReduceFn;
+    this.incremental = true;
   }
 
   @SuppressWarnings("rawtypes")
   @Override
   public void prepare(Map map, TopologyContext topologyContext, OutputCollector outputCollector) {
     collector = outputCollector;
+    panes = new ArrayDeque<>();
+    totals = new HashMap<>();
+    trackedCount = 0;
+    tracking = false;
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public void execute(TupleWindow inputWindow) {
-    Map<K, V> reduceMap = new HashMap<>();
-    Map<K, Integer> windowCountMap = new HashMap<>();
-    for (Tuple tuple : inputWindow.get()) {
-      R tup = (R) tuple.getValue(0);
-      addMap(reduceMap, windowCountMap, tup);
+    Map<K, Aggregate<V>> reduceMap;
+    if (incremental) {
+      List<Tuple> windowTuples = inputWindow.get();
+      List<Tuple> newTuples = inputWindow.getNew();
+      List<Tuple> expired = inputWindow.getExpired();
+      if (tracking
+          && trackedCount - expired.size() + newTuples.size() == windowTuples.size()
+          && removeExpired(expired, windowTuples)) {
+        addPane(newTuples);
+      } else {
+        // The window may hold tuples that arrived before the operator was prepared, or have
+        // lost tuples while it was empty
+        rebuild(windowTuples);
+        tracking = true;
+      }
+      reduceMap = inverseReduceFn == null ? combinePanes() : totals;
+    } else {
+      reduceMap = new HashMap<>();
+      reduceInto(reduceMap, inputWindow.get());
     }
+
     long startWindow;
     long endWindow;
     if (inputWindow.getStartTimestamp() == null) {
@@ -76,21 +149,138 @@ public class ReduceByKeyAndWindowOperator<K, V, R> extends StreamletWindowOperat
     } else {
       endWindow = inputWindow.getEndTimestamp();
     }
-    for (K key : reduceMap.keySet()) {
-      Window window = new Window(startWindow, endWindow, windowCountMap.get(key));
-      KeyedWindow<K> keyedWindow = new KeyedWindow<>(key, window);
-      collector.emit(new Values(new KeyValue<>(keyedWindow, reduceMap.get(key))));
+    for (Map.Entry<K, Aggregate<V>> entry : reduceMap.entrySet()) {
+      Window window = new Window(startWindow, endWindow, entry.getValue().count);
+      KeyedWindow<K> keyedWindow = new KeyedWindow<>(entry.getKey(), window);
+      collector.emit(new Values(new KeyValue<>(keyedWindow, entry.getValue().value)));
     }
   }
 
-  private void addMap(Map<K, V> reduceMap, Map<K, Integer> windowCountMap, R tup) {
-    K key = keyExtractor.apply(tup);
-    if (reduceMap.containsKey(key)) {
-      reduceMap.put(key, reduceFn.apply(reduceMap.get(key), valueExtractor.apply(tup)));
-      windowCountMap.put(key, windowCountMap.get(key) + 1);
+  /**
+   * Drop the expired tuples from the oldest panes, and re-reduce the oldest pane left from the
+   * tuples at the start of the window if it lost some of its tuples
+   *
+   * @return false if more tuples expired than are tracked
+   */
+  @SuppressWarnings("unchecked")
+  private boolean removeExpired(List<Tuple> expired, List<Tuple> windowTuples) {
+    int expiredCount = expired.size();
+    if (expiredCount > trackedCount) {
+      return false;
+    }
+    if (inverseReduceFn != null) {
+      for (Tuple tuple : expired) {
+        R tup = (R) tuple.getValue(0);
+        K key = keyExtractor.apply(tup);
+        Aggregate<V> aggregate = totals.get(key);
+        if (aggregate == null) {
+          return false;
+        }
+        if (--aggregate.count == 0) {
+          totals.remove(key);
+        } else {
+          aggregate.value = inverseReduceFn.apply(aggregate.value, valueExtractor.apply(tup));
+        }
+      }
+    }
+    trackedCount -= expiredCount;
+    while (expiredCount > 0) {
+      Pane<K, V> oldest = panes.peekFirst();
+      if (oldest.count <= expiredCount) {
+        expiredCount -= oldest.count;
+        panes.pollFirst();
+      } else {
+        oldest.count -= expiredCount;
+        expiredCount = 0;
+        if (inverseReduceFn == null) {
+          oldest.partials = new HashMap<>();
+          reduceInto(oldest.partials, windowTuples.subList(0, oldest.count));
+        }
+      }
+    }
+    return true;
+  }
+
+  private void addPane(List<Tuple> tuples) {
+    if (tuples.isEmpty()) {
+      return;
+    }
+    Pane<K, V> pane = new Pane<>(tuples.size());
+    if (inverseReduceFn == null) {
+      pane.partials = new HashMap<>();
+      reduceInto(pane.partials, tuples);
     } else {
-      reduceMap.put(key, valueExtractor.apply(tup));
-      windowCountMap.put(key, 1);
+      reduceInto(totals, tuples);
+    }
+    panes.addLast(pane);
+    trackedCount += tuples.size();
+  }
+
+  // Forget all the panes and start again from the tuples of the window
+  private void rebuild(List<Tuple> windowTuples) {
+    panes.clear();
+    totals.clear();
+    trackedCount = 0;
+    addPane(windowTuples);
+  }
+
+  private Map<K, Aggregate<V>> combinePanes() {
+    Map<K, Aggregate<V>> reduceMap = new HashMap<>();
+    for (Pane<K, V> pane : panes) {
+      for (Map.Entry<K, Aggregate<V>> entry : pane.partials.entrySet()) {
+        Aggregate<V> partial = entry.getValue();
+        Aggregate<V> aggregate = reduceMap.get(entry.getKey());
+        if (aggregate == null) {
+          reduceMap.put(entry.getKey(), new Aggregate<>(partial.value, partial.count));
+        } else {
+          aggregate.value = reduceFn.apply(aggregate.value, partial.value);
+          aggregate.count += partial.count;
+        }
+      }
+    }
+    return reduceMap;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void reduceInto(Map<K, Aggregate<V>> reduceMap, Iterable<Tuple> tuples) {
+    for (Tuple tuple : tuples) {
+      R tup = (R) tuple.getValue(0);
+      K key = keyExtractor.apply(tup);
+      V value = valueExtractor.apply(tup);
+      Aggregate<V> aggregate = reduceMap.get(key);
+      if (aggregate == null) {
+        reduceMap.put(key, new Aggregate<>(value, 1));
+      } else {
+        aggregate.value = reduceFn.apply(aggregate.value, value);
+        aggregate.count++;
+      }
+    }
+  }
+
+  /**
+   * The tuples that arrived in one slide interval, still in the window
+   */
+  private static final class Pane<K, V> {
+    // The # of tuples
+    private int count;
+    // The partial aggregates of the tuples, only kept without an inverse function
+    private Map<K, Aggregate<V>> partials;
+
+    private Pane(int count) {
+      this.count = count;
+    }
+  }
+
+  /**
+   * A reduced value, and the # of tuples it was reduced from
+   */
+  private static final class Aggregate<V> {
+    private V value;
+    private int count;
+
+    private Aggregate(V value, int count) {
+      this.value = value;
+      this.count = count;
     }
   }
 }
@@ -17,10 +17,14 @@ package com.twitter.heron.streamlet.impl.operators;
 import java.io.Serializable;
 
 import com.twitter.heron.api.bolt.BaseRichBolt;
+import com.twitter.heron.api.bolt.OutputCollector;
 import com.twitter.heron.api.state.State;
 import com.twitter.heron.api.topology.IStatefulComponent;
 import com.twitter.heron.api.topology.OutputFieldsDeclarer;
-import com.twitter.heron.api.tuple.Fields;
+import com.twitter.heron.api.topology.TopologyContext;
+import com.twitter.heron.api.tuple.Tuple;
+import com.twitter.heron.api.tuple.Values;
+import com.twitter.heron.streamlet.impl.EventTime;
 
 /**
  * The Bolt interface that other operators of the streamlet packages extend.
@@ -31,6 +35,18 @@ public abstract class StreamletOperator extends BaseRichBolt
   private static final long serialVersionUID = 8524238140745238942L;
   private static final String OUTPUT_FIELD_NAME = "output";
 
+  // Whether the tuples of the streamlet carry event time
+  private boolean eventTime;
+  private transient WatermarkTracker watermarks;
+
+  public void setEventTime(boolean eventTime) {
+    this.eventTime = eventTime;
+  }
+
+  public boolean isEventTime() {
+    return eventTime;
+  }
+
   @Override
   public void initState(State<Serializable, Serializable> state) { }
 
@@ -45,6 +61,60 @@ public abstract class StreamletOperator extends BaseRichBolt
    */
   @Override
   public void declareOutputFields(OutputFieldsDeclarer outputFieldsDeclarer) {
-    outputFieldsDeclarer.declare(new Fields(OUTPUT_FIELD_NAME));
+    EventTime.declareStreams(outputFieldsDeclarer, OUTPUT_FIELD_NAME, eventTime);
+  }
+
+  /**
+   * Start tracking the watermarks of the upstream tasks. Operators carrying event time
+   * call it when they are prepared.
+   */
+  protected void prepareWatermarks(TopologyContext topologyContext) {
+    if (eventTime) {
+      watermarks = new WatermarkTracker(topologyContext);
+    }
+  }
+
+  protected static boolean isWatermark(Tuple tuple) {
+    return EventTime.WATERMARK_STREAM_ID.equals(tuple.getSourceStreamId());
+  }
+
+  /**
+   * Record a watermark received from an upstream task
+   *
+   * @return true if the watermark of this operator advanced
+   */
+  protected boolean updateWatermark(Tuple watermarkTuple) {
+    return watermarks.update(watermarkTuple.getSourceTask(), watermarkTuple.getLong(0));
+  }
+
+  protected long getWatermark() {
+    return watermarks.getWatermark();
+  }
+
+  protected static void emitWatermark(OutputCollector collector, long watermark) {
+    collector.emit(EventTime.WATERMARK_STREAM_ID, new Values(watermark));
+  }
+
+  /**
+   * Forward the watermark of this operator downstream if the watermark tuple advanced it.
+   * Operators that do not hold tuples back, e.g., map or filter, emit the tuples of their
+   * inputs right away, so their watermark is the one of their inputs.
+   */
+  protected void forwardWatermark(OutputCollector collector, Tuple watermarkTuple) {
+    if (updateWatermark(watermarkTuple)) {
+      emitWatermark(collector, getWatermark());
+    }
+    collector.ack(watermarkTuple);
+  }
+
+  /**
+   * The values of a tuple emitted for an input tuple, which keep the timestamp of the input
+   * tuple with event time
+   */
+  protected Values outputValues(Tuple input, Object value) {
+    if (eventTime) {
+      return new Values(value, input.getValue(EventTime.TIMESTAMP_INDEX));
+    }
+    return new Values(value);
   }
 }
@@ -21,7 +21,6 @@ import com.twitter.heron.api.bolt.OutputCollector;
 import com.twitter.heron.api.state.State;
 import com.twitter.heron.api.topology.TopologyContext;
 import com.twitter.heron.api.tuple.Tuple;
-import com.twitter.heron.api.tuple.Values;
 import com.twitter.heron.streamlet.Context;
 import com.twitter.heron.streamlet.SerializableTransformer;
 import com.twitter.heron.streamlet.impl.ContextImpl;
@@ -59,6 +58,7 @@ public class TransformOperator<R, T> extends StreamletOperator {
   public void prepare(Map<String, Object> map, TopologyContext topologyContext,
                       OutputCollector outputCollector) {
     collector = outputCollector;
+    prepareWatermarks(topologyContext);
     Context context = new ContextImpl(topologyContext, map, state);
     serializableTransformer.setup(context);
   }
@@ -66,8 +66,12 @@ public class TransformOperator<R, T> extends StreamletOperator {
   @SuppressWarnings("unchecked")
   @Override
   public void execute(Tuple tuple) {
+    if (isWatermark(tuple)) {
+      forwardWatermark(collector, tuple);
+      return;
+    }
     R obj = (R) tuple.getValue(0);
-    serializableTransformer.transform(obj, x -> collector.emit(new Values(x)));
+    serializableTransformer.transform(obj, x -> collector.emit(outputValues(tuple, x)));
     collector.ack(tuple);
   }
 }
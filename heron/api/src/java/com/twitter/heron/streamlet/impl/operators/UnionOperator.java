@@ -19,7 +19,6 @@ import java.util.Map;
 import com.twitter.heron.api.bolt.OutputCollector;
 import com.twitter.heron.api.topology.TopologyContext;
 import com.twitter.heron.api.tuple.Tuple;
-import com.twitter.heron.api.tuple.Values;
 
 /**
  * UnionOperator is the class that implements the union functionality.
@@ -36,13 +35,18 @@ public class UnionOperator<I> extends StreamletOperator {
   @Override
   public void prepare(Map map, TopologyContext topologyContext, OutputCollector outputCollector) {
     collector = outputCollector;
+    prepareWatermarks(topologyContext);
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public void execute(Tuple tuple) {
+    if (isWatermark(tuple)) {
+      forwardWatermark(collector, tuple);
+      return;
+    }
     I obj = (I) tuple.getValue(0);
-    collector.emit(new Values(obj));
+    collector.emit(outputValues(tuple, obj));
     collector.ack(tuple);
   }
 }
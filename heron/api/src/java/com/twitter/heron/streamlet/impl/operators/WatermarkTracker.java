@@ -0,0 +1,86 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.streamlet.impl.operators;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.twitter.heron.api.generated.TopologyAPI;
+import com.twitter.heron.api.topology.TopologyContext;
+import com.twitter.heron.streamlet.impl.EventTime;
+
+/**
+ * Tracks the watermarks received from the upstream tasks of an operator.
+ * The watermark of the operator is the smallest watermark of its upstream tasks, and is only
+ * known once every upstream task has sent one.
+ */
+final class WatermarkTracker {
+  private final int upstreamTaskCount;
+  private final Map<Integer, Long> taskWatermarks;
+  private long watermark;
+
+  WatermarkTracker(TopologyContext context) {
+    this(countUpstreamTasks(context));
+  }
+
+  WatermarkTracker(int upstreamTaskCount) {
+    this.upstreamTaskCount = upstreamTaskCount;
+    this.taskWatermarks = new HashMap<>();
+    this.watermark = Long.MIN_VALUE;
+  }
+
+  private static int countUpstreamTasks(TopologyContext context) {
+    int count = 0;
+    for (TopologyAPI.StreamId streamId : context.getThisSources().keySet()) {
+      if (EventTime.WATERMARK_STREAM_ID.equals(streamId.getId())) {
+        count += context.getComponentTasks(streamId.getComponentName()).size();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Record a watermark received from an upstream task
+   *
+   * @return true if the watermark of the operator advanced
+   */
+  boolean update(int sourceTask, long taskWatermark) {
+    Long previous = taskWatermarks.get(sourceTask);
+    if (previous != null && previous >= taskWatermark) {
+      return false;
+    }
+    taskWatermarks.put(sourceTask, taskWatermark);
+    if (taskWatermarks.size() < upstreamTaskCount) {
+      return false;
+    }
+    long min = Long.MAX_VALUE;
+    for (long value : taskWatermarks.values()) {
+      min = Math.min(min, value);
+    }
+    if (min <= watermark) {
+      return false;
+    }
+    watermark = min;
+    return true;
+  }
+
+  /**
+   * Get the watermark of the operator, or Long.MIN_VALUE if it is not known yet
+   */
+  long getWatermark() {
+    return watermark;
+  }
+}
@@ -23,6 +23,7 @@ import com.twitter.heron.api.state.State;
 import com.twitter.heron.api.topology.TopologyContext;
 import com.twitter.heron.api.tuple.Values;
 import com.twitter.heron.streamlet.Context;
+import com.twitter.heron.streamlet.SerializableFunction;
 import com.twitter.heron.streamlet.Source;
 import com.twitter.heron.streamlet.impl.ContextImpl;
 
@@ -34,12 +35,19 @@ import com.twitter.heron.streamlet.impl.ContextImpl;
 public class ComplexSource<R> extends StreamletSource {
   private static final long serialVersionUID = -5086763670301450007L;
   private Source<R> generator;
+  private SerializableFunction<R, Long> timestampExtractor;
 
   private SpoutOutputCollector collector;
   private State<Serializable, Serializable> state;
 
   public ComplexSource(Source<R> generator) {
+    this(generator, null);
+  }
+
+  public ComplexSource(Source<R> generator, SerializableFunction<R, Long> timestampExtractor) {
     this.generator = generator;
+    this.timestampExtractor = timestampExtractor;
+    setEventTime(timestampExtractor != null);
   }
 
   @Override
@@ -52,6 +60,7 @@ public class ComplexSource<R> extends StreamletSource {
   public void open(Map<String, Object> map, TopologyContext topologyContext,
                    SpoutOutputCollector outputCollector) {
     collector = outputCollector;
+    prepareWatermarks(map);
     Context context = new ContextImpl(topologyContext, map, state);
     generator.setup(context);
   }
@@ -59,9 +68,17 @@ public class ComplexSource<R> extends StreamletSource {
   @Override
   public void nextTuple() {
     Collection<R> val = generator.get();
+    if ((val == null || val.isEmpty()) && timestampExtractor != null) {
+      emitIdleWatermark(collector);
+      return;
+    }
     if (val != null) {
       for (R tuple : val) {
-        collector.emit(new Values(tuple));
+        if (timestampExtractor == null) {
+          collector.emit(new Values(tuple));
+        } else {
+          emitEvent(collector, tuple, timestampExtractor.apply(tuple));
+        }
       }
     }
   }
@@ -15,12 +15,16 @@
 package com.twitter.heron.streamlet.impl.sources;
 
 import java.io.Serializable;
+import java.util.Map;
 
 import com.twitter.heron.api.spout.BaseRichSpout;
+import com.twitter.heron.api.spout.SpoutOutputCollector;
 import com.twitter.heron.api.state.State;
 import com.twitter.heron.api.topology.IStatefulComponent;
 import com.twitter.heron.api.topology.OutputFieldsDeclarer;
-import com.twitter.heron.api.tuple.Fields;
+import com.twitter.heron.api.tuple.Values;
+import com.twitter.heron.api.windowing.WindowingConfigs;
+import com.twitter.heron.streamlet.impl.EventTime;
 
 /**
  * StreamletSource is the base class for all streamlet sources.
@@ -31,6 +35,26 @@ public abstract class StreamletSource extends BaseRichSpout
 
   private static final long serialVersionUID = 8583965332619565343L;
   private static final String OUTPUT_FIELD_NAME = "output";
+  private static final long DEFAULT_WATERMARK_INTERVAL_MS = 1000;
+  private static final long DEFAULT_WATERMARK_IDLE_TIMEOUT_MS = 10000;
+
+  // Whether the tuples of the streamlet carry event time
+  private boolean eventTime;
+  private transient long watermarkIntervalMs;
+  private transient long idleTimeoutMs;
+  private transient long maxTimestamp;
+  // The wall clock time of the last tuple emitted, or of the opening of the source
+  private transient long lastEventTimeMs;
+  private transient long lastWatermark;
+  private transient long lastWatermarkTimeMs;
+
+  protected void setEventTime(boolean eventTime) {
+    this.eventTime = eventTime;
+  }
+
+  public boolean isEventTime() {
+    return eventTime;
+  }
 
   @Override
   public void initState(State<Serializable, Serializable> state) { }
@@ -46,6 +70,74 @@ public abstract class StreamletSource extends BaseRichSpout
    */
   @Override
   public void declareOutputFields(OutputFieldsDeclarer outputFieldsDeclarer) {
-    outputFieldsDeclarer.declare(new Fields(OUTPUT_FIELD_NAME));
+    EventTime.declareStreams(outputFieldsDeclarer, OUTPUT_FIELD_NAME, eventTime);
+  }
+
+  /**
+   * Reset the watermark of this source. Sources carrying event time call it when they are opened.
+   * Watermarks are emitted at the interval set by
+   * {@link WindowingConfigs#TOPOLOGY_BOLTS_WATERMARK_EVENT_INTERVAL_MS}, 1 second by default.
+   * A source emitting nothing for
+   * {@link WindowingConfigs#TOPOLOGY_STREAMLET_WATERMARK_IDLE_TIMEOUT_MS}, 10 seconds by default,
+   * is idle.
+   */
+  protected void prepareWatermarks(Map<String, Object> conf) {
+    watermarkIntervalMs = getLong(conf, WindowingConfigs.TOPOLOGY_BOLTS_WATERMARK_EVENT_INTERVAL_MS,
+        DEFAULT_WATERMARK_INTERVAL_MS);
+    idleTimeoutMs = getLong(conf, WindowingConfigs.TOPOLOGY_STREAMLET_WATERMARK_IDLE_TIMEOUT_MS,
+        DEFAULT_WATERMARK_IDLE_TIMEOUT_MS);
+    maxTimestamp = Long.MIN_VALUE;
+    lastWatermark = Long.MIN_VALUE;
+    lastWatermarkTimeMs = System.currentTimeMillis();
+    lastEventTimeMs = lastWatermarkTimeMs;
+  }
+
+  private static long getLong(Map<String, Object> conf, String key, long defaultValue) {
+    Object value = conf.get(key);
+    return value == null ? defaultValue : ((Number) value).longValue();
+  }
+
+  /**
+   * Emit a value with its event time, and the watermark of this source if it is due.
+   * The watermark of a source is the largest timestamp it emitted; tuples arriving out of order
+   * are accepted downstream within the allowed lateness of the windows.
+   */
+  protected void emitEvent(SpoutOutputCollector collector, Object value, long timestamp) {
+    collector.emit(new Values(value, timestamp));
+    if (timestamp > maxTimestamp) {
+      maxTimestamp = timestamp;
+    }
+    long now = System.currentTimeMillis();
+    lastEventTimeMs = now;
+    emitWatermark(collector, now, maxTimestamp);
+  }
+
+  /**
+   * Advance the watermark of this source if it is idle. Sources carrying event time call it
+   * whenever they are polled, which the instance keeps doing while they emit nothing.
+   * <p>
+   * Downstream operators wait for the watermarks of all their upstream tasks, so an idle source
+   * would hold back their windows forever. Once idle, the watermark advances as the wall clock
+   * does, trailing the largest timestamp emitted by the idle timeout; a source that has emitted
+   * nothing yet takes its timestamps for wall clock times. The tuples the source emits when it
+   * resumes may then be late downstream.
+   */
+  protected void emitIdleWatermark(SpoutOutputCollector collector) {
+    long now = System.currentTimeMillis();
+    long idleMs = now - lastEventTimeMs;
+    if (idleMs < idleTimeoutMs) {
+      return;
+    }
+    long watermark = maxTimestamp == Long.MIN_VALUE
+        ? now - idleTimeoutMs : maxTimestamp + idleMs - idleTimeoutMs;
+    emitWatermark(collector, now, watermark);
+  }
+
+  private void emitWatermark(SpoutOutputCollector collector, long now, long watermark) {
+    if (now - lastWatermarkTimeMs >= watermarkIntervalMs && watermark > lastWatermark) {
+      collector.emit(EventTime.WATERMARK_STREAM_ID, new Values(watermark));
+      lastWatermark = watermark;
+      lastWatermarkTimeMs = now;
+    }
   }
 }
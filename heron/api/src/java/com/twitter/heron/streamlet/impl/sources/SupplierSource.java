@@ -19,31 +19,51 @@ import java.util.Map;
 import com.twitter.heron.api.spout.SpoutOutputCollector;
 import com.twitter.heron.api.topology.TopologyContext;
 import com.twitter.heron.api.tuple.Values;
+import com.twitter.heron.streamlet.SerializableFunction;
 import com.twitter.heron.streamlet.SerializableSupplier;
 
 /**
  * SupplierSource is a way to wrap a supplier function inside a Heron Spout.
  * The SupplierSource just calls the get method of the supplied function
- * to generate the next tuple.
+ * to generate the next tuple. When a timestamp extractor is given, the tuples
+ * carry the event time it extracts.
  */
 public class SupplierSource<R> extends StreamletSource {
   private static final long serialVersionUID = 6476611751545430216L;
   private SerializableSupplier<R> supplier;
+  private SerializableFunction<R, Long> timestampExtractor;
 
   private SpoutOutputCollector collector;
 
   public SupplierSource(SerializableSupplier<R> supplier) {
+    this(supplier, null);
+  }
+
+  public SupplierSource(SerializableSupplier<R> supplier,
+                        SerializableFunction<R, Long> timestampExtractor) {
     this.supplier = supplier;
+    this.timestampExtractor = timestampExtractor;
+    setEventTime(timestampExtractor != null);
   }
 
-  @SuppressWarnings("rawtypes")
+  @SuppressWarnings({"rawtypes", "unchecked"})
   @Override
   public void open(Map map, TopologyContext topologyContext, SpoutOutputCollector outputCollector) {
     collector = outputCollector;
+    prepareWatermarks(map);
   }
 
   @Override
   public void nextTuple() {
-    collector.emit(new Values(supplier.get()));
+    R value = supplier.get();
+    if (value == null && timestampExtractor != null) {
+      emitIdleWatermark(collector);
+      return;
+    }
+    if (timestampExtractor == null) {
+      collector.emit(new Values(value));
+    } else {
+      emitEvent(collector, value, timestampExtractor.apply(value));
+    }
   }
 }
@@ -16,6 +16,7 @@ package com.twitter.heron.streamlet.impl.streamlets;
 
 import java.util.Set;
 
+import com.twitter.heron.api.topology.BoltDeclarer;
 import com.twitter.heron.api.topology.TopologyBuilder;
 import com.twitter.heron.streamlet.SerializablePredicate;
 import com.twitter.heron.streamlet.impl.StreamletImpl;
@@ -33,13 +34,17 @@ public class FilterStreamlet<R> extends StreamletImpl<R> {
     this.parent = parent;
     this.filterFn = filterFn;
     setNumPartitions(parent.getNumPartitions());
+    setEventTime(parent.isEventTime());
   }
 
   @Override
   public boolean doBuild(TopologyBuilder bldr, Set<String> stageNames) {
     setDefaultNameIfNone(StreamletNamePrefix.FILTER, stageNames);
-    bldr.setBolt(getName(), new FilterOperator<R>(filterFn),
-        getNumPartitions()).shuffleGrouping(parent.getName());
+    FilterOperator<R> bolt = new FilterOperator<R>(filterFn);
+    bolt.setEventTime(isEventTime());
+    BoltDeclarer declarer = bldr.setBolt(getName(), bolt, getNumPartitions())
+        .shuffleGrouping(parent.getName());
+    subscribeWatermarks(declarer, parent);
     return true;
   }
 }
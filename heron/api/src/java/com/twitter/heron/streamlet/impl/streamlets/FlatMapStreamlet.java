@@ -16,6 +16,7 @@ package com.twitter.heron.streamlet.impl.streamlets;
 
 import java.util.Set;
 
+import com.twitter.heron.api.topology.BoltDeclarer;
 import com.twitter.heron.api.topology.TopologyBuilder;
 import com.twitter.heron.streamlet.SerializableFunction;
 import com.twitter.heron.streamlet.impl.StreamletImpl;
@@ -36,13 +37,17 @@ public class FlatMapStreamlet<R, T> extends StreamletImpl<T> {
     this.parent = parent;
     this.flatMapFn = flatMapFn;
     setNumPartitions(parent.getNumPartitions());
+    setEventTime(parent.isEventTime());
   }
 
   @Override
   public boolean doBuild(TopologyBuilder bldr, Set<String> stageNames) {
     setDefaultNameIfNone(StreamletNamePrefix.FLATMAP, stageNames);
-    bldr.setBolt(getName(), new FlatMapOperator<R, T>(flatMapFn),
-        getNumPartitions()).shuffleGrouping(parent.getName());
+    FlatMapOperator<R, T> bolt = new FlatMapOperator<R, T>(flatMapFn);
+    bolt.setEventTime(isEventTime());
+    BoltDeclarer declarer = bldr.setBolt(getName(), bolt, getNumPartitions())
+        .shuffleGrouping(parent.getName());
+    subscribeWatermarks(declarer, parent);
     return true;
   }
 }
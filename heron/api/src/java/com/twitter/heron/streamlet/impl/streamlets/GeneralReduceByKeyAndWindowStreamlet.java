@@ -16,6 +16,7 @@ package com.twitter.heron.streamlet.impl.streamlets;
 
 import java.util.Set;
 
+import com.twitter.heron.api.topology.BoltDeclarer;
 import com.twitter.heron.api.topology.TopologyBuilder;
 import com.twitter.heron.streamlet.KeyValue;
 import com.twitter.heron.streamlet.KeyedWindow;
@@ -25,6 +26,7 @@ import com.twitter.heron.streamlet.WindowConfig;
 import com.twitter.heron.streamlet.impl.StreamletImpl;
 import com.twitter.heron.streamlet.impl.WindowConfigImpl;
 import com.twitter.heron.streamlet.impl.groupings.ReduceByKeyAndWindowCustomGrouping;
+import com.twitter.heron.streamlet.impl.operators.EventTimeReduceByKeyAndWindowOperator;
 import com.twitter.heron.streamlet.impl.operators.GeneralReduceByKeyAndWindowOperator;
 
 /**
@@ -53,11 +55,26 @@ public class GeneralReduceByKeyAndWindowStreamlet<K, V, VR>
     this.identity = identity;
     this.reduceFn = reduceFn;
     setNumPartitions(parent.getNumPartitions());
+    if (this.windowCfg.isEventTime() && !parent.isEventTime()) {
+      throw new IllegalArgumentException(
+          "Event time windows can only be applied to streamlets carrying event time");
+    }
+    setEventTime(this.windowCfg.isEventTime());
   }
 
   @Override
   public boolean doBuild(TopologyBuilder bldr, Set<String> stageNames) {
     setDefaultNameIfNone(StreamletNamePrefix.REDUCE, stageNames);
+    if (windowCfg.isEventTime()) {
+      EventTimeReduceByKeyAndWindowOperator<K, V, VR> bolt =
+          EventTimeReduceByKeyAndWindowOperator.createFoldOperator(keyExtractor, identity,
+              reduceFn, windowCfg);
+      BoltDeclarer declarer = bldr.setBolt(getName(), bolt, getNumPartitions())
+          .customGrouping(parent.getName(),
+              new ReduceByKeyAndWindowCustomGrouping<K, V>(keyExtractor));
+      subscribeWatermarks(declarer, parent);
+      return true;
+    }
     GeneralReduceByKeyAndWindowOperator<K, V, VR> bolt =
         new GeneralReduceByKeyAndWindowOperator<K, V, VR>(keyExtractor, identity, reduceFn);
     windowCfg.attachWindowConfig(bolt);
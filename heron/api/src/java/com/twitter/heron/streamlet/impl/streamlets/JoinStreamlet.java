@@ -16,6 +16,7 @@ package com.twitter.heron.streamlet.impl.streamlets;
 
 import java.util.Set;
 
+import com.twitter.heron.api.topology.BoltDeclarer;
 import com.twitter.heron.api.topology.TopologyBuilder;
 import com.twitter.heron.streamlet.JoinType;
 import com.twitter.heron.streamlet.KeyValue;
@@ -26,6 +27,7 @@ import com.twitter.heron.streamlet.WindowConfig;
 import com.twitter.heron.streamlet.impl.StreamletImpl;
 import com.twitter.heron.streamlet.impl.WindowConfigImpl;
 import com.twitter.heron.streamlet.impl.groupings.JoinCustomGrouping;
+import com.twitter.heron.streamlet.impl.operators.EventTimeJoinOperator;
 import com.twitter.heron.streamlet.impl.operators.JoinOperator;
 
 /**
@@ -43,6 +45,7 @@ public final class JoinStreamlet<K, R, S, T> extends StreamletImpl<KeyValue<Keye
   private SerializableFunction<S, K> rightKeyExtractor;
   private WindowConfigImpl windowCfg;
   private SerializableBiFunction<R, S, ? extends T> joinFn;
+  private boolean incremental;
 
   public static <A, B, C, D> JoinStreamlet<A, B, C, D>
       createJoinStreamlet(StreamletImpl<B> left,
@@ -53,7 +56,19 @@ public final class JoinStreamlet<K, R, S, T> extends StreamletImpl<KeyValue<Keye
                           JoinType joinType,
                           SerializableBiFunction<B, C, ? extends D> joinFn) {
     return new JoinStreamlet<>(joinType, left,
-        right, leftKeyExtractor, rightKeyExtractor, windowCfg, joinFn);
+        right, leftKeyExtractor, rightKeyExtractor, windowCfg, joinFn, false);
+  }
+
+  public static <A, B, C, D> JoinStreamlet<A, B, C, D>
+      createIncrementalJoinStreamlet(StreamletImpl<B> left,
+                                     StreamletImpl<C> right,
+                                     SerializableFunction<B, A> leftKeyExtractor,
+                                     SerializableFunction<C, A> rightKeyExtractor,
+                                     WindowConfig windowCfg,
+                                     JoinType joinType,
+                                     SerializableBiFunction<B, C, ? extends D> joinFn) {
+    return new JoinStreamlet<>(joinType, left,
+        right, leftKeyExtractor, rightKeyExtractor, windowCfg, joinFn, true);
   }
 
   private JoinStreamlet(JoinType joinType, StreamletImpl<R> left,
@@ -61,7 +76,8 @@ public final class JoinStreamlet<K, R, S, T> extends StreamletImpl<KeyValue<Keye
                         SerializableFunction<R, K> leftKeyExtractor,
                         SerializableFunction<S, K> rightKeyExtractor,
                         WindowConfig windowCfg,
-                        SerializableBiFunction<R, S, ? extends T> joinFn) {
+                        SerializableBiFunction<R, S, ? extends T> joinFn,
+                        boolean incremental) {
     this.joinType = joinType;
     this.left = left;
     this.right = right;
@@ -69,7 +85,13 @@ public final class JoinStreamlet<K, R, S, T> extends StreamletImpl<KeyValue<Keye
     this.rightKeyExtractor = rightKeyExtractor;
     this.windowCfg = (WindowConfigImpl) windowCfg;
     this.joinFn = joinFn;
+    this.incremental = incremental;
     setNumPartitions(left.getNumPartitions());
+    if (this.windowCfg.isEventTime() && !(left.isEventTime() && right.isEventTime())) {
+      throw new IllegalArgumentException(
+          "Event time windows can only be applied to streamlets carrying event time");
+    }
+    setEventTime(this.windowCfg.isEventTime());
   }
 
   public JoinType getJoinType() {
@@ -82,8 +104,18 @@ public final class JoinStreamlet<K, R, S, T> extends StreamletImpl<KeyValue<Keye
       return false;
     }
     setDefaultNameIfNone(StreamletNamePrefix.JOIN, stageNames);
+    if (windowCfg.isEventTime()) {
+      // Event time windows are joined once complete, so joins are always incremental
+      EventTimeJoinOperator<K, R, S, T> bolt = new EventTimeJoinOperator<>(joinType,
+          left.getName(), leftKeyExtractor, rightKeyExtractor, joinFn, windowCfg);
+      BoltDeclarer declarer = bldr.setBolt(getName(), bolt, getNumPartitions())
+          .customGrouping(left.getName(), new JoinCustomGrouping<K, R>(leftKeyExtractor))
+          .customGrouping(right.getName(), new JoinCustomGrouping<K, S>(rightKeyExtractor));
+      subscribeWatermarks(declarer, left, right);
+      return true;
+    }
     JoinOperator<K, R, S, T> bolt = new JoinOperator<>(joinType, left.getName(),
-        right.getName(), leftKeyExtractor, rightKeyExtractor, joinFn);
+        right.getName(), leftKeyExtractor, rightKeyExtractor, joinFn, incremental);
     windowCfg.attachWindowConfig(bolt);
     bldr.setBolt(getName(), bolt, getNumPartitions())
         .customGrouping(left.getName(), new JoinCustomGrouping<K, R>(leftKeyExtractor))
@@ -16,6 +16,7 @@ package com.twitter.heron.streamlet.impl.streamlets;
 
 import java.util.Set;
 
+import com.twitter.heron.api.topology.BoltDeclarer;
 import com.twitter.heron.api.topology.TopologyBuilder;
 import com.twitter.heron.streamlet.SerializableFunction;
 import com.twitter.heron.streamlet.impl.StreamletImpl;
@@ -33,13 +34,17 @@ public class MapStreamlet<R, T> extends StreamletImpl<T> {
     this.parent = parent;
     this.mapFn = mapFn;
     setNumPartitions(parent.getNumPartitions());
+    setEventTime(parent.isEventTime());
   }
 
   @Override
   public boolean doBuild(TopologyBuilder bldr, Set<String> stageNames) {
     setDefaultNameIfNone(StreamletNamePrefix.MAP, stageNames);
-    bldr.setBolt(getName(), new MapOperator<R, T>(mapFn),
-        getNumPartitions()).shuffleGrouping(parent.getName());
+    MapOperator<R, T> bolt = new MapOperator<R, T>(mapFn);
+    bolt.setEventTime(isEventTime());
+    BoltDeclarer declarer = bldr.setBolt(getName(), bolt, getNumPartitions())
+        .shuffleGrouping(parent.getName());
+    subscribeWatermarks(declarer, parent);
     return true;
   }
 }
@@ -16,6 +16,7 @@ package com.twitter.heron.streamlet.impl.streamlets;
 
 import java.util.Set;
 
+import com.twitter.heron.api.topology.BoltDeclarer;
 import com.twitter.heron.api.topology.TopologyBuilder;
 import com.twitter.heron.streamlet.KeyValue;
 import com.twitter.heron.streamlet.KeyedWindow;
@@ -25,6 +26,7 @@ import com.twitter.heron.streamlet.WindowConfig;
 import com.twitter.heron.streamlet.impl.StreamletImpl;
 import com.twitter.heron.streamlet.impl.WindowConfigImpl;
 import com.twitter.heron.streamlet.impl.groupings.ReduceByKeyAndWindowCustomGrouping;
+import com.twitter.heron.streamlet.impl.operators.EventTimeReduceByKeyAndWindowOperator;
 import com.twitter.heron.streamlet.impl.operators.ReduceByKeyAndWindowOperator;
 
 /**
@@ -41,25 +43,61 @@ public class ReduceByKeyAndWindowStreamlet<K, V, R>
   private SerializableFunction<R, V> valueExtractor;
   private WindowConfigImpl windowCfg;
   private SerializableBinaryOperator<V> reduceFn;
+  private SerializableBinaryOperator<V> inverseReduceFn;
+  // Whether the window is aggregated incrementally, rather than reduced on every trigger
+  private boolean incremental;
 
   public ReduceByKeyAndWindowStreamlet(StreamletImpl<R> parent,
                        SerializableFunction<R, K> keyExtractor,
                        SerializableFunction<R, V> valueExtractor,
                        WindowConfig windowCfg,
                        SerializableBinaryOperator<V> reduceFn) {
+    this(parent, keyExtractor, valueExtractor, windowCfg, reduceFn, null);
+    this.incremental = false;
+  }
+
+  /**
+   * Aggregate the windows incrementally, with inverseReduceFn if it is not null
+   */
+  public ReduceByKeyAndWindowStreamlet(StreamletImpl<R> parent,
+                       SerializableFunction<R, K> keyExtractor,
+                       SerializableFunction<R, V> valueExtractor,
+                       WindowConfig windowCfg,
+                       SerializableBinaryOperator<V> reduceFn,
+                       SerializableBinaryOperator<V> inverseReduceFn) {
     this.parent = parent;
     this.keyExtractor = keyExtractor;
     this.valueExtractor = valueExtractor;
     this.windowCfg = (WindowConfigImpl) windowCfg;
     this.reduceFn = reduceFn;
+    this.inverseReduceFn = inverseReduceFn;
+    this.incremental = true;
     setNumPartitions(parent.getNumPartitions());
+    if (this.windowCfg.isEventTime() && !parent.isEventTime()) {
+      throw new IllegalArgumentException(
+          "Event time windows can only be applied to streamlets carrying event time");
+    }
+    setEventTime(this.windowCfg.isEventTime());
   }
 
   @Override
   public boolean doBuild(TopologyBuilder bldr, Set<String> stageNames) {
     setDefaultNameIfNone(StreamletNamePrefix.REDUCE, stageNames);
-    ReduceByKeyAndWindowOperator<K, V, R> bolt = new ReduceByKeyAndWindowOperator<>(keyExtractor,
-        valueExtractor, reduceFn);
+    if (windowCfg.isEventTime()) {
+      // Every event time window is reduced on its own, so the inverse function is not needed
+      EventTimeReduceByKeyAndWindowOperator<K, R, V> bolt =
+          EventTimeReduceByKeyAndWindowOperator.createReduceOperator(keyExtractor,
+              valueExtractor, reduceFn, windowCfg);
+      BoltDeclarer declarer = bldr.setBolt(getName(), bolt, getNumPartitions())
+          .customGrouping(parent.getName(),
+              new ReduceByKeyAndWindowCustomGrouping<K, R>(keyExtractor));
+      subscribeWatermarks(declarer, parent);
+      return true;
+    }
+    ReduceByKeyAndWindowOperator<K, V, R> bolt = incremental
+        ? new ReduceByKeyAndWindowOperator<>(keyExtractor, valueExtractor, reduceFn,
+            inverseReduceFn)
+        : new ReduceByKeyAndWindowOperator<>(keyExtractor, valueExtractor, reduceFn);
     windowCfg.attachWindowConfig(bolt);
     bldr.setBolt(getName(), bolt, getNumPartitions())
         .customGrouping(parent.getName(),
@@ -17,6 +17,7 @@ package com.twitter.heron.streamlet.impl.streamlets;
 import java.util.List;
 import java.util.Set;
 
+import com.twitter.heron.api.topology.BoltDeclarer;
 import com.twitter.heron.api.topology.TopologyBuilder;
 import com.twitter.heron.streamlet.SerializableBiFunction;
 import com.twitter.heron.streamlet.impl.StreamletImpl;
@@ -39,14 +40,17 @@ public class RemapStreamlet<R> extends StreamletImpl<R> {
     this.parent = parent;
     this.remapFn = remapFn;
     setNumPartitions(parent.getNumPartitions());
+    setEventTime(parent.isEventTime());
   }
 
   @Override
   public boolean doBuild(TopologyBuilder bldr, Set<String> stageNames) {
     setDefaultNameIfNone(StreamletNamePrefix.REMAP, stageNames);
-    bldr.setBolt(getName(), new MapOperator<R, R>((a) -> a),
-        getNumPartitions())
+    MapOperator<R, R> bolt = new MapOperator<R, R>((a) -> a);
+    bolt.setEventTime(isEventTime());
+    BoltDeclarer declarer = bldr.setBolt(getName(), bolt, getNumPartitions())
         .customGrouping(parent.getName(), new RemapCustomGrouping<R>(remapFn));
+    subscribeWatermarks(declarer, parent);
     return true;
   }
 }
@@ -17,6 +17,7 @@ package com.twitter.heron.streamlet.impl.streamlets;
 import java.util.Set;
 
 import com.twitter.heron.api.topology.TopologyBuilder;
+import com.twitter.heron.streamlet.SerializableFunction;
 import com.twitter.heron.streamlet.Source;
 import com.twitter.heron.streamlet.impl.StreamletImpl;
 import com.twitter.heron.streamlet.impl.sources.ComplexSource;
@@ -28,16 +29,24 @@ import com.twitter.heron.streamlet.impl.sources.ComplexSource;
  */
 public class SourceStreamlet<R> extends StreamletImpl<R> {
   private Source<R> generator;
+  private SerializableFunction<R, Long> timestampExtractor;
 
   public SourceStreamlet(Source<R> generator) {
+    this(generator, null);
+  }
+
+  public SourceStreamlet(Source<R> generator, SerializableFunction<R, Long> timestampExtractor) {
     this.generator = generator;
+    this.timestampExtractor = timestampExtractor;
     setNumPartitions(1);
+    setEventTime(timestampExtractor != null);
   }
 
   @Override
   public boolean doBuild(TopologyBuilder bldr, Set<String> stageNames) {
     setDefaultNameIfNone(StreamletNamePrefix.SOURCE, stageNames);
-    bldr.setSpout(getName(), new ComplexSource<R>(generator), getNumPartitions());
+    bldr.setSpout(getName(), new ComplexSource<R>(generator, timestampExtractor),
+        getNumPartitions());
     return true;
   }
 }
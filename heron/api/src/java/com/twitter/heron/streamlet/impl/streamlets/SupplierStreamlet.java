@@ -17,6 +17,7 @@ package com.twitter.heron.streamlet.impl.streamlets;
 import java.util.Set;
 
 import com.twitter.heron.api.topology.TopologyBuilder;
+import com.twitter.heron.streamlet.SerializableFunction;
 import com.twitter.heron.streamlet.SerializableSupplier;
 import com.twitter.heron.streamlet.impl.StreamletImpl;
 import com.twitter.heron.streamlet.impl.sources.SupplierSource;
@@ -28,16 +29,25 @@ import com.twitter.heron.streamlet.impl.sources.SupplierSource;
  */
 public class SupplierStreamlet<R> extends StreamletImpl<R> {
   private SerializableSupplier<R> supplier;
+  private SerializableFunction<R, Long> timestampExtractor;
 
   public SupplierStreamlet(SerializableSupplier<R> supplier) {
+    this(supplier, null);
+  }
+
+  public SupplierStreamlet(SerializableSupplier<R> supplier,
+                           SerializableFunction<R, Long> timestampExtractor) {
     this.supplier = supplier;
+    this.timestampExtractor = timestampExtractor;
     setNumPartitions(1);
+    setEventTime(timestampExtractor != null);
   }
 
   @Override
   public boolean doBuild(TopologyBuilder bldr, Set<String> stageNames) {
     setDefaultNameIfNone(StreamletNamePrefix.SUPPLIER, stageNames);
-    bldr.setSpout(getName(), new SupplierSource<R>(supplier), getNumPartitions());
+    bldr.setSpout(getName(), new SupplierSource<R>(supplier, timestampExtractor),
+        getNumPartitions());
     return true;
   }
 }
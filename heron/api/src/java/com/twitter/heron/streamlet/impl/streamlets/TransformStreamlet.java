@@ -16,6 +16,7 @@ package com.twitter.heron.streamlet.impl.streamlets;
 
 import java.util.Set;
 
+import com.twitter.heron.api.topology.BoltDeclarer;
 import com.twitter.heron.api.topology.TopologyBuilder;
 import com.twitter.heron.streamlet.SerializableTransformer;
 import com.twitter.heron.streamlet.impl.StreamletImpl;
@@ -36,13 +37,17 @@ public class TransformStreamlet<R, T> extends StreamletImpl<T> {
     this.parent = parent;
     this.serializableTransformer = serializableTransformer;
     setNumPartitions(parent.getNumPartitions());
+    setEventTime(parent.isEventTime());
   }
 
   @Override
   public boolean doBuild(TopologyBuilder bldr, Set<String> stageNames) {
     setDefaultNameIfNone(StreamletNamePrefix.TRANSFORM, stageNames);
-    bldr.setBolt(getName(), new TransformOperator<R, T>(serializableTransformer),
-        getNumPartitions()).shuffleGrouping(parent.getName());
+    TransformOperator<R, T> bolt = new TransformOperator<R, T>(serializableTransformer);
+    bolt.setEventTime(isEventTime());
+    BoltDeclarer declarer = bldr.setBolt(getName(), bolt, getNumPartitions())
+        .shuffleGrouping(parent.getName());
+    subscribeWatermarks(declarer, parent);
     return true;
   }
 }
@@ -16,6 +16,7 @@ package com.twitter.heron.streamlet.impl.streamlets;
 
 import java.util.Set;
 
+import com.twitter.heron.api.topology.BoltDeclarer;
 import com.twitter.heron.api.topology.TopologyBuilder;
 import com.twitter.heron.streamlet.impl.StreamletImpl;
 import com.twitter.heron.streamlet.impl.operators.UnionOperator;
@@ -31,7 +32,12 @@ public class UnionStreamlet<I> extends StreamletImpl<I> {
   public UnionStreamlet(StreamletImpl<I> left, StreamletImpl<? extends I> right) {
     this.left = left;
     this.right = right;
+    if (left.isEventTime() != right.isEventTime()) {
+      throw new IllegalArgumentException(
+          "A streamlet carrying event time can only be unioned with another one");
+    }
     setNumPartitions(left.getNumPartitions());
+    setEventTime(left.isEventTime());
   }
 
   @Override
@@ -42,8 +48,11 @@ public class UnionStreamlet<I> extends StreamletImpl<I> {
       return false;
     }
     setDefaultNameIfNone(StreamletNamePrefix.UNION, stageNames);
-    bldr.setBolt(getName(), new UnionOperator<I>(),
-        getNumPartitions()).shuffleGrouping(left.getName()).shuffleGrouping(right.getName());
+    UnionOperator<I> bolt = new UnionOperator<I>();
+    bolt.setEventTime(isEventTime());
+    BoltDeclarer declarer = bldr.setBolt(getName(), bolt, getNumPartitions())
+        .shuffleGrouping(left.getName()).shuffleGrouping(right.getName());
+    subscribeWatermarks(declarer, left, right);
     return true;
   }
 }
@@ -0,0 +1,117 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.api.grouping;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.twitter.heron.api.Config;
+
+/**
+ * KeyGroups and KeyGroupRangeTable Tester.
+ */
+public class KeyGroupsTest {
+  private static final int NUM_KEY_GROUPS = 128;
+
+  @Test
+  public void testKeyGroupOf() {
+    // Negative hash codes, and null keys, still map to a valid key group
+    for (Object key : Arrays.asList(-1, Integer.MIN_VALUE, "a", -12345678L, null)) {
+      int keyGroup = KeyGroups.keyGroupOf(key, NUM_KEY_GROUPS);
+      Assert.assertTrue(keyGroup >= 0 && keyGroup < NUM_KEY_GROUPS);
+      Assert.assertEquals(keyGroup, KeyGroups.keyGroupOf(key, NUM_KEY_GROUPS));
+    }
+
+    // Consecutive keys are spread over the key groups
+    int[] counts = new int[NUM_KEY_GROUPS];
+    for (int i = 0; i < NUM_KEY_GROUPS * 100; i++) {
+      counts[KeyGroups.keyGroupOf(i, NUM_KEY_GROUPS)]++;
+    }
+    for (int count : counts) {
+      Assert.assertTrue(count > 50 && count < 150);
+    }
+  }
+
+  @Test
+  public void testRanges() {
+    List<Integer> taskIds = Arrays.asList(7, 3, 5);
+    KeyGroupRangeTable table = new KeyGroupRangeTable(10, taskIds);
+    Assert.assertEquals(Arrays.asList(3, 5, 7), table.getTaskIds());
+
+    // The ranges are contiguous, follow the order of the task ids, and cover all key groups
+    int expectedStart = 0;
+    for (int taskId : table.getTaskIds()) {
+      Assert.assertEquals(expectedStart, table.getStartKeyGroup(taskId));
+      int end = table.getEndKeyGroup(taskId);
+      Assert.assertTrue(end - expectedStart >= 3 && end - expectedStart <= 4);
+      for (int keyGroup = expectedStart; keyGroup < end; keyGroup++) {
+        Assert.assertEquals(taskId, table.getTask(keyGroup));
+        Assert.assertEquals(Collections.singletonList(taskId), table.getTargets(keyGroup));
+      }
+      expectedStart = end;
+    }
+    Assert.assertEquals(10, expectedStart);
+  }
+
+  @Test
+  public void testMoreTasksThanKeyGroups() {
+    KeyGroupRangeTable table = new KeyGroupRangeTable(2, Arrays.asList(1, 2, 3, 4));
+    int owned = 0;
+    for (int taskId : table.getTaskIds()) {
+      owned += table.getEndKeyGroup(taskId) - table.getStartKeyGroup(taskId);
+    }
+    Assert.assertEquals(2, owned);
+  }
+
+  @Test
+  public void testScaling() {
+    List<Integer> fourTasks = Arrays.asList(1, 2, 3, 4);
+    KeyGroupRangeTable four = new KeyGroupRangeTable(NUM_KEY_GROUPS, fourTasks);
+    KeyGroupRangeTable five = new KeyGroupRangeTable(NUM_KEY_GROUPS, Arrays.asList(1, 2, 3, 4, 5));
+    KeyGroupRangeTable eight =
+        new KeyGroupRangeTable(NUM_KEY_GROUPS, Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8));
+
+    // Each task only hands key groups over to the tasks of the overlapping ranges
+    for (int taskId : fourTasks) {
+      for (int keyGroup = four.getStartKeyGroup(taskId);
+           keyGroup < four.getEndKeyGroup(taskId); keyGroup++) {
+        int newTask = five.getTask(keyGroup);
+        Assert.assertTrue(newTask == taskId || newTask == taskId + 1);
+      }
+    }
+
+    // Doubling the parallelism splits each range in two
+    for (int keyGroup = 0; keyGroup < NUM_KEY_GROUPS; keyGroup++) {
+      Assert.assertEquals(four.getTask(keyGroup), (eight.getTask(keyGroup) + 1) / 2);
+    }
+  }
+
+  @Test
+  public void testNumKeyGroups() {
+    Map<String, Object> conf = new HashMap<>();
+    Assert.assertEquals(KeyGroups.DEFAULT_NUM_KEY_GROUPS, KeyGroups.getNumKeyGroups(conf));
+
+    Config config = new Config();
+    config.setTopologyKeyGroups(64);
+    Assert.assertEquals(64, KeyGroups.getNumKeyGroups(config));
+  }
+}
@@ -0,0 +1,153 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.api.metric;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Histogram and HistogramMetric Tester.
+ */
+public class HistogramTest {
+  // The largest relative error of a value read back from the histogram
+  private static final double MAX_ERROR = 1.0 / (1 << (Histogram.SUB_BUCKET_BITS + 1));
+
+  @Test
+  public void testBuckets() {
+    long previousLowest = -1;
+    for (int bucket = 0; bucket < Histogram.BUCKET_COUNT; bucket++) {
+      long lowest = Histogram.lowestValueOf(bucket);
+      Assert.assertTrue(lowest > previousLowest);
+      Assert.assertEquals(bucket, Histogram.bucketOf(lowest));
+      long highest = lowest + Histogram.bucketWidthOf(bucket) - 1;
+      Assert.assertEquals(bucket, Histogram.bucketOf(highest));
+      previousLowest = lowest;
+    }
+    Assert.assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketOf(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPercentiles() {
+    Histogram histogram = new Histogram();
+    for (long i = 1; i <= 100000; i++) {
+      histogram.record(i * 1000);
+    }
+
+    Assert.assertEquals(100000, histogram.getCount());
+    Assert.assertEquals(1000, histogram.getMin());
+    Assert.assertEquals(100000000, histogram.getMax());
+    Assert.assertEquals(50000500.0, histogram.getMean(), 0.001);
+    assertClose(50000000, histogram.getValueAtPercentile(50));
+    assertClose(99000000, histogram.getValueAtPercentile(99));
+    assertClose(99900000, histogram.getValueAtPercentile(99.9));
+    assertClose(100000000, histogram.getValueAtPercentile(100));
+    assertClose(1000, histogram.getValueAtPercentile(0));
+  }
+
+  @Test
+  public void testSmallValuesAreExact() {
+    Histogram histogram = new Histogram();
+    histogram.record(-5);
+    histogram.record(3);
+    histogram.record(7);
+
+    Assert.assertEquals(0, histogram.getMin());
+    Assert.assertEquals(3, histogram.getValueAtPercentile(50));
+    Assert.assertEquals(7, histogram.getValueAtPercentile(99));
+  }
+
+  @Test
+  public void testMerge() {
+    Histogram merged = new Histogram();
+    Histogram all = new Histogram();
+    for (int instance = 0; instance < 4; instance++) {
+      Histogram histogram = new Histogram();
+      for (long i = 0; i < 1000; i++) {
+        long value = (instance + 1) * 1000000 + i * 997;
+        histogram.record(value);
+        all.record(value);
+      }
+      merged.merge(histogram);
+    }
+
+    Assert.assertEquals(all.getCount(), merged.getCount());
+    Assert.assertEquals(all.getMin(), merged.getMin());
+    Assert.assertEquals(all.getMax(), merged.getMax());
+    Assert.assertEquals(all.getMean(), merged.getMean(), 0.001);
+    for (double percentile : new double[]{1, 25, 50, 75, 99, 99.9}) {
+      Assert.assertEquals(all.getValueAtPercentile(percentile),
+          merged.getValueAtPercentile(percentile));
+    }
+  }
+
+  @Test
+  public void testMetric() {
+    HistogramMetric metric = new HistogramMetric();
+    Assert.assertNull(metric.getValueAndReset());
+
+    metric.update(10);
+    metric.update(20);
+    Histogram histogram = metric.getValueAndReset();
+    Assert.assertEquals(2, histogram.getCount());
+    Assert.assertEquals(15.0, histogram.getMean(), 0.001);
+
+    // The next interval starts from scratch
+    metric.update(40);
+    histogram = metric.getValueAndReset();
+    Assert.assertEquals(1, histogram.getCount());
+    Assert.assertEquals(40, histogram.getMax());
+    Assert.assertNull(metric.getValueAndReset());
+  }
+
+  @Test
+  public void testBucketCounts() {
+    Histogram histogram = new Histogram();
+    histogram.record(3);
+    histogram.record(1000);
+    histogram.record(1010);
+
+    long total = 0;
+    for (int bucket = 0; bucket < Histogram.getBucketCount(); bucket++) {
+      long count = histogram.getCountAtBucket(bucket);
+      if (count > 0) {
+        long lowest = Histogram.getBucketLowerBound(bucket);
+        Assert.assertTrue(lowest == 3 || lowest == 992);
+        Assert.assertEquals(lowest == 3 ? 1 : 2, count);
+      }
+      total += count;
+    }
+    Assert.assertEquals(histogram.getCount(), total);
+  }
+
+  @Test
+  public void testMultiMetric() {
+    MultiHistogramMetric metric = new MultiHistogramMetric();
+    metric.scope("stream1").update(10);
+    metric.scope("stream2").update(20);
+    metric.scope("stream2").update(30);
+
+    Map<String, Histogram> histograms = metric.getValueAndReset();
+    Assert.assertEquals(2, histograms.size());
+    Assert.assertEquals(1, histograms.get("stream1").getCount());
+    Assert.assertEquals(2, histograms.get("stream2").getCount());
+    Assert.assertTrue(metric.getValueAndReset().isEmpty());
+  }
+
+  private static void assertClose(long expected, long actual) {
+    Assert.assertEquals(expected, actual, expected * MAX_ERROR);
+  }
+}
@@ -0,0 +1,74 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.api.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * TypedValueSerializer Tester.
+ */
+public class TypedValueSerializerTest {
+  private final JavaSerializer javaSerializer = new JavaSerializer();
+  private final TypedValueSerializer serializer = new TypedValueSerializer(javaSerializer);
+
+  @Test
+  public void testRoundTrip() {
+    List<Object> values = Arrays.<Object>asList(
+        0L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, 300L,
+        0, Integer.MIN_VALUE, Integer.MAX_VALUE,
+        0.0, -1.5, Double.NaN, Double.MAX_VALUE,
+        true, false,
+        "", "ascii", "caf\u00e9 \ud83d\ude00",
+        null,
+        Arrays.asList("a", "b"));
+    for (Object value : values) {
+      Assert.assertEquals(value, serializer.deserialize(serializer.serialize(value)));
+    }
+
+    byte[] bytes = new byte[]{1, 2, 3};
+    Assert.assertArrayEquals(bytes, (byte[]) serializer.deserialize(serializer.serialize(bytes)));
+  }
+
+  @Test
+  public void testCompactPrimitives() {
+    Assert.assertEquals(2, serializer.serialize(1L).length);
+    Assert.assertEquals(2, serializer.serialize(-1).length);
+    Assert.assertEquals(9, serializer.serialize(1.5).length);
+    Assert.assertEquals(6, serializer.serialize("hello").length);
+    Assert.assertEquals(1, serializer.serialize(true).length);
+
+    Assert.assertTrue(serializer.serialize(123456789L).length
+        < javaSerializer.serialize(123456789L).length);
+  }
+
+  @Test
+  public void testStreamMatchesBytes() {
+    for (Object value : Arrays.<Object>asList(42L, 2.5, "caf\u00e9", Arrays.asList(1, 2))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      serializer.serializeTo(value, out);
+      Assert.assertArrayEquals(serializer.serialize(value), out.toByteArray());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownType() {
+    serializer.deserialize(new byte[]{(byte) 0x7F});
+  }
+}
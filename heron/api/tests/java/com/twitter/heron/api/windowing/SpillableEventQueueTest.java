@@ -0,0 +1,166 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.api.windowing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * SpillableEventQueue Tester.
+ */
+public class SpillableEventQueueTest {
+  private static final int THRESHOLD = 10;
+  // Small enough for a few events per segment
+  private static final int SEGMENT_SIZE = 512;
+
+  private File directory;
+  private SpillableEventQueue<String> queue;
+
+  @Before
+  public void before() throws IOException {
+    directory = Files.createTempDirectory("spillable-event-queue-test").toFile();
+    queue = new SpillableEventQueue<>(THRESHOLD, SEGMENT_SIZE, directory);
+  }
+
+  @After
+  public void after() {
+    queue.close();
+    Assert.assertEquals(0, countSegmentFiles());
+    directory.delete();
+  }
+
+  @Test
+  public void testSpillAndReadBack() {
+    int n = 100;
+    addEvents(0, n);
+    Assert.assertEquals(n, queue.size());
+    Assert.assertTrue(queue.getSegmentCount() > 1);
+    Assert.assertEquals(queue.getSegmentCount(), countSegmentFiles());
+
+    // All events come back in order, whether they were spilled or not
+    int i = 0;
+    for (Event<String> event : queue) {
+      Assert.assertEquals("event" + i, event.get());
+      Assert.assertEquals(i, event.getTimestamp());
+      i++;
+    }
+    Assert.assertEquals(n, i);
+  }
+
+  @Test
+  public void testRemoveDeletesSegments() {
+    int n = 100;
+    addEvents(0, n);
+
+    // Expire the oldest events, as the window manager does
+    Iterator<Event<String>> it = queue.iterator();
+    for (int i = 0; i < n - THRESHOLD; i++) {
+      it.next();
+      it.remove();
+    }
+    Assert.assertEquals(THRESHOLD, queue.size());
+    Assert.assertEquals(0, queue.getSegmentCount());
+    Assert.assertEquals(0, countSegmentFiles());
+
+    // The remaining events are still there, and the queue keeps spilling
+    addEvents(n, n + THRESHOLD);
+    List<String> remaining = values(queue);
+    Assert.assertEquals(2 * THRESHOLD, remaining.size());
+    Assert.assertEquals("event" + (n - THRESHOLD), remaining.get(0));
+    Assert.assertEquals("event" + (n + THRESHOLD - 1), remaining.get(2 * THRESHOLD - 1));
+    Assert.assertTrue(queue.getSegmentCount() > 0);
+  }
+
+  @Test
+  public void testIdentitySurvivesSpilling() {
+    addEvents(0, 1);
+    Set<Event<String>> previousWindow = new HashSet<>(queue);
+
+    // Spill the first event
+    addEvents(1, THRESHOLD + 1);
+    Assert.assertEquals(1, queue.getSegmentCount());
+    Event<String> spilled = queue.iterator().next();
+    Assert.assertTrue(previousWindow.contains(spilled));
+    Assert.assertEquals(spilled, queue.iterator().next());
+    Assert.assertFalse(previousWindow.contains(new EventImpl<>("event0", 0)));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSerialization() throws IOException, ClassNotFoundException {
+    addEvents(0, 50);
+    Set<Event<String>> previousWindow = new HashSet<>(queue);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(queue);
+    }
+    Collection<Event<String>> restored;
+    try (ObjectInputStream in =
+             new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      restored = (Collection<Event<String>>) in.readObject();
+    }
+
+    // Restoring into a new queue keeps the identities of the events
+    SpillableEventQueue<String> newQueue =
+        new SpillableEventQueue<>(THRESHOLD, SEGMENT_SIZE, directory);
+    try {
+      newQueue.addAll(restored);
+      Assert.assertEquals(values(queue), values(newQueue));
+      Assert.assertTrue(previousWindow.containsAll(newQueue));
+
+      // New events do not collide with the restored ones
+      newQueue.add(new EventImpl<>("new", 50));
+      Assert.assertEquals(51, new HashSet<>(newQueue).size());
+    } finally {
+      newQueue.close();
+    }
+  }
+
+  private void addEvents(int from, int to) {
+    for (int i = from; i < to; i++) {
+      queue.add(new EventImpl<>("event" + i, i));
+    }
+  }
+
+  private static List<String> values(Collection<Event<String>> events) {
+    List<String> values = new ArrayList<>();
+    for (Event<String> event : events) {
+      values.add(event.get());
+    }
+    return values;
+  }
+
+  private int countSegmentFiles() {
+    File[] files = directory.listFiles();
+    return files == null ? 0 : files.length;
+  }
+}
@@ -14,6 +14,11 @@
 
 package com.twitter.heron.api.windowing;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -21,6 +26,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
@@ -660,6 +666,71 @@ public class WindowManagerTest {
     assertEquals(new HashSet<>(seq(1, 7)), eventsScanned);
   }
 
+  @Test
+  public void testSpilledWindowReadOncePerActivation() throws Exception {
+    File directory = Files.createTempDirectory("window-manager-test").toFile();
+    SpillableEventQueue<ReadCountingValue> queue = new SpillableEventQueue<>(2, 512, directory);
+    List<Integer> sums = new ArrayList<>();
+    WindowManager<ReadCountingValue> spillingWindowManager =
+        new WindowManager<>(new WindowLifecycleListener<ReadCountingValue>() {
+          @Override
+          public void onExpiry(List<ReadCountingValue> events) {
+          }
+
+          @Override
+          public void onActivation(List<ReadCountingValue> events,
+                                   List<ReadCountingValue> newEvents,
+                                   List<ReadCountingValue> expired, Long timestamp) {
+            // Scan the window twice, as a bolt anchoring every emit to it would
+            for (int i = 0; i < 2; i++) {
+              int sum = 0;
+              for (ReadCountingValue event : events) {
+                sum += event.value;
+              }
+              sums.add(sum);
+            }
+          }
+        }, queue);
+    EvictionPolicy<ReadCountingValue, ?> evictionPolicy = new CountEvictionPolicy<>(10);
+    TriggerPolicy<ReadCountingValue, ?> triggerPolicy = new CountTriggerPolicy<>(10);
+    triggerPolicy.setTriggerHandler(spillingWindowManager);
+    triggerPolicy.setEvictionPolicy(evictionPolicy);
+    triggerPolicy.start();
+    spillingWindowManager.setEvictionPolicy(evictionPolicy);
+    spillingWindowManager.setTriggerPolicy(triggerPolicy);
+    try {
+      ReadCountingValue.READS.set(0);
+      for (int i = 1; i <= 10; i++) {
+        spillingWindowManager.add(new ReadCountingValue(i));
+      }
+      assertEquals(Arrays.asList(55, 55), sums);
+      // Only the 8 spilled events are read back, once
+      assertEquals(8, ReadCountingValue.READS.get());
+    } finally {
+      spillingWindowManager.shutdown();
+      queue.close();
+      directory.delete();
+    }
+  }
+
+  /**
+   * A value counting how many times it is deserialized
+   */
+  private static final class ReadCountingValue implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final AtomicInteger READS = new AtomicInteger();
+    private final int value;
+
+    private ReadCountingValue(int value) {
+      this.value = value;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      READS.incrementAndGet();
+    }
+  }
+
   private List<Integer> seq(int start) {
     return seq(start, start);
   }
@@ -0,0 +1,203 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.streamlet.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.twitter.heron.api.Config;
+import com.twitter.heron.streamlet.KeyValue;
+import com.twitter.heron.streamlet.KeyedWindow;
+import com.twitter.heron.streamlet.Window;
+
+/**
+ * KryoSerializer Tester.
+ */
+public class KryoSerializerTest {
+
+  public static class Point {
+    private long x;
+    private long y;
+
+    public Point() {
+    }
+
+    public Point(long x, long y) {
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+  @Test
+  public void testStreamletTypes() {
+    KryoSerializer serializer = newSerializer(new Config());
+
+    KeyValue<String, Long> keyValue = KeyValue.create("key", 42L);
+    @SuppressWarnings("unchecked")
+    KeyValue<String, Long> kv =
+        (KeyValue<String, Long>) serializer.deserialize(serializer.serialize(keyValue));
+    Assert.assertEquals("key", kv.getKey());
+    Assert.assertEquals(Long.valueOf(42), kv.getValue());
+
+    KeyedWindow<String> keyedWindow = new KeyedWindow<>("key", new Window(10, 20, 3));
+    @SuppressWarnings("unchecked")
+    KeyedWindow<String> kw =
+        (KeyedWindow<String>) serializer.deserialize(serializer.serialize(keyedWindow));
+    Assert.assertEquals("key", kw.getKey());
+    Assert.assertEquals(10, kw.getWindow().getStartTime());
+    Assert.assertEquals(20, kw.getWindow().getEndTime());
+    Assert.assertEquals(3, kw.getWindow().getCount());
+
+    // Registered types are written without their class names
+    String bytes = new String(serializer.serialize(keyValue), StandardCharsets.ISO_8859_1);
+    Assert.assertFalse(bytes.contains(KeyValue.class.getName()));
+  }
+
+  @Test
+  public void testValuesOfEarlierVersions() {
+    // The Kryo of earlier versions, which did not register the streamlet types
+    Kryo legacy = new Kryo();
+    legacy.setRegistrationRequired(false);
+    legacy.setReferences(false);
+    legacy.register(byte[].class);
+    legacy.register(ArrayList.class);
+    legacy.register(HashMap.class);
+    legacy.register(HashSet.class);
+    legacy.register(BigInteger.class);
+
+    Map<String, Object> map = new HashMap<>();
+    map.put("list", new ArrayList<>(Arrays.asList(1, 2, 3)));
+    map.put("keyValue", KeyValue.create("key", BigInteger.TEN));
+    Output output = new Output(2000, -1);
+    legacy.writeClassAndObject(output, map);
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> read =
+        (Map<String, Object>) newSerializer(new Config()).deserialize(output.toBytes());
+    Assert.assertEquals(Arrays.asList(1, 2, 3), read.get("list"));
+    Assert.assertEquals("key", ((KeyValue<?, ?>) read.get("keyValue")).getKey());
+    Assert.assertEquals(BigInteger.TEN, ((KeyValue<?, ?>) read.get("keyValue")).getValue());
+  }
+
+  @Test
+  public void testFixedRegistrationIds() {
+    Config config = new Config();
+    config.setTopologyKryoFixedRegistrationIds(true);
+    config.setTopologyKryoRegisteredClasses(Arrays.asList(Point.class.getName()));
+    KryoSerializer serializer = newSerializer(config);
+
+    List<Object> values = new ArrayList<>(Arrays.asList(KeyValue.create("key", 1L),
+        new Point(1, 2), BigInteger.ONE));
+    @SuppressWarnings("unchecked")
+    List<Object> read = (List<Object>) serializer.deserialize(serializer.serialize(values));
+    Assert.assertEquals("key", ((KeyValue<?, ?>) read.get(0)).getKey());
+    Assert.assertEquals(2, ((Point) read.get(1)).y);
+    Assert.assertEquals(BigInteger.ONE, read.get(2));
+  }
+
+  @Test
+  public void testRegisteredClasses() {
+    Point point = new Point(3, -7);
+    byte[] unregistered = newSerializer(new Config()).serialize(point);
+
+    Config config = new Config();
+    config.setTopologyKryoRegisteredClasses(Arrays.asList(Point.class.getName()));
+    KryoSerializer serializer = newSerializer(config);
+    byte[] registered = serializer.serialize(point);
+    Assert.assertTrue(registered.length < unregistered.length);
+
+    Point p = (Point) serializer.deserialize(registered);
+    Assert.assertEquals(3, p.x);
+    Assert.assertEquals(-7, p.y);
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testUnknownRegisteredClass() {
+    Config config = new Config();
+    config.put(Config.TOPOLOGY_KRYO_REGISTERED_CLASSES, "com.twitter.heron.NoSuchClass");
+    newSerializer(config);
+  }
+
+  @Test
+  public void testUnsafeIo() {
+    Config config = new Config();
+    config.setTopologyKryoUnsafeIo(true);
+    KryoSerializer serializer = newSerializer(config);
+
+    Map<String, Object> map = new HashMap<>();
+    map.put("long", Long.MIN_VALUE);
+    map.put("list", new ArrayList<>(Arrays.asList(1, 2, 3)));
+    Assert.assertEquals(map, serializer.deserialize(serializer.serialize(map)));
+
+    // A value larger than the initial buffer, then a small one with the same buffers
+    byte[] large = new byte[1 << 21];
+    large[large.length - 1] = 5;
+    Assert.assertArrayEquals(large, (byte[]) serializer.deserialize(serializer.serialize(large)));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    serializer.serializeTo("small", out);
+    Assert.assertEquals("small", serializer.deserialize(out.toByteArray()));
+  }
+
+  @Test
+  public void testConcurrentThreads() throws Exception {
+    KryoSerializer serializer = newSerializer(new Config());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        final long base = t * 1000000L;
+        results.add(executor.submit(() -> {
+          for (long i = base; i < base + 10000; i++) {
+            KeyValue<Long, String> value = KeyValue.create(i, "value" + i);
+            @SuppressWarnings("unchecked")
+            KeyValue<Long, String> read =
+                (KeyValue<Long, String>) serializer.deserialize(serializer.serialize(value));
+            if (read.getKey() != i || !read.getValue().equals("value" + i)) {
+              return false;
+            }
+          }
+          return true;
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        Assert.assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static KryoSerializer newSerializer(Config config) {
+    KryoSerializer serializer = new KryoSerializer();
+    serializer.initialize(config);
+    return serializer;
+  }
+}
@@ -13,6 +13,7 @@
 //  limitations under the License.
 package com.twitter.heron.streamlet.impl;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -26,6 +27,8 @@ import com.twitter.heron.api.topology.TopologyBuilder;
 import com.twitter.heron.common.basics.ByteAmount;
 import com.twitter.heron.streamlet.Config;
 import com.twitter.heron.streamlet.Context;
+import com.twitter.heron.streamlet.KeyValue;
+import com.twitter.heron.streamlet.KeyedWindow;
 import com.twitter.heron.streamlet.SerializableConsumer;
 import com.twitter.heron.streamlet.SerializableTransformer;
 import com.twitter.heron.streamlet.Streamlet;
@@ -393,4 +396,47 @@ public class StreamletImplTest {
     }
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testEventTimeStreamlets() {
+    Streamlet<Long> baseStreamlet1 = StreamletImpl.createSupplierStreamlet(
+        () -> System.currentTimeMillis(), x -> x);
+    Streamlet<Long> baseStreamlet2 = StreamletImpl.createSupplierStreamlet(
+        () -> System.currentTimeMillis(), x -> x);
+    Streamlet<Long> union = baseStreamlet1.map(x -> x + 1).filter(x -> x > 0)
+        .union(baseStreamlet2);
+    assertTrue(((StreamletImpl<Long>) union).isEventTime());
+
+    Streamlet<KeyValue<KeyedWindow<Long>, Integer>> eventTimeStreamlet =
+        union.reduceByKeyAndWindow(x -> x % 10, x -> 1,
+            WindowConfig.TumblingEventTimeWindow(Duration.ofSeconds(10), Duration.ofSeconds(1)),
+            (a, b) -> a + b);
+    assertTrue(((StreamletImpl<?>) eventTimeStreamlet).isEventTime());
+    // Processing time windows do not carry the event time along
+    Streamlet<KeyValue<KeyedWindow<Long>, Integer>> processingTimeStreamlet =
+        union.reduceByKeyAndWindow(x -> x % 10, x -> 1,
+            WindowConfig.TumblingCountWindow(10), (a, b) -> a + b);
+    assertFalse(((StreamletImpl<?>) processingTimeStreamlet).isEventTime());
+
+    TopologyBuilder builder = new TopologyBuilder();
+    Set<String> stageNames = new HashSet<>();
+    ((StreamletImpl<Long>) baseStreamlet1).build(builder, stageNames);
+    ((StreamletImpl<Long>) baseStreamlet2).build(builder, stageNames);
+    assertTrue(((StreamletImpl<Long>) baseStreamlet1).allBuilt());
+    assertTrue(((StreamletImpl<Long>) baseStreamlet2).allBuilt());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEventTimeWindowWithoutEventTime() {
+    Streamlet<Long> streamlet = StreamletImpl.createSupplierStreamlet(() -> 1L);
+    streamlet.reduceByKeyAndWindow(x -> x, x -> 1,
+        WindowConfig.TumblingEventTimeWindow(Duration.ofSeconds(10), Duration.ZERO),
+        (a, b) -> a + b);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnionWithoutEventTime() {
+    Streamlet<Long> streamlet = StreamletImpl.createSupplierStreamlet(() -> 1L, x -> x);
+    streamlet.union(StreamletImpl.createSupplierStreamlet(() -> 2L));
+  }
 }
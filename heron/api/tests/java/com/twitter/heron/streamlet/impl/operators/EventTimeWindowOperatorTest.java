@@ -0,0 +1,332 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.streamlet.impl.operators;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.twitter.heron.api.Config;
+import com.twitter.heron.api.bolt.IOutputCollector;
+import com.twitter.heron.api.bolt.OutputCollector;
+import com.twitter.heron.api.generated.TopologyAPI;
+import com.twitter.heron.api.state.HashMapState;
+import com.twitter.heron.api.state.State;
+import com.twitter.heron.api.topology.TopologyContext;
+import com.twitter.heron.api.tuple.Tuple;
+import com.twitter.heron.api.tuple.Values;
+import com.twitter.heron.streamlet.JoinType;
+import com.twitter.heron.streamlet.KeyValue;
+import com.twitter.heron.streamlet.KeyedWindow;
+import com.twitter.heron.streamlet.WindowConfig;
+import com.twitter.heron.streamlet.impl.EventTime;
+import com.twitter.heron.streamlet.impl.KryoSerializer;
+import com.twitter.heron.streamlet.impl.WindowConfigImpl;
+
+/**
+ * Unit tests for the operators carrying event time
+ */
+public class EventTimeWindowOperatorTest {
+  private List<List<Object>> emittedTuples;
+  private List<Long> emittedWatermarks;
+
+  @Before
+  public void setUp() {
+    emittedTuples = new ArrayList<>();
+    emittedWatermarks = new ArrayList<>();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testTumblingWindow() {
+    EventTimeReduceByKeyAndWindowOperator<String, String, Integer> operator =
+        EventTimeReduceByKeyAndWindowOperator.createReduceOperator(x -> x, x -> 1,
+            (o, o2) -> o + o2, getWindowConfig(
+                WindowConfig.TumblingEventTimeWindow(Duration.ofMillis(10), Duration.ofMillis(5))));
+    prepare(operator, "source");
+
+    operator.execute(getTuple("source", 1, "a", 1));
+    operator.execute(getTuple("source", 2, "a", 3));
+    operator.execute(getTuple("source", 1, "b", 9));
+    operator.execute(getTuple("source", 1, "a", 12));
+    Assert.assertEquals(2, operator.getOpenWindowCount());
+
+    // The watermark is unknown until both upstream tasks sent one
+    operator.execute(getWatermark("source", 1, 20));
+    Assert.assertTrue(emittedWatermarks.isEmpty());
+    operator.execute(getWatermark("source", 2, 14));
+    Assert.assertEquals(Arrays.asList(9L), emittedWatermarks);
+    Assert.assertTrue(emittedTuples.isEmpty());
+
+    // Still within the allowed lateness
+    operator.execute(getTuple("source", 2, "a", 8));
+    operator.execute(getWatermark("source", 2, 15));
+    Assert.assertEquals(Arrays.asList(9L, 10L), emittedWatermarks);
+    Assert.assertEquals(2, emittedTuples.size());
+    Map<String, Integer> results = new HashMap<>();
+    for (List<Object> tuple : emittedTuples) {
+      KeyValue<KeyedWindow<String>, Integer> result =
+          (KeyValue<KeyedWindow<String>, Integer>) tuple.get(0);
+      Assert.assertEquals(0, result.getKey().getWindow().getStartTime());
+      Assert.assertEquals(10, result.getKey().getWindow().getEndTime());
+      Assert.assertEquals(9L, tuple.get(EventTime.TIMESTAMP_INDEX));
+      results.put(result.getKey().getKey(), result.getValue());
+    }
+    Assert.assertEquals(3, (int) results.get("a"));
+    Assert.assertEquals(1, (int) results.get("b"));
+    Assert.assertEquals(1, operator.getOpenWindowCount());
+
+    // Late tuples are dropped
+    operator.execute(getTuple("source", 2, "a", 5));
+    Assert.assertEquals(1, operator.getOpenWindowCount());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSlidingWindow() {
+    EventTimeReduceByKeyAndWindowOperator<String, String, Integer> operator =
+        EventTimeReduceByKeyAndWindowOperator.createFoldOperator(x -> x, 0,
+            (o, o2) -> o + o2.length(), getWindowConfig(WindowConfig.SlidingEventTimeWindow(
+                Duration.ofMillis(10), Duration.ofMillis(5), Duration.ZERO)));
+    prepare(operator, "source");
+
+    operator.execute(getTuple("source", 1, "aa", 7));
+    operator.execute(getTuple("source", 1, "aa", 12));
+    Assert.assertEquals(3, operator.getOpenWindowCount());
+    operator.execute(getWatermark("source", 1, 15));
+    operator.execute(getWatermark("source", 2, 15));
+
+    long[][] expected = {{0, 10, 2}, {5, 15, 4}};
+    Assert.assertEquals(expected.length, emittedTuples.size());
+    for (int i = 0; i < expected.length; i++) {
+      KeyValue<KeyedWindow<String>, Integer> result =
+          (KeyValue<KeyedWindow<String>, Integer>) emittedTuples.get(i).get(0);
+      Assert.assertEquals(expected[i][0], result.getKey().getWindow().getStartTime());
+      Assert.assertEquals(expected[i][1], result.getKey().getWindow().getEndTime());
+      Assert.assertEquals(expected[i][2], (long) result.getValue());
+    }
+    Assert.assertEquals(1, operator.getOpenWindowCount());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testOuterJoin() {
+    EventTimeJoinOperator<String, String, String, String> operator =
+        new EventTimeJoinOperator<>(JoinType.OUTER, "left", x -> x.substring(0, 1),
+            x -> x.substring(0, 1), (x, y) -> x + "+" + y, getWindowConfig(
+                WindowConfig.TumblingEventTimeWindow(Duration.ofMillis(10), Duration.ZERO)));
+    prepare(operator, "left", "right");
+
+    operator.execute(getTuple("left", 1, "a1", 1));
+    operator.execute(getTuple("right", 3, "a2", 2));
+    operator.execute(getTuple("right", 4, "a3", 3));
+    operator.execute(getTuple("left", 2, "b1", 4));
+    operator.execute(getTuple("right", 3, "c1", 5));
+    operator.execute(getTuple("right", 3, "a4", 15));
+    for (int task = 1; task <= 4; task++) {
+      operator.execute(getWatermark(task <= 2 ? "left" : "right", task, 10));
+    }
+
+    List<String> results = new ArrayList<>();
+    for (List<Object> tuple : emittedTuples) {
+      KeyValue<KeyedWindow<String>, String> result =
+          (KeyValue<KeyedWindow<String>, String>) tuple.get(0);
+      Assert.assertEquals(5, result.getKey().getWindow().getCount());
+      results.add(result.getValue());
+    }
+    results.sort(String::compareTo);
+    Assert.assertEquals(Arrays.asList("a1+a2", "a1+a3", "b1+null", "null+c1"), results);
+    Assert.assertEquals(Arrays.asList(10L), emittedWatermarks);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCheckpoint() throws Exception {
+    WindowConfigImpl windowConfig = getWindowConfig(
+        WindowConfig.TumblingEventTimeWindow(Duration.ofMillis(10), Duration.ZERO));
+    EventTimeReduceByKeyAndWindowOperator<String, String, Integer> operator =
+        EventTimeReduceByKeyAndWindowOperator.createReduceOperator(x -> x, x -> 1,
+            (o, o2) -> o + o2, windowConfig);
+    State<Serializable, Serializable> state = new HashMapState<>();
+    operator.initState(state);
+    prepare(operator, "source");
+    operator.execute(getTuple("source", 1, "a", 1));
+    operator.execute(getTuple("source", 1, "a", 12));
+    operator.execute(getWatermark("source", 1, 10));
+    operator.execute(getWatermark("source", 2, 10));
+    Assert.assertEquals(1, emittedTuples.size());
+    operator.execute(getTuple("source", 2, "a", 13));
+    operator.preSave("checkpoint");
+
+    // Restore the open windows into a new operator, as after a failure, with both the java
+    // and the kryo serializers
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(state);
+    }
+    try (ObjectInputStream in =
+             new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      checkRestoredWindows((State<Serializable, Serializable>) in.readObject(), windowConfig);
+    }
+
+    KryoSerializer serializer = new KryoSerializer();
+    serializer.initialize(new Config());
+    checkRestoredWindows(
+        (State<Serializable, Serializable>) serializer.deserialize(serializer.serialize(state)),
+        windowConfig);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void checkRestoredWindows(State<Serializable, Serializable> restored,
+                                    WindowConfigImpl windowConfig) {
+    EventTimeReduceByKeyAndWindowOperator<String, String, Integer> restoredOperator =
+        EventTimeReduceByKeyAndWindowOperator.createReduceOperator(x -> x, x -> 1,
+            (o, o2) -> o + o2, windowConfig);
+    restoredOperator.initState(restored);
+    emittedTuples.clear();
+    prepare(restoredOperator, "source");
+    Assert.assertEquals(1, restoredOperator.getOpenWindowCount());
+
+    // The complete windows stay complete
+    restoredOperator.execute(getTuple("source", 1, "a", 5));
+    Assert.assertEquals(1, restoredOperator.getOpenWindowCount());
+    restoredOperator.execute(getTuple("source", 1, "a", 14));
+    restoredOperator.execute(getWatermark("source", 1, 20));
+    restoredOperator.execute(getWatermark("source", 2, 20));
+    Assert.assertEquals(1, emittedTuples.size());
+    KeyValue<KeyedWindow<String>, Integer> result =
+        (KeyValue<KeyedWindow<String>, Integer>) emittedTuples.get(0).get(0);
+    Assert.assertEquals(10, result.getKey().getWindow().getStartTime());
+    Assert.assertEquals(3, (int) result.getValue());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSlideLongerThanWindow() {
+    WindowConfig.SlidingEventTimeWindow(Duration.ofMillis(5), Duration.ofMillis(10),
+        Duration.ZERO);
+  }
+
+  @Test
+  public void testForwardWatermarks() {
+    MapOperator<String, Integer> operator = new MapOperator<>(String::length);
+    operator.setEventTime(true);
+    prepare(operator, "source");
+
+    operator.execute(getTuple("source", 1, "abc", 42));
+    Assert.assertEquals(Arrays.asList(new Values(3, 42L)), emittedTuples);
+
+    operator.execute(getWatermark("source", 1, 50));
+    operator.execute(getWatermark("source", 2, 40));
+    operator.execute(getWatermark("source", 2, 45));
+    // Not an advance of the smallest watermark
+    operator.execute(getWatermark("source", 1, 60));
+    operator.execute(getWatermark("source", 1, 30));
+    Assert.assertEquals(Arrays.asList(40L, 45L), emittedWatermarks);
+  }
+
+  private static WindowConfigImpl getWindowConfig(WindowConfig windowConfig) {
+    return (WindowConfigImpl) windowConfig;
+  }
+
+  private static Tuple getTuple(String component, int task, Object value, long timestamp) {
+    Tuple tuple = Mockito.mock(Tuple.class);
+    Mockito.when(tuple.getSourceComponent()).thenReturn(component);
+    Mockito.when(tuple.getSourceStreamId()).thenReturn("default");
+    Mockito.when(tuple.getSourceTask()).thenReturn(task);
+    Mockito.when(tuple.getValue(0)).thenReturn(value);
+    Mockito.when(tuple.getValue(EventTime.TIMESTAMP_INDEX)).thenReturn(timestamp);
+    Mockito.when(tuple.getLong(EventTime.TIMESTAMP_INDEX)).thenReturn(timestamp);
+    return tuple;
+  }
+
+  private static Tuple getWatermark(String component, int task, long watermark) {
+    Tuple tuple = Mockito.mock(Tuple.class);
+    Mockito.when(tuple.getSourceComponent()).thenReturn(component);
+    Mockito.when(tuple.getSourceStreamId()).thenReturn(EventTime.WATERMARK_STREAM_ID);
+    Mockito.when(tuple.getSourceTask()).thenReturn(task);
+    Mockito.when(tuple.getLong(0)).thenReturn(watermark);
+    return tuple;
+  }
+
+  // Each upstream component has two tasks, numbered from 1 in the order of the components
+  private static TopologyContext getTopologyContext(String... components) {
+    TopologyContext context = Mockito.mock(TopologyContext.class);
+    Map<TopologyAPI.StreamId, TopologyAPI.Grouping> sources = new HashMap<>();
+    int task = 1;
+    for (String component : components) {
+      sources.put(TopologyAPI.StreamId.newBuilder()
+          .setComponentName(component).setId("default").build(), null);
+      sources.put(TopologyAPI.StreamId.newBuilder()
+          .setComponentName(component).setId(EventTime.WATERMARK_STREAM_ID).build(), null);
+      Mockito.when(context.getComponentTasks(component)).thenReturn(Arrays.asList(task, task + 1));
+      task += 2;
+    }
+    Mockito.when(context.getThisSources()).thenReturn(sources);
+    return context;
+  }
+
+  private void prepare(StreamletOperator operator, String... components) {
+    operator.prepare(new Config(), getTopologyContext(components),
+        new OutputCollector(new IOutputCollector() {
+
+          @Override
+          public void reportError(Throwable error) {
+
+          }
+
+          @Override
+          public List<Integer> emit(String streamId,
+                                    Collection<Tuple> anchors, List<Object> tuple) {
+            if (EventTime.WATERMARK_STREAM_ID.equals(streamId)) {
+              emittedWatermarks.add((Long) tuple.get(0));
+            } else {
+              emittedTuples.add(tuple);
+            }
+            return null;
+          }
+
+          @Override
+          public void emitDirect(int taskId, String streamId,
+                                 Collection<Tuple> anchors, List<Object> tuple) {
+
+          }
+
+          @Override
+          public void ack(Tuple input) {
+
+          }
+
+          @Override
+          public void fail(Tuple input) {
+
+          }
+        }));
+  }
+}
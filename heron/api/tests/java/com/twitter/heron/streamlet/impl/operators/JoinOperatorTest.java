@@ -13,6 +13,7 @@
 //  limitations under the License.
 package com.twitter.heron.streamlet.impl.operators;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -247,6 +248,115 @@ public class JoinOperatorTest {
     Assert.assertEquals(0, expectedResultsK3.size());
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testIncrementalInnerJoinOperator() {
+    JoinOperator<String, KeyValue<String, String>, KeyValue<String, String>, String> joinOperator
+        = getJoinOperator(JoinType.INNER, true);
+
+    // The whole window is new on the first trigger
+    List<Tuple> window = new LinkedList<>(getTupleWindow().get());
+    joinOperator.execute(new TupleWindowImpl(window, new LinkedList<>(window),
+        new LinkedList<>(), startTime, endTime));
+    Assert.assertEquals(2 * 3, emittedTuples.size());
+
+    // Only the pairs of the new tuple are emitted
+    emittedTuples.clear();
+    Tuple newTuple = getTuple(getStreamId("leftComponent"), new Fields("a"),
+        new Values(new KeyValue<String, String>("key1", "12")));
+    window.add(newTuple);
+    joinOperator.execute(new TupleWindowImpl(window, Collections.singletonList(newTuple),
+        new LinkedList<>(), startTime, endTime));
+    Set<String> results = new HashSet<>();
+    for (Object object : emittedTuples) {
+      KeyValue<KeyedWindow<String>, String> tuple = (KeyValue<KeyedWindow<String>, String>) object;
+      Assert.assertEquals("key1", tuple.getKey().getKey());
+      Assert.assertEquals(13, tuple.getKey().getWindow().getCount());
+      results.add(tuple.getValue());
+    }
+    Assert.assertEquals(new HashSet<>(Arrays.asList("121", "123")), results);
+
+    // Evicted tuples are not joined anymore, and inner joins emit nothing on eviction
+    emittedTuples.clear();
+    List<Tuple> expired = Collections.singletonList(window.remove(1));
+    joinOperator.onExpiry(expired);
+    Assert.assertEquals(0, emittedTuples.size());
+    newTuple = getTuple(getStreamId("leftComponent"), new Fields("a"),
+        new Values(new KeyValue<String, String>("key1", "13")));
+    window.add(newTuple);
+    joinOperator.execute(new TupleWindowImpl(window, Collections.singletonList(newTuple),
+        expired, startTime, endTime));
+    Assert.assertEquals(1, emittedTuples.size());
+    Assert.assertEquals("133",
+        ((KeyValue<KeyedWindow<String>, String>) emittedTuples.get(0)).getValue());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testIncrementalOuterJoinOperator() {
+    JoinOperator<String, KeyValue<String, String>, KeyValue<String, String>, String> joinOperator
+        = getJoinOperator(JoinType.OUTER, true);
+
+    List<Tuple> window = getTupleWindow().get();
+    joinOperator.execute(new TupleWindowImpl(window, window, new LinkedList<>(),
+        startTime, endTime));
+    // Unmatched tuples are only emitted once they leave the window
+    Assert.assertEquals(2 * 3, emittedTuples.size());
+
+    emittedTuples.clear();
+    joinOperator.onExpiry(window);
+    Set<String> results = new HashSet<>();
+    for (Object object : emittedTuples) {
+      KeyValue<KeyedWindow<String>, String> tuple = (KeyValue<KeyedWindow<String>, String>) object;
+      Assert.assertNotEquals("key1", tuple.getKey().getKey());
+      results.add(tuple.getValue());
+    }
+    Assert.assertEquals(new HashSet<>(Arrays.asList("5null", "6null", "7null",
+        "null8", "null9", "null10", "null11")), results);
+    Assert.assertEquals(7, emittedTuples.size());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testIncrementalOuterJoinExpiredBeforeTrigger() {
+    JoinOperator<String, KeyValue<String, String>, KeyValue<String, String>, String> joinOperator
+        = getJoinOperator(JoinType.OUTER, true);
+
+    // These tuples are evicted before being part of any window, so they are never joined
+    Tuple left = getTuple(getStreamId("leftComponent"), new Fields("a"),
+        new Values(new KeyValue<String, String>("key1", "1")));
+    Tuple right = getTuple(getStreamId("rightComponent"), new Fields("a"),
+        new Values(new KeyValue<String, String>("key1", "2")));
+    joinOperator.onArrival(left);
+    joinOperator.onArrival(right);
+    Tuple laterLeft = getTuple(getStreamId("leftComponent"), new Fields("a"),
+        new Values(new KeyValue<String, String>("key1", "3")));
+    joinOperator.onArrival(laterLeft);
+    joinOperator.onExpiry(Arrays.asList(left, right));
+    Set<String> results = new HashSet<>();
+    for (Object object : emittedTuples) {
+      results.add(((KeyValue<KeyedWindow<String>, String>) object).getValue());
+    }
+    Assert.assertEquals(new HashSet<>(Arrays.asList("1null", "null2")), results);
+    Assert.assertEquals(2, emittedTuples.size());
+
+    // The tuple still in the window is joined on the next trigger
+    emittedTuples.clear();
+    Tuple laterRight = getTuple(getStreamId("rightComponent"), new Fields("a"),
+        new Values(new KeyValue<String, String>("key1", "4")));
+    joinOperator.onArrival(laterRight);
+    List<Tuple> window = Arrays.asList(laterLeft, laterRight);
+    joinOperator.execute(new TupleWindowImpl(window, window, Arrays.asList(left, right),
+        startTime, endTime));
+    Assert.assertEquals(1, emittedTuples.size());
+    Assert.assertEquals("34",
+        ((KeyValue<KeyedWindow<String>, String>) emittedTuples.get(0)).getValue());
+  }
+
+  private TopologyAPI.StreamId getStreamId(String componentName) {
+    return TopologyAPI.StreamId.newBuilder().setComponentName(componentName).setId("s1").build();
+  }
+
   private TupleWindow getTupleWindow() {
     TopologyAPI.StreamId leftComponentStreamId
         = TopologyAPI.StreamId.newBuilder()
@@ -292,6 +402,12 @@ public class JoinOperatorTest {
   @SuppressWarnings({"rawtypes", "unchecked"})
   private JoinOperator<String, KeyValue<String, String>, KeyValue<String, String>, String>
         getJoinOperator(JoinType type) {
+    return getJoinOperator(type, false);
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private JoinOperator<String, KeyValue<String, String>, KeyValue<String, String>, String>
+        getJoinOperator(JoinType type, boolean incremental) {
     SerializableFunction<KeyValue<String, String>, String> f = x -> x == null ? "null" : x.getKey();
     JoinOperator<String, KeyValue<String, String>, KeyValue<String, String>, String> joinOperator =
         new JoinOperator(
@@ -301,7 +417,8 @@ public class JoinOperatorTest {
             f,
             f,
         (SerializableBiFunction<KeyValue<String, String>, KeyValue<String, String>, String>)
-            (o, o2) -> (o == null ? "null" : o.getValue()) + (o2 == null ? "null" : o2.getValue()));
+            (o, o2) -> (o == null ? "null" : o.getValue()) + (o2 == null ? "null" : o2.getValue()),
+        incremental);
 
     joinOperator.prepare(new Config(), PowerMockito.mock(TopologyContext.class),
         new OutputCollector(new IOutputCollector() {
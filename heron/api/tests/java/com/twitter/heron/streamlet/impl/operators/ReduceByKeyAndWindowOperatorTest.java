@@ -13,10 +13,13 @@
 //  limitations under the License.
 package com.twitter.heron.streamlet.impl.operators;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -38,6 +41,7 @@ import com.twitter.heron.common.utils.topology.TopologyContextImpl;
 import com.twitter.heron.common.utils.tuple.TupleImpl;
 import com.twitter.heron.streamlet.KeyValue;
 import com.twitter.heron.streamlet.KeyedWindow;
+import com.twitter.heron.streamlet.SerializableBinaryOperator;
 
 public class ReduceByKeyAndWindowOperatorTest {
 
@@ -78,6 +82,108 @@ public class ReduceByKeyAndWindowOperatorTest {
     }
   }
 
+  @Test
+  public void testIncrementalSlidingWindow() {
+    checkSlidingWindow(getReduceByWindowOperator(null), 6, false);
+  }
+
+  @Test
+  public void testIncrementalSlidingWindowPartialPane() {
+    // The oldest pane loses one of its two tuples on every trigger
+    checkSlidingWindow(getReduceByWindowOperator(null), 5, false);
+  }
+
+  @Test
+  public void testInverseSlidingWindow() {
+    checkSlidingWindow(getReduceByWindowOperator((o, o2) -> o - o2), 6, false);
+    checkSlidingWindow(getReduceByWindowOperator((o, o2) -> o - o2), 5, false);
+  }
+
+  @Test
+  public void testSkippedTrigger() {
+    checkSlidingWindow(getReduceByWindowOperator(null), 6, true);
+    checkSlidingWindow(getReduceByWindowOperator((o, o2) -> o - o2), 6, true);
+  }
+
+  // Slide a count window of windowLength tuples by 2 tuples, checking the results of every
+  // trigger, and that no trigger reads more tuples of the window than the slide. The keys have
+  // different lengths, which are the values to sum.
+  @SuppressWarnings("unchecked")
+  private void checkSlidingWindow(ReduceByKeyAndWindowOperator<String, Integer, String> operator,
+                                  int windowLength, boolean skipTriggers) {
+    TopologyAPI.StreamId componentStreamId
+        = TopologyAPI.StreamId.newBuilder()
+        .setComponentName("sourceComponent").setId("default").build();
+    String[] keys = {"a", "bb", "a", "ccc", "a", "bb", "ccc", "ccc", "bb", "a"};
+
+    LinkedList<Tuple> window = new LinkedList<>();
+    List<Tuple> newTuples = new LinkedList<>();
+    List<Tuple> expired = new LinkedList<>();
+    for (int i = 0; i < 40; i += 2) {
+      if (!skipTriggers || i % 20 != 4) {
+        for (int j = i; j < i + 2; j++) {
+          Tuple tuple = getTuple(componentStreamId, new Fields("a"),
+              new Values(keys[(j * 7) % keys.length]));
+          window.add(tuple);
+          newTuples.add(tuple);
+        }
+      }
+      while (window.size() > windowLength) {
+        expired.add(copy(window.removeFirst()));
+      }
+      if (skipTriggers && i % 10 == 4) {
+        // A gap in the input: the whole window expires, with or without tuples that arrived
+        // since the last trigger, and the window manager skips the trigger for the empty
+        // window. The tuples expired until then are never reported.
+        window.clear();
+        newTuples = new LinkedList<>();
+        expired = new LinkedList<>();
+        continue;
+      }
+
+      emittedTuples.clear();
+      final List<Tuple> windowTuples = new ArrayList<>(window);
+      final int[] windowReads = {0};
+      operator.execute(new TupleWindowImpl(new AbstractList<Tuple>() {
+        @Override
+        public Tuple get(int index) {
+          windowReads[0]++;
+          return windowTuples.get(index);
+        }
+
+        @Override
+        public int size() {
+          return windowTuples.size();
+        }
+      }, newTuples, expired, startTime, endTime));
+      newTuples = new LinkedList<>();
+      expired = new LinkedList<>();
+      Assert.assertTrue("Read " + windowReads[0] + " tuples of the window", windowReads[0] <= 2);
+
+      Map<String, Integer> expectedCounts = new HashMap<>();
+      for (Tuple tuple : window) {
+        expectedCounts.merge((String) tuple.getValue(0), 1, Integer::sum);
+      }
+      Assert.assertEquals(expectedCounts.size(), emittedTuples.size());
+      for (Object object : emittedTuples) {
+        KeyValue<KeyedWindow<String>, Integer> tuple =
+            (KeyValue<KeyedWindow<String>, Integer>) object;
+        String key = tuple.getKey().getKey();
+        int count = expectedCounts.get(key);
+        Assert.assertEquals(count, tuple.getKey().getWindow().getCount());
+        Assert.assertEquals(count * key.length(), (int) tuple.getValue());
+      }
+    }
+  }
+
+  // A tuple equal to the given one, but another object, as read back from a spilled window
+  private Tuple copy(Tuple tuple) {
+    TopologyAPI.StreamId componentStreamId
+        = TopologyAPI.StreamId.newBuilder()
+        .setComponentName("sourceComponent").setId("default").build();
+    return getTuple(componentStreamId, new Fields("a"), new Values(tuple.getValue(0)));
+  }
+
   private TupleWindow getTupleWindow(int nkeys, int count) {
     TopologyAPI.StreamId componentStreamId
         = TopologyAPI.StreamId.newBuilder()
@@ -103,6 +209,22 @@ public class ReduceByKeyAndWindowOperatorTest {
   private ReduceByKeyAndWindowOperator<String, Integer, String> getReduceByWindowOperator() {
     ReduceByKeyAndWindowOperator<String, Integer, String> reduceByWindowOperator =
         new ReduceByKeyAndWindowOperator<>(x -> x, x -> 1, (o, o2) -> o + o2);
+    prepare(reduceByWindowOperator);
+    return reduceByWindowOperator;
+  }
+
+  private ReduceByKeyAndWindowOperator<String, Integer, String> getReduceByWindowOperator(
+      SerializableBinaryOperator<Integer> inverseReduceFn) {
+    ReduceByKeyAndWindowOperator<String, Integer, String> reduceByWindowOperator =
+        new ReduceByKeyAndWindowOperator<>(x -> x, String::length, (o, o2) -> o + o2,
+            inverseReduceFn);
+    prepare(reduceByWindowOperator);
+    return reduceByWindowOperator;
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private void prepare(ReduceByKeyAndWindowOperator<String, Integer, String>
+                           reduceByWindowOperator) {
 
     reduceByWindowOperator.prepare(new Config(), PowerMockito.mock(TopologyContext.class),
         new OutputCollector(new IOutputCollector() {
@@ -135,7 +257,6 @@ public class ReduceByKeyAndWindowOperatorTest {
 
           }
         }));
-    return reduceByWindowOperator;
   }
 
   private Tuple getTuple(TopologyAPI.StreamId streamId, final Fields fields, Values values) {
@@ -0,0 +1,89 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.streamlet.impl.sources;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.twitter.heron.api.spout.ISpoutOutputCollector;
+import com.twitter.heron.api.spout.SpoutOutputCollector;
+import com.twitter.heron.api.tuple.Values;
+import com.twitter.heron.api.windowing.WindowingConfigs;
+import com.twitter.heron.streamlet.impl.EventTime;
+
+public class StreamletSourceTest {
+  private static final long IDLE_TIMEOUT_MS = 20;
+
+  @Test
+  public void testIdleWatermark() throws InterruptedException {
+    ArrayDeque<Long> values = new ArrayDeque<>(Arrays.asList(1000L, 900L));
+    SupplierSource<Long> source = new SupplierSource<>(values::poll, x -> x);
+    List<List<Object>> emittedTuples = new ArrayList<>();
+    List<Long> emittedWatermarks = new ArrayList<>();
+    Map<String, Object> conf = new HashMap<>();
+    WindowingConfigs.setTopologyBoltsWatermarkEventIntervalMs(conf, 0);
+    WindowingConfigs.setTopologyStreamletWatermarkIdleTimeoutMs(conf, IDLE_TIMEOUT_MS);
+    source.open(conf, null, new SpoutOutputCollector(new ISpoutOutputCollector() {
+      @Override
+      public List<Integer> emit(String streamId, List<Object> tuple, Object messageId) {
+        if (EventTime.WATERMARK_STREAM_ID.equals(streamId)) {
+          emittedWatermarks.add((Long) tuple.get(0));
+        } else {
+          emittedTuples.add(tuple);
+        }
+        return null;
+      }
+
+      @Override
+      public void emitDirect(int taskId, String streamId, List<Object> tuple, Object messageId) {
+      }
+
+      @Override
+      public void reportError(Throwable error) {
+      }
+    }));
+
+    // The watermark is the largest timestamp emitted
+    long start = System.currentTimeMillis();
+    source.nextTuple();
+    source.nextTuple();
+    Assert.assertEquals(Arrays.asList(new Values(1000L, 1000L), new Values(900L, 900L)),
+        emittedTuples);
+    Assert.assertEquals(Arrays.asList(1000L), emittedWatermarks);
+
+    // Not idle yet
+    source.nextTuple();
+    if (System.currentTimeMillis() - start < IDLE_TIMEOUT_MS) {
+      Assert.assertEquals(1, emittedWatermarks.size());
+    }
+
+    // Idle: the watermark advances on its own, trailing the wall clock by the idle timeout
+    Thread.sleep(3 * IDLE_TIMEOUT_MS);
+    source.nextTuple();
+    long elapsed = System.currentTimeMillis() - start;
+    Assert.assertEquals(2, emittedWatermarks.size());
+    long watermark = emittedWatermarks.get(1);
+    Assert.assertTrue(watermark > 1000L);
+    Assert.assertTrue(watermark <= 1000L + elapsed - IDLE_TIMEOUT_MS);
+    Assert.assertEquals(2, emittedTuples.size());
+  }
+}
@@ -51,7 +51,9 @@ bool TMasterMetrics::IsTMasterMetric(const sp_string& _name) {
 }
 
 TMasterMetrics::MetricAggregationType TMasterMetrics::GetAggregationType(const sp_string& _name) {
-  for (auto iter = metrics_prefixes_.begin(); iter != metrics_prefixes_.end(); ++iter) {
+  // The prefixes of a name sort before the longer ones, so going backwards finds the longest
+  // matching prefix first, e.g., __execute-latency-bucket before __execute-latency
+  for (auto iter = metrics_prefixes_.rbegin(); iter != metrics_prefixes_.rend(); ++iter) {
     if (_name.find(iter->first) == 0) {
       return iter->second;
     }
@@ -29,14 +29,37 @@ import java.util.concurrent.LinkedTransferQueue;
  * <p>
  * However, in order to avoid GC issues and keep high performance, we would have a dynamical tuning
  * Queue's expected capacity, see updateExpectedAvailableCapacity() below.
+ * <p>
+ * With BufferType.RING_BUFFER, items are kept in a bounded lock-free RingBuffer sized by the
+ * capacity, so no node is allocated per item. The LinkedTransferQueue is then only used once the
+ * ring buffer is full, to keep offer() always successful. In this mode, there must be only one
+ * thread offering items and only one thread consuming them.
  */
 
 public class Communicator<E> {
+  /**
+   * The kind of buffer holding the items
+   */
+  public enum BufferType {
+    LINKED,
+    RING_BUFFER
+  }
+
   /**
    * The buffer queue underneath, an unbound queue.
+   * With BufferType.RING_BUFFER, it only holds the items offered while the ring buffer is full.
    */
   private final LinkedTransferQueue<E> buffer;
 
+  private final BufferType bufferType;
+
+  /**
+   * The bounded buffer used with BufferType.RING_BUFFER, created in init() once the capacity
+   * is known. Items are offered to the ring buffer only if the overflow buffer is empty,
+   * which keeps the items in order.
+   */
+  private volatile RingBuffer<E> ringBuffer;
+
   /*
    * The producer offers item into the queue, and it will be wake up when consumer polls a item.
    */
@@ -98,16 +121,27 @@ public class Communicator<E> {
    * or set it to null if we don't want consumer to be waken up
    */
   public Communicator(WakeableLooper producer, WakeableLooper consumer) {
+    this(producer, consumer, BufferType.LINKED);
+  }
+
+  /**
+   * Constructor for Communicator
+   *
+   * @param producer would be waken up when items are consumed from queue,
+   * or set it to null if we don't want producer to be waken up
+   * @param consumer would be waken up when items are produced into queue,
+   * or set it to null if we don't want consumer to be waken up
+   * @param bufferType the kind of buffer to hold the items
+   */
+  public Communicator(WakeableLooper producer, WakeableLooper consumer, BufferType bufferType) {
     this.producer = producer;
     this.consumer = consumer;
+    this.bufferType = bufferType;
     this.buffer = new LinkedTransferQueue<E>();
   }
 
   public Communicator() {
-    this.isExpectNoMoreItems = false;
-    this.producer = null;
-    this.consumer = null;
-    this.buffer = new LinkedTransferQueue<E>();
+    this(null, null);
   }
 
   public void setProducer(WakeableLooper producer) {
@@ -126,6 +160,10 @@ public class Communicator<E> {
     // We set the default expected available capacity half as the capacity
     this.expectedAvailableCapacity = capacity / 2;
 
+    if (bufferType == BufferType.RING_BUFFER && ringBuffer == null) {
+      this.ringBuffer = new RingBuffer<E>(capacity);
+    }
+
     // Notify both sides to pick up new values
     informConsumer();
     informProducer();
@@ -137,7 +175,8 @@ public class Communicator<E> {
    * @return the number of items in queue
    */
   public int size() {
-    return buffer.size();
+    RingBuffer<E> ring = ringBuffer;
+    return ring == null ? buffer.size() : ring.size() + buffer.size();
   }
 
   public int remainingCapacity() {
@@ -150,7 +189,7 @@ public class Communicator<E> {
    * @return null if there is no item inside the queue
    */
   public E poll() {
-    E result = buffer.poll();
+    E result = pollItem();
     if (producer != null) {
       producer.wakeUp();
     }
@@ -165,7 +204,7 @@ public class Communicator<E> {
    * @return true : inserted successfully
    */
   public boolean offer(E e) {
-    buffer.offer(e);
+    offerItem(e);
     if (consumer != null) {
       consumer.wakeUp();
     }
@@ -173,7 +212,48 @@ public class Communicator<E> {
     return true;
   }
 
+  /**
+   * Offer all the items in order, waking up the consumer only once.
+   * Since it is an unbounded queue, all the items will be inserted.
+   *
+   * @param items Items to be inserted
+   * @return the number of items inserted
+   */
+  public int offerAll(Collection<? extends E> items) {
+    int offered = 0;
+    RingBuffer<E> ring = ringBuffer;
+    if (ring != null && buffer.isEmpty()) {
+      offered = ring.offerAll(items);
+    }
+    if (offered < items.size()) {
+      // Either there is no ring buffer or it is full
+      int index = 0;
+      for (E e : items) {
+        if (index++ >= offered) {
+          buffer.offer(e);
+        }
+      }
+    }
+    if (consumer != null) {
+      consumer.wakeUp();
+    }
+
+    return items.size();
+  }
+
   public E peek() {
+    RingBuffer<E> ring = ringBuffer;
+    if (ring != null) {
+      E result = ring.peek();
+      if (result != null || buffer.isEmpty()) {
+        return result;
+      }
+      // See pollItem()
+      result = ring.peek();
+      if (result != null) {
+        return result;
+      }
+    }
     return buffer.peek();
   }
 
@@ -182,10 +262,20 @@ public class Communicator<E> {
   }
 
   public boolean isEmpty() {
-    return buffer.isEmpty();
+    RingBuffer<E> ring = ringBuffer;
+    return (ring == null || ring.isEmpty()) && buffer.isEmpty();
   }
 
+  /**
+   * Removes all items. It could be called by either the producer or the consumer: with
+   * BufferType.RING_BUFFER, the items in the ring buffer are discarded, and the consumer drops
+   * them the next time it polls.
+   */
   public void clear() {
+    RingBuffer<E> ring = ringBuffer;
+    if (ring != null) {
+      ring.discardAll();
+    }
     buffer.clear();
   }
 
@@ -199,16 +289,25 @@ public class Communicator<E> {
    * @return the number of elements transferred
    */
   public int drainTo(Collection<? super E> c) {
-    int result = buffer.drainTo(c);
-    if (producer != null) {
-      producer.wakeUp();
-    }
-
-    return result;
+    return drainTo(c, Integer.MAX_VALUE);
   }
 
   public int drainTo(Collection<? super E> c, int maxElements) {
-    int result = buffer.drainTo(c, maxElements);
+    int result = 0;
+    boolean drainOverflow = true;
+    RingBuffer<E> ring = ringBuffer;
+    if (ring != null) {
+      result = ring.drainTo(c, maxElements);
+      // Items in the overflow buffer are always newer than the ones in the ring buffer,
+      // see pollItem()
+      drainOverflow = result < maxElements && !buffer.isEmpty();
+      if (drainOverflow) {
+        result += ring.drainTo(c, maxElements - result);
+      }
+    }
+    if (drainOverflow && result < maxElements) {
+      result += buffer.drainTo(c, maxElements - result);
+    }
     if (producer != null) {
       producer.wakeUp();
     }
@@ -268,4 +367,31 @@ public class Communicator<E> {
       consumer.wakeUp();
     }
   }
+
+  private E pollItem() {
+    RingBuffer<E> ring = ringBuffer;
+    if (ring != null) {
+      E result = ring.poll();
+      if (result != null || buffer.isEmpty()) {
+        return result;
+      }
+      // The producer could have filled the ring buffer and then started on the overflow buffer
+      // since the ring buffer was found empty. While the overflow buffer is not empty, nothing
+      // more is offered to the ring buffer, so it only holds items older than the overflow.
+      result = ring.poll();
+      if (result != null) {
+        return result;
+      }
+    }
+    return buffer.poll();
+  }
+
+  private void offerItem(E e) {
+    RingBuffer<E> ring = ringBuffer;
+    // Only the producer adds to the overflow buffer, so once it is found empty here,
+    // every item offered before is either in the ring buffer or already consumed
+    if (ring == null || !buffer.isEmpty() || !ring.offer(e)) {
+      buffer.offer(e);
+    }
+  }
 }
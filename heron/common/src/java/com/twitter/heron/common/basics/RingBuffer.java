@@ -0,0 +1,203 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.common.basics;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded lock-free ring buffer for exactly one producer thread and one consumer thread.
+ * <p>
+ * offer() and offerAll() must only be called by the producer, while poll(), peek(),
+ * drainTo() and clear() must only be called by the consumer. size(), isEmpty() and discardAll()
+ * could be called by any thread.
+ * <p>
+ * Slots are pre-allocated, so no object is allocated per item, unlike a linked queue.
+ * Each side caches the last seen index of the other side, so the shared counters are only
+ * read when the buffer looks full or empty.
+ */
+public class RingBuffer<E> {
+  private final Object[] buffer;
+  private final int mask;
+
+  // The index of the next item to poll, only written by the consumer
+  private final AtomicLong head = new AtomicLong(0);
+  // The index of the next slot to offer into, only written by the producer
+  private final AtomicLong tail = new AtomicLong(0);
+  // The items before this index are discarded, and skipped by the consumer
+  private final AtomicLong discardedBefore = new AtomicLong(0);
+
+  // Producer's cached value of head
+  private long headCache;
+  // Consumer's cached value of tail
+  private long tailCache;
+
+  /**
+   * Constructor for RingBuffer
+   *
+   * @param capacity the minimum capacity, which is rounded up to a power of two
+   */
+  public RingBuffer(int capacity) {
+    if (capacity <= 0 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.buffer = new Object[size];
+    this.mask = size - 1;
+  }
+
+  public int capacity() {
+    return buffer.length;
+  }
+
+  /**
+   * Insert an item if there is space
+   *
+   * @param e item to be inserted
+   * @return true if inserted, false if the buffer is full
+   */
+  public boolean offer(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    long currentTail = tail.get();
+    if (currentTail - headCache >= buffer.length) {
+      headCache = head.get();
+      if (currentTail - headCache >= buffer.length) {
+        return false;
+      }
+    }
+    buffer[(int) currentTail & mask] = e;
+    // Publish the item after it is written
+    tail.lazySet(currentTail + 1);
+    return true;
+  }
+
+  /**
+   * Insert items in order until the buffer is full
+   *
+   * @param items items to be inserted
+   * @return the number of items inserted, which are the first ones of the collection
+   */
+  public int offerAll(Collection<? extends E> items) {
+    long currentTail = tail.get();
+    long freeSlots = buffer.length - (currentTail - head.get());
+    int offered = 0;
+    for (E e : items) {
+      if (offered >= freeSlots) {
+        break;
+      }
+      if (e == null) {
+        throw new NullPointerException();
+      }
+      buffer[(int) (currentTail + offered) & mask] = e;
+      offered++;
+    }
+    // Publish all the items at once
+    tail.lazySet(currentTail + offered);
+    return offered;
+  }
+
+  /**
+   * Remove the oldest item
+   *
+   * @return the item, or null if the buffer is empty
+   */
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    long currentHead = skipDiscarded();
+    if (currentHead >= tailCache) {
+      tailCache = tail.get();
+      if (currentHead >= tailCache) {
+        return null;
+      }
+    }
+    int index = (int) currentHead & mask;
+    E e = (E) buffer[index];
+    buffer[index] = null;
+    // Release the slot after it is cleared
+    head.lazySet(currentHead + 1);
+    return e;
+  }
+
+  @SuppressWarnings("unchecked")
+  public E peek() {
+    long currentHead = skipDiscarded();
+    if (currentHead >= tail.get()) {
+      return null;
+    }
+    return (E) buffer[(int) currentHead & mask];
+  }
+
+  /**
+   * Remove at most maxElements of the oldest items and add them to the given collection
+   *
+   * @return the number of items transferred
+   */
+  @SuppressWarnings("unchecked")
+  public int drainTo(Collection<? super E> c, int maxElements) {
+    long currentHead = skipDiscarded();
+    long available = Math.min(tail.get() - currentHead, maxElements);
+    for (int i = 0; i < available; i++) {
+      int index = (int) (currentHead + i) & mask;
+      c.add((E) buffer[index]);
+      buffer[index] = null;
+    }
+    head.lazySet(currentHead + available);
+    return (int) available;
+  }
+
+  public void clear() {
+    while (poll() != null) {
+      // Keep polling until empty
+    }
+  }
+
+  /**
+   * Discard all the items offered so far. Unlike clear(), it could be called by the producer:
+   * the consumer drops the discarded items the next time it polls, peeks or drains.
+   */
+  public void discardAll() {
+    discardedBefore.accumulateAndGet(tail.get(), Math::max);
+  }
+
+  public int size() {
+    // Read head first, so the size can never be negative
+    long currentHead = Math.max(head.get(), discardedBefore.get());
+    long size = tail.get() - currentHead;
+    return (int) Math.min(size, buffer.length);
+  }
+
+  public boolean isEmpty() {
+    return Math.max(head.get(), discardedBefore.get()) >= tail.get();
+  }
+
+  // Drop the discarded items still in the buffer, and return the index of the next item to poll
+  private long skipDiscarded() {
+    long currentHead = head.get();
+    long discarded = discardedBefore.get();
+    if (currentHead >= discarded) {
+      return currentHead;
+    }
+    for (long i = currentHead; i < discarded; i++) {
+      buffer[(int) i & mask] = null;
+    }
+    head.lazySet(discarded);
+    return discarded;
+  }
+}
@@ -16,10 +16,13 @@ package com.twitter.heron.common.config;
 
 import java.io.File;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.twitter.heron.common.basics.ByteAmount;
+import com.twitter.heron.common.basics.Communicator;
 import com.twitter.heron.common.basics.TypeUtils;
 
 /**
@@ -53,6 +56,11 @@ public final class SystemConfig {
         SystemConfigKey.INSTANCE_NETWORK_OPTIONS_MAXIMUM_PACKETSIZE_BYTES);
   }
 
+  public ByteAmount getInstanceNetworkOptionsBufferPoolSize() {
+    return getByteAmount(
+        SystemConfigKey.INSTANCE_NETWORK_OPTIONS_BUFFER_POOL_SIZE_BYTES);
+  }
+
   public int getInstanceInternalMetricsWriteQueueCapacity() {
     return getInteger(SystemConfigKey.INSTANCE_INTERNAL_METRICS_WRITE_QUEUE_CAPACITY);
   }
@@ -61,6 +69,20 @@ public final class SystemConfig {
     return getInteger(SystemConfigKey.INSTANCE_TUNING_EXPECTED_METRICS_WRITE_QUEUE_SIZE);
   }
 
+  public Communicator.BufferType getInstanceInternalQueueType() {
+    String queueType = getString(SystemConfigKey.INSTANCE_INTERNAL_QUEUE_TYPE);
+    try {
+      return Communicator.BufferType.valueOf(queueType.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      List<String> validTypes = new ArrayList<>();
+      for (Communicator.BufferType bufferType : Communicator.BufferType.values()) {
+        validTypes.add(bufferType.name().toLowerCase());
+      }
+      throw new IllegalArgumentException(String.format("Invalid %s: %s, expected one of %s",
+          SystemConfigKey.INSTANCE_INTERNAL_QUEUE_TYPE.value(), queueType, validTypes), e);
+    }
+  }
+
   public int getInstanceSetDataTupleCapacity() {
     return getInteger(SystemConfigKey.INSTANCE_SET_DATA_TUPLE_CAPACITY);
   }
@@ -69,6 +91,14 @@ public final class SystemConfig {
     return getByteAmount(SystemConfigKey.INSTANCE_SET_DATA_TUPLE_SIZE);
   }
 
+  public int getInstanceSetDataTupleMinCapacity() {
+    return getInteger(SystemConfigKey.INSTANCE_SET_DATA_TUPLE_MIN_CAPACITY);
+  }
+
+  public Duration getInstanceSetDataTupleMaxDelay() {
+    return getDuration(SystemConfigKey.INSTANCE_SET_DATA_TUPLE_MAX_DELAY);
+  }
+
   public int getInstanceSetControlTupleCapacity() {
     return getInteger(SystemConfigKey.INSTANCE_SET_CONTROL_TUPLE_CAPACITY);
   }
@@ -137,6 +167,10 @@ public final class SystemConfig {
     return getByteAmount(SystemConfigKey.INSTANCE_NETWORK_READ_BATCH_SIZE);
   }
 
+  public ByteAmount getInstanceNetworkReadBufferSize() {
+    return getByteAmount(SystemConfigKey.INSTANCE_NETWORK_READ_BUFFER_SIZE);
+  }
+
   public Duration getInstanceNetworkWriteBatchTime() {
     return getDuration(SystemConfigKey.INSTANCE_NETWORK_WRITE_BATCH_TIME);
   }
@@ -145,6 +179,10 @@ public final class SystemConfig {
     return getByteAmount(SystemConfigKey.INSTANCE_NETWORK_WRITE_BATCH_SIZE);
   }
 
+  public int getInstanceNetworkWriteGatherPackets() {
+    return getInteger(SystemConfigKey.INSTANCE_NETWORK_WRITE_GATHER_PACKETS);
+  }
+
   public ByteAmount getInstanceNetworkOptionsSocketReceivedBufferSize() {
     return getByteAmount(SystemConfigKey.INSTANCE_NETWORK_OPTIONS_SOCKET_RECEIVED_BUFFER_SIZE);
   }
@@ -225,6 +263,10 @@ public final class SystemConfig {
     return getInteger(SystemConfigKey.HERON_METRICS_MAX_EXCEPTIONS_PER_MESSAGE_COUNT);
   }
 
+  public boolean getHeronMetricsHistogramBucketsExport() {
+    return getBoolean(SystemConfigKey.HERON_METRICS_HISTOGRAM_BUCKETS_EXPORT);
+  }
+
   public long getTmasterMetricsCollectorMaximumException() {
     try {
       return getLong(SystemConfigKey.TMASTER_METRICS_COLLECTOR_MAXIMUM_EXCEPTION);
@@ -241,11 +283,28 @@ public final class SystemConfig {
     return getDuration(SystemConfigKey.TMASTER_METRICS_COLLECTOR_PURGE_INTERVAL);
   }
 
+  public int getTmasterMetricsStatsThreads() {
+    return getInteger(SystemConfigKey.TMASTER_METRICS_STATS_THREADS);
+  }
+
+  public int getTmasterMetricsStatsQueueSize() {
+    return getInteger(SystemConfigKey.TMASTER_METRICS_STATS_QUEUE_SIZE);
+  }
+
+  public Duration getTmasterMetricsStatsResponseCacheTtl() {
+    return getDuration(SystemConfigKey.TMASTER_METRICS_STATS_RESPONSE_CACHE_TTL);
+  }
+
   private String getString(SystemConfigKey key) {
     assertType(key, SystemConfigKey.Type.STRING);
     return (String) get(key);
   }
 
+  private Boolean getBoolean(SystemConfigKey key) {
+    assertType(key, SystemConfigKey.Type.BOOLEAN);
+    return TypeUtils.getBoolean(get(key));
+  }
+
   private Integer getInteger(SystemConfigKey key) {
     assertType(key, SystemConfigKey.Type.INTEGER);
     return TypeUtils.getInteger(get(key));
@@ -350,6 +409,7 @@ public final class SystemConfig {
             config.put(key.value(), TypeUtils.getLong(value));
             break;
           case STRING:
+            config.put(key.value(), value);
             break;
           default:
             throw new IllegalArgumentException(String.format(
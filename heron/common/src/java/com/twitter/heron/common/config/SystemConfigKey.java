@@ -59,12 +59,25 @@ public enum SystemConfigKey {
   HERON_METRICS_MAX_EXCEPTIONS_PER_MESSAGE_COUNT(
       "heron.metrics.max.exceptions.per.message.count", Integer.MAX_VALUE),
 
+  /**
+   * Whether to export the count of every non-empty bucket of the histogram metrics
+   */
+  HERON_METRICS_HISTOGRAM_BUCKETS_EXPORT("heron.metrics.histogram.buckets.export", false),
+
   /**
    * The maximum size of heron packet that's allowed by the instance
    */
   INSTANCE_NETWORK_OPTIONS_MAXIMUM_PACKETSIZE_BYTES(
       "heron.instance.network.options.maximum.packetsize.bytes", Type.BYTE_AMOUNT),
 
+  /**
+   * The direct memory each connection of the instance could pool packet buffers in,
+   * 0 to allocate packet buffers on the java heap. The instance has 2 connections, so its
+   * pools could take up to twice this size
+   */
+  INSTANCE_NETWORK_OPTIONS_BUFFER_POOL_SIZE_BYTES(
+      "heron.instance.network.options.buffer.pool.size.bytes", ByteAmount.ZERO),
+
   /**
    * The queue capacity (num of items) in bolt for buffer packets to read from stream manager
    */
@@ -95,6 +108,12 @@ public enum SystemConfigKey {
   INSTANCE_INTERNAL_METRICS_WRITE_QUEUE_CAPACITY(
       "heron.instance.internal.metrics.write.queue.capacity", Type.INTEGER),
 
+  /**
+   * The type of the queues between the gateway and slave threads of an instance:
+   * "linked" for an unbounded linked queue, or "ring_buffer" for a bounded lock-free ring buffer
+   */
+  INSTANCE_INTERNAL_QUEUE_TYPE("heron.instance.internal.queue.type", "linked"),
+
   /**
    * Time based, the maximum batch time in ms for instance to read from stream manager per attempt
    */
@@ -106,6 +125,13 @@ public enum SystemConfigKey {
   INSTANCE_NETWORK_READ_BATCH_SIZE(
       "heron.instance.network.read.batch.size.bytes", Type.BYTE_AMOUNT),
 
+  /**
+   * The size in bytes of the buffer the socket is read into before being parsed into packets,
+   * 0 to read packets from the socket one by one
+   */
+  INSTANCE_NETWORK_READ_BUFFER_SIZE(
+      "heron.instance.network.read.buffer.size.bytes", ByteAmount.ZERO),
+
   /**
    * Time based, the maximum batch time in ms for instance to read from stream manager per attempt
    */
@@ -118,6 +144,12 @@ public enum SystemConfigKey {
   INSTANCE_NETWORK_WRITE_BATCH_SIZE(
       "heron.instance.network.write.batch.size.bytes", Type.BYTE_AMOUNT),
 
+  /**
+   * The maximum # of packets to write to the socket with one gathering write,
+   * 1 to write packets one by one
+   */
+  INSTANCE_NETWORK_WRITE_GATHER_PACKETS("heron.instance.network.write.gather.packets", 1),
+
   /**
    * # The maximum socket's received buffer size in bytes of instance's network options
    */
@@ -141,6 +173,21 @@ public enum SystemConfigKey {
   INSTANCE_SET_DATA_TUPLE_SIZE(
       "heron.instance.set.data.tuple.size.bytes", ByteAmount.fromBytes(Long.MAX_VALUE)),
 
+  /**
+   * The minimum # of data tuple to batch in a HeronDataTupleSet protobuf. The batch size grows
+   * up to heron.instance.set.data.tuple.capacity while the out queue is backing up, and shrinks
+   * back while it is empty. 0 to always batch up to heron.instance.set.data.tuple.capacity
+   */
+  INSTANCE_SET_DATA_TUPLE_MIN_CAPACITY("heron.instance.set.data.tuple.min.capacity", 0),
+
+  /**
+   * The maximum time in ms to keep a partial HeronDataTupleSet protobuf while the out queue is
+   * backing up, instead of sending it out after each execute or emit attempt.
+   * 0 to always send it out
+   */
+  INSTANCE_SET_DATA_TUPLE_MAX_DELAY(
+      "heron.instance.set.data.tuple.max.delay.ms", ChronoUnit.MILLIS, Duration.ZERO),
+
   /**
    * The size of packets read from stream manager will be determined by the minimal of
    * (a) time based (b) size based
@@ -320,7 +367,26 @@ public enum SystemConfigKey {
    */
   TMASTER_METRICS_COLLECTOR_PURGE_INTERVAL(
        "heron.tmaster.metrics.collector.purge.interval.sec",
-      ChronoUnit.SECONDS, Duration.ofMinutes(1));
+      ChronoUnit.SECONDS, Duration.ofMinutes(1)),
+
+  /**
+   * The # of threads of the metrics cache manager to serve stat queries with
+   */
+  TMASTER_METRICS_STATS_THREADS("heron.tmaster.metrics.stats.threads", 4),
+
+  /**
+   * The maximum # of stat queries waiting for a thread, beyond which they are rejected with
+   * 503 Service Unavailable
+   */
+  TMASTER_METRICS_STATS_QUEUE_SIZE("heron.tmaster.metrics.stats.queue.size", 64),
+
+  /**
+   * How long the response to a stat query is reused for identical queries, 0 to only share
+   * responses between identical queries in flight
+   */
+  TMASTER_METRICS_STATS_RESPONSE_CACHE_TTL(
+      "heron.tmaster.metrics.stats.response.cache.ttl.ms",
+      ChronoUnit.MILLIS, Duration.ofSeconds(1));
 
 
   private final String value;
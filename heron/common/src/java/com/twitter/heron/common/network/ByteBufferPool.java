@@ -0,0 +1,128 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.common.network;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A pool of direct ByteBuffers backing IncomingPacket and OutgoingPacket.
+ * <p>
+ * Buffers are grouped in power-of-two size classes, from MIN_BUFFER_SIZE to MAX_BUFFER_SIZE.
+ * A released buffer goes back to the free list of its size class and is handed out again
+ * by later acquire() calls, so direct memory is allocated once and then recycled.
+ * <p>
+ * The total direct memory allocated by a pool never exceeds its capacity, which addresses
+ * the main concern with direct buffers: they are not accounted in the java heap.
+ * Once the capacity is reached, or when a packet is larger than MAX_BUFFER_SIZE, a plain
+ * heap buffer is returned instead and simply dropped on release.
+ * <p>
+ * A buffer must not be touched after it is released.
+ */
+public class ByteBufferPool {
+  // Smaller buffers are rounded up to this size
+  static final int MIN_BUFFER_SIZE = 512;
+  // Larger buffers are rare, so they are not worth pooling
+  static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+  private final long capacityInBytes;
+  private final ArrayDeque<ByteBuffer>[] freeBuffers;
+
+  // Direct memory allocated by this pool, either in use or in the free lists
+  private long allocatedBytes;
+  private long hitCount;
+  private long missCount;
+
+  @SuppressWarnings("unchecked")
+  public ByteBufferPool(long capacityInBytes) {
+    if (capacityInBytes <= 0) {
+      throw new IllegalArgumentException("Invalid buffer pool capacity: " + capacityInBytes);
+    }
+    this.capacityInBytes = capacityInBytes;
+    this.freeBuffers = new ArrayDeque[sizeClassOf(MAX_BUFFER_SIZE) + 1];
+    for (int i = 0; i < freeBuffers.length; i++) {
+      freeBuffers[i] = new ArrayDeque<>();
+    }
+  }
+
+  /**
+   * Get a buffer able to hold the given number of bytes.
+   * The buffer is cleared, and its limit is set to the requested size.
+   *
+   * @param size the number of bytes needed
+   * @return a pooled direct buffer if possible, otherwise a heap buffer
+   */
+  public synchronized ByteBuffer acquire(int size) {
+    if (size <= MAX_BUFFER_SIZE) {
+      int sizeClass = sizeClassOf(size);
+      ByteBuffer buffer = freeBuffers[sizeClass].poll();
+      if (buffer != null) {
+        hitCount++;
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+      }
+
+      int bufferSize = MIN_BUFFER_SIZE << sizeClass;
+      if (allocatedBytes + bufferSize <= capacityInBytes) {
+        missCount++;
+        allocatedBytes += bufferSize;
+        buffer = ByteBuffer.allocateDirect(bufferSize);
+        buffer.limit(size);
+        return buffer;
+      }
+    }
+
+    // Too large to be pooled, or the pool is out of capacity
+    missCount++;
+    return ByteBuffer.allocate(size);
+  }
+
+  /**
+   * Give a buffer obtained from acquire() back to the pool
+   */
+  public synchronized void release(ByteBuffer buffer) {
+    if (!buffer.isDirect()) {
+      // Heap buffers are never pooled; leave them to GC
+      return;
+    }
+    freeBuffers[sizeClassOf(buffer.capacity())].offer(buffer);
+  }
+
+  // The smallest size class whose buffers can hold the given size
+  static int sizeClassOf(int size) {
+    int units = (size + MIN_BUFFER_SIZE - 1) / MIN_BUFFER_SIZE;
+    return units <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(units - 1);
+  }
+
+  public long getCapacityInBytes() {
+    return capacityInBytes;
+  }
+
+  // The # of acquire() calls served by a recycled buffer
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  // The # of acquire() calls that had to allocate a new buffer
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  // The direct memory held by this pool, including buffers currently in use
+  public synchronized long getOffHeapBytes() {
+    return allocatedBytes;
+  }
+}
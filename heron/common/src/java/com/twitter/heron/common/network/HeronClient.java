@@ -68,6 +68,12 @@ public abstract class HeronClient implements ISelectHandler {
   private NIOLooper nioLooper;
   private SocketChannelHelper socketChannelHelper;
   private HeronSocketOptions socketOptions;
+  // Shared by the packets of every connection this client makes; null if pooling is disabled
+  private final ByteBufferPool bufferPool;
+  // Syscalls and bytes written on the connections made before the current one
+  private long pastReadSyscalls;
+  private long pastWriteSyscalls;
+  private long pastBytesWritten;
 
   // A flag to determine whether the socket is connected or not
   // We could not simply use socketChanel.isConnected() to tell whether the socketChannel
@@ -92,6 +98,7 @@ public abstract class HeronClient implements ISelectHandler {
     nioLooper = s;
     endpoint = new InetSocketAddress(host, port);
     socketOptions = options;
+    bufferPool = options.createBufferPool();
 
     isConnected = false;
     contextMap = new HashMap<REQID, Object>();
@@ -162,8 +169,15 @@ public abstract class HeronClient implements ISelectHandler {
   @Override
   public void handleRead(SelectableChannel channel) {
     List<IncomingPacket> packets = socketChannelHelper.read();
-    for (IncomingPacket ipt : packets) {
-      handlePacket(ipt);
+    try {
+      for (IncomingPacket ipt : packets) {
+        handlePacket(ipt);
+      }
+    } finally {
+      // Give the buffers back to the pool even if a packet could not be handled
+      for (IncomingPacket ipt : packets) {
+        ipt.release();
+      }
     }
   }
 
@@ -201,7 +215,7 @@ public abstract class HeronClient implements ISelectHandler {
       });
     }
 
-    OutgoingPacket opk = new OutgoingPacket(rid, request);
+    OutgoingPacket opk = new OutgoingPacket(rid, request, bufferPool);
     socketChannelHelper.sendPacket(opk);
   }
 
@@ -213,7 +227,7 @@ public abstract class HeronClient implements ISelectHandler {
   // This method is used if you want to communicate with the other end
   // on a non-request-response based communication.
   public void sendMessage(Message message) {
-    OutgoingPacket opk = new OutgoingPacket(REQID.zeroREQID, message);
+    OutgoingPacket opk = new OutgoingPacket(REQID.zeroREQID, message, bufferPool);
     socketChannelHelper.sendPacket(opk);
   }
 
@@ -221,6 +235,28 @@ public abstract class HeronClient implements ISelectHandler {
     return isConnected;
   }
 
+  public ByteBufferPool getBufferPool() {
+    return bufferPool;
+  }
+
+  // The # of read syscalls made on all connections of this client
+  public long getTotalReadSyscalls() {
+    return pastReadSyscalls
+        + (socketChannelHelper == null ? 0 : socketChannelHelper.getTotalReadSyscalls());
+  }
+
+  // The # of write syscalls made on all connections of this client
+  public long getTotalWriteSyscalls() {
+    return pastWriteSyscalls
+        + (socketChannelHelper == null ? 0 : socketChannelHelper.getTotalWriteSyscalls());
+  }
+
+  // The # of bytes written on all connections of this client
+  public long getTotalBytesWritten() {
+    return pastBytesWritten
+        + (socketChannelHelper == null ? 0 : socketChannelHelper.getTotalBytesWritten());
+  }
+
   public NIOLooper getNIOLooper() {
     return nioLooper;
   }
@@ -254,10 +290,18 @@ public abstract class HeronClient implements ISelectHandler {
       return;
     }
 
+    if (socketChannelHelper != null) {
+      // Keep the stats of the previous connection
+      pastReadSyscalls += socketChannelHelper.getTotalReadSyscalls();
+      pastWriteSyscalls += socketChannelHelper.getTotalWriteSyscalls();
+      pastBytesWritten += socketChannelHelper.getTotalBytesWritten();
+    }
+
     // Construct the ChannelHelper and by default it would:
     // 1. always read
     // 2. write if # of packets to send > 0
-    socketChannelHelper = new SocketChannelHelper(nioLooper, this, socketChannel, socketOptions);
+    socketChannelHelper = new SocketChannelHelper(nioLooper, this, socketChannel, socketOptions,
+        bufferPool);
 
     // Only when we fully connected, we set isConnected true
     isConnected = true;
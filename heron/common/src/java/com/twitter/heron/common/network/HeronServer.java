@@ -47,6 +47,8 @@ public abstract class HeronServer implements ISelectHandler {
   // Define the address where we need to listen on
   private InetSocketAddress endpoint;
   private HeronSocketOptions socketOptions;
+  // Shared by the packets of all connections; null if pooling is disabled
+  private final ByteBufferPool bufferPool;
   // Our own looper
   private NIOLooper nioLooper;
   // All the clients that we have connected
@@ -66,6 +68,7 @@ public abstract class HeronServer implements ISelectHandler {
     nioLooper = s;
     endpoint = new InetSocketAddress(host, port);
     socketOptions = options;
+    bufferPool = options.createBufferPool();
     requestMap = new HashMap<String, Message.Builder>();
     messageMap = new HashMap<String, Message.Builder>();
     activeConnections = new HashMap<SocketChannel, SocketChannelHelper>();
@@ -142,7 +145,7 @@ public abstract class HeronServer implements ISelectHandler {
             (int) socketOptions.getSocketReceivedBufferSize().asBytes());
         socketChannel.socket().setTcpNoDelay(true);
         SocketChannelHelper helper = new SocketChannelHelper(nioLooper, this, socketChannel,
-            socketOptions);
+            socketOptions, bufferPool);
         activeConnections.put(socketChannel, helper);
         onConnect(socketChannel);
       }
@@ -160,8 +163,15 @@ public abstract class HeronServer implements ISelectHandler {
       return;
     }
     List<IncomingPacket> packets = helper.read();
-    for (IncomingPacket ipt : packets) {
-      handlePacket(channel, ipt);
+    try {
+      for (IncomingPacket ipt : packets) {
+        handlePacket(channel, ipt);
+      }
+    } finally {
+      // Give the buffers back to the pool even if a packet could not be handled
+      for (IncomingPacket ipt : packets) {
+        ipt.release();
+      }
     }
   }
 
@@ -253,7 +263,7 @@ public abstract class HeronServer implements ISelectHandler {
       LOG.severe("Trying to send a response on an unknown connection");
       return false;
     }
-    OutgoingPacket opk = new OutgoingPacket(rid, response);
+    OutgoingPacket opk = new OutgoingPacket(rid, response, bufferPool);
     helper.sendPacket(opk);
     return true;
   }
@@ -31,6 +31,11 @@ public class HeronSocketOptions {
   private ByteAmount socketSendBufferSize;
   private ByteAmount socketReceivedBufferSize;
   private ByteAmount maximumPacketSize;
+  private ByteAmount bufferPoolSize;
+  private int networkWriteGatherPackets;
+  private ByteAmount networkReadBufferSize;
+  // Created on first use, see getSharedBufferPool()
+  private ByteBufferPool sharedBufferPool;
 
   public HeronSocketOptions(ByteAmount networkWriteBatchSize,
                             Duration networkWriteBatchTime,
@@ -39,6 +44,31 @@ public class HeronSocketOptions {
                             ByteAmount socketSendBufferSize,
                             ByteAmount socketReceivedBufferSize,
                             ByteAmount maximumPacketSize) {
+    this(networkWriteBatchSize, networkWriteBatchTime, networkReadBatchSize,
+        networkReadBatchTime, socketSendBufferSize, socketReceivedBufferSize,
+        maximumPacketSize, ByteAmount.ZERO, 1, ByteAmount.ZERO);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param bufferPoolSize the direct memory to pool packet buffers in, or zero to allocate
+   * them on the java heap
+   * @param networkWriteGatherPackets the maximum # of packets to write in one gathering write,
+   * or 1 to write packets one by one
+   * @param networkReadBufferSize the size of the buffer to read the socket into, which is then
+   * parsed into packets, or zero to read packets one by one
+   */
+  public HeronSocketOptions(ByteAmount networkWriteBatchSize,
+                            Duration networkWriteBatchTime,
+                            ByteAmount networkReadBatchSize,
+                            Duration networkReadBatchTime,
+                            ByteAmount socketSendBufferSize,
+                            ByteAmount socketReceivedBufferSize,
+                            ByteAmount maximumPacketSize,
+                            ByteAmount bufferPoolSize,
+                            int networkWriteGatherPackets,
+                            ByteAmount networkReadBufferSize) {
     this.networkWriteBatchSize = networkWriteBatchSize;
     this.networkWriteBatchTime = networkWriteBatchTime;
     this.networkReadBatchSize = networkReadBatchSize;
@@ -46,6 +76,9 @@ public class HeronSocketOptions {
     this.socketSendBufferSize = socketSendBufferSize;
     this.socketReceivedBufferSize = socketReceivedBufferSize;
     this.maximumPacketSize = maximumPacketSize;
+    this.bufferPoolSize = bufferPoolSize;
+    this.networkWriteGatherPackets = networkWriteGatherPackets;
+    this.networkReadBufferSize = networkReadBufferSize;
   }
 
   public ByteAmount getNetworkWriteBatchSize() {
@@ -75,4 +108,38 @@ public class HeronSocketOptions {
   public ByteAmount getMaximumPacketSize() {
     return maximumPacketSize;
   }
+
+  public ByteAmount getBufferPoolSize() {
+    return bufferPoolSize;
+  }
+
+  public int getNetworkWriteGatherPackets() {
+    return networkWriteGatherPackets;
+  }
+
+  public ByteAmount getNetworkReadBufferSize() {
+    return networkReadBufferSize;
+  }
+
+  /**
+   * Create the pool of packet buffers configured by these options
+   *
+   * @return the pool, or null if pooling is disabled
+   */
+  public ByteBufferPool createBufferPool() {
+    return bufferPoolSize.asBytes() > 0 ? new ByteBufferPool(bufferPoolSize.asBytes()) : null;
+  }
+
+  /**
+   * Get the pool of packet buffers shared by the connections that are made with these options
+   * without a pool of their own
+   *
+   * @return the pool, or null if pooling is disabled
+   */
+  public synchronized ByteBufferPool getSharedBufferPool() {
+    if (sharedBufferPool == null) {
+      sharedBufferPool = createBufferPool();
+    }
+    return sharedBufferPool;
+  }
 }
@@ -20,7 +20,7 @@ import java.nio.channels.SocketChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.Message;
 
 /**
@@ -28,23 +28,11 @@ import com.google.protobuf.Message;
  * <p>
  * TODO -- Sanjeev will add a detailed description of this application level protocol later
  * <p>
- * When allocating the ByteBuffer, we have two options:
- * 1. Normal java heap buffer by invoking ByteBuffer.allocate(...),
- * 2. Native heap buffer by invoking ByteBuffer.allocateDirect(...),
- * Though it would require extra memory copies in java heap buffer, after experiments trying to use
- * both of them, we choose to use normal java heap buffer, since:
- * 1. It is unsafe to use direct buffer:
- * -- Direct buffer would not trigger gc;
- * -- We could not control when to release the resources of direct buffer explicitly;
- * -- It is hard to guarantee direct buffer would not break limitation of native heap,
- * i.e. not throw OutOfMemoryError.
- * <p>
- * 2. Experiments are done by using direct buffer and the resources saving is negligible:
- * -- Direct buffer would save, in our scenarios, less than 1% of RAM;
- * -- Direct buffer could save 30%~50% cpu of Gateway thread.
- * However, the cpu used by Gateway thread is negligible,
- * less than 2% out of the whole usage in worst case.
- * -- The extra copy is within JVM boundary; it is pretty fast.
+ * The data buffer is either a plain java heap buffer, or, when a ByteBufferPool is given,
+ * a pooled direct buffer. Reading into a direct buffer saves the JDK's own copy through a
+ * temporary direct buffer, and recycling it avoids allocating a new buffer per packet.
+ * Since direct memory is not reclaimed by GC in time, a pooled packet must be released
+ * explicitly by calling release() once it is unpacked.
  */
 
 public class IncomingPacket {
@@ -52,10 +40,19 @@ public class IncomingPacket {
   private ByteBuffer header;
   private ByteBuffer data;
   private boolean headerRead;
+  // The pool to get the data buffer from, or null to allocate it on the java heap
+  private final ByteBufferPool bufferPool;
+  // The # of reads issued on the channel since the last call to drainChannelReads()
+  private int channelReads;
 
   public IncomingPacket() {
+    this(null);
+  }
+
+  public IncomingPacket(ByteBufferPool bufferPool) {
     header = ByteBuffer.allocate(4);
     headerRead = false;
+    this.bufferPool = bufferPool;
   }
 
   public int readFromChannel(SocketChannel channel) {
@@ -77,7 +74,7 @@ public class IncomingPacket {
         LOG.log(Level.SEVERE, "packet size " + size + " exceeds limit " + limit);
         return -1;
       }
-      data = ByteBuffer.allocate(size);
+      data = bufferPool == null ? ByteBuffer.allocate(size) : bufferPool.acquire(size);
     }
     int retval = readFromChannel(channel, data);
     if (retval == 0) {
@@ -86,9 +83,51 @@ public class IncomingPacket {
     return retval;
   }
 
+  /**
+   * Fill the packet from bytes already read from the socket.
+   * It consumes at most the bytes of this packet, so the rest of the source could be parsed
+   * into the next packets.
+   *
+   * @param src the buffer to read the bytes from
+   * @param limit the maximum packet size allowed
+   * @return 0 if the packet is complete, the # of bytes still missing if not, or -1 on error
+   */
+  public int readFromBuffer(ByteBuffer src, long limit) {
+    if (!headerRead) {
+      transfer(src, header);
+      if (header.hasRemaining()) {
+        return header.remaining();
+      }
+      headerRead = true;
+      header.flip();
+      int size = header.getInt();
+      if (size < 0 || size > limit) {
+        LOG.log(Level.SEVERE, "packet size " + size + " exceeds limit " + limit);
+        return -1;
+      }
+      data = bufferPool == null ? ByteBuffer.allocate(size) : bufferPool.acquire(size);
+    }
+    transfer(src, data);
+    if (data.hasRemaining()) {
+      return data.remaining();
+    }
+    data.flip();
+    return 0;
+  }
+
+  // Copy as many bytes as dst could hold, without going past the end of src
+  private static void transfer(ByteBuffer src, ByteBuffer dst) {
+    int length = Math.min(src.remaining(), dst.remaining());
+    int srcLimit = src.limit();
+    src.limit(src.position() + length);
+    dst.put(src);
+    src.limit(srcLimit);
+  }
+
   private int readFromChannel(SocketChannel channel, ByteBuffer buffer) {
     int remaining = buffer.remaining();
     int wrote = 0;
+    channelReads++;
     try {
       wrote = channel.read(buffer);
     } catch (IOException e) {
@@ -117,20 +156,39 @@ public class IncomingPacket {
     return new REQID(data);
   }
 
-  // TODO:- Multiple copies going on here.
+  // Parse the message straight from the data buffer. Aliasing is not enabled on the
+  // CodedInputStream, so the message never references the buffer after it is released.
   public void unpackMessage(Message.Builder builder) {
     int size = data.getInt();
-    byte[] bytes = new byte[size];
-    data.get(bytes);
+    ByteBuffer message = data.slice();
+    message.limit(size);
     try {
-      builder.mergeFrom(bytes);
-    } catch (InvalidProtocolBufferException e) {
+      builder.mergeFrom(CodedInputStream.newInstance(message));
+    } catch (IOException e) {
       LOG.log(Level.SEVERE, "InvalidProtocolBufferException: ", e);
     }
+    data.position(data.position() + size);
+  }
+
+  // Get and reset the # of reads issued on the channel
+  int drainChannelReads() {
+    int reads = channelReads;
+    channelReads = 0;
+    return reads;
+  }
+
+  /**
+   * Give the data buffer back to the pool. The packet must not be used afterwards.
+   */
+  public void release() {
+    if (bufferPool != null && data != null) {
+      bufferPool.release(data);
+    }
+    data = null;
   }
 
   // TODO -- the calculation is not accurate but work
   public int size() {
-    return data == null ? 0 : data.capacity();
+    return data == null ? 0 : data.limit();
   }
 }
@@ -20,6 +20,7 @@ import java.nio.channels.SocketChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.Message;
 
 /**
@@ -27,30 +28,22 @@ import com.google.protobuf.Message;
  * <p>
  * TODO -- Sanjeev will add a detailed description of this application level protocol later
  * <p>
- * When allocating the ByteBuffer, we have two options:
- * 1. Normal java heap buffer by invoking ByteBuffer.allocate(...),
- * 2. Native heap buffer by invoking ByteBuffer.allocateDirect(...),
- * Though it would require extra memory copies in java heap buffer, after experiments trying to use
- * both of them, we choose to use normal java heap buffer, since:
- * 1. It is unsafe to use direct buffer:
- * -- Direct buffer would not trigger gc;
- * -- We could not control when to release the resources of direct buffer explicitly;
- * -- It is hard to guarantee direct buffer would not break limitation of native heap,
- * i.e. not throw OutOfMemoryError.
- * <p>
- * 2. Experiments are done by using direct buffer and the resources saving is negligible:
- * -- Direct buffer would save, in our scenarios, less than 1% of RAM;
- * -- Direct buffer could save 30%~50% cpu of Gateway thread.
- * However, the cpu used by Gateway thread is negligible,
- * less than 2% out of the whole usage in worst case.
- * -- The extra copy is within JVM boundary; it is pretty fast.
+ * The buffer is either a plain java heap buffer, or, when a ByteBufferPool is given,
+ * a pooled direct buffer, which the socket could write from without an extra copy.
+ * A pooled packet must be released explicitly by calling release() once it is fully written.
  */
 
 public class OutgoingPacket {
   private static final Logger LOG = Logger.getLogger(OutgoingPacket.class.getName());
   private ByteBuffer buffer;
+  // The pool the buffer comes from, or null if it is allocated on the java heap
+  private final ByteBufferPool bufferPool;
 
   public OutgoingPacket(REQID reqid, Message message) {
+    this(reqid, message, null);
+  }
+
+  public OutgoingPacket(REQID reqid, Message message, ByteBufferPool bufferPool) {
     assert message.isInitialized();
     // First calculate the total size of the packet
     // including the header
@@ -59,7 +52,10 @@ public class OutgoingPacket {
     int dataSize = sizeRequiredToPackString(typename)
         + REQID.REQID_SIZE
         + sizeRequiredToPackMessage(message);
-    buffer = ByteBuffer.allocate(headerSize + dataSize);
+    this.bufferPool = bufferPool;
+    buffer = bufferPool == null
+        ? ByteBuffer.allocate(headerSize + dataSize)
+        : bufferPool.acquire(headerSize + dataSize);
 
     // First write out how much data is there as the header
     buffer.putInt(dataSize);
@@ -71,10 +67,16 @@ public class OutgoingPacket {
     // now the reqid
     reqid.pack(buffer);
 
-    // finally the proto
-    // Double copy but it is designed, see the comments on top
+    // finally the proto, serialized straight into the buffer
     buffer.putInt(message.getSerializedSize());
-    buffer.put(message.toByteArray());
+    try {
+      CodedOutputStream output = CodedOutputStream.newInstance(buffer);
+      message.writeTo(output);
+      output.flush();
+    } catch (IOException e) {
+      // The buffer is sized from getSerializedSize(), so it could not run out of space
+      throw new IllegalStateException("Failed to serialize message into packet", e);
+    }
 
     // Make the buffer ready for writing out
     buffer.flip();
@@ -101,7 +103,22 @@ public class OutgoingPacket {
     return remaining - wrote;
   }
 
+  // The buffer to write out, with its position at the first byte not yet written
+  ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Give the buffer back to the pool. The packet must not be used afterwards.
+   */
+  public void release() {
+    if (bufferPool != null && buffer != null) {
+      bufferPool.release(buffer);
+    }
+    buffer = null;
+  }
+
   public int size() {
-    return buffer.capacity();
+    return buffer.limit();
   }
 }
@@ -14,13 +14,17 @@
 
 package com.twitter.heron.common.network;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SocketChannel;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.twitter.heron.common.basics.ByteAmount;
@@ -51,6 +55,10 @@ import com.twitter.heron.common.basics.NIOLooper;
  * ChannelHelper channelHelper = new ChannelHelper(looper, selectHandler, socketChannel, options);
  * After this point, you could use read()/write() to access socket.
  * <p>
+ * Vectored I/O could be enabled through HeronSocketOptions: up to a number of queued packets are
+ * written with one gathering write, and the socket is read into one large buffer which is then
+ * parsed into as many packets as it holds, saving a syscall per packet header and body.
+ * <p>
  * Notice: The SocketChannelHelper would work only when the socketChannel is connected and opened.
  * Higher level logic needs to guarantee SocketChannelHelper's methods are invoked within proper
  * SocketChannel state.
@@ -79,16 +87,36 @@ public class SocketChannelHelper {
   private long totalBytesRead;
   private long totalBytesWritten;
   private ByteAmount maximumPacketSize;
+  // The pool of buffers for the packets, or null if they are allocated on the java heap
+  private final ByteBufferPool bufferPool;
+
+  // The buffers of the packets passed to one gathering write, or null to write packets one by one
+  private final ByteBuffer[] writeBuffers;
+  // The size of the buffer to read the socket into, or 0 to read packets one by one
+  private final int readBufferSize;
+  // The buffer to read the socket into, taken from the pool on the first read
+  private ByteBuffer readBuffer;
+  private long totalReadSyscalls;
+  private long totalWriteSyscalls;
 
   public SocketChannelHelper(NIOLooper looper,
                              ISelectHandler selectHandler,
                              SocketChannel socketChannel,
                              HeronSocketOptions options) {
+    this(looper, selectHandler, socketChannel, options, options.getSharedBufferPool());
+  }
+
+  public SocketChannelHelper(NIOLooper looper,
+                             ISelectHandler selectHandler,
+                             SocketChannel socketChannel,
+                             HeronSocketOptions options,
+                             ByteBufferPool bufferPool) {
     this.looper = looper;
     this.selectHandler = selectHandler;
     this.socketChannel = socketChannel;
     this.outgoingPacketsToWrite = new LinkedList<OutgoingPacket>();
-    this.incomingPacket = new IncomingPacket();
+    this.bufferPool = bufferPool;
+    this.incomingPacket = new IncomingPacket(bufferPool);
 
     this.writeBatchSize = options.getNetworkWriteBatchSize();
     this.writeBatchTime = options.getNetworkWriteBatchTime();
@@ -98,6 +126,10 @@ public class SocketChannelHelper {
 
     this.maximumPacketSize = options.getMaximumPacketSize();
 
+    int writeGatherPackets = options.getNetworkWriteGatherPackets();
+    this.writeBuffers = writeGatherPackets > 1 ? new ByteBuffer[writeGatherPackets] : null;
+    this.readBufferSize = (int) options.getNetworkReadBufferSize().asBytes();
+
     // We will register Read by default when the connection is established
     // However, we will register Write only when we have something to write since
     // in most cases the socket will be writable but we have nothing to write
@@ -105,7 +137,18 @@ public class SocketChannelHelper {
   }
 
   public void clear() {
+    for (OutgoingPacket outgoingPacket : outgoingPacketsToWrite) {
+      outgoingPacket.release();
+    }
     outgoingPacketsToWrite.clear();
+    // Drop the incompletely read packet too
+    incomingPacket.release();
+    incomingPacket = new IncomingPacket(bufferPool);
+    // The read buffer holds nothing between reads, so give it back to the pool
+    if (readBuffer != null && bufferPool != null) {
+      bufferPool.release(readBuffer);
+      readBuffer = null;
+    }
   }
 
   // Add this packet to the list of packets to be sent. The packet in itself can be sent
@@ -125,7 +168,12 @@ public class SocketChannelHelper {
 
   // Read bytes stream from socket and convert them into a list of IncomingPacket
   // It would return an empty list if something bad happens
+  // The caller should release() every packet once it is unpacked
   public List<IncomingPacket> read() {
+    if (readBufferSize > 0) {
+      return readVectored();
+    }
+
     // We record the start time to avoid spending too much time on readings
     long startOfCycle = System.nanoTime();
     long bytesRead = 0;
@@ -140,40 +188,118 @@ public class SocketChannelHelper {
     while ((System.nanoTime() - startOfCycle - readReadBatchTime.toNanos()) < 0
         && (bytesRead < readBatchSize.asBytes())) {
       int readState = incomingPacket.readFromChannel(socketChannel, maximumPacketSize.asBytes());
+      totalReadSyscalls += incomingPacket.drainChannelReads();
 
       if (readState > 0) {
         // Partial Read, just break, and read next time when the socket is readable
         break;
       } else if (readState < 0) {
-        LOG.severe("Something bad happened while reading from channel: "
-            + socketChannel.socket().getRemoteSocketAddress());
-        selectHandler.handleError(socketChannel);
-
-        // Clear the list of Incoming Packet to avoid bad state is used externally
-        ret.clear();
+        handleReadError(ret);
         break;
       } else {
         // readState == 0, we fully read a incomingPacket
         nPacketsRead++;
         bytesRead += incomingPacket.size();
         ret.add(incomingPacket);
-        incomingPacket = new IncomingPacket();
+        incomingPacket = new IncomingPacket(bufferPool);
+      }
+    }
+
+    totalPacketsRead += nPacketsRead;
+    totalBytesRead += bytesRead;
+
+    return ret;
+  }
+
+  // Read the socket into the read buffer, and parse the buffer into as many packets as it holds.
+  // A packet split across two reads is completed by the next read.
+  private List<IncomingPacket> readVectored() {
+    if (readBuffer == null) {
+      readBuffer = bufferPool != null
+          ? bufferPool.acquire(readBufferSize) : ByteBuffer.allocateDirect(readBufferSize);
+      // Use all of the buffer, a pooled one could be larger than asked for
+      readBuffer.clear();
+    }
+
+    long startOfCycle = System.nanoTime();
+    long bytesRead = 0;
+
+    long nPacketsRead = 0;
+    boolean failed = false;
+
+    List<IncomingPacket> ret = new ArrayList<IncomingPacket>();
+
+    while ((System.nanoTime() - startOfCycle - readReadBatchTime.toNanos()) < 0
+        && (bytesRead < readBatchSize.asBytes())) {
+      int wrote;
+      try {
+        wrote = socketChannel.read(readBuffer);
+      } catch (IOException e) {
+        LOG.log(Level.SEVERE, "Error in channel.read ", e);
+        wrote = -1;
+      }
+      totalReadSyscalls++;
+      if (wrote < 0) {
+        failed = true;
+        break;
+      }
+
+      readBuffer.flip();
+      while (readBuffer.hasRemaining()) {
+        int readState = incomingPacket.readFromBuffer(readBuffer, maximumPacketSize.asBytes());
+        if (readState < 0) {
+          failed = true;
+          break;
+        } else if (readState == 0) {
+          nPacketsRead++;
+          bytesRead += incomingPacket.size();
+          ret.add(incomingPacket);
+          incomingPacket = new IncomingPacket(bufferPool);
+        }
+      }
+      readBuffer.clear();
+
+      if (failed || wrote < readBuffer.capacity()) {
+        // The socket has been drained; read next time when the socket is readable
+        break;
       }
     }
 
     totalPacketsRead += nPacketsRead;
     totalBytesRead += bytesRead;
 
+    if (failed) {
+      // It clears this helper, so do it once done with the read buffer
+      handleReadError(ret);
+    }
     return ret;
   }
 
+  private void handleReadError(List<IncomingPacket> ret) {
+    LOG.severe("Something bad happened while reading from channel: "
+        + socketChannel.socket().getRemoteSocketAddress());
+    selectHandler.handleError(socketChannel);
+
+    // Clear the list of Incoming Packet to avoid bad state is used externally
+    for (IncomingPacket packet : ret) {
+      packet.release();
+    }
+    ret.clear();
+  }
+
   // Write the outgoingPackets in buffer to socket
   public void write() {
+    if (writeBuffers != null) {
+      writeVectored();
+      return;
+    }
+
     // We record the start time to avoid spending too much time on writings
     long startOfCycle = System.nanoTime();
     long bytesWritten = 0;
 
     long nPacketsWritten = 0;
+    boolean failed = false;
 
     while ((System.nanoTime() - startOfCycle - writeBatchTime.toNanos()) < 0
         && (bytesWritten < writeBatchSize.asBytes())) {
@@ -183,39 +309,124 @@ public class SocketChannelHelper {
       }
 
       int writeState = outgoingPacket.writeToChannel(socketChannel);
+      totalWriteSyscalls++;
       if (writeState > 0) {
         // Partial writing, we would break since we could not write more data on socket.
         // But we have set the next start point of OutgoingPacket
         // Next time when the socket is writable, it will start from that point.
         break;
       } else if (writeState < 0) {
-        LOG.severe("Something bad happened while writing to channel");
-        selectHandler.handleError(socketChannel);
-        return;
+        failed = true;
+        break;
       } else {
         // writeState == 0, we fully write a outgoingPacket
         bytesWritten += outgoingPacket.size();
         nPacketsWritten++;
 
         outgoingPacketsToWrite.remove();
+        outgoingPacket.release();
       }
     }
 
     totalPacketsWritten += nPacketsWritten;
     totalBytesWritten += bytesWritten;
 
+    if (failed) {
+      handleWriteError();
+      return;
+    }
+
     // Disable writing if there are nothing to send in buffer
     if (getOutstandingPackets() == 0) {
       disableWriting();
     }
   }
 
+  // Write the queued packets with gathering writes, each of them taking up to
+  // writeBuffers.length packets at once
+  private void writeVectored() {
+    long startOfCycle = System.nanoTime();
+    long bytesWritten = 0;
+
+    long nPacketsWritten = 0;
+    boolean failed = false;
+
+    while ((System.nanoTime() - startOfCycle - writeBatchTime.toNanos()) < 0
+        && (bytesWritten < writeBatchSize.asBytes())
+        && !outgoingPacketsToWrite.isEmpty()) {
+      int nBuffers = 0;
+      for (OutgoingPacket outgoingPacket : outgoingPacketsToWrite) {
+        if (nBuffers == writeBuffers.length) {
+          break;
+        }
+        writeBuffers[nBuffers++] = outgoingPacket.getBuffer();
+      }
+
+      try {
+        socketChannel.write(writeBuffers, 0, nBuffers);
+      } catch (IOException e) {
+        LOG.log(Level.SEVERE, "Error writing to channel ", e);
+        failed = true;
+      }
+      totalWriteSyscalls++;
+      // Do not hold on to the buffers, they could be released below
+      Arrays.fill(writeBuffers, 0, nBuffers, null);
+
+      if (failed) {
+        break;
+      }
+
+      // Remove the packets that were fully written
+      int nFullyWritten = 0;
+      while (nFullyWritten < nBuffers
+          && !outgoingPacketsToWrite.peek().getBuffer().hasRemaining()) {
+        OutgoingPacket outgoingPacket = outgoingPacketsToWrite.remove();
+        bytesWritten += outgoingPacket.size();
+        nFullyWritten++;
+        outgoingPacket.release();
+      }
+      nPacketsWritten += nFullyWritten;
+
+      if (nFullyWritten < nBuffers) {
+        // Partial writing, since we could not write more data on socket.
+        // The next start point of the packet has been set, so we continue from
+        // there next time the socket is writable.
+        break;
+      }
+    }
+
+    totalPacketsWritten += nPacketsWritten;
+    totalBytesWritten += bytesWritten;
+
+    if (failed) {
+      handleWriteError();
+      return;
+    }
+
+    // Disable writing if there are nothing to send in buffer
+    if (getOutstandingPackets() == 0) {
+      disableWriting();
+    }
+  }
+
+  private void handleWriteError() {
+    LOG.severe("Something bad happened while writing to channel");
+    selectHandler.handleError(socketChannel);
+  }
+
   // Force to flush all data in underneath buffer queue to socket with best effort
   // It is most likely happen when we are handling some unexpected cases, such as exiting
   public void forceFlushWithBestEffort() {
     LOG.info("Forcing to flush data to socket with best effort.");
     while (!outgoingPacketsToWrite.isEmpty()) {
-      int writeState = outgoingPacketsToWrite.poll().writeToChannel(socketChannel);
+      OutgoingPacket outgoingPacket = outgoingPacketsToWrite.poll();
+      int writeState = outgoingPacket.writeToChannel(socketChannel);
+      totalWriteSyscalls++;
+      if (writeState == 0) {
+        totalPacketsWritten++;
+        totalBytesWritten += outgoingPacket.size();
+      }
+      outgoingPacket.release();
       if (writeState != 0) {
         LOG.info("Failed to write more to Socket. Clear and finish the flush.");
         clear();
@@ -256,6 +467,10 @@ public class SocketChannelHelper {
     }
   }
 
+  public ByteBufferPool getBufferPool() {
+    return bufferPool;
+  }
+
   public int getOutstandingPackets() {
     return outgoingPacketsToWrite.size();
   }
@@ -279,4 +494,12 @@ public class SocketChannelHelper {
   public long getTotalBytesWritten() {
     return totalBytesWritten;
   }
+
+  public long getTotalReadSyscalls() {
+    return totalReadSyscalls;
+  }
+
+  public long getTotalWriteSyscalls() {
+    return totalWriteSyscalls;
+  }
 }
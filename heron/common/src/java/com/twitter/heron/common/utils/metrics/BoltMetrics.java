@@ -15,13 +15,15 @@
 package com.twitter.heron.common.utils.metrics;
 
 import com.twitter.heron.api.metric.CountMetric;
+import com.twitter.heron.api.metric.HistogramMetric;
+import com.twitter.heron.api.metric.IMetricsRegister;
 import com.twitter.heron.api.metric.MeanReducer;
 import com.twitter.heron.api.metric.MeanReducerState;
+import com.twitter.heron.api.metric.MultiCountMetric;
 import com.twitter.heron.api.metric.ReducedMetric;
 import com.twitter.heron.common.basics.SingletonRegistry;
 import com.twitter.heron.common.config.SystemConfig;
 import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
-import com.twitter.heron.common.utils.topology.TopologyContextImpl;
 
 /**
  * Bolt's metrics to be collect
@@ -34,11 +36,11 @@ import com.twitter.heron.common.utils.topology.TopologyContextImpl;
 
 public class BoltMetrics implements ComponentMetrics {
   private final CountMetric ackCount;
-  private final ReducedMetric<MeanReducerState, Number, Double> processLatency;
+  private final HistogramMetric processLatency;
   private final ReducedMetric<MeanReducerState, Number, Double> failLatency;
   private final CountMetric failCount;
   private final CountMetric executeCount;
-  private final ReducedMetric<MeanReducerState, Number, Double> executeLatency;
+  private final HistogramMetric executeLatency;
 
   // Time in nano-seconds spending in execute() at every interval
   private final CountMetric emitCount;
@@ -47,32 +49,53 @@ public class BoltMetrics implements ComponentMetrics {
   // so instance could not produce more tuples
   private final CountMetric outQueueFullCount;
 
+  // The # of data tuples in every HeronDataTupleSet sent out
+  private final HistogramMetric dataTupleSetSize;
+
+  // The # of HeronDataTupleSet sent out, by the reason they were sent out
+  private final MultiCountMetric dataTupleSetFlushCount;
+
+  // The mean # of data tuples the adaptive batching allows in a HeronDataTupleSet
+  private final ReducedMetric<MeanReducerState, Number, Double> dataTupleSetCapacity;
+
+  // The mean # of acks or fails coalesced into every AckTuple sent out, per root
+  private final ReducedMetric<MeanReducerState, Number, Double> ackCompressionRatio;
+
 
   public BoltMetrics() {
     ackCount = new CountMetric();
-    processLatency = new ReducedMetric<>(new MeanReducer());
+    processLatency = new HistogramMetric();
     failLatency = new ReducedMetric<>(new MeanReducer());
     failCount = new CountMetric();
     executeCount = new CountMetric();
-    executeLatency = new ReducedMetric<>(new MeanReducer());
+    executeLatency = new HistogramMetric();
     emitCount = new CountMetric();
     outQueueFullCount = new CountMetric();
+    dataTupleSetSize = new HistogramMetric();
+    dataTupleSetFlushCount = new MultiCountMetric();
+    dataTupleSetCapacity = new ReducedMetric<>(new MeanReducer());
+    ackCompressionRatio = new ReducedMetric<>(new MeanReducer());
   }
 
-  public void registerMetrics(TopologyContextImpl topologyContext) {
+  public void registerMetrics(IMetricsRegister metricsRegister) {
     SystemConfig systemConfig =
         (SystemConfig) SingletonRegistry.INSTANCE.getSingleton(SystemConfig.HERON_SYSTEM_CONFIG);
 
     int interval = (int) systemConfig.getHeronMetricsExportInterval().getSeconds();
 
-    topologyContext.registerMetric("__ack-count/default", ackCount, interval);
-    topologyContext.registerMetric("__process-latency/default", processLatency, interval);
-    topologyContext.registerMetric("__fail-latency/default", failLatency, interval);
-    topologyContext.registerMetric("__fail-count/default", failCount, interval);
-    topologyContext.registerMetric("__execute-count/default", executeCount, interval);
-    topologyContext.registerMetric("__execute-latency/default", executeLatency, interval);
-    topologyContext.registerMetric("__emit-count/default", emitCount, interval);
-    topologyContext.registerMetric("__out-queue-full-count", outQueueFullCount, interval);
+    metricsRegister.registerMetric("__ack-count/default", ackCount, interval);
+    metricsRegister.registerMetric("__process-latency/default", processLatency, interval);
+    metricsRegister.registerMetric("__fail-latency/default", failLatency, interval);
+    metricsRegister.registerMetric("__fail-count/default", failCount, interval);
+    metricsRegister.registerMetric("__execute-count/default", executeCount, interval);
+    metricsRegister.registerMetric("__execute-latency/default", executeLatency, interval);
+    metricsRegister.registerMetric("__emit-count/default", emitCount, interval);
+    metricsRegister.registerMetric("__out-queue-full-count", outQueueFullCount, interval);
+    metricsRegister.registerMetric("__data-tuple-set-size", dataTupleSetSize, interval);
+    metricsRegister.registerMetric(
+        "__data-tuple-set-flush-count", dataTupleSetFlushCount, interval);
+    metricsRegister.registerMetric("__data-tuple-set-capacity", dataTupleSetCapacity, interval);
+    metricsRegister.registerMetric("__ack-compression-ratio", ackCompressionRatio, interval);
   }
 
   // For MultiCountMetrics, we need to set the default value for all streams.
@@ -108,6 +131,19 @@ public class BoltMetrics implements ComponentMetrics {
     outQueueFullCount.incr();
   }
 
+  public void flushedDataTupleSet(String reason, int tupleCount) {
+    dataTupleSetSize.update(tupleCount);
+    dataTupleSetFlushCount.scope(reason).incr();
+  }
+
+  public void updateDataTupleSetCapacity(int capacity) {
+    dataTupleSetCapacity.update(capacity);
+  }
+
+  public void sentAckTuple(int coalescedCount) {
+    ackCompressionRatio.update(coalescedCount);
+  }
+
   public void deserializeDataTuple(String streamId, String sourceComponent, long latency) {
   }
 
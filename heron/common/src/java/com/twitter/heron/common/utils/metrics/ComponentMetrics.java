@@ -25,4 +25,6 @@ public interface ComponentMetrics {
 
   void serializeDataTuple(String streamId, long latency);
   void emittedTuple(String streamId);
+  void flushedDataTupleSet(String reason, int tupleCount);
+  void updateDataTupleSetCapacity(int capacity);
 }
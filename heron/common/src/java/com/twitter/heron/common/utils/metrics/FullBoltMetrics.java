@@ -18,14 +18,16 @@ import java.util.List;
 
 import com.twitter.heron.api.generated.TopologyAPI;
 import com.twitter.heron.api.metric.CountMetric;
+import com.twitter.heron.api.metric.HistogramMetric;
+import com.twitter.heron.api.metric.IMetricsRegister;
 import com.twitter.heron.api.metric.MeanReducer;
 import com.twitter.heron.api.metric.MeanReducerState;
 import com.twitter.heron.api.metric.MultiCountMetric;
 import com.twitter.heron.api.metric.MultiReducedMetric;
+import com.twitter.heron.api.metric.ReducedMetric;
 import com.twitter.heron.common.basics.SingletonRegistry;
 import com.twitter.heron.common.config.SystemConfig;
 import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
-import com.twitter.heron.common.utils.topology.TopologyContextImpl;
 
 /**
  * Bolt's metrics to be collect
@@ -37,149 +39,160 @@ import com.twitter.heron.common.utils.topology.TopologyContextImpl;
  */
 
 public class FullBoltMetrics extends BoltMetrics {
-  private final MultiCountMetric ackCount;
-  private final MultiReducedMetric<MeanReducerState, Number, Double> processLatency;
+  // Slots of the input streams, and of the output streams of this component
+  private final StreamSlots inputSlots;
+  private final StreamSlots outputSlots;
+  private String myComponent;
+
+  private final StreamCountMetric ackCount;
+  private final StreamHistogramMetric processLatency;
   private final MultiReducedMetric<MeanReducerState, Number, Double> failLatency;
-  private final MultiCountMetric failCount;
-  private final MultiCountMetric executeCount;
-  private final MultiReducedMetric<MeanReducerState, Number, Double> executeLatency;
+  private final StreamCountMetric failCount;
+  private final StreamCountMetric executeCount;
+  private final StreamHistogramMetric executeLatency;
 
   // Time in nano-seconds spending in execute() at every interval
-  private final MultiCountMetric executeTimeNs;
-  private final MultiCountMetric emitCount;
-  private final MultiCountMetric deserializationTimeNs;
-  private final MultiCountMetric serializationTimeNs;
+  private final StreamCountMetric executeTimeNs;
+  private final StreamCountMetric emitCount;
+  private final StreamCountMetric deserializationTimeNs;
+  private final StreamCountMetric serializationTimeNs;
 
   // The # of times back-pressure happens on outStreamQueue
   // so instance could not produce more tuples
   private final CountMetric outQueueFullCount;
 
+  // The # of data tuples in every HeronDataTupleSet sent out
+  private final HistogramMetric dataTupleSetSize;
+
+  // The # of HeronDataTupleSet sent out, by the reason they were sent out
+  private final MultiCountMetric dataTupleSetFlushCount;
+
+  // The mean # of data tuples the adaptive batching allows in a HeronDataTupleSet
+  private final ReducedMetric<MeanReducerState, Number, Double> dataTupleSetCapacity;
+
+  // The mean # of acks or fails coalesced into every AckTuple sent out, per root
+  private final ReducedMetric<MeanReducerState, Number, Double> ackCompressionRatio;
+
 
   public FullBoltMetrics() {
-    ackCount = new MultiCountMetric();
-    processLatency = new MultiReducedMetric<>(new MeanReducer());
+    inputSlots = new StreamSlots();
+    outputSlots = new StreamSlots();
+    myComponent = "";
+
+    ackCount = new StreamCountMetric(inputSlots, true);
+    processLatency = new StreamHistogramMetric(inputSlots, true);
     failLatency = new MultiReducedMetric<>(new MeanReducer());
-    failCount = new MultiCountMetric();
-    executeCount = new MultiCountMetric();
-    executeLatency = new MultiReducedMetric<>(new MeanReducer());
-    executeTimeNs = new MultiCountMetric();
-    emitCount = new MultiCountMetric();
+    failCount = new StreamCountMetric(inputSlots, true);
+    executeCount = new StreamCountMetric(inputSlots, true);
+    executeLatency = new StreamHistogramMetric(inputSlots, true);
+    executeTimeNs = new StreamCountMetric(inputSlots, true);
+    emitCount = new StreamCountMetric(outputSlots, false);
     outQueueFullCount = new CountMetric();
+    dataTupleSetSize = new HistogramMetric();
+    dataTupleSetFlushCount = new MultiCountMetric();
+    dataTupleSetCapacity = new ReducedMetric<>(new MeanReducer());
+    ackCompressionRatio = new ReducedMetric<>(new MeanReducer());
 
-    deserializationTimeNs = new MultiCountMetric();
-    serializationTimeNs = new MultiCountMetric();
+    deserializationTimeNs = new StreamCountMetric(inputSlots, true);
+    serializationTimeNs = new StreamCountMetric(outputSlots, false);
   }
 
-  public void registerMetrics(TopologyContextImpl topologyContext) {
+  public void registerMetrics(IMetricsRegister metricsRegister) {
     SystemConfig systemConfig =
         (SystemConfig) SingletonRegistry.INSTANCE.getSingleton(SystemConfig.HERON_SYSTEM_CONFIG);
 
     int interval = (int) systemConfig.getHeronMetricsExportInterval().getSeconds();
 
-    topologyContext.registerMetric("__ack-count", ackCount, interval);
-    topologyContext.registerMetric("__process-latency", processLatency, interval);
-    topologyContext.registerMetric("__fail-latency", failLatency, interval);
-    topologyContext.registerMetric("__fail-count", failCount, interval);
-    topologyContext.registerMetric("__execute-count", executeCount, interval);
-    topologyContext.registerMetric("__execute-latency", executeLatency, interval);
-    topologyContext.registerMetric("__execute-time-ns", executeTimeNs, interval);
-    topologyContext.registerMetric("__emit-count", emitCount, interval);
-    topologyContext.registerMetric("__out-queue-full-count", outQueueFullCount, interval);
-    topologyContext.registerMetric(
+    metricsRegister.registerMetric("__ack-count", ackCount, interval);
+    metricsRegister.registerMetric("__process-latency", processLatency, interval);
+    metricsRegister.registerMetric("__fail-latency", failLatency, interval);
+    metricsRegister.registerMetric("__fail-count", failCount, interval);
+    metricsRegister.registerMetric("__execute-count", executeCount, interval);
+    metricsRegister.registerMetric("__execute-latency", executeLatency, interval);
+    metricsRegister.registerMetric("__execute-time-ns", executeTimeNs, interval);
+    metricsRegister.registerMetric("__emit-count", emitCount, interval);
+    metricsRegister.registerMetric("__out-queue-full-count", outQueueFullCount, interval);
+    metricsRegister.registerMetric("__data-tuple-set-size", dataTupleSetSize, interval);
+    metricsRegister.registerMetric(
+        "__data-tuple-set-flush-count", dataTupleSetFlushCount, interval);
+    metricsRegister.registerMetric("__data-tuple-set-capacity", dataTupleSetCapacity, interval);
+    metricsRegister.registerMetric("__ack-compression-ratio", ackCompressionRatio, interval);
+    metricsRegister.registerMetric(
         "__tuple-deserialization-time-ns", deserializationTimeNs, interval);
-    topologyContext.registerMetric("__tuple-serialization-time-ns", serializationTimeNs, interval);
+    metricsRegister.registerMetric("__tuple-serialization-time-ns", serializationTimeNs, interval);
   }
 
-  // For MultiCountMetrics, we need to set the default value for all streams.
-  // Otherwise, it is possible one metric for a particular stream is null.
+  // Resolve the input and output streams to slots, so the per-stream metrics are updated
+  // without building scope strings nor looking up maps. It also sets the default value of the
+  // per-stream counts. Otherwise, it is possible one metric for a particular stream is null.
   // For instance, the fail-count on a particular stream could be undefined
   // causing metrics not be exported.
-  // However, it will not set the Multi Reduced/Assignable Metrics,
-  // since we could not have default values for them
   public void initMultiCountMetrics(PhysicalPlanHelper helper) {
     // For bolt, we would consider both input stream and output stream
     List<TopologyAPI.InputStream> inputs = helper.getMyBolt().getInputsList();
     for (TopologyAPI.InputStream inputStream : inputs) {
-      String streamId = inputStream.getStream().getId();
-      String globalStreamId =
-          new StringBuilder(inputStream.getStream().getComponentName()).
-              append("/").append(streamId).toString();
-
-      ackCount.scope(streamId);
-      failCount.scope(streamId);
-      executeCount.scope(streamId);
-      executeTimeNs.scope(streamId);
-
-      ackCount.scope(globalStreamId);
-      failCount.scope(globalStreamId);
-      executeCount.scope(globalStreamId);
-      executeTimeNs.scope(globalStreamId);
+      inputSlots.register(
+          inputStream.getStream().getComponentName(), inputStream.getStream().getId());
     }
+    myComponent = helper.getMyComponent();
     List<TopologyAPI.OutputStream> outputs = helper.getMyBolt().getOutputsList();
     for (TopologyAPI.OutputStream outputStream : outputs) {
-      String streamId = outputStream.getStream().getId();
-      emitCount.scope(streamId);
+      outputSlots.register(myComponent, outputStream.getStream().getId());
     }
   }
 
   public void ackedTuple(String streamId, String sourceComponent, long latency) {
-    ackCount.scope(streamId).incr();
-    processLatency.scope(streamId).update(latency);
-
     // Consider there are cases that different streams with the same streamId,
-    // but with different source component. We need to distinguish them too.
-    String globalStreamId =
-        new StringBuilder(sourceComponent).append("/").append(streamId).toString();
-    ackCount.scope(globalStreamId).incr();
-    processLatency.scope(globalStreamId).update(latency);
+    // but with different source component. The slot distinguishes them too.
+    int slot = inputSlots.slotOf(sourceComponent, streamId);
+    ackCount.incr(slot, sourceComponent, streamId);
+    processLatency.update(slot, sourceComponent, streamId, latency);
   }
 
   public void failedTuple(String streamId, String sourceComponent, long latency) {
-    failCount.scope(streamId).incr();
-    failLatency.scope(streamId).update(latency);
+    int slot = inputSlots.slotOf(sourceComponent, streamId);
+    failCount.incr(slot, sourceComponent, streamId);
 
-    // Consider there are cases that different streams with the same streamId,
-    // but with different source component. We need to distinguish them too.
-    String globalStreamId =
-        new StringBuilder(sourceComponent).append("/").append(streamId).toString();
-    failCount.scope(globalStreamId).incr();
-    failLatency.scope(globalStreamId).update(latency);
+    failLatency.scope(streamId).update(latency);
+    failLatency.scope(StreamSlots.globalStreamId(sourceComponent, streamId)).update(latency);
   }
 
   public void executeTuple(String streamId, String sourceComponent, long latency) {
-    executeCount.scope(streamId).incr();
-    executeLatency.scope(streamId).update(latency);
-    executeTimeNs.scope(streamId).incrBy(latency);
-
-    // Consider there are cases that different streams with the same streamId,
-    // but with different source component. We need to distinguish them too.
-    String globalStreamId =
-        new StringBuilder(sourceComponent).append("/").append(streamId).toString();
-    executeCount.scope(globalStreamId).incr();
-    executeLatency.scope(globalStreamId).update(latency);
-    executeTimeNs.scope(globalStreamId).incrBy(latency);
+    int slot = inputSlots.slotOf(sourceComponent, streamId);
+    executeCount.incr(slot, sourceComponent, streamId);
+    executeLatency.update(slot, sourceComponent, streamId, latency);
+    executeTimeNs.incrBy(slot, sourceComponent, streamId, latency);
   }
 
   public void emittedTuple(String streamId) {
-    emitCount.scope(streamId).incr();
+    emitCount.incr(outputSlots.slotOf(myComponent, streamId), myComponent, streamId);
   }
 
   public void updateOutQueueFullCount() {
     outQueueFullCount.incr();
   }
 
-  public void deserializeDataTuple(String streamId, String sourceComponent, long latency) {
-    deserializationTimeNs.scope(streamId).incrBy(latency);
+  public void flushedDataTupleSet(String reason, int tupleCount) {
+    dataTupleSetSize.update(tupleCount);
+    dataTupleSetFlushCount.scope(reason).incr();
+  }
 
-    // Consider there are cases that different streams with the same streamId,
-    // but with different source component. We need to distinguish them too.
-    String globalStreamId =
-        new StringBuilder(sourceComponent).append("/").append(streamId).toString();
-    deserializationTimeNs.scope(globalStreamId).incrBy(latency);
+  public void updateDataTupleSetCapacity(int capacity) {
+    dataTupleSetCapacity.update(capacity);
+  }
+
+  public void sentAckTuple(int coalescedCount) {
+    ackCompressionRatio.update(coalescedCount);
+  }
+
+  public void deserializeDataTuple(String streamId, String sourceComponent, long latency) {
+    deserializationTimeNs.incrBy(
+        inputSlots.slotOf(sourceComponent, streamId), sourceComponent, streamId, latency);
   }
 
   public void serializeDataTuple(String streamId, long latency) {
-    serializationTimeNs.scope(streamId).incrBy(latency);
+    serializationTimeNs.incrBy(
+        outputSlots.slotOf(myComponent, streamId), myComponent, streamId, latency);
   }
 }
 
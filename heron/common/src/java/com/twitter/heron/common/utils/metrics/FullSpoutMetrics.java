@@ -18,9 +18,11 @@ import java.util.List;
 
 import com.twitter.heron.api.generated.TopologyAPI;
 import com.twitter.heron.api.metric.CountMetric;
+import com.twitter.heron.api.metric.HistogramMetric;
 import com.twitter.heron.api.metric.MeanReducer;
 import com.twitter.heron.api.metric.MeanReducerState;
 import com.twitter.heron.api.metric.MultiCountMetric;
+import com.twitter.heron.api.metric.MultiHistogramMetric;
 import com.twitter.heron.api.metric.MultiReducedMetric;
 import com.twitter.heron.api.metric.ReducedMetric;
 import com.twitter.heron.common.basics.SingletonRegistry;
@@ -40,7 +42,7 @@ import com.twitter.heron.common.utils.topology.TopologyContextImpl;
 
 public class FullSpoutMetrics extends SpoutMetrics {
   private final MultiCountMetric ackCount;
-  private final MultiReducedMetric<MeanReducerState, Number, Double> completeLatency;
+  private final MultiHistogramMetric completeLatency;
   private final MultiReducedMetric<MeanReducerState, Number, Double> failLatency;
   private final MultiCountMetric failCount;
   private final MultiCountMetric timeoutCount;
@@ -53,12 +55,21 @@ public class FullSpoutMetrics extends SpoutMetrics {
   // produce more tuples
   private final CountMetric outQueueFullCount;
 
+  // The # of data tuples in every HeronDataTupleSet sent out
+  private final HistogramMetric dataTupleSetSize;
+
+  // The # of HeronDataTupleSet sent out, by the reason they were sent out
+  private final MultiCountMetric dataTupleSetFlushCount;
+
+  // The mean # of data tuples the adaptive batching allows in a HeronDataTupleSet
+  private final ReducedMetric<MeanReducerState, Number, Double> dataTupleSetCapacity;
+
   // The mean # of pending-to-be-acked tuples in spout if acking is enabled
   private final ReducedMetric<MeanReducerState, Number, Double> pendingTuplesCount;
 
   public FullSpoutMetrics() {
     ackCount = new MultiCountMetric();
-    completeLatency = new MultiReducedMetric<>(new MeanReducer());
+    completeLatency = new MultiHistogramMetric();
     failLatency = new MultiReducedMetric<>(new MeanReducer());
     failCount = new MultiCountMetric();
     timeoutCount = new MultiCountMetric();
@@ -66,6 +77,9 @@ public class FullSpoutMetrics extends SpoutMetrics {
     nextTupleLatency = new ReducedMetric<>(new MeanReducer());
     nextTupleCount = new CountMetric();
     outQueueFullCount = new CountMetric();
+    dataTupleSetSize = new HistogramMetric();
+    dataTupleSetFlushCount = new MultiCountMetric();
+    dataTupleSetCapacity = new ReducedMetric<>(new MeanReducer());
     pendingTuplesCount = new ReducedMetric<>(new MeanReducer());
     serializationTimeNs = new MultiCountMetric();
   }
@@ -85,6 +99,10 @@ public class FullSpoutMetrics extends SpoutMetrics {
     topologyContext.registerMetric("__next-tuple-latency", nextTupleLatency, interval);
     topologyContext.registerMetric("__next-tuple-count", nextTupleCount, interval);
     topologyContext.registerMetric("__out-queue-full-count", outQueueFullCount, interval);
+    topologyContext.registerMetric("__data-tuple-set-size", dataTupleSetSize, interval);
+    topologyContext.registerMetric(
+        "__data-tuple-set-flush-count", dataTupleSetFlushCount, interval);
+    topologyContext.registerMetric("__data-tuple-set-capacity", dataTupleSetCapacity, interval);
     topologyContext.registerMetric("__pending-acked-count", pendingTuplesCount, interval);
     topologyContext.registerMetric("__tuple-serialization-time-ns", serializationTimeNs, interval);
   }
@@ -134,6 +152,15 @@ public class FullSpoutMetrics extends SpoutMetrics {
     outQueueFullCount.incr();
   }
 
+  public void flushedDataTupleSet(String reason, int tupleCount) {
+    dataTupleSetSize.update(tupleCount);
+    dataTupleSetFlushCount.scope(reason).incr();
+  }
+
+  public void updateDataTupleSetCapacity(int capacity) {
+    dataTupleSetCapacity.update(capacity);
+  }
+
   public void updatePendingTuplesCount(long count) {
     pendingTuplesCount.update(count);
   }
@@ -23,10 +23,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
+import com.twitter.heron.api.metric.Histogram;
 import com.twitter.heron.api.metric.IMetric;
 import com.twitter.heron.api.metric.IMetricsRegister;
 import com.twitter.heron.common.basics.Communicator;
+import com.twitter.heron.common.basics.SingletonRegistry;
 import com.twitter.heron.common.basics.WakeableLooper;
+import com.twitter.heron.common.config.SystemConfig;
 import com.twitter.heron.proto.system.Metrics;
 
 /**
@@ -37,11 +40,18 @@ import com.twitter.heron.proto.system.Metrics;
 public class MetricsCollector implements IMetricsRegister {
   private static final Logger LOG = Logger.getLogger(MetricsCollector.class.getName());
 
+  // The percentiles exported for histogram metrics, and the suffixes of their names
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+  private static final String[] PERCENTILE_SUFFIXES = {"-p50", "-p90", "-p99", "-p999"};
+  private static final String MAX_SUFFIX = "-max";
+  private static final String BUCKET_SUFFIX = "-bucket-";
+
   private Map<String, IMetric<?>> metrics;
   private Map<Integer, List<String>> timeBucketToMetricNames;
   private WakeableLooper runnableToGatherMetrics;
 
   private Communicator<Metrics.MetricPublisherPublishMessage> queue;
+  private boolean exportHistogramBuckets;
 
   public MetricsCollector(WakeableLooper runnableToGatherMetrics,
                           Communicator<Metrics.MetricPublisherPublishMessage> queue) {
@@ -49,6 +59,10 @@ public class MetricsCollector implements IMetricsRegister {
     timeBucketToMetricNames = new HashMap<>();
     this.queue = queue;
     this.runnableToGatherMetrics = runnableToGatherMetrics;
+    SystemConfig systemConfig =
+        (SystemConfig) SingletonRegistry.INSTANCE.getSingleton(SystemConfig.HERON_SYSTEM_CONFIG);
+    exportHistogramBuckets =
+        systemConfig != null && systemConfig.getHeronMetricsHistogramBucketsExport();
   }
 
   @Override
@@ -118,6 +132,8 @@ public class MetricsCollector implements IMetricsRegister {
       builder.addMetrics((Metrics.MetricDatum.Builder) metricValue);
     } else if (metricValue instanceof Metrics.ExceptionData.Builder) {
       builder.addExceptions((Metrics.ExceptionData.Builder) metricValue);
+    } else if (metricValue instanceof Histogram) {
+      addHistogramToMetricPublisher(builder, metricName, (Histogram) metricValue);
     } else {
       assert metricName != null;
       Metrics.MetricDatum.Builder d = Metrics.MetricDatum.newBuilder();
@@ -126,6 +142,51 @@ public class MetricsCollector implements IMetricsRegister {
     }
   }
 
+  // The mean keeps the name of the metric, so existing consumers still get the same value.
+  // The percentiles and the max are exported as separate metrics, with the suffix appended to
+  // the first part of the name, e.g., __execute-latency-p99/default for __execute-latency/default.
+  // The percentiles only hold for this instance and this interval: averaging them, as the
+  // metrics cache and the tmaster do for __*-latency metrics, does not give a percentile.
+  // With heron.metrics.histogram.buckets.export, the count of every non-empty bucket is exported
+  // too, named after the lowest value of the bucket, e.g., __execute-latency-bucket-1024/default.
+  // Every histogram has the same buckets, so summing these counts across instances and intervals
+  // merges the histograms exactly, and the percentiles of the merged histogram can be computed
+  // from them. It is off by default, since a histogram can have hundreds of non-empty buckets,
+  // and every sink gets each of them as a metric.
+  private void addHistogramToMetricPublisher(Metrics.MetricPublisherPublishMessage.Builder builder,
+                                             String metricName,
+                                             Histogram histogram) {
+    builder.addMetrics(Metrics.MetricDatum.newBuilder()
+        .setName(metricName).setValue(String.valueOf(histogram.getMean())));
+    for (int i = 0; i < PERCENTILES.length; i++) {
+      builder.addMetrics(Metrics.MetricDatum.newBuilder()
+          .setName(suffixedName(metricName, PERCENTILE_SUFFIXES[i]))
+          .setValue(String.valueOf(histogram.getValueAtPercentile(PERCENTILES[i]))));
+    }
+    builder.addMetrics(Metrics.MetricDatum.newBuilder()
+        .setName(suffixedName(metricName, MAX_SUFFIX))
+        .setValue(String.valueOf(histogram.getMax())));
+    if (!exportHistogramBuckets || histogram.getCount() == 0) {
+      return;
+    }
+    for (int i = 0; i < Histogram.getBucketCount(); i++) {
+      long count = histogram.getCountAtBucket(i);
+      if (count > 0) {
+        builder.addMetrics(Metrics.MetricDatum.newBuilder()
+            .setName(suffixedName(metricName, BUCKET_SUFFIX + Histogram.getBucketLowerBound(i)))
+            .setValue(String.valueOf(count)));
+      }
+    }
+  }
+
+  private static String suffixedName(String metricName, String suffix) {
+    int index = metricName.indexOf('/');
+    if (index < 0) {
+      return metricName + suffix;
+    }
+    return metricName.substring(0, index) + suffix + metricName.substring(index);
+  }
+
   @SuppressWarnings("unchecked")
   private void gatherMetrics(final int timeBucketSizeInSecs) {
     // Gather the metrics in Map<String, IMetric> metrics
@@ -15,8 +15,10 @@
 package com.twitter.heron.common.utils.metrics;
 
 import com.twitter.heron.api.metric.CountMetric;
+import com.twitter.heron.api.metric.HistogramMetric;
 import com.twitter.heron.api.metric.MeanReducer;
 import com.twitter.heron.api.metric.MeanReducerState;
+import com.twitter.heron.api.metric.MultiCountMetric;
 import com.twitter.heron.api.metric.ReducedMetric;
 import com.twitter.heron.common.basics.SingletonRegistry;
 import com.twitter.heron.common.config.SystemConfig;
@@ -35,7 +37,7 @@ import com.twitter.heron.common.utils.topology.TopologyContextImpl;
 
 public class SpoutMetrics implements ComponentMetrics {
   private final CountMetric ackCount;
-  private final ReducedMetric<MeanReducerState, Number, Double> completeLatency;
+  private final HistogramMetric completeLatency;
   private final ReducedMetric<MeanReducerState, Number, Double> failLatency;
   private final CountMetric failCount;
   private final CountMetric timeoutCount;
@@ -47,12 +49,21 @@ public class SpoutMetrics implements ComponentMetrics {
   // produce more tuples
   private final CountMetric outQueueFullCount;
 
+  // The # of data tuples in every HeronDataTupleSet sent out
+  private final HistogramMetric dataTupleSetSize;
+
+  // The # of HeronDataTupleSet sent out, by the reason they were sent out
+  private final MultiCountMetric dataTupleSetFlushCount;
+
+  // The mean # of data tuples the adaptive batching allows in a HeronDataTupleSet
+  private final ReducedMetric<MeanReducerState, Number, Double> dataTupleSetCapacity;
+
   // The mean # of pending-to-be-acked tuples in spout if acking is enabled
   private final ReducedMetric<MeanReducerState, Number, Double> pendingTuplesCount;
 
   public SpoutMetrics() {
     ackCount = new CountMetric();
-    completeLatency = new ReducedMetric<>(new MeanReducer());
+    completeLatency = new HistogramMetric();
     failLatency = new ReducedMetric<>(new MeanReducer());
     failCount = new CountMetric();
     timeoutCount = new CountMetric();
@@ -60,6 +71,9 @@ public class SpoutMetrics implements ComponentMetrics {
     nextTupleLatency = new ReducedMetric<>(new MeanReducer());
     nextTupleCount = new CountMetric();
     outQueueFullCount = new CountMetric();
+    dataTupleSetSize = new HistogramMetric();
+    dataTupleSetFlushCount = new MultiCountMetric();
+    dataTupleSetCapacity = new ReducedMetric<>(new MeanReducer());
     pendingTuplesCount = new ReducedMetric<>(new MeanReducer());
   }
 
@@ -78,6 +92,10 @@ public class SpoutMetrics implements ComponentMetrics {
     topologyContext.registerMetric("__next-tuple-latency", nextTupleLatency, interval);
     topologyContext.registerMetric("__next-tuple-count", nextTupleCount, interval);
     topologyContext.registerMetric("__out-queue-full-count", outQueueFullCount, interval);
+    topologyContext.registerMetric("__data-tuple-set-size", dataTupleSetSize, interval);
+    topologyContext.registerMetric(
+        "__data-tuple-set-flush-count", dataTupleSetFlushCount, interval);
+    topologyContext.registerMetric("__data-tuple-set-capacity", dataTupleSetCapacity, interval);
     topologyContext.registerMetric("__pending-acked-count", pendingTuplesCount, interval);
   }
 
@@ -118,6 +136,15 @@ public class SpoutMetrics implements ComponentMetrics {
     outQueueFullCount.incr();
   }
 
+  public void flushedDataTupleSet(String reason, int tupleCount) {
+    dataTupleSetSize.update(tupleCount);
+    dataTupleSetFlushCount.scope(reason).incr();
+  }
+
+  public void updateDataTupleSetCapacity(int capacity) {
+    dataTupleSetCapacity.update(capacity);
+  }
+
   public void updatePendingTuplesCount(long count) {
     pendingTuplesCount.update(count);
   }
@@ -0,0 +1,88 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.common.utils.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import com.twitter.heron.api.metric.IMetric;
+import com.twitter.heron.api.metric.MultiCountMetric;
+
+/**
+ * A count metric by stream id, and optionally by component and stream id, which is exported
+ * as a MultiCountMetric with these scopes would be.
+ * <p>
+ * The counts of the streams registered in the StreamSlots are kept in arrays, and exported
+ * even when they are 0. Other streams are counted through a MultiCountMetric.
+ */
+public class StreamCountMetric implements IMetric<Map<String, Long>> {
+  private final StreamSlots slots;
+  private final boolean byComponent;
+  private final MultiCountMetric unknownStreams = new MultiCountMetric();
+
+  private long[] slotCounts = new long[0];
+  private long[] streamCounts = new long[0];
+
+  /**
+   * @param slots the slots of the streams
+   * @param byComponent whether to also count by component and stream id
+   */
+  public StreamCountMetric(StreamSlots slots, boolean byComponent) {
+    this.slots = slots;
+    this.byComponent = byComponent;
+  }
+
+  public void incr(int slot, String component, String streamId) {
+    incrBy(slot, component, streamId, 1);
+  }
+
+  /**
+   * @param slot the slot of the stream, from StreamSlots.slotOf()
+   * @param component the component the stream comes from, used only if the slot is UNKNOWN
+   * @param streamId the stream id, used only if the slot is UNKNOWN
+   */
+  public void incrBy(int slot, String component, String streamId, long incrementBy) {
+    if (slot == StreamSlots.UNKNOWN) {
+      unknownStreams.scope(streamId).incrBy(incrementBy);
+      if (byComponent) {
+        unknownStreams.scope(StreamSlots.globalStreamId(component, streamId)).incrBy(incrementBy);
+      }
+      return;
+    }
+
+    if (slot >= slotCounts.length) {
+      slotCounts = Arrays.copyOf(slotCounts, slots.size());
+      streamCounts = Arrays.copyOf(streamCounts, slots.getStreamCount());
+    }
+    slotCounts[slot] += incrementBy;
+    streamCounts[slots.getStreamIndex(slot)] += incrementBy;
+  }
+
+  @Override
+  public Map<String, Long> getValueAndReset() {
+    Map<String, Long> ret = unknownStreams.getValueAndReset();
+    for (int i = 0; i < slots.getStreamCount(); i++) {
+      ret.put(slots.getStreamId(i), i < streamCounts.length ? streamCounts[i] : 0L);
+    }
+    if (byComponent) {
+      for (int slot = 0; slot < slots.size(); slot++) {
+        ret.put(slots.getGlobalStreamId(slot), slot < slotCounts.length ? slotCounts[slot] : 0L);
+      }
+    }
+    Arrays.fill(slotCounts, 0);
+    Arrays.fill(streamCounts, 0);
+    return ret;
+  }
+}
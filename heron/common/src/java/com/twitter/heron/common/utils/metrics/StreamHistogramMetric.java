@@ -0,0 +1,98 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.common.utils.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import com.twitter.heron.api.metric.Histogram;
+import com.twitter.heron.api.metric.HistogramMetric;
+import com.twitter.heron.api.metric.IMetric;
+import com.twitter.heron.api.metric.MultiHistogramMetric;
+
+/**
+ * A histogram metric by stream id, and optionally by component and stream id, which is
+ * exported as a MultiHistogramMetric with these scopes would be.
+ * <p>
+ * The histograms of the streams registered in the StreamSlots are kept in arrays. Other
+ * streams are recorded through a MultiHistogramMetric.
+ */
+public class StreamHistogramMetric implements IMetric<Map<String, Histogram>> {
+  private final StreamSlots slots;
+  private final boolean byComponent;
+  private final MultiHistogramMetric unknownStreams = new MultiHistogramMetric();
+
+  private HistogramMetric[] slotHistograms = new HistogramMetric[0];
+  private HistogramMetric[] streamHistograms = new HistogramMetric[0];
+
+  /**
+   * @param slots the slots of the streams
+   * @param byComponent whether to also record by component and stream id
+   */
+  public StreamHistogramMetric(StreamSlots slots, boolean byComponent) {
+    this.slots = slots;
+    this.byComponent = byComponent;
+  }
+
+  /**
+   * @param slot the slot of the stream, from StreamSlots.slotOf()
+   * @param component the component the stream comes from, used only if the slot is UNKNOWN
+   * @param streamId the stream id, used only if the slot is UNKNOWN
+   */
+  public void update(int slot, String component, String streamId, long value) {
+    if (slot == StreamSlots.UNKNOWN) {
+      unknownStreams.scope(streamId).update(value);
+      if (byComponent) {
+        unknownStreams.scope(StreamSlots.globalStreamId(component, streamId)).update(value);
+      }
+      return;
+    }
+
+    if (slot >= slotHistograms.length) {
+      slotHistograms = grow(slotHistograms, slots.size());
+      streamHistograms = grow(streamHistograms, slots.getStreamCount());
+    }
+    if (byComponent) {
+      slotHistograms[slot].update(value);
+    }
+    streamHistograms[slots.getStreamIndex(slot)].update(value);
+  }
+
+  @Override
+  public Map<String, Histogram> getValueAndReset() {
+    Map<String, Histogram> ret = unknownStreams.getValueAndReset();
+    for (int i = 0; i < streamHistograms.length; i++) {
+      Histogram histogram = streamHistograms[i].getValueAndReset();
+      if (histogram != null) {
+        ret.put(slots.getStreamId(i), histogram);
+      }
+    }
+    for (int slot = 0; slot < slotHistograms.length; slot++) {
+      Histogram histogram = slotHistograms[slot].getValueAndReset();
+      if (histogram != null) {
+        ret.put(slots.getGlobalStreamId(slot), histogram);
+      }
+    }
+    return ret;
+  }
+
+  private static HistogramMetric[] grow(HistogramMetric[] histograms, int size) {
+    HistogramMetric[] ret = Arrays.copyOf(histograms, size);
+    for (int i = histograms.length; i < size; i++) {
+      ret[i] = new HistogramMetric();
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,129 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.common.utils.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Integer slots for the streams of a component, so per-stream metrics can be kept in arrays
+ * instead of maps keyed by strings.
+ * <p>
+ * A slot stands for a stream id from a given component. Slots are registered up front, from
+ * the physical plan, and looked up for every tuple. Streams with the same id from different
+ * components get different slots, but share a stream index, since metrics are exported both
+ * by stream id and by component and stream id.
+ * <p>
+ * The last pair looked up is remembered by reference. All the tuples of a tuple set share the
+ * same stream id and component strings, so most lookups are two reference comparisons.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class StreamSlots {
+  public static final int UNKNOWN = -1;
+
+  // Slot by stream id, by component
+  private final Map<String, Map<String, Integer>> slots = new HashMap<>();
+  private final Map<String, Integer> streamIndices = new HashMap<>();
+  // By stream index
+  private final List<String> streamIds = new ArrayList<>();
+  // By slot
+  private final List<String> globalStreamIds = new ArrayList<>();
+  private int[] streamIndexOfSlot = new int[8];
+
+  private String lastComponent;
+  private String lastStreamId;
+  private int lastSlot = UNKNOWN;
+
+  /**
+   * Register a stream, if it is not registered yet
+   *
+   * @return the slot of the stream
+   */
+  public int register(String component, String streamId) {
+    Map<String, Integer> componentSlots = slots.get(component);
+    if (componentSlots == null) {
+      componentSlots = new HashMap<>();
+      slots.put(component, componentSlots);
+    }
+    Integer slot = componentSlots.get(streamId);
+    if (slot != null) {
+      return slot;
+    }
+
+    Integer streamIndex = streamIndices.get(streamId);
+    if (streamIndex == null) {
+      streamIndex = streamIds.size();
+      streamIndices.put(streamId, streamIndex);
+      streamIds.add(streamId);
+    }
+
+    int newSlot = globalStreamIds.size();
+    if (newSlot == streamIndexOfSlot.length) {
+      streamIndexOfSlot = Arrays.copyOf(streamIndexOfSlot, newSlot * 2);
+    }
+    streamIndexOfSlot[newSlot] = streamIndex;
+    globalStreamIds.add(globalStreamId(component, streamId));
+    componentSlots.put(streamId, newSlot);
+    // The pair might have been looked up as UNKNOWN
+    lastComponent = null;
+    lastStreamId = null;
+    return newSlot;
+  }
+
+  /**
+   * @return the slot of the stream, or UNKNOWN if it is not registered
+   */
+  public int slotOf(String component, String streamId) {
+    if (component == lastComponent && streamId == lastStreamId) {
+      return lastSlot;
+    }
+
+    Map<String, Integer> componentSlots = slots.get(component);
+    Integer slot = componentSlots == null ? null : componentSlots.get(streamId);
+    lastComponent = component;
+    lastStreamId = streamId;
+    lastSlot = slot == null ? UNKNOWN : slot;
+    return lastSlot;
+  }
+
+  public int size() {
+    return globalStreamIds.size();
+  }
+
+  public int getStreamCount() {
+    return streamIds.size();
+  }
+
+  public int getStreamIndex(int slot) {
+    return streamIndexOfSlot[slot];
+  }
+
+  public String getStreamId(int streamIndex) {
+    return streamIds.get(streamIndex);
+  }
+
+  // The component and stream id of the slot, as "component/streamId"
+  public String getGlobalStreamId(int slot) {
+    return globalStreamIds.get(slot);
+  }
+
+  public static String globalStreamId(String component, String streamId) {
+    return new StringBuilder(component).append("/").append(streamId).toString();
+  }
+}
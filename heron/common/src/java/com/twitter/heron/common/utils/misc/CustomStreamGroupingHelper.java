@@ -20,6 +20,8 @@ import java.util.List;
 import java.util.Map;
 
 import com.twitter.heron.api.grouping.CustomStreamGrouping;
+import com.twitter.heron.api.grouping.KeyGroupRangeTable;
+import com.twitter.heron.api.grouping.KeyGroupStreamGrouping;
 import com.twitter.heron.api.topology.TopologyContext;
 
 class CustomStreamGroupingHelper {
@@ -33,17 +35,19 @@ class CustomStreamGroupingHelper {
   public void add(String streamId,
                   List<Integer> taskIds,
                   CustomStreamGrouping grouping,
-                  String sourceComponentName) {
+                  String sourceComponentName,
+                  String targetComponentName) {
     if (!targets.containsKey(streamId)) {
       targets.put(streamId, new ArrayList<Target>());
     }
-    targets.get(streamId).add(new Target(taskIds, grouping, sourceComponentName));
+    targets.get(streamId).add(
+        new Target(taskIds, grouping, sourceComponentName, targetComponentName));
   }
 
-  void prepare(TopologyContext context) {
+  void prepare(TopologyContext context, PhysicalPlanHelper helper) {
     for (String streamId : targets.keySet()) {
       for (Target target : targets.get(streamId)) {
-        target.prepare(context, streamId);
+        target.prepare(context, streamId, helper);
       }
     }
   }
@@ -69,11 +73,17 @@ class CustomStreamGroupingHelper {
     private final String componentName;
     private final List<Integer> taskIds;
     private final CustomStreamGrouping grouping;
+    private final String targetComponentName;
+    // Set for key group groupings, which are routed with the range table of the target
+    private KeyGroupStreamGrouping keyGroupGrouping;
+    private KeyGroupRangeTable keyGroupRanges;
 
-    Target(List<Integer> taskIds, CustomStreamGrouping grouping, String componentName) {
+    Target(List<Integer> taskIds, CustomStreamGrouping grouping, String componentName,
+           String targetComponentName) {
       this.taskIds = taskIds;
       this.grouping = grouping;
       this.componentName = componentName;
+      this.targetComponentName = targetComponentName;
     }
 
     public String getComponentName() {
@@ -88,11 +98,19 @@ class CustomStreamGroupingHelper {
       return grouping;
     }
 
-    public void prepare(TopologyContext context, String streamId) {
+    public void prepare(TopologyContext context, String streamId, PhysicalPlanHelper helper) {
       grouping.prepare(context, componentName, streamId, taskIds);
+      if (grouping instanceof KeyGroupStreamGrouping) {
+        keyGroupGrouping = (KeyGroupStreamGrouping) grouping;
+        keyGroupRanges = helper.getKeyGroupRangeTable(
+            targetComponentName, keyGroupGrouping.getNumKeyGroups());
+      }
     }
 
     private List<Integer> chooseTasks(List<Object> values) {
+      if (keyGroupRanges != null) {
+        return keyGroupRanges.getTargets(keyGroupGrouping.getKeyGroup(values));
+      }
       return grouping.chooseTasks(values);
     }
   }
@@ -21,11 +21,13 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.twitter.heron.api.Config;
 import com.twitter.heron.api.generated.TopologyAPI;
 import com.twitter.heron.api.grouping.CustomStreamGrouping;
+import com.twitter.heron.api.grouping.KeyGroupRangeTable;
 import com.twitter.heron.api.utils.Utils;
 import com.twitter.heron.common.utils.metrics.MetricsCollector;
 import com.twitter.heron.common.utils.topology.TopologyContextImpl;
@@ -48,6 +50,8 @@ public class PhysicalPlanHelper {
   // Map from streamid to number of fields in that stream's schema
   private final Map<String, Integer> outputSchema;
   private final CustomStreamGroupingHelper customGrouper;
+  // Map from component to the table of the key group ranges of its tasks
+  private final Map<String, KeyGroupRangeTable> keyGroupRanges;
   private PhysicalPlans.Instance myInstance;
   private TopologyAPI.Spout mySpout;
   private TopologyAPI.Bolt myBolt;
@@ -118,6 +122,7 @@ public class PhysicalPlanHelper {
 
     // Do some setup for any custom grouping
     customGrouper = new CustomStreamGroupingHelper();
+    keyGroupRanges = new HashMap<>();
 
     // Do we have any bolt that consumes any of my streams using custom grouping
     for (int i = 0; i < topo.getBoltsCount(); ++i) {
@@ -129,9 +134,10 @@ public class PhysicalPlanHelper {
           CustomStreamGrouping customStreamGrouping =
               (CustomStreamGrouping) Utils.deserialize(
                   inputStream.getCustomGroupingObject().toByteArray());
+          String targetComponent = topo.getBolts(i).getComp().getName();
           customGrouper.add(inputStream.getStream().getId(),
-              getTaskIdsAsListForComponent(topo.getBolts(i).getComp().getName()),
-              customStreamGrouping, myComponent);
+              getTaskIdsAsListForComponent(targetComponent),
+              customStreamGrouping, myComponent, targetComponent);
         }
       }
     }
@@ -243,8 +249,29 @@ public class PhysicalPlanHelper {
     return retval;
   }
 
+  /**
+   * Get the table assigning the key groups of a component to its tasks, in contiguous ranges
+   * following the order of the task ids. It also tells the tasks of the component the key
+   * groups, and so the keyed state, they own. A warning is logged when the component has more
+   * tasks than key groups, as the tasks past the last key group never receive any key.
+   */
+  public KeyGroupRangeTable getKeyGroupRangeTable(String comp, int numKeyGroups) {
+    KeyGroupRangeTable table = keyGroupRanges.get(comp);
+    if (table == null || table.getNumKeyGroups() != numKeyGroups) {
+      table = new KeyGroupRangeTable(numKeyGroups, getTaskIdsAsListForComponent(comp));
+      keyGroupRanges.put(comp, table);
+      if (table.getTaskIds().size() > numKeyGroups) {
+        LOG.log(Level.WARNING, String.format("Component %s has %d tasks but only %d key groups, "
+                + "%d of its tasks will receive no keys; raise %s to at least its parallelism",
+            comp, table.getTaskIds().size(), numKeyGroups,
+            table.getTaskIds().size() - numKeyGroups, Config.TOPOLOGY_KEY_GROUPS));
+      }
+    }
+    return table;
+  }
+
   public void prepareForCustomStreamGrouping() {
-    customGrouper.prepare(topologyContext);
+    customGrouper.prepare(topologyContext, this);
   }
 
   public List<Integer> chooseTasksForCustomStreamGrouping(String streamId, List<Object> values) {
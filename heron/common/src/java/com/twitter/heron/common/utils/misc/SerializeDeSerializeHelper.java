@@ -21,6 +21,7 @@ import java.util.logging.Logger;
 import com.twitter.heron.api.Config;
 import com.twitter.heron.api.serializer.IPluggableSerializer;
 import com.twitter.heron.api.serializer.JavaSerializer;
+import com.twitter.heron.api.serializer.TypedValueSerializer;
 
 /**
  * Get the serializer according to the serializerClassName
@@ -56,4 +57,17 @@ public final class SerializeDeSerializeHelper {
       throw new RuntimeException("Serializer class constructor must be public " + ex);
     }
   }
+
+  /**
+   * Get the serializer of tuple values: the topology serializer, wrapped in a
+   * TypedValueSerializer if the topology has typed tuple values
+   */
+  public static IPluggableSerializer getTupleSerializer(Map<String, Object> config) {
+    IPluggableSerializer serializer = getSerializer(config);
+    Object typedValues = config.get(Config.TOPOLOGY_TYPED_TUPLE_VALUES);
+    if (typedValues != null && Boolean.parseBoolean(typedValues.toString())) {
+      return new TypedValueSerializer(serializer);
+    }
+    return serializer;
+  }
 }
@@ -0,0 +1,134 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.common.utils.tuple;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.google.protobuf.ByteString;
+
+import com.twitter.heron.api.serializer.IPluggableSerializer;
+
+/**
+ * The values of an incoming tuple, kept as the serialized ByteStrings they arrived in.
+ * A value is only deserialized the first time it is read, so a bolt that reads one field
+ * or just forwards the tuple never pays for the others.
+ * <p>
+ * The serialized form of a value stays available as long as it is known to be unchanged,
+ * which lets the output collector forward it as-is instead of serializing it again.
+ * <p>
+ * Deserialization uses the serializer of the instance, which is not thread-safe, so values
+ * must be read from the thread executing the bolt.
+ */
+public class LazyValueList extends AbstractList<Object> implements RandomAccess, Serializable {
+  private static final long serialVersionUID = 3914287563212618209L;
+
+  private static final byte SERIALIZED = 0;
+  private static final byte DESERIALIZED = 1;
+  private static final byte MODIFIED = 2;
+
+  private final List<ByteString> serializedValues;
+  private final transient IPluggableSerializer serializer;
+  private final Object[] values;
+  private final byte[] states;
+
+  public LazyValueList(List<ByteString> serializedValues, int size,
+                       IPluggableSerializer serializer) {
+    this.serializedValues = serializedValues;
+    this.serializer = serializer;
+    this.values = new Object[size];
+    this.states = new byte[size];
+  }
+
+  @Override
+  public Object get(int index) {
+    if (states[index] == SERIALIZED) {
+      values[index] = serializer.deserialize(serializedValues.get(index).toByteArray());
+      states[index] = DESERIALIZED;
+    }
+    return values[index];
+  }
+
+  @Override
+  public Object set(int index, Object element) {
+    Object previous = get(index);
+    values[index] = element;
+    states[index] = MODIFIED;
+    return previous;
+  }
+
+  @Override
+  public int size() {
+    return values.length;
+  }
+
+  /**
+   * Get the serialized form of a value, if it is still known to match the value.
+   *
+   * @param index the index of the value
+   * @return the serialized value, or null if it has to be serialized again
+   */
+  public ByteString getSerializedValue(int index) {
+    switch (states[index]) {
+      case SERIALIZED:
+        return serializedValues.get(index);
+      case DESERIALIZED:
+        return isImmutable(values[index]) ? serializedValues.get(index) : null;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Get the serialized form of a value previously read from this list.
+   * The value is matched by identity, so it is only found if it was handed out by get().
+   *
+   * @param value the value to look up
+   * @return the serialized value, or null if it has to be serialized again
+   */
+  public ByteString getSerializedValue(Object value) {
+    if (!isImmutable(value)) {
+      // The value could have been changed since it was deserialized
+      return null;
+    }
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == value && states[i] == DESERIALIZED) {
+        return serializedValues.get(i);
+      }
+    }
+    return null;
+  }
+
+  // Only values of these types are guaranteed to still match their serialized form
+  private static boolean isImmutable(Object value) {
+    return value instanceof String
+        || value instanceof Long
+        || value instanceof Integer
+        || value instanceof Short
+        || value instanceof Byte
+        || value instanceof Double
+        || value instanceof Float
+        || value instanceof Boolean
+        || value instanceof Character;
+  }
+
+  // The serializer could not be shipped with the list, so replace it by a plain list
+  private Object writeReplace() {
+    return new ArrayList<>(this);
+  }
+}
@@ -14,6 +14,9 @@
 
 package com.twitter.heron.common.basics;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -137,5 +140,121 @@ public class CommunicatorTest {
   public void testGetCapacity() {
     Assert.assertEquals(QUEUE_BUFFER_SIZE, communicator.getCapacity());
   }
-}
 
+  /**
+   * Method: offer(E e) with a ring buffer that overflows
+   */
+  @Test
+  public void testRingBufferOverflowKeepsOrder() {
+    communicator = new Communicator<Integer>(producer, consumer,
+        Communicator.BufferType.RING_BUFFER);
+    communicator.init(QUEUE_BUFFER_SIZE, QUEUE_BUFFER_SIZE, 0.5);
+
+    for (int i = 0; i < QUEUE_BUFFER_SIZE * 2; i++) {
+      communicator.offer(i);
+    }
+    Assert.assertEquals(QUEUE_BUFFER_SIZE * 2, communicator.size());
+
+    // Free a few slots in the ring buffer while items are still in the overflow buffer
+    for (int i = 0; i < QUEUE_BUFFER_SIZE / 2; i++) {
+      Assert.assertEquals(i, communicator.poll().intValue());
+    }
+    for (int i = QUEUE_BUFFER_SIZE * 2; i < QUEUE_BUFFER_SIZE * 3; i++) {
+      communicator.offer(i);
+    }
+
+    for (int i = QUEUE_BUFFER_SIZE / 2; i < QUEUE_BUFFER_SIZE * 3; i++) {
+      Assert.assertEquals(i, communicator.peek().intValue());
+      Assert.assertEquals(i, communicator.poll().intValue());
+    }
+    Assert.assertNull(communicator.poll());
+    Assert.assertTrue(communicator.isEmpty());
+  }
+
+  /**
+   * Method: clear(), called by the producer while the ring buffer and the overflow buffer hold
+   * items
+   */
+  @Test
+  public void testClearFromProducer() {
+    for (Communicator.BufferType bufferType : Communicator.BufferType.values()) {
+      communicator = new Communicator<Integer>(producer, consumer, bufferType);
+      communicator.init(QUEUE_BUFFER_SIZE, QUEUE_BUFFER_SIZE, 0.5);
+
+      for (int i = 0; i < QUEUE_BUFFER_SIZE * 2; i++) {
+        communicator.offer(i);
+      }
+      communicator.clear();
+      Assert.assertEquals(0, communicator.size());
+      Assert.assertTrue(communicator.isEmpty());
+
+      // Only the items offered after the clear are received, in order, even though the
+      // consumer has not dropped the cleared ones from the ring buffer yet
+      for (int i = 0; i < QUEUE_BUFFER_SIZE * 2; i++) {
+        communicator.offer(-i);
+      }
+      Assert.assertEquals(QUEUE_BUFFER_SIZE * 2, communicator.size());
+      Assert.assertEquals(0, communicator.peek().intValue());
+      for (int i = 0; i < QUEUE_BUFFER_SIZE * 2; i++) {
+        Assert.assertEquals(-i, communicator.poll().intValue());
+      }
+      Assert.assertNull(communicator.poll());
+      Assert.assertTrue(communicator.isEmpty());
+    }
+  }
+
+  /**
+   * Method: offerAll(Collection c) and drainTo(Collection c, int maxElements)
+   */
+  @Test
+  public void testOfferAllAndDrainTo() {
+    for (Communicator.BufferType bufferType : Communicator.BufferType.values()) {
+      communicator = new Communicator<Integer>(producer, consumer, bufferType);
+      communicator.init(QUEUE_BUFFER_SIZE, QUEUE_BUFFER_SIZE, 0.5);
+
+      List<Integer> items = new ArrayList<>();
+      for (int i = 0; i < QUEUE_BUFFER_SIZE + QUEUE_BUFFER_SIZE / 2; i++) {
+        items.add(i);
+      }
+      Assert.assertEquals(items.size(), communicator.offerAll(items));
+      Assert.assertEquals(items.size(), communicator.size());
+
+      List<Integer> drained = new ArrayList<>();
+      Assert.assertEquals(10, communicator.drainTo(drained, 10));
+      Assert.assertEquals(items.size() - 10, communicator.drainTo(drained));
+      Assert.assertEquals(items, drained);
+      Assert.assertTrue(communicator.isEmpty());
+    }
+  }
+
+  /**
+   * Items are received in order when offered and polled from two threads
+   */
+  @Test
+  public void testRingBufferConcurrentOrder() throws InterruptedException {
+    final int total = 1024 * 1024;
+    final Communicator<Integer> ring = new Communicator<Integer>(null, null,
+        Communicator.BufferType.RING_BUFFER);
+    ring.init(QUEUE_BUFFER_SIZE, QUEUE_BUFFER_SIZE, 0.5);
+
+    Thread producerThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < total; i++) {
+          ring.offer(i);
+        }
+      }
+    });
+    producerThread.start();
+
+    int expected = 0;
+    while (expected < total) {
+      Integer item = ring.poll();
+      if (item != null) {
+        Assert.assertEquals(expected++, item.intValue());
+      }
+    }
+    producerThread.join();
+    Assert.assertTrue(ring.isEmpty());
+  }
+}
@@ -26,6 +26,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.twitter.heron.common.basics.ByteAmount;
+import com.twitter.heron.common.basics.Communicator;
 
 public class SystemConfigTest {
 
@@ -50,4 +51,24 @@ public class SystemConfigTest {
     Assert.assertEquals(5, systemConfig.getHeronLoggingMaximumFiles());
     Assert.assertEquals(Duration.ofSeconds(60), systemConfig.getHeronMetricsExportInterval());
   }
+
+  @Test
+  public void testInstanceInternalQueueType() {
+    SystemConfig systemConfig = SystemConfig.newBuilder(true)
+        .put(SystemConfigKey.INSTANCE_INTERNAL_QUEUE_TYPE, "ring_buffer")
+        .build();
+    Assert.assertEquals(Communicator.BufferType.RING_BUFFER,
+        systemConfig.getInstanceInternalQueueType());
+
+    systemConfig = SystemConfig.newBuilder(true)
+        .put(SystemConfigKey.INSTANCE_INTERNAL_QUEUE_TYPE, "ring")
+        .build();
+    try {
+      systemConfig.getInstanceInternalQueueType();
+      Assert.fail("Expected an invalid queue type to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("heron.instance.internal.queue.type"));
+      Assert.assertTrue(e.getMessage().contains("[linked, ring_buffer]"));
+    }
+  }
 }
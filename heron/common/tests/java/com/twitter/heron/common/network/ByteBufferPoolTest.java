@@ -0,0 +1,86 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.common.network;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * ByteBufferPool Tester.
+ */
+public class ByteBufferPoolTest {
+  private static final long POOL_CAPACITY = 4 * ByteBufferPool.MAX_BUFFER_SIZE;
+
+  @Test
+  public void testSizeClass() {
+    Assert.assertEquals(0, ByteBufferPool.sizeClassOf(1));
+    Assert.assertEquals(0, ByteBufferPool.sizeClassOf(ByteBufferPool.MIN_BUFFER_SIZE));
+    Assert.assertEquals(1, ByteBufferPool.sizeClassOf(ByteBufferPool.MIN_BUFFER_SIZE + 1));
+    Assert.assertEquals(2, ByteBufferPool.sizeClassOf(3 * ByteBufferPool.MIN_BUFFER_SIZE));
+    Assert.assertEquals(2, ByteBufferPool.sizeClassOf(4 * ByteBufferPool.MIN_BUFFER_SIZE));
+  }
+
+  @Test
+  public void testReleasedBufferIsReused() {
+    ByteBufferPool pool = new ByteBufferPool(POOL_CAPACITY);
+
+    ByteBuffer buffer = pool.acquire(600);
+    Assert.assertTrue(buffer.isDirect());
+    Assert.assertEquals(600, buffer.limit());
+    Assert.assertEquals(2 * ByteBufferPool.MIN_BUFFER_SIZE, buffer.capacity());
+    buffer.putInt(1);
+    pool.release(buffer);
+
+    // Same size class, so the released buffer is handed out again, cleared
+    ByteBuffer reused = pool.acquire(1000);
+    Assert.assertSame(buffer, reused);
+    Assert.assertEquals(0, reused.position());
+    Assert.assertEquals(1000, reused.limit());
+
+    Assert.assertEquals(1, pool.getHitCount());
+    Assert.assertEquals(1, pool.getMissCount());
+    Assert.assertEquals(2 * ByteBufferPool.MIN_BUFFER_SIZE, pool.getOffHeapBytes());
+  }
+
+  @Test
+  public void testOffHeapSizeIsBounded() {
+    ByteBufferPool pool = new ByteBufferPool(POOL_CAPACITY);
+
+    for (int i = 0; i < 4; i++) {
+      Assert.assertTrue(pool.acquire(ByteBufferPool.MAX_BUFFER_SIZE).isDirect());
+    }
+    // The pool is used up, so fall back to the java heap
+    ByteBuffer heapBuffer = pool.acquire(ByteBufferPool.MAX_BUFFER_SIZE);
+    Assert.assertFalse(heapBuffer.isDirect());
+    Assert.assertEquals(POOL_CAPACITY, pool.getOffHeapBytes());
+
+    // Heap buffers are not pooled
+    pool.release(heapBuffer);
+    Assert.assertFalse(pool.acquire(ByteBufferPool.MAX_BUFFER_SIZE).isDirect());
+    Assert.assertEquals(0, pool.getHitCount());
+  }
+
+  @Test
+  public void testLargeBufferIsNotPooled() {
+    ByteBufferPool pool = new ByteBufferPool(POOL_CAPACITY);
+
+    ByteBuffer buffer = pool.acquire(ByteBufferPool.MAX_BUFFER_SIZE + 1);
+    Assert.assertFalse(buffer.isDirect());
+    Assert.assertEquals(ByteBufferPool.MAX_BUFFER_SIZE + 1, buffer.capacity());
+    Assert.assertEquals(0, pool.getOffHeapBytes());
+  }
+}
@@ -0,0 +1,108 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.common.network;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.twitter.heron.proto.testing.Tests;
+
+/**
+ * IncomingPacket Tester, parsing packets out of bytes already read from the socket.
+ */
+public class IncomingPacketTest {
+  private static final int N_PACKETS = 10;
+  private static final long MAX_PACKET_SIZE = 1024 * 1024;
+
+  @Test
+  public void testReadFromBuffer() {
+    ByteBuffer bytes = packets(null);
+    ByteBufferPool pool = new ByteBufferPool(MAX_PACKET_SIZE);
+
+    // Feed the bytes in small pieces, so headers and bodies are split across reads
+    List<IncomingPacket> received = new ArrayList<>();
+    IncomingPacket packet = new IncomingPacket(pool);
+    while (bytes.hasRemaining()) {
+      ByteBuffer piece = bytes.slice();
+      piece.limit(Math.min(7, piece.remaining()));
+      bytes.position(bytes.position() + piece.limit());
+      while (piece.hasRemaining()) {
+        if (packet.readFromBuffer(piece, MAX_PACKET_SIZE) == 0) {
+          received.add(packet);
+          packet = new IncomingPacket(pool);
+        }
+      }
+    }
+
+    Assert.assertEquals(N_PACKETS, received.size());
+    for (int i = 0; i < N_PACKETS; i++) {
+      Assert.assertEquals("echo " + i, unpack(received.get(i)));
+      received.get(i).release();
+    }
+    // Every packet buffer went back to the pool, so the next ones are recycled
+    long missCount = pool.getMissCount();
+    ByteBuffer again = packets(null);
+    packet = new IncomingPacket(pool);
+    Assert.assertEquals(0, packet.readFromBuffer(again, MAX_PACKET_SIZE));
+    Assert.assertEquals(missCount, pool.getMissCount());
+  }
+
+  @Test
+  public void testPooledOutgoingPacket() {
+    ByteBufferPool pool = new ByteBufferPool(MAX_PACKET_SIZE);
+    ByteBuffer bytes = packets(pool);
+
+    IncomingPacket packet = new IncomingPacket();
+    for (int i = 0; i < N_PACKETS; i++) {
+      Assert.assertEquals(0, packet.readFromBuffer(bytes, MAX_PACKET_SIZE));
+      Assert.assertEquals("echo " + i, unpack(packet));
+      packet = new IncomingPacket();
+    }
+    Assert.assertFalse(bytes.hasRemaining());
+  }
+
+  @Test
+  public void testPacketTooLarge() {
+    ByteBuffer bytes = packets(null);
+    Assert.assertEquals(-1, new IncomingPacket().readFromBuffer(bytes, 4));
+  }
+
+  // Serialize N_PACKETS packets back to back
+  private static ByteBuffer packets(ByteBufferPool pool) {
+    ByteBuffer bytes = ByteBuffer.allocate(64 * 1024);
+    for (int i = 0; i < N_PACKETS; i++) {
+      Tests.EchoServerRequest request =
+          Tests.EchoServerRequest.newBuilder().setEchoRequest("echo " + i).build();
+      OutgoingPacket outgoingPacket = new OutgoingPacket(REQID.generate(), request, pool);
+      bytes.put(outgoingPacket.getBuffer());
+      outgoingPacket.release();
+    }
+    bytes.flip();
+    return bytes;
+  }
+
+  private static String unpack(IncomingPacket packet) {
+    Assert.assertEquals(Tests.EchoServerRequest.getDescriptor().getFullName(),
+        packet.unpackString());
+    packet.unpackREQID();
+    Tests.EchoServerRequest.Builder builder = Tests.EchoServerRequest.newBuilder();
+    packet.unpackMessage(builder);
+    return builder.build().getEchoRequest();
+  }
+}
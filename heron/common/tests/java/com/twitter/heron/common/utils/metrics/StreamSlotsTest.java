@@ -0,0 +1,111 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.common.utils.metrics;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.twitter.heron.api.metric.Histogram;
+
+/**
+ * StreamSlots, StreamCountMetric and StreamHistogramMetric Tester.
+ */
+public class StreamSlotsTest {
+
+  @Test
+  public void testSlots() {
+    StreamSlots slots = new StreamSlots();
+    int slot1 = slots.register("spout1", "default");
+    int slot2 = slots.register("spout2", "default");
+    int slot3 = slots.register("spout1", "other");
+    Assert.assertEquals(slot1, slots.register("spout1", "default"));
+    Assert.assertEquals(3, slots.size());
+    Assert.assertEquals(2, slots.getStreamCount());
+
+    // Streams with the same id share their stream index
+    Assert.assertEquals(slots.getStreamIndex(slot1), slots.getStreamIndex(slot2));
+    Assert.assertNotEquals(slots.getStreamIndex(slot1), slots.getStreamIndex(slot3));
+    Assert.assertEquals("default", slots.getStreamId(slots.getStreamIndex(slot2)));
+    Assert.assertEquals("spout2/default", slots.getGlobalStreamId(slot2));
+
+    Assert.assertEquals(slot2, slots.slotOf("spout2", "default"));
+    Assert.assertEquals(slot2, slots.slotOf(new String("spout2"), new String("default")));
+    Assert.assertEquals(slot3, slots.slotOf("spout1", "other"));
+    Assert.assertEquals(StreamSlots.UNKNOWN, slots.slotOf("spout3", "default"));
+
+    // A stream looked up before it is registered
+    int slot4 = slots.register("spout3", "default");
+    Assert.assertEquals(slot4, slots.slotOf("spout3", "default"));
+  }
+
+  @Test
+  public void testCountMetric() {
+    StreamSlots slots = new StreamSlots();
+    slots.register("spout1", "default");
+    slots.register("spout2", "default");
+    slots.register("spout1", "idle");
+    StreamCountMetric metric = new StreamCountMetric(slots, true);
+
+    metric.incr(slots.slotOf("spout1", "default"), "spout1", "default");
+    metric.incrBy(slots.slotOf("spout2", "default"), "spout2", "default", 2);
+    metric.incr(slots.slotOf("spout3", "new"), "spout3", "new");
+
+    Map<String, Long> counts = metric.getValueAndReset();
+    Assert.assertEquals(Long.valueOf(3), counts.get("default"));
+    Assert.assertEquals(Long.valueOf(1), counts.get("spout1/default"));
+    Assert.assertEquals(Long.valueOf(2), counts.get("spout2/default"));
+    Assert.assertEquals(Long.valueOf(0), counts.get("idle"));
+    Assert.assertEquals(Long.valueOf(0), counts.get("spout1/idle"));
+    Assert.assertEquals(Long.valueOf(1), counts.get("new"));
+    Assert.assertEquals(Long.valueOf(1), counts.get("spout3/new"));
+
+    // The next interval starts from 0, and registered streams are still exported
+    counts = metric.getValueAndReset();
+    Assert.assertEquals(Long.valueOf(0), counts.get("default"));
+    Assert.assertEquals(Long.valueOf(0), counts.get("spout2/default"));
+
+    // Without the breakdown by component
+    StreamCountMetric byStream = new StreamCountMetric(slots, false);
+    byStream.incr(slots.slotOf("spout1", "default"), "spout1", "default");
+    counts = byStream.getValueAndReset();
+    Assert.assertEquals(Long.valueOf(1), counts.get("default"));
+    Assert.assertNull(counts.get("spout1/default"));
+  }
+
+  @Test
+  public void testHistogramMetric() {
+    StreamSlots slots = new StreamSlots();
+    slots.register("spout1", "default");
+    slots.register("spout2", "default");
+    StreamHistogramMetric metric = new StreamHistogramMetric(slots, true);
+
+    metric.update(slots.slotOf("spout1", "default"), "spout1", "default", 10);
+    metric.update(slots.slotOf("spout2", "default"), "spout2", "default", 20);
+    metric.update(slots.slotOf("spout2", "default"), "spout2", "default", 30);
+    metric.update(slots.slotOf("spout3", "new"), "spout3", "new", 40);
+
+    Map<String, Histogram> histograms = metric.getValueAndReset();
+    Assert.assertEquals(3, histograms.get("default").getCount());
+    Assert.assertEquals(1, histograms.get("spout1/default").getCount());
+    Assert.assertEquals(2, histograms.get("spout2/default").getCount());
+    Assert.assertEquals(40, histograms.get("spout3/new").getMax());
+    Assert.assertEquals(5, histograms.size());
+
+    // Nothing recorded, nothing exported
+    Assert.assertTrue(metric.getValueAndReset().isEmpty());
+  }
+}
@@ -0,0 +1,87 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.twitter.heron.common.utils.tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import com.twitter.heron.api.serializer.IPluggableSerializer;
+import com.twitter.heron.api.serializer.JavaSerializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class LazyValueListTest {
+  private IPluggableSerializer serializer;
+  private List<ByteString> serializedValues;
+
+  @Before
+  public void before() {
+    serializer = spy(new JavaSerializer());
+    serializedValues = new ArrayList<>();
+    for (Object value : Arrays.asList("word", 42L, new ArrayList<>(Arrays.asList(1, 2)))) {
+      serializedValues.add(ByteString.copyFrom(serializer.serialize(value)));
+    }
+  }
+
+  @Test
+  public void testDeserializeOnFirstRead() {
+    LazyValueList values = new LazyValueList(serializedValues, 3, serializer);
+    verify(serializer, times(0)).deserialize(any(byte[].class));
+
+    assertEquals(42L, values.get(1));
+    assertEquals(42L, values.get(1));
+    verify(serializer, times(1)).deserialize(any(byte[].class));
+    assertEquals(3, values.size());
+  }
+
+  @Test
+  public void testSerializedValueByIndex() {
+    LazyValueList values = new LazyValueList(serializedValues, 3, serializer);
+
+    // Unread values and immutable values are forwarded as-is
+    assertSame(serializedValues.get(0), values.getSerializedValue(0));
+    values.get(1);
+    assertSame(serializedValues.get(1), values.getSerializedValue(1));
+
+    // A mutable value could have been changed by the bolt
+    values.get(2);
+    assertNull(values.getSerializedValue(2));
+
+    // So could a replaced value
+    values.set(0, "other");
+    assertNull(values.getSerializedValue(0));
+  }
+
+  @Test
+  public void testSerializedValueByIdentity() {
+    LazyValueList values = new LazyValueList(serializedValues, 3, serializer);
+    Object word = values.get(0);
+
+    assertSame(serializedValues.get(0), values.getSerializedValue(word));
+    assertNull(values.getSerializedValue(new String("word")));
+    assertNull(values.getSerializedValue(values.get(2)));
+  }
+}
@@ -0,0 +1,284 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.instance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.protobuf.Message;
+
+import com.twitter.heron.api.Config;
+import com.twitter.heron.api.bolt.BaseRichBolt;
+import com.twitter.heron.api.bolt.OutputCollector;
+import com.twitter.heron.api.generated.TopologyAPI;
+import com.twitter.heron.api.serializer.IPluggableSerializer;
+import com.twitter.heron.api.spout.BaseRichSpout;
+import com.twitter.heron.api.spout.SpoutOutputCollector;
+import com.twitter.heron.api.topology.OutputFieldsDeclarer;
+import com.twitter.heron.api.topology.TopologyBuilder;
+import com.twitter.heron.api.topology.TopologyContext;
+import com.twitter.heron.api.tuple.Fields;
+import com.twitter.heron.api.tuple.Tuple;
+import com.twitter.heron.common.basics.Communicator;
+import com.twitter.heron.common.basics.SingletonRegistry;
+import com.twitter.heron.common.basics.SlaveLooper;
+import com.twitter.heron.common.config.SystemConfig;
+import com.twitter.heron.common.utils.metrics.MetricsCollector;
+import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
+import com.twitter.heron.common.utils.misc.SerializeDeSerializeHelper;
+import com.twitter.heron.proto.system.Metrics;
+import com.twitter.heron.proto.system.PhysicalPlans;
+
+/**
+ * Builds the physical plan and the tuples the instance benchmarks run with:
+ * a spout with task id 0 feeding a bolt with task id 1, over a stream of fieldCount fields.
+ */
+public final class BenchmarkTopology {
+  public static final String SPOUT_INSTANCE_ID = "spout-id";
+  public static final String BOLT_INSTANCE_ID = "bolt-id";
+  public static final String SPOUT_NAME = "benchmark-spout";
+  public static final String BOLT_NAME = "benchmark-bolt";
+
+  // Serializers the benchmarks are parameterized with
+  public static final String JAVA_SERIALIZER = "java";
+  public static final String KRYO_SERIALIZER = "kryo";
+  public static final String TYPED_SERIALIZER = "typed";
+
+  // Ack modes the benchmarks are parameterized with
+  public static final String ACK_NONE = "none";
+  public static final String ACK_ROOTED = "rooted";
+
+  // The heron internals config, relative to the runfiles of the benchmark binary
+  private static final String INTERNALS_CONFIG_PROPERTY = "heron.benchmark.internals.config";
+  private static final String DEFAULT_INTERNALS_CONFIG =
+      "heron/config/src/yaml/conf/test/test_heron_internals.yaml";
+
+  private BenchmarkTopology() {
+  }
+
+  /**
+   * Register the system config singleton, unless it is already registered
+   */
+  public static synchronized void registerSystemConfig() {
+    if (SingletonRegistry.INSTANCE.containsSingleton(SystemConfig.HERON_SYSTEM_CONFIG)) {
+      return;
+    }
+    String path = System.getProperty(INTERNALS_CONFIG_PROPERTY, DEFAULT_INTERNALS_CONFIG);
+    SystemConfig systemConfig = SystemConfig.newBuilder(true)
+        .putAll(path, true)
+        .build();
+    SingletonRegistry.INSTANCE.registerSingleton(SystemConfig.HERON_SYSTEM_CONFIG, systemConfig);
+  }
+
+  /**
+   * Build the helper of one of the instances, with its topology context
+   *
+   * @param instanceId SPOUT_INSTANCE_ID or BOLT_INSTANCE_ID
+   * @param serializer one of the serializer names
+   * @param ackMode one of the ack modes
+   * @param fieldCount the # of fields of the stream from the spout to the bolt
+   * @param lazy whether the bolt deserializes the values lazily
+   */
+  public static PhysicalPlanHelper newHelper(String instanceId,
+                                             String serializer,
+                                             String ackMode,
+                                             int fieldCount,
+                                             boolean lazy) {
+    PhysicalPlanHelper helper =
+        new PhysicalPlanHelper(getPhysicalPlan(serializer, ackMode, fieldCount, lazy), instanceId);
+    Communicator<Metrics.MetricPublisherPublishMessage> metricsOutQueue = new Communicator<>();
+    helper.setTopologyContext(new MetricsCollector(new SlaveLooper(), metricsOutQueue));
+    return helper;
+  }
+
+  public static IPluggableSerializer newSerializer(PhysicalPlanHelper helper) {
+    return SerializeDeSerializeHelper.getTupleSerializer(
+        helper.getTopologyContext().getTopologyConfig());
+  }
+
+  /**
+   * Make the serializer of tuple values, as an instance would with the given serializer
+   */
+  public static IPluggableSerializer newSerializer(String serializer) {
+    return SerializeDeSerializeHelper.getTupleSerializer(
+        getConfig(serializer, ACK_NONE, false));
+  }
+
+  /**
+   * Make the values of a tuple of about tupleSize bytes: strings in the even fields,
+   * and longs in the odd ones.
+   */
+  public static List<Object> newValues(int fieldCount, int tupleSize) {
+    int stringFields = (fieldCount + 1) / 2;
+    int longFields = fieldCount - stringFields;
+    int stringLength = Math.max(1, (tupleSize - longFields * Long.BYTES) / stringFields);
+    char[] chars = new char[stringLength];
+    List<Object> values = new ArrayList<>(fieldCount);
+    for (int i = 0; i < fieldCount; i++) {
+      if (i % 2 == 0) {
+        Arrays.fill(chars, (char) ('a' + i % 26));
+        values.add(new String(chars));
+      } else {
+        values.add((long) i << 32 | i);
+      }
+    }
+    return values;
+  }
+
+  public static void drain(Communicator<Message> queue) {
+    while (queue.poll() != null) {
+      // Drop it
+    }
+  }
+
+  private static PhysicalPlans.PhysicalPlan getPhysicalPlan(String serializer,
+                                                            String ackMode,
+                                                            int fieldCount,
+                                                            boolean lazy) {
+    TopologyBuilder topologyBuilder = new TopologyBuilder();
+    topologyBuilder.setSpout(SPOUT_NAME, new BenchmarkSpout(fieldCount), 1);
+    topologyBuilder.setBolt(BOLT_NAME, new BenchmarkBolt(fieldCount), 1)
+        .shuffleGrouping(SPOUT_NAME);
+
+    Config conf = getConfig(serializer, ackMode, lazy);
+    TopologyAPI.Topology topology = topologyBuilder.createTopology()
+        .setName("benchmark-topology")
+        .setConfig(conf)
+        .setState(TopologyAPI.TopologyState.RUNNING)
+        .getTopology();
+
+    PhysicalPlans.PhysicalPlan.Builder pplan = PhysicalPlans.PhysicalPlan.newBuilder();
+    pplan.setTopology(topology);
+    pplan.addInstances(getInstance(SPOUT_INSTANCE_ID, SPOUT_NAME, 0));
+    pplan.addInstances(getInstance(BOLT_INSTANCE_ID, BOLT_NAME, 1));
+    pplan.addStmgrs(PhysicalPlans.StMgr.newBuilder()
+        .setId("stream-manager-id")
+        .setHostName("127.0.0.1")
+        .setDataPort(8888)
+        .setLocalEndpoint("endpoint"));
+    return pplan.build();
+  }
+
+  private static Config getConfig(String serializer, String ackMode, boolean lazy) {
+    Config conf = new Config();
+    conf.setTeamEmail("streaming-compute@twitter.com");
+    conf.setTeamName("stream-computing");
+    conf.setTopologyProjectName("heron-benchmark");
+    conf.setNumStmgrs(1);
+    conf.setMaxSpoutPending(Integer.MAX_VALUE);
+    conf.setTopologyReliabilityMode(ACK_ROOTED.equals(ackMode)
+        ? Config.TopologyReliabilityMode.ATLEAST_ONCE
+        : Config.TopologyReliabilityMode.ATMOST_ONCE);
+    conf.setTopologyLazyTupleDeserialization(lazy);
+    switch (serializer) {
+      case JAVA_SERIALIZER:
+        conf.setSerializationClassName("com.twitter.heron.api.serializer.JavaSerializer");
+        break;
+      case KRYO_SERIALIZER:
+        conf.setSerializationClassName("com.twitter.heron.streamlet.impl.KryoSerializer");
+        break;
+      case TYPED_SERIALIZER:
+        conf.setSerializationClassName("com.twitter.heron.streamlet.impl.KryoSerializer");
+        conf.setTopologyTypedTupleValues(true);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown serializer: " + serializer);
+    }
+    return conf;
+  }
+
+  private static PhysicalPlans.Instance getInstance(String instanceId,
+                                                    String componentName,
+                                                    int taskId) {
+    PhysicalPlans.InstanceInfo info = PhysicalPlans.InstanceInfo.newBuilder()
+        .setComponentName(componentName)
+        .setTaskId(taskId)
+        .setComponentIndex(0)
+        .build();
+    return PhysicalPlans.Instance.newBuilder()
+        .setInstanceId(instanceId)
+        .setStmgrId("stream-manager-id")
+        .setInfo(info)
+        .build();
+  }
+
+  private static Fields getFields(int fieldCount) {
+    List<String> names = new ArrayList<>(fieldCount);
+    for (int i = 0; i < fieldCount; i++) {
+      names.add("field" + i);
+    }
+    return new Fields(names);
+  }
+
+  /**
+   * A spout which does not emit anything by itself: the benchmarks emit through its collector
+   */
+  public static class BenchmarkSpout extends BaseRichSpout {
+    private static final long serialVersionUID = 2405941227155232402L;
+    private final int fieldCount;
+
+    BenchmarkSpout(int fieldCount) {
+      this.fieldCount = fieldCount;
+    }
+
+    @Override
+    public void open(Map<String, Object> conf,
+                     TopologyContext context,
+                     SpoutOutputCollector collector) {
+    }
+
+    @Override
+    public void nextTuple() {
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+      declarer.declare(getFields(fieldCount));
+    }
+  }
+
+  /**
+   * A bolt forwarding every tuple it executes, anchored to it, and then acking it
+   */
+  public static class BenchmarkBolt extends BaseRichBolt {
+    private static final long serialVersionUID = -3016462727474297880L;
+    private final int fieldCount;
+    private transient OutputCollector collector;
+
+    BenchmarkBolt(int fieldCount) {
+      this.fieldCount = fieldCount;
+    }
+
+    @Override
+    public void prepare(Map<String, Object> conf,
+                        TopologyContext context,
+                        OutputCollector outputCollector) {
+      this.collector = outputCollector;
+    }
+
+    @Override
+    public void execute(Tuple tuple) {
+      collector.emit(tuple, tuple.getValues());
+      collector.ack(tuple);
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+      declarer.declare(getFields(fieldCount));
+    }
+  }
+}
@@ -0,0 +1,83 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.instance;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.twitter.heron.common.basics.Communicator;
+
+/**
+ * Pass items through a Communicator, as between the gateway and slave threads of an instance.
+ * <p>
+ * The transfer group runs a producer and a consumer thread, the producer backing off while
+ * the queue is at its capacity. offerThenPoll() runs both on one thread, so "-prof gc"
+ * shows what each buffer type allocates per item.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommunicatorBenchmark {
+  @Param({"LINKED", "RING_BUFFER"})
+  public Communicator.BufferType bufferType;
+
+  @Param({"128", "1024"})
+  public int capacity;
+
+  private final Object item = new Object();
+  private Communicator<Object> communicator;
+
+  @Setup
+  public void setup() {
+    communicator = new Communicator<>(null, null, bufferType);
+    communicator.init(capacity, capacity, 0.5);
+  }
+
+  @Benchmark
+  @Group("transfer")
+  @GroupThreads(1)
+  public boolean offer() {
+    return communicator.size() < capacity && communicator.offer(item);
+  }
+
+  @Benchmark
+  @Group("transfer")
+  @GroupThreads(1)
+  public Object poll() {
+    return communicator.poll();
+  }
+
+  @Benchmark
+  public Object offerThenPoll() {
+    communicator.offer(item);
+    return communicator.poll();
+  }
+}
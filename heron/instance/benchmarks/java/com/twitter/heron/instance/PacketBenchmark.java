@@ -0,0 +1,123 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.instance;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.google.protobuf.ByteString;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.twitter.heron.api.generated.TopologyAPI;
+import com.twitter.heron.common.network.ByteBufferPool;
+import com.twitter.heron.common.network.IncomingPacket;
+import com.twitter.heron.common.network.OutgoingPacket;
+import com.twitter.heron.common.network.REQID;
+import com.twitter.heron.proto.system.HeronTuples;
+
+/**
+ * Packetize and parse tuple sets, as the gateway of an instance does when writing them to
+ * and reading them from the stream manager, with the packet buffers either allocated on the
+ * heap or taken from a ByteBufferPool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketBenchmark {
+  private static final long POOL_CAPACITY = 64L * 1024 * 1024;
+
+  @Param({"1", "128"})
+  public int tuplesPerSet;
+
+  @Param({"32", "1024"})
+  public int tupleSize;
+
+  @Param({"false", "true"})
+  public boolean pooled;
+
+  private ByteBufferPool bufferPool;
+  private HeronTuples.HeronTupleSet tupleSet;
+  // The bytes of the packet of tupleSet
+  private ByteBuffer packetBytes;
+
+  @Setup
+  public void setup() {
+    bufferPool = pooled ? new ByteBufferPool(POOL_CAPACITY) : null;
+
+    HeronTuples.HeronDataTuple.Builder tuple = HeronTuples.HeronDataTuple.newBuilder()
+        .addValues(ByteString.copyFrom(new byte[tupleSize]));
+    HeronTuples.HeronDataTupleSet.Builder data = HeronTuples.HeronDataTupleSet.newBuilder()
+        .setStream(TopologyAPI.StreamId.newBuilder()
+            .setId("default")
+            .setComponentName(BenchmarkTopology.SPOUT_NAME));
+    for (int i = 0; i < tuplesPerSet; i++) {
+      data.addTuples(tuple.setKey(i));
+    }
+    tupleSet = HeronTuples.HeronTupleSet.newBuilder()
+        .setSrcTaskId(0)
+        .setData(data)
+        .build();
+
+    // Laid out as OutgoingPacket does
+    byte[] typename =
+        tupleSet.getDescriptorForType().getFullName().getBytes(StandardCharsets.UTF_8);
+    int dataSize = OutgoingPacket.sizeRequiredToPackString(new String(typename))
+        + REQID.REQID_SIZE
+        + OutgoingPacket.sizeRequiredToPackMessage(tupleSet);
+    packetBytes = ByteBuffer.allocate(4 + dataSize);
+    packetBytes.putInt(dataSize);
+    packetBytes.putInt(typename.length);
+    packetBytes.put(typename);
+    REQID.zeroREQID.pack(packetBytes);
+    packetBytes.putInt(tupleSet.getSerializedSize());
+    packetBytes.put(tupleSet.toByteArray());
+    packetBytes.flip();
+  }
+
+  @Benchmark
+  public int packetize() {
+    OutgoingPacket packet = new OutgoingPacket(REQID.zeroREQID, tupleSet, bufferPool);
+    int size = packet.size();
+    packet.release();
+    return size;
+  }
+
+  @Benchmark
+  public HeronTuples.HeronTupleSet parse() {
+    IncomingPacket packet = new IncomingPacket(bufferPool);
+    packet.readFromBuffer(packetBytes.duplicate(), Long.MAX_VALUE);
+    packet.unpackString();
+    packet.unpackREQID();
+    HeronTuples.HeronTupleSet.Builder builder = HeronTuples.HeronTupleSet.newBuilder();
+    packet.unpackMessage(builder);
+    packet.release();
+    return builder.build();
+  }
+}
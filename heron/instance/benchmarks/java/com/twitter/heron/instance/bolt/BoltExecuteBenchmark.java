@@ -0,0 +1,132 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.instance.bolt;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.twitter.heron.api.generated.TopologyAPI;
+import com.twitter.heron.api.serializer.IPluggableSerializer;
+import com.twitter.heron.common.basics.Communicator;
+import com.twitter.heron.common.basics.SlaveLooper;
+import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
+import com.twitter.heron.instance.BenchmarkTopology;
+import com.twitter.heron.proto.system.HeronTuples;
+
+/**
+ * Execute tuple sets with BoltInstance.readTuplesAndExecute(): the values are deserialized,
+ * the bolt forwards each tuple anchored to it and acks it, and the tuples and acks it sends
+ * out are batched and pushed to the out queue.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoltExecuteBenchmark {
+  // Tuples in the tuple set executed by each invocation of the benchmark
+  private static final int EXECUTE_BATCH = 1024;
+
+  @Param({"1", "4", "16"})
+  public int fieldCount;
+
+  @Param({"32", "1024"})
+  public int tupleSize;
+
+  @Param({BenchmarkTopology.JAVA_SERIALIZER, BenchmarkTopology.KRYO_SERIALIZER,
+      BenchmarkTopology.TYPED_SERIALIZER})
+  public String serializer;
+
+  @Param({BenchmarkTopology.ACK_NONE, BenchmarkTopology.ACK_ROOTED})
+  public String ackMode;
+
+  @Param({"false", "true"})
+  public boolean lazy;
+
+  private Communicator<Message> inQueue;
+  private Communicator<Message> outQueue;
+  private BoltInstance boltInstance;
+  private HeronTuples.HeronTupleSet tupleSet;
+
+  @Setup
+  public void setup() {
+    BenchmarkTopology.registerSystemConfig();
+    PhysicalPlanHelper helper = BenchmarkTopology.newHelper(
+        BenchmarkTopology.BOLT_INSTANCE_ID, serializer, ackMode, fieldCount, lazy);
+
+    inQueue = new Communicator<>();
+    outQueue = new Communicator<>();
+    boltInstance = new BoltInstance(helper, inQueue, outQueue, new SlaveLooper());
+    boltInstance.init(null);
+
+    tupleSet = newTupleSet(BenchmarkTopology.newSerializer(helper),
+        BenchmarkTopology.newValues(fieldCount, tupleSize),
+        BenchmarkTopology.ACK_ROOTED.equals(ackMode));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EXECUTE_BATCH)
+  public int execute() {
+    inQueue.offer(tupleSet);
+    boltInstance.readTuplesAndExecute(inQueue);
+    int sent = outQueue.size();
+    BenchmarkTopology.drain(outQueue);
+    return sent;
+  }
+
+  // A tuple set from the spout, as the stream manager would send it
+  private static HeronTuples.HeronTupleSet newTupleSet(IPluggableSerializer serializer,
+                                                       List<Object> values,
+                                                       boolean rooted) {
+    HeronTuples.HeronDataTuple.Builder tuple = HeronTuples.HeronDataTuple.newBuilder();
+    for (Object value : values) {
+      tuple.addValues(ByteString.copyFrom(serializer.serialize(value)));
+    }
+
+    HeronTuples.HeronDataTupleSet.Builder data = HeronTuples.HeronDataTupleSet.newBuilder()
+        .setStream(TopologyAPI.StreamId.newBuilder()
+            .setId("default")
+            .setComponentName(BenchmarkTopology.SPOUT_NAME));
+    for (int i = 0; i < EXECUTE_BATCH; i++) {
+      tuple.setKey(i).clearRoots();
+      if (rooted) {
+        tuple.addRoots(HeronTuples.RootId.newBuilder().setTaskid(0).setKey(i));
+      }
+      data.addTuples(tuple);
+    }
+
+    return HeronTuples.HeronTupleSet.newBuilder()
+        .setSrcTaskId(0)
+        .setData(data)
+        .build();
+  }
+}
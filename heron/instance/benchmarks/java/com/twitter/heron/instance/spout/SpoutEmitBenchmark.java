@@ -0,0 +1,120 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.instance.spout;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.protobuf.Message;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.twitter.heron.common.basics.Communicator;
+import com.twitter.heron.common.utils.metrics.FullSpoutMetrics;
+import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
+import com.twitter.heron.instance.BenchmarkTopology;
+import com.twitter.heron.proto.system.HeronTuples;
+
+/**
+ * Emit tuples through the output collector of a spout, as SpoutInstance.produceTuple() does
+ * when the spout emits from nextTuple(): the values are serialized, batched into
+ * HeronDataTupleSets and pushed to the out queue.
+ * <p>
+ * With the rooted ack mode, each tuple is also put into the in-flight tuple table, and
+ * retired once its tuple set is drained from the out queue, as an ack from the stream
+ * manager would do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpoutEmitBenchmark {
+  // Tuples emitted by each invocation of the benchmark
+  private static final int EMIT_BATCH = 1024;
+
+  @Param({"1", "4", "16"})
+  public int fieldCount;
+
+  @Param({"32", "1024"})
+  public int tupleSize;
+
+  @Param({BenchmarkTopology.JAVA_SERIALIZER, BenchmarkTopology.KRYO_SERIALIZER,
+      BenchmarkTopology.TYPED_SERIALIZER})
+  public String serializer;
+
+  @Param({BenchmarkTopology.ACK_NONE, BenchmarkTopology.ACK_ROOTED})
+  public String ackMode;
+
+  private Communicator<Message> outQueue;
+  private SpoutOutputCollectorImpl collector;
+  private List<Object> values;
+  // Tuples are rooted only if they carry a message id
+  private boolean rooted;
+  private long messageId;
+
+  @Setup
+  public void setup() {
+    BenchmarkTopology.registerSystemConfig();
+    PhysicalPlanHelper helper = BenchmarkTopology.newHelper(
+        BenchmarkTopology.SPOUT_INSTANCE_ID, serializer, ackMode, fieldCount, false);
+    FullSpoutMetrics spoutMetrics = new FullSpoutMetrics();
+    spoutMetrics.initMultiCountMetrics(helper);
+
+    outQueue = new Communicator<>();
+    collector = new SpoutOutputCollectorImpl(
+        BenchmarkTopology.newSerializer(helper), helper, outQueue, spoutMetrics);
+    values = BenchmarkTopology.newValues(fieldCount, tupleSize);
+    rooted = BenchmarkTopology.ACK_ROOTED.equals(ackMode);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EMIT_BATCH)
+  public int emit() {
+    for (int i = 0; i < EMIT_BATCH; i++) {
+      collector.emit("default", values, rooted ? messageId++ : null);
+    }
+    collector.sendOutTuples();
+    return retireSent();
+  }
+
+  // Drain the out queue, retiring the rooted tuples drained
+  private int retireSent() {
+    int sent = 0;
+    Message message;
+    while ((message = outQueue.poll()) != null) {
+      HeronTuples.HeronTupleSet tupleSet = (HeronTuples.HeronTupleSet) message;
+      for (HeronTuples.HeronDataTuple tuple : tupleSet.getData().getTuplesList()) {
+        for (HeronTuples.RootId root : tuple.getRootsList()) {
+          collector.retireInFlight(root.getKey());
+        }
+        sent++;
+      }
+    }
+    return sent;
+  }
+}
@@ -0,0 +1,130 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.instance.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.google.protobuf.ByteString;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.twitter.heron.api.serializer.IPluggableSerializer;
+import com.twitter.heron.api.serializer.IStreamSerializer;
+import com.twitter.heron.instance.BenchmarkTopology;
+
+/**
+ * Serialize and deserialize single tuple values.
+ * <p>
+ * serializeToArray() is how values are serialized when the serializer cannot write into a
+ * stream: into a new array, then copied into a ByteString. serializeIntoBuffer() is how
+ * the output collectors serialize them otherwise, into a shared ValueOutputBuffer.
+ * Run with "-prof gc" to compare the bytes allocated per value; the serializedBytes and
+ * serializedValues counters give the size of the serialized values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueSerializationBenchmark {
+  private static final int VALUE_BUFFER_CHUNK_SIZE = 64 * 1024;
+
+  @Param({BenchmarkTopology.JAVA_SERIALIZER, BenchmarkTopology.KRYO_SERIALIZER,
+      BenchmarkTopology.TYPED_SERIALIZER})
+  public String serializer;
+
+  @Param({"long", "double", "string", "bytes"})
+  public String valueType;
+
+  @Param({"16", "1024"})
+  public int valueSize;
+
+  private IPluggableSerializer valueSerializer;
+  private ValueOutputBuffer valueBuffer;
+  private Object value;
+  private byte[] serializedValue;
+
+  /**
+   * The size of the serialized values, reported next to the results
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class SerializedSize {
+    public long serializedBytes;
+    public long serializedValues;
+  }
+
+  @Setup
+  public void setup() {
+    valueSerializer = BenchmarkTopology.newSerializer(serializer);
+    valueBuffer = new ValueOutputBuffer(VALUE_BUFFER_CHUNK_SIZE);
+    value = newValue(valueType, valueSize);
+    serializedValue = valueSerializer.serialize(value);
+  }
+
+  @Benchmark
+  public ByteString serializeToArray(SerializedSize size) {
+    ByteString bytes = ByteString.copyFrom(valueSerializer.serialize(value));
+    size.serializedBytes += bytes.size();
+    size.serializedValues++;
+    return bytes;
+  }
+
+  @Benchmark
+  public ByteString serializeIntoBuffer(SerializedSize size) {
+    ((IStreamSerializer) valueSerializer).serializeTo(value, valueBuffer);
+    ByteString bytes = valueBuffer.finishValue();
+    size.serializedBytes += bytes.size();
+    size.serializedValues++;
+    return bytes;
+  }
+
+  @Benchmark
+  public Object deserialize() {
+    return valueSerializer.deserialize(serializedValue);
+  }
+
+  private static Object newValue(String valueType, int valueSize) {
+    switch (valueType) {
+      case "long":
+        return (long) valueSize << 40 | valueSize;
+      case "double":
+        return valueSize / 3.0;
+      case "string":
+        char[] chars = new char[valueSize];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+      case "bytes":
+        byte[] bytes = new byte[valueSize];
+        Arrays.fill(bytes, (byte) 7);
+        return bytes;
+      default:
+        throw new IllegalArgumentException("Unknown value type: " + valueType);
+    }
+  }
+}
@@ -23,16 +23,23 @@ import com.google.protobuf.Message;
 
 import com.twitter.heron.api.Config;
 import com.twitter.heron.api.serializer.IPluggableSerializer;
+import com.twitter.heron.api.serializer.IStreamSerializer;
 import com.twitter.heron.api.state.State;
 import com.twitter.heron.common.basics.Communicator;
+import com.twitter.heron.common.basics.WakeableLooper;
 import com.twitter.heron.common.utils.metrics.ComponentMetrics;
 import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
+import com.twitter.heron.common.utils.tuple.LazyValueList;
+import com.twitter.heron.instance.util.ValueOutputBuffer;
 import com.twitter.heron.proto.system.HeronTuples;
 
 /**
  * Common functionality used by both bolt and spout output collectors
  */
 public class AbstractOutputCollector {
+  // Size of each chunk in the buffer that tuple values are serialized into
+  private static final int VALUE_BUFFER_CHUNK_SIZE = 64 * 1024;
+
   protected final IPluggableSerializer serializer;
   protected final OutgoingTupleCollection outputter;
   protected final ComponentMetrics metrics;
@@ -40,6 +47,10 @@ public class AbstractOutputCollector {
   private long totalTuplesEmitted;
   private PhysicalPlanHelper helper;
 
+  // Non-null only if the serializer could write values directly into valueBuffer
+  private final IStreamSerializer streamSerializer;
+  private final ValueOutputBuffer valueBuffer;
+
   /**
    * The SuppressWarnings is only until TOPOLOGY_ENABLE_ACKING exists.
    * This warning will be removed once it is removed.
@@ -54,6 +65,14 @@ public class AbstractOutputCollector {
     this.totalTuplesEmitted = 0;
     this.helper = helper;
 
+    if (serializer instanceof IStreamSerializer) {
+      this.streamSerializer = (IStreamSerializer) serializer;
+      this.valueBuffer = new ValueOutputBuffer(VALUE_BUFFER_CHUNK_SIZE);
+    } else {
+      this.streamSerializer = null;
+      this.valueBuffer = null;
+    }
+
     Map<String, Object> config = helper.getTopologyContext().getTopologyConfig();
     if (config.containsKey(Config.TOPOLOGY_RELIABILITY_MODE)
         && config.get(Config.TOPOLOGY_RELIABILITY_MODE) != null) {
@@ -71,7 +90,7 @@ public class AbstractOutputCollector {
       }
     }
 
-    this.outputter = new OutgoingTupleCollection(helper, streamOutQueue);
+    this.outputter = new OutgoingTupleCollection(helper, streamOutQueue, metrics);
   }
 
   public void updatePhysicalPlanHelper(PhysicalPlanHelper physicalPlanHelper) {
@@ -102,6 +121,11 @@ public class AbstractOutputCollector {
     outputter.sendOutTuples();
   }
 
+  // Set the looper used to send out held tuples at their deadline
+  public void setLooper(WakeableLooper looper) {
+    outputter.setLooper(looper);
+  }
+
   // Flush the states
   public void sendOutState(State<Serializable, Serializable> state,
                            String checkpointId) {
@@ -156,11 +180,26 @@ public class AbstractOutputCollector {
     long startTime = System.nanoTime();
 
     // Serialize it
-    for (Object obj : tuple) {
-      byte[] b = serializer.serialize(obj);
-      ByteString bstr = ByteString.copyFrom(b);
-      bldr.addValues(bstr);
-      tupleSizeInBytes += b.length;
+    if (tuple instanceof LazyValueList) {
+      // Forward the values of an input tuple without serializing them again when possible
+      LazyValueList lazyValues = (LazyValueList) tuple;
+      for (int i = 0; i < lazyValues.size(); i++) {
+        ByteString bstr = lazyValues.getSerializedValue(i);
+        if (bstr == null) {
+          bstr = serializeValue(lazyValues.get(i));
+        }
+        bldr.addValues(bstr);
+        tupleSizeInBytes += bstr.size();
+      }
+    } else {
+      for (Object obj : tuple) {
+        ByteString bstr = getSerializedValue(obj);
+        if (bstr == null) {
+          bstr = serializeValue(obj);
+        }
+        bldr.addValues(bstr);
+        tupleSizeInBytes += bstr.size();
+      }
     }
 
     long latency = System.nanoTime() - startTime;
@@ -172,4 +211,29 @@ public class AbstractOutputCollector {
     // Update metrics
     metrics.emittedTuple(streamId);
   }
+
+  /**
+   * Get the already serialized form of a value to emit, if there is one.
+   *
+   * @param value the value to emit
+   * @return the serialized value, or null if the value has to be serialized
+   */
+  protected ByteString getSerializedValue(Object value) {
+    return null;
+  }
+
+  private ByteString serializeValue(Object obj) {
+    if (streamSerializer == null) {
+      return ByteString.copyFrom(serializer.serialize(obj));
+    }
+
+    // Serialize the value into the shared valueBuffer, without any intermediate byte[]
+    try {
+      streamSerializer.serializeTo(obj, valueBuffer);
+    } catch (RuntimeException e) {
+      valueBuffer.discardValue();
+      throw e;
+    }
+    return valueBuffer.finishValue();
+  }
 }
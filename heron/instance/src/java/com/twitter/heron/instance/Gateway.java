@@ -25,6 +25,7 @@ import com.twitter.heron.common.basics.Communicator;
 import com.twitter.heron.common.basics.NIOLooper;
 import com.twitter.heron.common.basics.SingletonRegistry;
 import com.twitter.heron.common.config.SystemConfig;
+import com.twitter.heron.common.network.ByteBufferPool;
 import com.twitter.heron.common.network.HeronSocketOptions;
 import com.twitter.heron.common.utils.logging.ErrorReportLoggingHandler;
 import com.twitter.heron.common.utils.metrics.JVMMetrics;
@@ -101,7 +102,10 @@ public class Gateway implements Runnable, AutoCloseable {
         systemConfig.getInstanceNetworkReadBatchTime(),
         systemConfig.getInstanceNetworkOptionsSocketSendBufferSize(),
         systemConfig.getInstanceNetworkOptionsSocketReceivedBufferSize(),
-        systemConfig.getInstanceNetworkOptionsMaximumPacketSize()
+        systemConfig.getInstanceNetworkOptionsMaximumPacketSize(),
+        systemConfig.getInstanceNetworkOptionsBufferPoolSize(),
+        systemConfig.getInstanceNetworkWriteGatherPackets(),
+        systemConfig.getInstanceNetworkReadBufferSize()
     );
     this.streamManagerClient =
         new StreamManagerClient(gatewayLooper, STREAM_MGR_HOST, streamPort,
@@ -123,6 +127,14 @@ public class Gateway implements Runnable, AutoCloseable {
             inStreamQueue.getExpectedAvailableCapacity());
         gatewayMetrics.setOutStreamQueueExpectedCapacity(
             outStreamQueue.getExpectedAvailableCapacity());
+        sampleBufferPools();
+        gatewayMetrics.setNetworkStats(
+            streamManagerClient.getTotalReadSyscalls()
+                + metricsManagerClient.getTotalReadSyscalls(),
+            streamManagerClient.getTotalWriteSyscalls()
+                + metricsManagerClient.getTotalWriteSyscalls(),
+            streamManagerClient.getTotalBytesWritten()
+                + metricsManagerClient.getTotalBytesWritten());
       }
     };
     gatewayMetricsCollector.registerMetricSampleRunnable(sampleStreamQueuesSize,
@@ -146,6 +158,22 @@ public class Gateway implements Runnable, AutoCloseable {
         tuningStreamQueueSize);
   }
 
+  // Report the packet buffer pools of both clients, if pooling is enabled
+  private void sampleBufferPools() {
+    long hitCount = 0;
+    long missCount = 0;
+    long offHeapSize = 0;
+    for (ByteBufferPool pool : new ByteBufferPool[]{
+        streamManagerClient.getBufferPool(), metricsManagerClient.getBufferPool()}) {
+      if (pool != null) {
+        hitCount += pool.getHitCount();
+        missCount += pool.getMissCount();
+        offHeapSize += pool.getOffHeapBytes();
+      }
+    }
+    gatewayMetrics.setBufferPoolStats(hitCount, missCount, offHeapSize);
+  }
+
   @Override
   public void run() {
     Thread.currentThread().setName(ThreadNames.THREAD_GATEWAY_NAME);
@@ -117,8 +117,9 @@ public class HeronInstance {
     slaveLooper.addTasksOnExit(new SlaveExitTask());
 
     // For stream
-    inStreamQueue = new Communicator<Message>(gatewayLooper, slaveLooper);
-    outStreamQueue = new Communicator<Message>(slaveLooper, gatewayLooper);
+    Communicator.BufferType streamBufferType = systemConfig.getInstanceInternalQueueType();
+    inStreamQueue = new Communicator<Message>(gatewayLooper, slaveLooper, streamBufferType);
+    outStreamQueue = new Communicator<Message>(slaveLooper, gatewayLooper, streamBufferType);
     inControlQueue = new Communicator<InstanceControlMsg>(gatewayLooper, slaveLooper);
 
     // Now for metrics
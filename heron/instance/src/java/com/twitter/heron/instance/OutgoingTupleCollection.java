@@ -15,6 +15,7 @@
 package com.twitter.heron.instance;
 
 import java.io.Serializable;
+import java.time.Duration;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Message;
@@ -25,9 +26,12 @@ import com.twitter.heron.api.state.State;
 import com.twitter.heron.common.basics.ByteAmount;
 import com.twitter.heron.common.basics.Communicator;
 import com.twitter.heron.common.basics.SingletonRegistry;
+import com.twitter.heron.common.basics.WakeableLooper;
 import com.twitter.heron.common.config.SystemConfig;
+import com.twitter.heron.common.utils.metrics.ComponentMetrics;
 import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
 import com.twitter.heron.common.utils.misc.SerializeDeSerializeHelper;
+import com.twitter.heron.instance.util.AdaptiveBatchSizer;
 import com.twitter.heron.proto.ckptmgr.CheckpointManager;
 import com.twitter.heron.proto.system.HeronTuples;
 
@@ -38,8 +42,23 @@ import com.twitter.heron.proto.system.HeronTuples;
  * 3. flushRemaining tuples and sent out the tuples
  * <p>
  * In fact, when talking about to send out tuples, we mean we push them to the out queues.
+ * <p>
+ * If heron.instance.set.data.tuple.min.capacity is set, the # of data tuples batched in a
+ * HeronDataTupleSet adapts to the length of the out queue, see AdaptiveBatchSizer.
+ * If heron.instance.set.data.tuple.max.delay.ms is also set, a partial HeronDataTupleSet is
+ * held at the end of an execute or emit attempt while the out queue is backing up: the queue
+ * is not going to be drained sooner, and draining it wakes the instance up again. If a looper
+ * is set, a timer sends out the held set once it is max.delay.ms old.
  */
 public class OutgoingTupleCollection {
+  // The reasons a HeronDataTupleSet is sent out, exported with the flush count metric
+  public static final String FLUSH_REASON_CAPACITY = "capacity";
+  public static final String FLUSH_REASON_SIZE = "size";
+  public static final String FLUSH_REASON_SWITCH = "switch";
+  public static final String FLUSH_REASON_PASS = "pass";
+  public static final String FLUSH_REASON_STATE = "state";
+  public static final String FLUSH_REASON_TIMER = "timer";
+
   protected PhysicalPlanHelper helper;
   // We have just one outQueue responsible for both control tuples and data tuples
   private final Communicator<Message> outQueue;
@@ -50,6 +69,11 @@ public class OutgoingTupleCollection {
   private final int controlTupleSetCapacity;
 
   private final IPluggableSerializer serializer;
+  private final ComponentMetrics metrics;
+
+  // Null if the batch size is not adaptive
+  private final AdaptiveBatchSizer batchSizer;
+  private final long maxFlushDelayNs;
 
   private HeronTuples.HeronDataTupleSet.Builder currentDataTuple;
   private HeronTuples.HeronControlTupleSet.Builder currentControlTuple;
@@ -60,11 +84,20 @@ public class OutgoingTupleCollection {
   // Current size in bytes for data types to pack into the HeronTupleSet
   private long currentDataTupleSizeInBytes;
 
+  // When the current HeronDataTupleSet was started
+  private long currentDataTupleStartNs;
+
+  // The looper of the thread sending out the tuples, null if there is none
+  private WakeableLooper looper;
+  private boolean flushTimerPending;
+
   public OutgoingTupleCollection(
       PhysicalPlanHelper helper,
-      Communicator<Message> outQueue) {
+      Communicator<Message> outQueue,
+      ComponentMetrics metrics) {
     this.outQueue = outQueue;
     this.helper = helper;
+    this.metrics = metrics;
     SystemConfig systemConfig =
         (SystemConfig) SingletonRegistry.INSTANCE.getSingleton(SystemConfig.HERON_SYSTEM_CONFIG);
 
@@ -79,10 +112,31 @@ public class OutgoingTupleCollection {
     this.dataTupleSetCapacity = systemConfig.getInstanceSetDataTupleCapacity();
     this.maxDataTupleSize = systemConfig.getInstanceSetDataTupleSize();
     this.controlTupleSetCapacity = systemConfig.getInstanceSetControlTupleCapacity();
+
+    int minDataTupleSetCapacity = systemConfig.getInstanceSetDataTupleMinCapacity();
+    if (minDataTupleSetCapacity > 0 && minDataTupleSetCapacity < dataTupleSetCapacity) {
+      this.batchSizer = new AdaptiveBatchSizer(minDataTupleSetCapacity, dataTupleSetCapacity);
+    } else {
+      this.batchSizer = null;
+    }
+    this.maxFlushDelayNs = systemConfig.getInstanceSetDataTupleMaxDelay().toNanos();
   }
 
+  /**
+   * Send out the tuples at the end of an execute or emit attempt
+   */
   public void sendOutTuples() {
-    flushRemaining();
+    if (batchSizer != null) {
+      int capacity =
+          batchSizer.update(outQueue.size(), outQueue.getExpectedAvailableCapacity());
+      metrics.updateDataTupleSetCapacity(capacity);
+
+      if (isFlushDeferred()) {
+        scheduleDeferredFlush();
+        return;
+      }
+    }
+    flushRemaining(FLUSH_REASON_PASS);
   }
 
   /**
@@ -93,7 +147,7 @@ public class OutgoingTupleCollection {
   public void sendOutState(State<Serializable, Serializable> state,
                            String checkpointId) {
     // flush all the current data before sending the state
-    flushRemaining();
+    flushRemaining(FLUSH_REASON_STATE);
 
     // Serialize the state
     byte[] serializedState = serializer.serialize(state);
@@ -124,10 +178,12 @@ public class OutgoingTupleCollection {
               tupleSizeInBytes));
     }
     if (currentDataTuple == null
-        || !currentDataTuple.getStream().getId().equals(streamId)
-        || currentDataTuple.getTuplesCount() >= dataTupleSetCapacity
-        || currentDataTupleSizeInBytes >= maxDataTupleSize.asBytes()) {
-      initNewDataTuple(streamId);
+        || !currentDataTuple.getStream().getId().equals(streamId)) {
+      initNewDataTuple(streamId, FLUSH_REASON_SWITCH);
+    } else if (currentDataTuple.getTuplesCount() >= getDataTupleSetCapacity()) {
+      initNewDataTuple(streamId, FLUSH_REASON_CAPACITY);
+    } else if (currentDataTupleSizeInBytes >= maxDataTupleSize.asBytes()) {
+      initNewDataTuple(streamId, FLUSH_REASON_SIZE);
     }
     currentDataTuple.addTuples(newTuple);
 
@@ -139,7 +195,7 @@ public class OutgoingTupleCollection {
     if (currentControlTuple == null
         || currentControlTuple.getFailsCount() > 0
         || currentControlTuple.getAcksCount() >= controlTupleSetCapacity) {
-      initNewControlTuple();
+      initNewControlTuple(FLUSH_REASON_SWITCH);
     }
     currentControlTuple.addAcks(newTuple);
 
@@ -151,7 +207,7 @@ public class OutgoingTupleCollection {
     if (currentControlTuple == null
         || currentControlTuple.getAcksCount() > 0
         || currentControlTuple.getFailsCount() >= controlTupleSetCapacity) {
-      initNewControlTuple();
+      initNewControlTuple(FLUSH_REASON_SWITCH);
     }
     currentControlTuple.addFails(newTuple);
 
@@ -159,11 +215,14 @@ public class OutgoingTupleCollection {
     totalDataEmittedInBytes += tupleSizeInBytes;
   }
 
-  private void initNewDataTuple(String streamId) {
-    flushRemaining();
+  private void initNewDataTuple(String streamId, String flushReason) {
+    flushRemaining(flushReason);
 
     // Reset the set for data tuple
     currentDataTupleSizeInBytes = 0;
+    if (maxFlushDelayNs > 0) {
+      currentDataTupleStartNs = System.nanoTime();
+    }
 
     TopologyAPI.StreamId.Builder sbldr = TopologyAPI.StreamId.newBuilder();
     sbldr.setId(streamId);
@@ -172,18 +231,53 @@ public class OutgoingTupleCollection {
     currentDataTuple.setStream(sbldr);
   }
 
-  private void initNewControlTuple() {
-    flushRemaining();
+  private void initNewControlTuple(String flushReason) {
+    flushRemaining(flushReason);
     currentControlTuple = HeronTuples.HeronControlTupleSet.newBuilder();
   }
 
-  private void flushRemaining() {
+  private int getDataTupleSetCapacity() {
+    return batchSizer == null ? dataTupleSetCapacity : batchSizer.getBatchSize();
+  }
+
+  private boolean isFlushDeferred() {
+    return maxFlushDelayNs > 0
+        && currentDataTuple != null
+        && currentDataTuple.getTuplesCount() < batchSizer.getBatchSize()
+        && AdaptiveBatchSizer.isBackingUp(outQueue.size(), outQueue.getExpectedAvailableCapacity())
+        && System.nanoTime() - currentDataTupleStartNs < maxFlushDelayNs;
+  }
+
+  private void scheduleDeferredFlush() {
+    if (looper == null || flushTimerPending) {
+      return;
+    }
+    flushTimerPending = true;
+    long delayNs = maxFlushDelayNs - (System.nanoTime() - currentDataTupleStartNs);
+    looper.registerTimerEvent(Duration.ofNanos(Math.max(delayNs, 0)), this::onFlushDeadline);
+  }
+
+  private void onFlushDeadline() {
+    flushTimerPending = false;
+    if (currentDataTuple == null) {
+      return;
+    }
+    // The set may have been sent out and a new one started since the timer was registered
+    if (isFlushDeferred()) {
+      scheduleDeferredFlush();
+    } else {
+      flushRemaining(FLUSH_REASON_TIMER);
+    }
+  }
+
+  private void flushRemaining(String flushReason) {
     if (currentDataTuple != null) {
       HeronTuples.HeronTupleSet.Builder bldr = HeronTuples.HeronTupleSet.newBuilder();
       bldr.setSrcTaskId(helper.getMyTaskId());
       bldr.setData(currentDataTuple);
 
       pushTupleToQueue(bldr, outQueue);
+      metrics.flushedDataTupleSet(flushReason, currentDataTuple.getTuplesCount());
 
       currentDataTuple = null;
     }
@@ -209,6 +303,14 @@ public class OutgoingTupleCollection {
     return outQueue.size() < outQueue.getExpectedAvailableCapacity();
   }
 
+  /**
+   * Set the looper of the thread sending out the tuples, used to send out a held
+   * HeronDataTupleSet at its deadline even if no execute or emit attempt follows
+   */
+  public void setLooper(WakeableLooper looper) {
+    this.looper = looper;
+  }
+
   public long getTotalDataEmittedInBytes() {
     return totalDataEmittedInBytes;
   }
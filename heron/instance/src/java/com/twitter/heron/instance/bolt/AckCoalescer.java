@@ -0,0 +1,114 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.instance.bolt;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.twitter.heron.common.utils.metrics.BoltMetrics;
+import com.twitter.heron.common.utils.tuple.TupleImpl;
+import com.twitter.heron.instance.OutgoingTupleCollection;
+import com.twitter.heron.proto.system.HeronTuples;
+
+/**
+ * Coalesces the acks, or the fails, of a bolt by the root of their tuple trees until they are
+ * sent out.
+ * <p>
+ * The stream manager of a spout keeps the XOR of the keys of the tuples of a tuple tree, and
+ * completes the tree once it gets back to 0. XOR is associative and commutative, so the keys of
+ * the tuples acked for the same root can be XORed together here and sent as a single AckTuple
+ * for that root. A fail removes the whole tuple tree, so a failed root is sent once.
+ * <p>
+ * Acks and fails are kept in the order the bolt made them: pending acks are sent out before a
+ * fail is coalesced, and the other way around. They are only ever sent later than they would be
+ * without coalescing, so they still follow the tuples emitted anchored to the acked tuples.
+ */
+class AckCoalescer {
+  private final OutgoingTupleCollection outputter;
+  private final BoltMetrics boltMetrics;
+  // Maximum # of roots pending before they are sent out
+  private final int capacity;
+
+  // For every pending root: the XOR of the acked tuple keys, and the # of acks or fails
+  private final Map<HeronTuples.RootId, long[]> pendingRoots;
+  private boolean pendingFails;
+
+  AckCoalescer(OutgoingTupleCollection outputter, BoltMetrics boltMetrics, int capacity) {
+    this.outputter = outputter;
+    this.boltMetrics = boltMetrics;
+    this.capacity = capacity;
+    this.pendingRoots = new LinkedHashMap<>();
+    this.pendingFails = false;
+  }
+
+  void ack(TupleImpl tuple) {
+    add(tuple, false);
+  }
+
+  void fail(TupleImpl tuple) {
+    add(tuple, true);
+  }
+
+  private void add(TupleImpl tuple, boolean fail) {
+    if (fail != pendingFails) {
+      flush();
+      pendingFails = fail;
+    }
+
+    for (HeronTuples.RootId root : tuple.getRoots()) {
+      long[] pending = pendingRoots.get(root);
+      if (pending == null) {
+        pendingRoots.put(root, new long[]{tuple.getTupleKey(), 1});
+      } else {
+        pending[0] ^= tuple.getTupleKey();
+        pending[1]++;
+      }
+    }
+
+    if (pendingRoots.size() >= capacity) {
+      flush();
+    }
+  }
+
+  /**
+   * Hand the pending acks or fails over to the outputter, one AckTuple per root
+   */
+  void flush() {
+    for (Map.Entry<HeronTuples.RootId, long[]> entry : pendingRoots.entrySet()) {
+      HeronTuples.RootId root = entry.getKey();
+      long[] pending = entry.getValue();
+
+      HeronTuples.AckTuple.Builder bldr = HeronTuples.AckTuple.newBuilder();
+      bldr.setAckedtuple(pending[0]);
+      bldr.addRoots(root);
+      if (pendingFails) {
+        outputter.addFailTuple(bldr, root.getSerializedSize());
+      } else {
+        outputter.addAckTuple(bldr, root.getSerializedSize());
+      }
+
+      boltMetrics.sentAckTuple((int) pending[1]);
+    }
+    pendingRoots.clear();
+  }
+
+  int size() {
+    return pendingRoots.size();
+  }
+
+  void clear() {
+    pendingRoots.clear();
+  }
+}
@@ -0,0 +1,635 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.instance.bolt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.protobuf.Message;
+
+import com.twitter.heron.api.bolt.IOutputCollector;
+import com.twitter.heron.api.generated.TopologyAPI;
+import com.twitter.heron.api.metric.CountMetric;
+import com.twitter.heron.api.metric.Histogram;
+import com.twitter.heron.api.metric.HistogramMetric;
+import com.twitter.heron.api.metric.IMetric;
+import com.twitter.heron.api.metric.IMetricsRegister;
+import com.twitter.heron.api.serializer.IPluggableSerializer;
+import com.twitter.heron.api.tuple.Fields;
+import com.twitter.heron.api.tuple.Tuple;
+import com.twitter.heron.common.basics.Communicator;
+import com.twitter.heron.common.basics.SingletonRegistry;
+import com.twitter.heron.common.basics.WakeableLooper;
+import com.twitter.heron.common.config.SystemConfig;
+import com.twitter.heron.common.utils.metrics.BoltMetrics;
+import com.twitter.heron.common.utils.metrics.FullBoltMetrics;
+import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
+import com.twitter.heron.common.utils.misc.SerializeDeSerializeHelper;
+import com.twitter.heron.proto.system.HeronTuples;
+
+/**
+ * Executes a thread-safe bolt on several threads of the instance.
+ * <p>
+ * The instance thread keeps reading the tuples from the stream manager, and dispatches them to
+ * the executor threads. Tuples of a stream with a fields grouping are partitioned by the
+ * serialized values of the grouping fields, so the tuples of a key are executed in order by the
+ * same thread. Tuples of other streams are dispatched round-robin.
+ * <p>
+ * Every executor thread has its own serializer, output collector and metrics, so executing a
+ * tuple does not contend with the other threads. The tuple sets emitted by an executor thread
+ * are handed back to the instance thread through a bounded queue, and the instance thread
+ * remains the only thread writing to the out stream queue. It only moves as many tuple sets as
+ * the out stream queue has room for, and an executor thread stops executing tuples while its
+ * own queue or the out stream queue is full. The instance thread never blocks on an executor
+ * thread: tuples that do not fit in the queue of their thread are held, and the instance thread
+ * stops reading tuples until they are dispatched. The metrics of all the threads are merged
+ * when they are exported, and the execute count and latency of each thread are exported as well.
+ * <p>
+ * Everything a tuple execution calls runs on the executor threads, concurrently: the bolt, but
+ * also the custom groupings of the streams it emits to and the task hooks of the bolt.
+ */
+class BoltExecutorPool {
+  private static final Logger LOG = Logger.getLogger(BoltExecutorPool.class.getName());
+
+  // The # of tuples waiting to be executed by each thread
+  private static final int WORKER_QUEUE_CAPACITY = 1024;
+  private static final long BACK_PRESSURE_WAIT_NS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long SHUTDOWN_WAIT_MS = 1000;
+
+  private final BoltInstance boltInstance;
+  private final BoltOutputCollectorImpl mainCollector;
+  private final BoltMetrics mainMetrics;
+  private final Communicator<Message> streamOutQueue;
+  private final WakeableLooper looper;
+  private final Worker[] workers;
+  private final long executeBatchTimeNs;
+  private final int metricsExportIntervalSecs;
+
+  // The indices of the grouping fields of the input streams with a fields grouping
+  private final Map<TopologyAPI.StreamId, int[]> groupingFieldIndices = new HashMap<>();
+  private int nextWorker;
+  // The first executor thread whose output is moved, rotated so that no thread starves
+  private int nextDrainedWorker;
+  // The tuples dispatched while the queue of their executor thread was full, in order. Only
+  // accessed from the instance thread
+  private final Deque<PendingTuple> heldTuples = new ArrayDeque<>();
+  // Whether tuples are held, so the executor threads wake up the instance thread as they
+  // make room in their queues
+  private volatile boolean holdingTuples;
+
+  // The # of tuples dispatched but not yet executed and flushed
+  private final AtomicLong pendingTuples = new AtomicLong();
+  private volatile Throwable failure;
+  private volatile boolean running;
+
+  BoltExecutorPool(int nThreads,
+                   BoltInstance boltInstance,
+                   PhysicalPlanHelper helper,
+                   BoltOutputCollectorImpl mainCollector,
+                   BoltMetrics mainMetrics,
+                   Communicator<Message> streamOutQueue,
+                   WakeableLooper looper) {
+    this.boltInstance = boltInstance;
+    this.mainCollector = mainCollector;
+    this.mainMetrics = mainMetrics;
+    this.streamOutQueue = streamOutQueue;
+    this.looper = looper;
+    SystemConfig systemConfig =
+        (SystemConfig) SingletonRegistry.INSTANCE.getSingleton(SystemConfig.HERON_SYSTEM_CONFIG);
+    this.executeBatchTimeNs = systemConfig.getInstanceExecuteBatchTime().toNanos();
+    this.metricsExportIntervalSecs =
+        (int) systemConfig.getHeronMetricsExportInterval().getSeconds();
+
+    for (TopologyAPI.InputStream inputStream : helper.getMyBolt().getInputsList()) {
+      if (inputStream.getGtype() == TopologyAPI.Grouping.FIELDS) {
+        TopologyAPI.StreamId stream = inputStream.getStream();
+        Fields fields = helper.getTopologyContext().getComponentOutputFields(
+            stream.getComponentName(), stream.getId());
+        List<TopologyAPI.StreamSchema.KeyType> keys = inputStream.getGroupingFields().getKeysList();
+        int[] indices = new int[keys.size()];
+        for (int i = 0; i < indices.length; i++) {
+          indices[i] = fields.fieldIndex(keys.get(i).getKey());
+        }
+        groupingFieldIndices.put(stream, indices);
+      }
+    }
+
+    this.workers = new Worker[nThreads];
+    for (int i = 0; i < nThreads; i++) {
+      workers[i] = new Worker(i, helper, looper);
+      workers[i].outQueue.init(systemConfig.getInstanceInternalBoltWriteQueueCapacity(),
+          systemConfig.getInstanceTuningExpectedBoltWriteQueueSize(),
+          systemConfig.getInstanceTuningCurrentSampleWeight());
+    }
+  }
+
+  /**
+   * The output collector handed to the bolt, which emits through the collector of the thread
+   * calling it.
+   */
+  IOutputCollector getOutputCollector() {
+    return new ExecutorOutputCollector();
+  }
+
+  /**
+   * Register the metrics of the instance thread and of the executor threads, merged, and the
+   * execute metrics of each executor thread.
+   */
+  void registerMetrics(IMetricsRegister register) {
+    Map<String, MergedMetric> mergedMetrics = new LinkedHashMap<>();
+    Map<String, Integer> intervals = new HashMap<>();
+    // The instance thread gathers the metrics, so its own metrics do not need a lock
+    collectMetrics(mainMetrics, new Object(), mergedMetrics, intervals);
+    for (Worker worker : workers) {
+      collectMetrics(worker.metrics, worker.metricsLock, mergedMetrics, intervals);
+    }
+    for (Map.Entry<String, MergedMetric> entry : mergedMetrics.entrySet()) {
+      register.registerMetric(entry.getKey(), entry.getValue(), intervals.get(entry.getKey()));
+    }
+
+    for (Worker worker : workers) {
+      register.registerMetric("__executor-execute-count/" + worker.index,
+          new MergedMetric().add(worker.metricsLock, worker.executeCount),
+          metricsExportIntervalSecs);
+      register.registerMetric("__executor-execute-latency/" + worker.index,
+          new MergedMetric().add(worker.metricsLock, worker.executeLatency),
+          metricsExportIntervalSecs);
+      register.registerMetric("__executor-queue-size/" + worker.index,
+          (IMetric<Integer>) worker.queue::size, metricsExportIntervalSecs);
+    }
+  }
+
+  void start() {
+    running = true;
+    for (Worker worker : workers) {
+      worker.start();
+    }
+  }
+
+  /**
+   * Whether the executor threads can take more tuples, i.e., no tuple is held because the queue
+   * of its executor thread is full. The instance thread stops reading tuples while they cannot.
+   */
+  boolean isAcceptingTuples() {
+    return heldTuples.isEmpty();
+  }
+
+  /**
+   * Dispatch the data tuples of a tuple set to the executor threads. Never blocks: the tuples
+   * that do not fit in the queue of their executor thread are held, along with all the tuples
+   * after them, and dispatched in order by the next calls to drainOutput().
+   */
+  void dispatch(TopologyAPI.StreamId stream, int nValues, int sourceTaskId,
+                List<HeronTuples.HeronDataTuple> dataTuples) {
+    checkFailure();
+    int[] indices = groupingFieldIndices.get(stream);
+    for (HeronTuples.HeronDataTuple dataTuple : dataTuples) {
+      Worker worker;
+      if (indices != null) {
+        int hash = 1;
+        for (int index : indices) {
+          hash = 31 * hash + dataTuple.getValues(index).hashCode();
+        }
+        worker = workers[Math.floorMod(hash, workers.length)];
+      } else {
+        worker = workers[nextWorker];
+        nextWorker = (nextWorker + 1) % workers.length;
+      }
+
+      pendingTuples.incrementAndGet();
+      PendingTuple pending = new PendingTuple(dataTuple, stream, nValues, sourceTaskId, worker);
+      // Keep the order of the tuples of a key behind the first one held
+      if (!heldTuples.isEmpty() || !worker.queue.offer(pending)) {
+        heldTuples.add(pending);
+        holdingTuples = true;
+      }
+    }
+  }
+
+  // Dispatch the held tuples, in order, until one does not fit in the queue of its thread
+  private void dispatchHeldTuples() {
+    PendingTuple pending;
+    while ((pending = heldTuples.peek()) != null && pending.worker.queue.offer(pending)) {
+      heldTuples.poll();
+    }
+    holdingTuples = !heldTuples.isEmpty();
+  }
+
+  /**
+   * Move the tuple sets flushed by the executor threads to the out stream queue, as long as it
+   * has room for them, and dispatch the tuples held. Only called from the instance thread.
+   */
+  void drainOutput() {
+    checkFailure();
+    dispatchHeldTuples();
+    drainOutput(streamOutQueue.getExpectedAvailableCapacity() - streamOutQueue.size());
+  }
+
+  private void drainOutput(int maxMessages) {
+    if (maxMessages <= 0) {
+      return;
+    }
+    List<Message> messages = new ArrayList<>();
+    for (int i = 0; i < workers.length && messages.size() < maxMessages; i++) {
+      Worker worker = workers[(nextDrainedWorker + i) % workers.length];
+      worker.outQueue.drainTo(messages, maxMessages - messages.size());
+    }
+    nextDrainedWorker = (nextDrainedWorker + 1) % workers.length;
+    if (!messages.isEmpty()) {
+      streamOutQueue.offerAll(messages);
+    }
+  }
+
+  /**
+   * Wait until all the dispatched tuples are executed, and their output is in the out stream
+   * queue, e.g., before checkpointing the state of the bolt.
+   */
+  void awaitIdle() {
+    while (pendingTuples.get() > 0) {
+      // The executor threads may be waiting for room in their output queues, and tuples for
+      // room in their input queues
+      drainOutput();
+      LockSupport.parkNanos(BACK_PRESSURE_WAIT_NS);
+    }
+    checkFailure();
+    // The output of the executed tuples must precede anything sent after the call, so move
+    // all of it, which the capacity of the output queues bounds
+    drainOutput(Integer.MAX_VALUE);
+  }
+
+  void updatePhysicalPlanHelper(PhysicalPlanHelper helper) {
+    for (Worker worker : workers) {
+      worker.collector.updatePhysicalPlanHelper(helper);
+    }
+  }
+
+  void shutdown() {
+    running = false;
+    for (Worker worker : workers) {
+      worker.interrupt();
+    }
+    for (Worker worker : workers) {
+      try {
+        worker.join(SHUTDOWN_WAIT_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    heldTuples.clear();
+    holdingTuples = false;
+    for (Worker worker : workers) {
+      worker.queue.clear();
+      worker.outQueue.clear();
+    }
+  }
+
+  // Rethrow on the instance thread the failure of an executor thread, so the instance restarts
+  private void checkFailure() {
+    Throwable t = failure;
+    if (t != null) {
+      throw new RuntimeException("Bolt executor thread failed", t);
+    }
+  }
+
+  private static void collectMetrics(BoltMetrics metrics, Object lock,
+                                     Map<String, MergedMetric> mergedMetrics,
+                                     Map<String, Integer> intervals) {
+    metrics.registerMetrics(new IMetricsRegister() {
+      @Override
+      public <T extends IMetric<U>, U> T registerMetric(String name, T metric,
+                                                        int timeBucketSizeInSecs) {
+        MergedMetric merged = mergedMetrics.get(name);
+        if (merged == null) {
+          merged = new MergedMetric();
+          mergedMetrics.put(name, merged);
+          intervals.put(name, timeBucketSizeInSecs);
+        }
+        merged.add(lock, metric);
+        return metric;
+      }
+    });
+  }
+
+  private static final class PendingTuple {
+    private final HeronTuples.HeronDataTuple dataTuple;
+    private final TopologyAPI.StreamId stream;
+    private final int nValues;
+    private final int sourceTaskId;
+    // The executor thread the tuple is dispatched to
+    private final Worker worker;
+
+    private PendingTuple(HeronTuples.HeronDataTuple dataTuple, TopologyAPI.StreamId stream,
+                         int nValues, int sourceTaskId, Worker worker) {
+      this.dataTuple = dataTuple;
+      this.stream = stream;
+      this.nValues = nValues;
+      this.sourceTaskId = sourceTaskId;
+      this.worker = worker;
+    }
+  }
+
+  private final class Worker extends Thread {
+    private final int index;
+    // Guards the metrics of the thread: held while updating them, and while gathering them
+    private final Object metricsLock = new Object();
+    private final BlockingQueue<PendingTuple> queue =
+        new ArrayBlockingQueue<>(WORKER_QUEUE_CAPACITY);
+    // The tuple sets flushed by this thread, to be moved to the out stream queue
+    private final Communicator<Message> outQueue;
+    private final IPluggableSerializer serializer;
+    private final BoltMetrics metrics;
+    private final BoltOutputCollectorImpl collector;
+    private final CountMetric executeCount = new CountMetric();
+    private final HistogramMetric executeLatency = new HistogramMetric();
+
+    private Worker(int index, PhysicalPlanHelper helper, WakeableLooper looper) {
+      super("heron-bolt-executor-" + index);
+      setDaemon(true);
+      this.index = index;
+      // Wake up the instance thread when there is output to move to the out stream queue
+      this.outQueue = new Communicator<>(null, looper);
+      this.serializer =
+          SerializeDeSerializeHelper.getTupleSerializer(
+              helper.getTopologyContext().getTopologyConfig());
+      this.metrics = new LockedBoltMetrics(metricsLock);
+      this.metrics.initMultiCountMetrics(helper);
+      this.collector = new BoltOutputCollectorImpl(serializer, helper, outQueue, metrics);
+    }
+
+    @Override
+    public void run() {
+      try {
+        long startOfBatch = System.nanoTime();
+        while (running) {
+          // Back-pressure -- only execute tuples if their output could be sent out
+          if (!collector.isOutQueuesAvailable() || !mainCollector.isOutQueuesAvailable()) {
+            metrics.updateOutQueueFullCount();
+            LockSupport.parkNanos(BACK_PRESSURE_WAIT_NS);
+            continue;
+          }
+
+          PendingTuple pending = queue.poll(executeBatchTimeNs, TimeUnit.NANOSECONDS);
+          if (pending == null) {
+            // Nothing to execute, send out a held tuple set once it reaches its deadline
+            collector.sendOutTuples();
+            continue;
+          }
+          if (holdingTuples) {
+            // There is room in the queue now, so let the instance thread dispatch the tuples
+            // it holds
+            looper.wakeUp();
+          }
+          long startExecuteTuple = System.nanoTime();
+          boltInstance.executeTuple(pending.dataTuple, pending.stream, pending.nValues,
+              pending.sourceTaskId, collector, serializer, metrics);
+          long endExecuteTuple = System.nanoTime();
+          synchronized (metricsLock) {
+            executeCount.incr();
+            executeLatency.update(endExecuteTuple - startExecuteTuple);
+          }
+
+          // Flush once there is nothing else to execute, or the batch is long enough
+          if (queue.isEmpty() || endExecuteTuple - startOfBatch - executeBatchTimeNs > 0) {
+            collector.sendOutTuples();
+            startOfBatch = endExecuteTuple;
+          }
+          pendingTuples.decrementAndGet();
+        }
+      } catch (InterruptedException e) {
+        // Shutting down
+        LOG.fine("Bolt executor thread " + index + " is interrupted");
+      } catch (Throwable t) {
+        LOG.log(Level.SEVERE, "Bolt executor thread " + index + " failed", t);
+        failure = t;
+        // Let the instance thread rethrow it
+        outQueue.informConsumer();
+      }
+    }
+  }
+
+  /**
+   * The metrics of an executor thread, updated under the lock also taken to gather them.
+   * The lock is only contended while the metrics are gathered.
+   */
+  private static final class LockedBoltMetrics extends FullBoltMetrics {
+    private final Object lock;
+
+    private LockedBoltMetrics(Object lock) {
+      this.lock = lock;
+    }
+
+    @Override
+    public void ackedTuple(String streamId, String sourceComponent, long latency) {
+      synchronized (lock) {
+        super.ackedTuple(streamId, sourceComponent, latency);
+      }
+    }
+
+    @Override
+    public void failedTuple(String streamId, String sourceComponent, long latency) {
+      synchronized (lock) {
+        super.failedTuple(streamId, sourceComponent, latency);
+      }
+    }
+
+    @Override
+    public void executeTuple(String streamId, String sourceComponent, long latency) {
+      synchronized (lock) {
+        super.executeTuple(streamId, sourceComponent, latency);
+      }
+    }
+
+    @Override
+    public void emittedTuple(String streamId) {
+      synchronized (lock) {
+        super.emittedTuple(streamId);
+      }
+    }
+
+    @Override
+    public void updateOutQueueFullCount() {
+      synchronized (lock) {
+        super.updateOutQueueFullCount();
+      }
+    }
+
+    @Override
+    public void flushedDataTupleSet(String reason, int tupleCount) {
+      synchronized (lock) {
+        super.flushedDataTupleSet(reason, tupleCount);
+      }
+    }
+
+    @Override
+    public void updateDataTupleSetCapacity(int capacity) {
+      synchronized (lock) {
+        super.updateDataTupleSetCapacity(capacity);
+      }
+    }
+
+    @Override
+    public void sentAckTuple(int coalescedCount) {
+      synchronized (lock) {
+        super.sentAckTuple(coalescedCount);
+      }
+    }
+
+    @Override
+    public void deserializeDataTuple(String streamId, String sourceComponent, long latency) {
+      synchronized (lock) {
+        super.deserializeDataTuple(streamId, sourceComponent, latency);
+      }
+    }
+
+    @Override
+    public void serializeDataTuple(String streamId, long latency) {
+      synchronized (lock) {
+        super.serializeDataTuple(streamId, latency);
+      }
+    }
+  }
+
+  /**
+   * Emits through the collector of the executor thread calling it, or through the collector
+   * of the instance for any other thread, e.g., for tick tuples.
+   */
+  private final class ExecutorOutputCollector implements IOutputCollector {
+    private BoltOutputCollectorImpl current() {
+      Thread thread = Thread.currentThread();
+      return thread instanceof Worker ? ((Worker) thread).collector : mainCollector;
+    }
+
+    @Override
+    public List<Integer> emit(String streamId, Collection<Tuple> anchors, List<Object> tuple) {
+      return current().emit(streamId, anchors, tuple);
+    }
+
+    @Override
+    public void emitDirect(int taskId, String streamId,
+                           Collection<Tuple> anchors, List<Object> tuple) {
+      current().emitDirect(taskId, streamId, anchors, tuple);
+    }
+
+    @Override
+    public void ack(Tuple input) {
+      current().ack(input);
+    }
+
+    @Override
+    public void fail(Tuple input) {
+      current().fail(input);
+    }
+
+    @Override
+    public void reportError(Throwable error) {
+      current().reportError(error);
+    }
+  }
+
+  /**
+   * The merge of the values of the same metric, registered by several threads. Each metric is
+   * read under the lock of its thread. Counts are added up and histograms merged. Means are
+   * averaged, since the # of values behind each of them is not known.
+   */
+  private static final class MergedMetric implements IMetric<Object> {
+    private final List<Object> locks = new ArrayList<>();
+    private final List<IMetric<?>> metrics = new ArrayList<>();
+
+    private MergedMetric add(Object lock, IMetric<?> metric) {
+      locks.add(lock);
+      metrics.add(metric);
+      return this;
+    }
+
+    @Override
+    public Object getValueAndReset() {
+      Object merged = null;
+      for (int i = 0; i < metrics.size(); i++) {
+        synchronized (locks.get(i)) {
+          Object value = metrics.get(i).getValueAndReset();
+          // Histograms are only valid until the next call, so merge them under the lock
+          if (value != null) {
+            merged = merge(merged, value);
+          }
+        }
+      }
+      return finish(merged);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object merge(Object merged, Object value) {
+      if (value instanceof Histogram) {
+        Histogram histogram = merged == null ? new Histogram() : (Histogram) merged;
+        histogram.merge((Histogram) value);
+        return histogram;
+      } else if (value instanceof Map) {
+        Map<Object, Object> map =
+            merged == null ? new HashMap<>() : (Map<Object, Object>) merged;
+        for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) value).entrySet()) {
+          if (entry.getValue() != null) {
+            map.put(entry.getKey(), merge(map.get(entry.getKey()), entry.getValue()));
+          }
+        }
+        return map;
+      } else if (value instanceof Double) {
+        Mean mean = merged == null ? new Mean() : (Mean) merged;
+        mean.sum += (Double) value;
+        mean.count++;
+        return mean;
+      } else if (merged == null) {
+        return value;
+      } else if (value instanceof Long) {
+        return (Long) merged + (Long) value;
+      } else if (value instanceof Integer) {
+        return (Integer) merged + (Integer) value;
+      }
+      // Not a number, so keep the first value
+      return merged;
+    }
+
+    // Replace the sums of means by their averages
+    @SuppressWarnings("unchecked")
+    private static Object finish(Object merged) {
+      if (merged instanceof Mean) {
+        Mean mean = (Mean) merged;
+        return mean.sum / mean.count;
+      } else if (merged instanceof Map) {
+        for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) merged).entrySet()) {
+          entry.setValue(finish(entry.getValue()));
+        }
+      }
+      return merged;
+    }
+  }
+
+  private static final class Mean {
+    private double sum;
+    private int count;
+  }
+}
@@ -26,6 +26,8 @@ import com.google.protobuf.Message;
 
 import com.twitter.heron.api.Config;
 import com.twitter.heron.api.bolt.IBolt;
+import com.twitter.heron.api.bolt.ICombiner;
+import com.twitter.heron.api.bolt.IOutputCollector;
 import com.twitter.heron.api.bolt.OutputCollector;
 import com.twitter.heron.api.generated.TopologyAPI;
 import com.twitter.heron.api.metric.GlobalMetrics;
@@ -44,6 +46,7 @@ import com.twitter.heron.common.utils.metrics.FullBoltMetrics;
 import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
 import com.twitter.heron.common.utils.misc.SerializeDeSerializeHelper;
 import com.twitter.heron.common.utils.topology.TopologyContextImpl;
+import com.twitter.heron.common.utils.tuple.LazyValueList;
 import com.twitter.heron.common.utils.tuple.TickTuple;
 import com.twitter.heron.common.utils.tuple.TupleImpl;
 import com.twitter.heron.instance.IInstance;
@@ -53,6 +56,7 @@ import com.twitter.heron.proto.system.HeronTuples;
 
 public class BoltInstance implements IInstance {
   private static final Logger LOG = Logger.getLogger(BoltInstance.class.getName());
+  private static final Duration DEFAULT_COMBINER_FLUSH_INTERVAL = Duration.ofMillis(100);
 
   protected PhysicalPlanHelper helper;
   protected final IBolt bolt;
@@ -64,12 +68,22 @@ public class BoltInstance implements IInstance {
 
   private final boolean isTopologyStateful;
 
+  // Whether to deserialize the values of input tuples only when the bolt reads them
+  private final boolean isLazyDeserialization;
+
   private State<Serializable, Serializable> instanceState;
 
   private final SlaveLooper looper;
 
   private final SystemConfig systemConfig;
 
+  // Only set if the bolt is executed by several threads
+  private final BoltExecutorPool executorPool;
+
+  // Only set if the bolt implements ICombiner
+  private final CombiningOutputCollector combiningCollector;
+  private final Duration combinerFlushInterval;
+
   public BoltInstance(PhysicalPlanHelper helper,
                       Communicator<Message> streamInQueue,
                       Communicator<Message> streamOutQueue,
@@ -80,7 +94,8 @@ public class BoltInstance implements IInstance {
     this.boltMetrics = new FullBoltMetrics();
     this.boltMetrics.initMultiCountMetrics(helper);
     this.serializer =
-        SerializeDeSerializeHelper.getSerializer(helper.getTopologyContext().getTopologyConfig());
+        SerializeDeSerializeHelper.getTupleSerializer(
+            helper.getTopologyContext().getTopologyConfig());
     this.systemConfig = (SystemConfig) SingletonRegistry.INSTANCE.getSingleton(
         SystemConfig.HERON_SYSTEM_CONFIG);
 
@@ -90,6 +105,9 @@ public class BoltInstance implements IInstance {
 
     LOG.info("Is this topology stateful: " + isTopologyStateful);
 
+    this.isLazyDeserialization = config.get(Config.TOPOLOGY_LAZY_TUPLE_DESERIALIZATION) != null
+        && Boolean.parseBoolean(config.get(Config.TOPOLOGY_LAZY_TUPLE_DESERIALIZATION).toString());
+
     if (helper.getMyBolt() == null) {
       throw new RuntimeException("HeronBoltInstance has no bolt in physical plan.");
     }
@@ -113,6 +131,32 @@ public class BoltInstance implements IInstance {
       throw new RuntimeException("Neither java_object nor java_class_name set for bolt");
     }
     collector = new BoltOutputCollectorImpl(serializer, helper, streamOutQueue, boltMetrics);
+    collector.setLooper(looper);
+
+    int executorThreads = config.get(Config.TOPOLOGY_BOLT_EXECUTOR_THREADS) == null
+        ? 1 : TypeUtils.getInteger(config.get(Config.TOPOLOGY_BOLT_EXECUTOR_THREADS));
+    if (executorThreads > 1) {
+      LOG.info("Executing the bolt with " + executorThreads + " threads");
+      executorPool = new BoltExecutorPool(executorThreads, this, helper, collector, boltMetrics,
+          streamOutQueue, looper);
+    } else {
+      executorPool = null;
+    }
+
+    if (bolt instanceof ICombiner) {
+      IOutputCollector boltCollector =
+          executorPool != null ? executorPool.getOutputCollector() : collector;
+      combiningCollector = new CombiningOutputCollector(boltCollector, (ICombiner) bolt,
+          systemConfig.getInstanceSetDataTupleCapacity());
+      Object flushIntervalMs = config.get(Config.TOPOLOGY_COMBINER_FLUSH_INTERVAL_MS);
+      combinerFlushInterval = flushIntervalMs == null
+          ? DEFAULT_COMBINER_FLUSH_INTERVAL
+          : TypeUtils.getDuration(flushIntervalMs, ChronoUnit.MILLIS);
+      LOG.info("Combining the tuples of frequent keys every " + combinerFlushInterval);
+    } else {
+      combiningCollector = null;
+      combinerFlushInterval = null;
+    }
   }
 
   @Override
@@ -121,6 +165,9 @@ public class BoltInstance implements IInstance {
       ((IUpdatable) bolt).update(physicalPlanHelper.getTopologyContext());
     }
     collector.updatePhysicalPlanHelper(physicalPlanHelper);
+    if (executorPool != null) {
+      executorPool.updatePhysicalPlanHelper(physicalPlanHelper);
+    }
 
     // Re-prepare the CustomStreamGrouping since the downstream tasks can change
     physicalPlanHelper.prepareForCustomStreamGrouping();
@@ -139,6 +186,16 @@ public class BoltInstance implements IInstance {
       throw new RuntimeException("Could not save a non-stateful topology's state");
     }
 
+    // The state must include all the tuples received before the checkpoint marker
+    if (executorPool != null) {
+      executorPool.awaitIdle();
+    }
+
+    // The combined tuples come from tuples received before the checkpoint marker
+    if (combiningCollector != null) {
+      combiningCollector.flush();
+    }
+
     // Checkpoint
     if (bolt instanceof IStatefulComponent) {
       ((IStatefulComponent) bolt).preSave(checkpointId);
@@ -155,7 +212,15 @@ public class BoltInstance implements IInstance {
     // Initialize the GlobalMetrics
     GlobalMetrics.init(topologyContext, systemConfig.getHeronMetricsExportInterval());
 
-    boltMetrics.registerMetrics(topologyContext);
+    if (executorPool != null) {
+      executorPool.registerMetrics(topologyContext);
+    } else {
+      boltMetrics.registerMetrics(topologyContext);
+    }
+    if (combiningCollector != null) {
+      combiningCollector.registerMetrics(topologyContext,
+          (int) systemConfig.getHeronMetricsExportInterval().getSeconds());
+    }
 
     // Initialize the instanceState if the bolt is stateful
     if (bolt instanceof IStatefulComponent) {
@@ -164,8 +229,14 @@ public class BoltInstance implements IInstance {
     }
 
     // Delegate
+    IOutputCollector boltCollector;
+    if (combiningCollector != null) {
+      boltCollector = combiningCollector;
+    } else {
+      boltCollector = executorPool != null ? executorPool.getOutputCollector() : collector;
+    }
     bolt.prepare(
-        topologyContext.getTopologyConfig(), topologyContext, new OutputCollector(collector));
+        topologyContext.getTopologyConfig(), topologyContext, new OutputCollector(boltCollector));
 
     // Invoke user-defined prepare task hook
     topologyContext.invokeHookPrepare();
@@ -184,6 +255,10 @@ public class BoltInstance implements IInstance {
     // Invoke clean up hook before clean() is called
     helper.getTopologyContext().invokeHookCleanup();
 
+    if (executorPool != null) {
+      executorPool.shutdown();
+    }
+
     // Delegate to user-defined clean-up method
     bolt.cleanup();
 
@@ -203,8 +278,13 @@ public class BoltInstance implements IInstance {
     Runnable boltTasks = new Runnable() {
       @Override
       public void run() {
+        // Move the tuples emitted by the executor threads to the out queue
+        if (executorPool != null) {
+          executorPool.drainOutput();
+        }
+
         // Back-pressure -- only when we could send out tuples will we read & execute tuples
-        if (collector.isOutQueuesAvailable()) {
+        if (collector.isOutQueuesAvailable() && isExecutorPoolAccepting()) {
           readTuplesAndExecute(streamInQueue);
 
           // Though we may execute MAX_READ tuples, finally we will packet it as
@@ -216,7 +296,8 @@ public class BoltInstance implements IInstance {
         }
 
         // If there are more to read, we will wake up itself next time when it doWait()
-        if (collector.isOutQueuesAvailable() && !streamInQueue.isEmpty()) {
+        if (collector.isOutQueuesAvailable() && isExecutorPoolAccepting()
+            && !streamInQueue.isEmpty()) {
           looper.wakeUp();
         }
       }
@@ -224,7 +305,12 @@ public class BoltInstance implements IInstance {
     looper.addTasksOnWakeup(boltTasks);
 
     PrepareTickTupleTimer();
+    PrepareCombinerTimer();
     InstanceUtils.prepareTimerEvents(looper, helper);
+
+    if (executorPool != null) {
+      executorPool.start();
+    }
   }
 
   @Override
@@ -233,8 +319,8 @@ public class BoltInstance implements IInstance {
     Duration instanceExecuteBatchTime = systemConfig.getInstanceExecuteBatchTime();
 
     long startOfCycle = System.nanoTime();
-    // Read data from in Queues
-    while (!inQueue.isEmpty()) {
+    // Read data from in Queues, until the executor threads, if any, hold back tuples
+    while (!inQueue.isEmpty() && isExecutorPoolAccepting()) {
       Message msg = inQueue.poll();
 
       if (msg instanceof CheckpointManager.InitiateStatefulCheckpoint) {
@@ -256,31 +342,13 @@ public class BoltInstance implements IInstance {
             stream.getComponentName(), stream.getId()).size();
         int sourceTaskId = tuples.getSrcTaskId();
 
-        for (HeronTuples.HeronDataTuple dataTuple : tuples.getData().getTuplesList()) {
-          long startExecuteTuple = System.nanoTime();
-          // Create the value list and fill the value
-          List<Object> values = new ArrayList<>(nValues);
-          for (int i = 0; i < nValues; i++) {
-            values.add(serializer.deserialize(dataTuple.getValues(i).toByteArray()));
+        if (executorPool != null) {
+          executorPool.dispatch(stream, nValues, sourceTaskId, tuples.getData().getTuplesList());
+        } else {
+          for (HeronTuples.HeronDataTuple dataTuple : tuples.getData().getTuplesList()) {
+            executeTuple(dataTuple, stream, nValues, sourceTaskId, collector, serializer,
+                boltMetrics);
           }
-
-          // Decode the tuple
-          TupleImpl t = new TupleImpl(topologyContext, stream, dataTuple.getKey(),
-              dataTuple.getRootsList(), values, startExecuteTuple, false, sourceTaskId);
-
-          // Delegate to the use defined bolt
-          bolt.execute(t);
-
-          // record the end of a tuple execution
-          long endExecuteTuple = System.nanoTime();
-
-          long executeLatency = endExecuteTuple - startExecuteTuple;
-
-          // Invoke user-defined execute task hook
-          topologyContext.invokeHookBoltExecute(t, Duration.ofNanos(executeLatency));
-
-          // Update metrics
-          boltMetrics.executeTuple(stream.getId(), stream.getComponentName(), executeLatency);
         }
 
         // To avoid spending too much time
@@ -292,6 +360,57 @@ public class BoltInstance implements IInstance {
     }
   }
 
+  // Whether the executor threads, if any, take more tuples
+  private boolean isExecutorPoolAccepting() {
+    return executorPool == null || executorPool.isAcceptingTuples();
+  }
+
+  /**
+   * Decode a data tuple and execute it, with the collector, serializer and metrics of the
+   * calling thread
+   */
+  void executeTuple(HeronTuples.HeronDataTuple dataTuple,
+                    TopologyAPI.StreamId stream,
+                    int nValues,
+                    int sourceTaskId,
+                    BoltOutputCollectorImpl tupleCollector,
+                    IPluggableSerializer tupleSerializer,
+                    BoltMetrics metrics) {
+    TopologyContextImpl topologyContext = helper.getTopologyContext();
+    long startExecuteTuple = System.nanoTime();
+    List<Object> values;
+    if (isLazyDeserialization) {
+      // Values will be deserialized when they are read
+      values = new LazyValueList(dataTuple.getValuesList(), nValues, tupleSerializer);
+    } else {
+      // Create the value list and fill the value
+      values = new ArrayList<>(nValues);
+      for (int i = 0; i < nValues; i++) {
+        values.add(tupleSerializer.deserialize(dataTuple.getValues(i).toByteArray()));
+      }
+    }
+
+    // Decode the tuple
+    TupleImpl t = new TupleImpl(topologyContext, stream, dataTuple.getKey(),
+        dataTuple.getRootsList(), values, startExecuteTuple, false, sourceTaskId);
+
+    // Delegate to the use defined bolt
+    tupleCollector.setCurrentInputValues(values);
+    bolt.execute(t);
+    tupleCollector.setCurrentInputValues(null);
+
+    // record the end of a tuple execution
+    long endExecuteTuple = System.nanoTime();
+
+    long executeLatency = endExecuteTuple - startExecuteTuple;
+
+    // Invoke user-defined execute task hook
+    topologyContext.invokeHookBoltExecute(t, Duration.ofNanos(executeLatency));
+
+    // Update metrics
+    metrics.executeTuple(stream.getId(), stream.getComponentName(), executeLatency);
+  }
+
   @Override
   public void activate() {
   }
@@ -313,6 +432,15 @@ public class BoltInstance implements IInstance {
     }
   }
 
+  private void PrepareCombinerTimer() {
+    if (combiningCollector != null) {
+      looper.registerPeriodicEvent(combinerFlushInterval, () -> {
+        combiningCollector.flush();
+        collector.sendOutTuples();
+      });
+    }
+  }
+
   private void SendTickTuple() {
     TickTuple t = new TickTuple();
     long startTime = System.nanoTime();
@@ -14,6 +14,7 @@
 
 package com.twitter.heron.instance.bolt;
 
+import java.io.Serializable;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.HashSet;
@@ -22,14 +23,19 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.protobuf.ByteString;
 import com.google.protobuf.Message;
 
 import com.twitter.heron.api.bolt.IOutputCollector;
 import com.twitter.heron.api.serializer.IPluggableSerializer;
+import com.twitter.heron.api.state.State;
 import com.twitter.heron.api.tuple.Tuple;
 import com.twitter.heron.common.basics.Communicator;
+import com.twitter.heron.common.basics.SingletonRegistry;
+import com.twitter.heron.common.config.SystemConfig;
 import com.twitter.heron.common.utils.metrics.BoltMetrics;
 import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
+import com.twitter.heron.common.utils.tuple.LazyValueList;
 import com.twitter.heron.common.utils.tuple.TupleImpl;
 import com.twitter.heron.instance.AbstractOutputCollector;
 import com.twitter.heron.proto.system.HeronTuples;
@@ -48,8 +54,9 @@ import com.twitter.heron.proto.system.HeronTuples;
  * 3. Update the metrics
  * <p>
  * For Control tuples (ack &amp; fail):
- * 1. Set the anchors for a tuple
- * 2. Pack the tuple and submit the OutgoingTupleCollection's addDataTuple
+ * 1. Coalesce them by root with the acks or fails not sent out yet, see AckCoalescer
+ * 2. Submit them to the OutgoingTupleCollection's addAckTuple or addFailTuple when the
+ * tuples are sent out
  * 3. Update the metrics
  */
 public class BoltOutputCollectorImpl extends AbstractOutputCollector implements IOutputCollector {
@@ -58,6 +65,12 @@ public class BoltOutputCollectorImpl extends AbstractOutputCollector implements
   // Reference to update the bolt metrics
   private final BoltMetrics boltMetrics;
 
+  // Values of the tuple being executed, if they are deserialized lazily
+  private LazyValueList currentInputValues;
+
+  // Acks and fails not handed over to the outputter yet
+  private final AckCoalescer ackCoalescer;
+
   protected BoltOutputCollectorImpl(IPluggableSerializer serializer,
                                     PhysicalPlanHelper helper,
                                     Communicator<Message> streamOutQueue,
@@ -65,6 +78,11 @@ public class BoltOutputCollectorImpl extends AbstractOutputCollector implements
     super(serializer, helper, streamOutQueue, boltMetrics);
     this.boltMetrics = boltMetrics;
 
+    SystemConfig systemConfig =
+        (SystemConfig) SingletonRegistry.INSTANCE.getSingleton(SystemConfig.HERON_SYSTEM_CONFIG);
+    this.ackCoalescer = new AckCoalescer(
+        outputter, boltMetrics, systemConfig.getInstanceSetControlTupleCapacity());
+
     if (helper.getMyBolt() == null) {
       throw new RuntimeException(helper.getMyTaskId() + " is not a bolt ");
     }
@@ -96,6 +114,43 @@ public class BoltOutputCollectorImpl extends AbstractOutputCollector implements
     admitFailTuple(input);
   }
 
+  @Override
+  public void sendOutTuples() {
+    ackCoalescer.flush();
+    super.sendOutTuples();
+  }
+
+  @Override
+  public void sendOutState(State<Serializable, Serializable> state,
+                           String checkpointId) {
+    ackCoalescer.flush();
+    super.sendOutState(state, checkpointId);
+  }
+
+  @Override
+  public void clear() {
+    ackCoalescer.clear();
+    super.clear();
+  }
+
+  // Set the values of the tuple the bolt is about to execute, or null when it is done
+  void setCurrentInputValues(List<Object> values) {
+    if (values instanceof LazyValueList) {
+      currentInputValues = (LazyValueList) values;
+    } else {
+      currentInputValues = null;
+    }
+  }
+
+  @Override
+  protected ByteString getSerializedValue(Object value) {
+    // A value the bolt took from its input tuple unchanged can be forwarded as-is
+    if (currentInputValues != null) {
+      return currentInputValues.getSerializedValue(value);
+    }
+    return null;
+  }
+
   /////////////////////////////////////////////////////////
   // Following private methods are internal implementations
   /////////////////////////////////////////////////////////
@@ -138,16 +193,7 @@ public class BoltOutputCollectorImpl extends AbstractOutputCollector implements
       if (tuple instanceof TupleImpl) {
         TupleImpl tuplImpl = (TupleImpl) tuple;
 
-        HeronTuples.AckTuple.Builder bldr = HeronTuples.AckTuple.newBuilder();
-        bldr.setAckedtuple(tuplImpl.getTupleKey());
-
-        long tupleSizeInBytes = 0;
-
-        for (HeronTuples.RootId rt : tuplImpl.getRoots()) {
-          bldr.addRoots(rt);
-          tupleSizeInBytes += rt.getSerializedSize();
-        }
-        outputter.addAckTuple(bldr, tupleSizeInBytes);
+        ackCoalescer.ack(tuplImpl);
 
         latency = Duration.ofNanos(System.nanoTime()).minusNanos(tuplImpl.getCreationTime());
       }
@@ -166,16 +212,7 @@ public class BoltOutputCollectorImpl extends AbstractOutputCollector implements
       if (tuple instanceof TupleImpl) {
         TupleImpl tuplImpl = (TupleImpl) tuple;
 
-        HeronTuples.AckTuple.Builder bldr = HeronTuples.AckTuple.newBuilder();
-        bldr.setAckedtuple(tuplImpl.getTupleKey());
-
-        long tupleSizeInBytes = 0;
-
-        for (HeronTuples.RootId rt : tuplImpl.getRoots()) {
-          bldr.addRoots(rt);
-          tupleSizeInBytes += rt.getSerializedSize();
-        }
-        outputter.addFailTuple(bldr, tupleSizeInBytes);
+        ackCoalescer.fail(tuplImpl);
 
         latency = Duration.ofNanos(System.nanoTime()).minusNanos(tuplImpl.getCreationTime());
       }
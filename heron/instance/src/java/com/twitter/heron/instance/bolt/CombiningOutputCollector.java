@@ -0,0 +1,186 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.instance.bolt;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.twitter.heron.api.bolt.ICombiner;
+import com.twitter.heron.api.bolt.IOutputCollector;
+import com.twitter.heron.api.metric.IMetric;
+import com.twitter.heron.api.metric.IMetricsRegister;
+import com.twitter.heron.api.tuple.Tuple;
+import com.twitter.heron.instance.util.FrequencySketch;
+
+/**
+ * Combines the tuples a bolt implementing ICombiner emits for its frequent keys, before they
+ * reach the output collector of the instance.
+ * <p>
+ * The keys of the combinable tuples are counted in a FrequencySketch, halved every
+ * SKETCH_PERIOD tuples. A key is hot once it makes at least 1 / HOT_KEY_RATIO of the tuples
+ * counted. The first tuple of a hot key becomes the pending tuple of its key, and the next
+ * tuples of the key are combined into it, until flush() sends the pending tuples out. They are
+ * also sent out once there are as many pending tuples as the capacity.
+ * <p>
+ * Bolts executed by several threads emit concurrently, so the sketch and the pending tuples are
+ * guarded by this collector. Every unanchored tuple with a combiner key takes the lock, since it
+ * is counted in the sketch even if its key is not hot. Anchored tuples, and tuples without a
+ * combiner key, do not take the lock.
+ */
+class CombiningOutputCollector implements IOutputCollector {
+  // The # of counters in each row of the sketch
+  private static final int SKETCH_WIDTH = 1024;
+  // The # of tuples counted between two halvings of the sketch
+  private static final int SKETCH_PERIOD = 10 * SKETCH_WIDTH;
+  // A key is hot if it makes at least 1 / HOT_KEY_RATIO of the tuples counted,
+  // and was counted at least MIN_HOT_KEY_COUNT times
+  private static final int HOT_KEY_RATIO = 64;
+  private static final int MIN_HOT_KEY_COUNT = 8;
+
+  private final IOutputCollector delegate;
+  private final ICombiner combiner;
+  // Maximum # of pending tuples before they are sent out
+  private final int capacity;
+  private final FrequencySketch sketch;
+
+  // The pending tuple of each stream and key
+  private final Map<String, Map<Object, List<Object>>> pendingTuples;
+  private int pendingCount;
+
+  // The # of tuples combined into a pending tuple, and of pending tuples sent out
+  private long combinedCount;
+  private long flushedCount;
+
+  CombiningOutputCollector(IOutputCollector delegate, ICombiner combiner, int capacity) {
+    this.delegate = delegate;
+    this.combiner = combiner;
+    this.capacity = capacity;
+    this.sketch = new FrequencySketch(SKETCH_WIDTH);
+    this.pendingTuples = new LinkedHashMap<>();
+  }
+
+  @Override
+  public List<Integer> emit(String streamId, Collection<Tuple> anchors, List<Object> tuple) {
+    // Combining anchored tuples would change what is acked
+    if (anchors == null || anchors.isEmpty()) {
+      Object key = combiner.getCombinerKey(streamId, tuple);
+      if (key != null && combine(streamId, key, tuple)) {
+        // Not sent to any task yet
+        return Collections.emptyList();
+      }
+    }
+    return delegate.emit(streamId, anchors, tuple);
+  }
+
+  @Override
+  public void emitDirect(int taskId, String streamId,
+                         Collection<Tuple> anchors, List<Object> tuple) {
+    delegate.emitDirect(taskId, streamId, anchors, tuple);
+  }
+
+  @Override
+  public void ack(Tuple input) {
+    delegate.ack(input);
+  }
+
+  @Override
+  public void fail(Tuple input) {
+    delegate.fail(input);
+  }
+
+  @Override
+  public void reportError(Throwable error) {
+    delegate.reportError(error);
+  }
+
+  /**
+   * Take a tuple if its key is hot or already has a pending tuple
+   *
+   * @return whether the tuple was taken, rather than to be sent out as usual
+   */
+  private synchronized boolean combine(String streamId, Object key, List<Object> tuple) {
+    int count = sketch.increment(key);
+    if (sketch.getTotal() >= SKETCH_PERIOD) {
+      sketch.halve();
+    }
+
+    Map<Object, List<Object>> pending = pendingTuples.get(streamId);
+    if (pending == null) {
+      pending = new HashMap<>();
+      pendingTuples.put(streamId, pending);
+    }
+    List<Object> previous = pending.get(key);
+    if (previous != null) {
+      pending.put(key, combiner.combine(streamId, previous, tuple));
+      combinedCount++;
+      return true;
+    }
+
+    if (count < MIN_HOT_KEY_COUNT || (long) count * HOT_KEY_RATIO < sketch.getTotal()) {
+      return false;
+    }
+    pending.put(key, tuple);
+    pendingCount++;
+    if (pendingCount >= capacity) {
+      flush();
+    }
+    return true;
+  }
+
+  /**
+   * Send the pending tuples out, with the output collector of the calling thread
+   */
+  synchronized void flush() {
+    if (pendingCount == 0) {
+      return;
+    }
+    for (Map.Entry<String, Map<Object, List<Object>>> entry : pendingTuples.entrySet()) {
+      for (List<Object> tuple : entry.getValue().values()) {
+        delegate.emit(entry.getKey(), null, tuple);
+      }
+      entry.getValue().clear();
+    }
+    flushedCount += pendingCount;
+    pendingCount = 0;
+  }
+
+  synchronized int size() {
+    return pendingCount;
+  }
+
+  void registerMetrics(IMetricsRegister metricsRegister, int interval) {
+    metricsRegister.registerMetric("__combiner-combined-count",
+        (IMetric<Long>) this::getAndResetCombinedCount, interval);
+    metricsRegister.registerMetric("__combiner-flushed-count",
+        (IMetric<Long>) this::getAndResetFlushedCount, interval);
+  }
+
+  private synchronized long getAndResetCombinedCount() {
+    long count = combinedCount;
+    combinedCount = 0;
+    return count;
+  }
+
+  private synchronized long getAndResetFlushedCount() {
+    long count = flushedCount;
+    flushedCount = 0;
+    return count;
+  }
+}
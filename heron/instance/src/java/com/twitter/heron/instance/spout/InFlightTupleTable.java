@@ -0,0 +1,272 @@
+//  Copyright 2017 Twitter. All rights reserved.
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.twitter.heron.instance.spout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The table of the rooted tuples a spout is waiting to be acked, keyed by root id.
+ * <p>
+ * Entries are kept in parallel primitive arrays, and looked up through an open-addressing
+ * hash table of entry indices, so putting a tuple does not box its key nor allocate anything
+ * once the arrays are large enough. Removed entries are recycled through a free list.
+ * <p>
+ * Entries are also linked into a timing wheel: each bucket holds the tuples emitted during one
+ * tick, i.e., between two calls of removeExpired(), in insertion order. Walking the buckets
+ * from the oldest one gives all tuples ordered by time, so removeExpired() stops at the first
+ * tuple not yet expired, and only costs O(expired).
+ * <p>
+ * This class is not thread-safe; it is owned by the spout's output collector.
+ */
+class InFlightTupleTable {
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int NONE = -1;
+
+  // Entries, indexed by entry index
+  private long[] keys;
+  private String[] streamIds;
+  private Object[] messageIds;
+  private long[] insertionTimes;
+  // Links of the entries in their bucket, or in the free list for unused entries
+  private int[] next;
+  private int[] prev;
+  private int[] buckets;
+  private int freeList;
+  private int size;
+
+  // Open-addressing hash table with linear probing, holding entry indices or NONE
+  private int[] table;
+  private int tableMask;
+
+  // The timing wheel; the bucket after currentBucket is the oldest one
+  private final int[] bucketHeads;
+  private final int[] bucketTails;
+  private int currentBucket;
+
+  InFlightTupleTable(int nBuckets) {
+    if (nBuckets <= 0) {
+      throw new IllegalArgumentException("Invalid number of buckets: " + nBuckets);
+    }
+    bucketHeads = new int[nBuckets];
+    bucketTails = new int[nBuckets];
+    Arrays.fill(bucketHeads, NONE);
+    Arrays.fill(bucketTails, NONE);
+    currentBucket = 0;
+
+    keys = new long[INITIAL_CAPACITY];
+    streamIds = new String[INITIAL_CAPACITY];
+    messageIds = new Object[INITIAL_CAPACITY];
+    insertionTimes = new long[INITIAL_CAPACITY];
+    next = new int[INITIAL_CAPACITY];
+    prev = new int[INITIAL_CAPACITY];
+    buckets = new int[INITIAL_CAPACITY];
+    linkFreeEntries(0, INITIAL_CAPACITY);
+
+    // Keep the load factor of the hash table under 0.5
+    table = new int[INITIAL_CAPACITY * 2];
+    Arrays.fill(table, NONE);
+    tableMask = table.length - 1;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Add a tuple emitted now, replacing any tuple with the same key
+   */
+  void put(long key, String streamId, Object messageId, long insertionTime) {
+    if (find(key) != NONE) {
+      remove(key);
+    }
+    if (freeList == NONE) {
+      grow();
+    }
+
+    int entry = freeList;
+    freeList = next[entry];
+    keys[entry] = key;
+    streamIds[entry] = streamId;
+    messageIds[entry] = messageId;
+    insertionTimes[entry] = insertionTime;
+    insertIntoTable(entry);
+    appendToBucket(entry, currentBucket);
+    size++;
+  }
+
+  /**
+   * Remove a tuple
+   *
+   * @return the removed tuple, or null if there is no tuple with this key
+   */
+  RootTupleInfo remove(long key) {
+    int slot = find(key);
+    if (slot == NONE) {
+      return null;
+    }
+    int entry = table[slot];
+    deleteFromTable(slot);
+    return retire(entry);
+  }
+
+  /**
+   * Remove the tuples inserted for longer than the timeout, and move the wheel to a new tick.
+   *
+   * @return the expired tuples, from the oldest to the newest
+   */
+  List<RootTupleInfo> removeExpired(long curTime, long timeoutInNs) {
+    List<RootTupleInfo> expired = new ArrayList<>();
+
+    scan:
+    for (int i = 1; i <= bucketHeads.length; i++) {
+      int bucket = (currentBucket + i) % bucketHeads.length;
+      int entry = bucketHeads[bucket];
+      while (entry != NONE) {
+        if (insertionTimes[entry] + timeoutInNs - curTime > 0) {
+          // Every tuple after this one is newer
+          break scan;
+        }
+        int nextEntry = next[entry];
+        deleteFromTable(find(keys[entry]));
+        expired.add(retire(entry));
+        entry = nextEntry;
+      }
+    }
+
+    // Only move to a bucket that has been drained, otherwise older tuples would be
+    // mixed with newer ones. Keep filling the current bucket until then.
+    int nextBucket = (currentBucket + 1) % bucketHeads.length;
+    if (bucketHeads[nextBucket] == NONE) {
+      currentBucket = nextBucket;
+    }
+
+    return expired;
+  }
+
+  // Unlink an entry from its bucket, and recycle it
+  private RootTupleInfo retire(int entry) {
+    RootTupleInfo info =
+        new RootTupleInfo(streamIds[entry], messageIds[entry], insertionTimes[entry]);
+
+    int bucket = buckets[entry];
+    if (prev[entry] == NONE) {
+      bucketHeads[bucket] = next[entry];
+    } else {
+      next[prev[entry]] = next[entry];
+    }
+    if (next[entry] == NONE) {
+      bucketTails[bucket] = prev[entry];
+    } else {
+      prev[next[entry]] = prev[entry];
+    }
+
+    // Drop the references so they could be garbage collected
+    streamIds[entry] = null;
+    messageIds[entry] = null;
+    next[entry] = freeList;
+    freeList = entry;
+    size--;
+    return info;
+  }
+
+  private void appendToBucket(int entry, int bucket) {
+    buckets[entry] = bucket;
+    next[entry] = NONE;
+    prev[entry] = bucketTails[bucket];
+    if (bucketTails[bucket] == NONE) {
+      bucketHeads[bucket] = entry;
+    } else {
+      next[bucketTails[bucket]] = entry;
+    }
+    bucketTails[bucket] = entry;
+  }
+
+  // The slot in the hash table holding the entry with this key, or NONE
+  private int find(long key) {
+    int slot = hash(key) & tableMask;
+    while (table[slot] != NONE) {
+      if (keys[table[slot]] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & tableMask;
+    }
+    return NONE;
+  }
+
+  private void insertIntoTable(int entry) {
+    int slot = hash(keys[entry]) & tableMask;
+    while (table[slot] != NONE) {
+      slot = (slot + 1) & tableMask;
+    }
+    table[slot] = entry;
+  }
+
+  // Backward shift deletion, so lookups never need tombstones
+  private void deleteFromTable(int slot) {
+    int hole = slot;
+    int current = (slot + 1) & tableMask;
+    while (table[current] != NONE) {
+      int home = hash(keys[table[current]]) & tableMask;
+      // Move the entry into the hole if its home slot is not between the hole and itself
+      if (((current - home) & tableMask) >= ((current - hole) & tableMask)) {
+        table[hole] = table[current];
+        hole = current;
+      }
+      current = (current + 1) & tableMask;
+    }
+    table[hole] = NONE;
+  }
+
+  // Double the capacity of the entries and of the hash table
+  private void grow() {
+    int oldCapacity = keys.length;
+    int newCapacity = oldCapacity * 2;
+    keys = Arrays.copyOf(keys, newCapacity);
+    streamIds = Arrays.copyOf(streamIds, newCapacity);
+    messageIds = Arrays.copyOf(messageIds, newCapacity);
+    insertionTimes = Arrays.copyOf(insertionTimes, newCapacity);
+    next = Arrays.copyOf(next, newCapacity);
+    prev = Arrays.copyOf(prev, newCapacity);
+    buckets = Arrays.copyOf(buckets, newCapacity);
+    linkFreeEntries(oldCapacity, newCapacity);
+
+    // The entry indices do not change, so only the hash table is rebuilt
+    int[] oldTable = table;
+    table = new int[newCapacity * 2];
+    Arrays.fill(table, NONE);
+    tableMask = table.length - 1;
+    for (int entry : oldTable) {
+      if (entry != NONE) {
+        insertIntoTable(entry);
+      }
+    }
+  }
+
+  // Put the entries in [from, to) into the free list, which must be empty
+  private void linkFreeEntries(int from, int to) {
+    for (int i = from; i < to - 1; i++) {
+      next[i] = i + 1;
+    }
+    next[to - 1] = NONE;
+    freeList = from;
+  }
+
+  private static int hash(long key) {
+    // Mix the bits, so keys that are not random do not cluster in the table
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
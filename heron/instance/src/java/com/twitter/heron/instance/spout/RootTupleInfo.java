@@ -20,9 +20,13 @@ public class RootTupleInfo implements Comparable<RootTupleInfo> {
   private final long insertionTime;
 
   public RootTupleInfo(String streamId, Object messageId) {
+    this(streamId, messageId, System.nanoTime());
+  }
+
+  public RootTupleInfo(String streamId, Object messageId, long insertionTime) {
     this.streamId = streamId;
     this.messageId = messageId;
-    this.insertionTime = System.nanoTime();
+    this.insertionTime = insertionTime;
   }
 
   public boolean isExpired(long curTime, long timeoutInNs) {
@@ -118,8 +118,9 @@ public class SpoutInstance implements IInstance {
       throw new RuntimeException("Neither java_object nor java_class_name set for spout");
     }
 
-    IPluggableSerializer serializer = SerializeDeSerializeHelper.getSerializer(config);
+    IPluggableSerializer serializer = SerializeDeSerializeHelper.getTupleSerializer(config);
     collector = new SpoutOutputCollectorImpl(serializer, helper, streamOutQueue, spoutMetrics);
+    collector.setLooper(looper);
     this.ackEnabled = collector.isAckEnabled();
 
     LOG.info("Enable Ack: " + this.ackEnabled);
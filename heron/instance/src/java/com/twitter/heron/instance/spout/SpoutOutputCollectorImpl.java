@@ -16,9 +16,6 @@ package com.twitter.heron.instance.spout;
 
 import java.time.Duration;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Queue;
 import java.util.logging.Level;
@@ -29,6 +26,8 @@ import com.google.protobuf.Message;
 import com.twitter.heron.api.serializer.IPluggableSerializer;
 import com.twitter.heron.api.spout.ISpoutOutputCollector;
 import com.twitter.heron.common.basics.Communicator;
+import com.twitter.heron.common.basics.SingletonRegistry;
+import com.twitter.heron.common.config.SystemConfig;
 import com.twitter.heron.common.utils.metrics.ComponentMetrics;
 import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
 import com.twitter.heron.common.utils.misc.TupleKeyGenerator;
@@ -52,8 +51,8 @@ public class SpoutOutputCollectorImpl
     extends AbstractOutputCollector implements ISpoutOutputCollector {
   private static final Logger LOG = Logger.getLogger(SpoutOutputCollectorImpl.class.getName());
 
-  // Map from tuple key to composite object with insertion-order, i.e. ordered by time
-  private final LinkedHashMap<Long, RootTupleInfo> inFlightTuples;
+  // The rooted tuples waiting to be acked, by tuple key, and ordered by time
+  private final InFlightTupleTable inFlightTuples;
 
   private final TupleKeyGenerator keyGenerator;
 
@@ -72,8 +71,10 @@ public class SpoutOutputCollectorImpl
 
     this.keyGenerator = new TupleKeyGenerator();
 
-    // with default capacity, load factor and insertion order
-    inFlightTuples = new LinkedHashMap<>();
+    // One bucket of the timing wheel per lookForTimeouts() interval
+    SystemConfig systemConfig =
+        (SystemConfig) SingletonRegistry.INSTANCE.getSingleton(SystemConfig.HERON_SYSTEM_CONFIG);
+    inFlightTuples = new InFlightTupleTable(systemConfig.getInstanceAcknowledgementNbuckets() + 1);
 
     if (!ackEnabled) {
       immediateAcks = new ArrayDeque<>();
@@ -120,24 +121,7 @@ public class SpoutOutputCollectorImpl
   }
 
   List<RootTupleInfo> retireExpired(Duration timeout) {
-    List<RootTupleInfo> retval = new ArrayList<>();
-    long curTime = System.nanoTime();
-
-    // The LinkedHashMap is ordered by insertion order, i.e. ordered by time
-    // So we want need to iterate from the start and remove all items until
-    // we meet the RootTupleInfo no need to expire
-    Iterator<RootTupleInfo> iterator = inFlightTuples.values().iterator();
-    while (iterator.hasNext()) {
-      RootTupleInfo rootTupleInfo = iterator.next();
-      if (rootTupleInfo.isExpired(curTime, timeout.toNanos())) {
-        retval.add(rootTupleInfo);
-        iterator.remove();
-      } else {
-        break;
-      }
-    }
-
-    return retval;
+    return inFlightTuples.removeExpired(System.nanoTime(), timeout.toNanos());
   }
 
   /////////////////////////////////////////////////////////
@@ -155,13 +139,12 @@ public class SpoutOutputCollectorImpl
     HeronTuples.HeronDataTuple.Builder bldr = initTupleBuilder(streamId, tuple, emitDirectTaskId);
 
     if (messageId != null) {
-      RootTupleInfo tupleInfo = new RootTupleInfo(streamId, messageId);
       if (ackEnabled) {
         // This message is rooted
-        HeronTuples.RootId.Builder rtbldr = establishRootId(tupleInfo);
+        HeronTuples.RootId.Builder rtbldr = establishRootId(streamId, messageId);
         bldr.addRoots(rtbldr);
       } else {
-        immediateAcks.offer(tupleInfo);
+        immediateAcks.offer(new RootTupleInfo(streamId, messageId));
       }
     }
 
@@ -171,13 +154,13 @@ public class SpoutOutputCollectorImpl
     return null;
   }
 
-  private HeronTuples.RootId.Builder establishRootId(RootTupleInfo tupleInfo) {
+  private HeronTuples.RootId.Builder establishRootId(String streamId, Object messageId) {
     // This message is rooted
     long rootId = keyGenerator.next();
     HeronTuples.RootId.Builder rtbldr = HeronTuples.RootId.newBuilder();
     rtbldr.setTaskid(getPhysicalPlanHelper().getMyTaskId());
     rtbldr.setKey(rootId);
-    inFlightTuples.put(rootId, tupleInfo);
+    inFlightTuples.put(rootId, streamId, messageId, System.nanoTime());
     return rtbldr;
   }
 }
@@ -0,0 +1,70 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.instance.util;
+
+/**
+ * Chooses how many data tuples to batch in a HeronDataTupleSet from the length of the out
+ * stream queue, which is sampled after every execute or emit attempt.
+ * <p>
+ * While the queue is backing up, the gateway thread is the bottleneck, so the batch size doubles
+ * to cut the per-message overhead. While the queue is empty, the gateway keeps up, so the batch
+ * size halves and tuples are handed over sooner. In between, the batch size is kept.
+ * <p>
+ * This class is not thread-safe; it is owned by the output collector of one instance.
+ */
+public class AdaptiveBatchSizer {
+  private final int minBatchSize;
+  private final int maxBatchSize;
+
+  private int batchSize;
+
+  public AdaptiveBatchSizer(int minBatchSize, int maxBatchSize) {
+    if (minBatchSize <= 0 || minBatchSize > maxBatchSize) {
+      throw new IllegalArgumentException(String.format(
+          "Invalid batch size bounds: min %d, max %d", minBatchSize, maxBatchSize));
+    }
+    this.minBatchSize = minBatchSize;
+    this.maxBatchSize = maxBatchSize;
+    this.batchSize = minBatchSize;
+  }
+
+  /**
+   * Adapt the batch size to the current length of the out queue
+   *
+   * @param queueSize the # of messages in the out queue
+   * @param expectedQueueSize the # of messages the out queue is expected to hold,
+   * non-positive if unknown
+   * @return the new batch size
+   */
+  public int update(int queueSize, int expectedQueueSize) {
+    if (isBackingUp(queueSize, expectedQueueSize)) {
+      batchSize = (int) Math.min(maxBatchSize, 2L * batchSize);
+    } else if (queueSize == 0) {
+      batchSize = Math.max(minBatchSize, batchSize / 2);
+    }
+    return batchSize;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Whether the out queue holds at least half of what it is expected to hold
+   */
+  public static boolean isBackingUp(int queueSize, int expectedQueueSize) {
+    return expectedQueueSize > 0 && queueSize > 0 && 2L * queueSize >= expectedQueueSize;
+  }
+}
@@ -0,0 +1,121 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.instance.util;
+
+/**
+ * A count-min sketch estimating how often keys were seen, in a fixed amount of memory.
+ * <p>
+ * Each key is counted in one counter of each row, and its frequency is estimated by the
+ * smallest of them, so estimates are never under the real counts. Only the smallest counters of
+ * a key are incremented (conservative update), which keeps the estimates of rare keys sharing
+ * counters with frequent ones low. Counts can be halved to age them, so the sketch follows
+ * the recent frequencies of the keys.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class FrequencySketch {
+  private static final int DEPTH = 4;
+
+  private final int[] counters;
+  private final int mask;
+  // The column of the key in each row, computed by the last call to index()
+  private final int[] columns = new int[DEPTH];
+  private long total;
+
+  /**
+   * @param width the # of counters in each row, rounded up to a power of two
+   */
+  public FrequencySketch(int width) {
+    if (width <= 0) {
+      throw new IllegalArgumentException("Invalid sketch width: " + width);
+    }
+    int rowSize = Integer.highestOneBit(width);
+    if (rowSize < width) {
+      rowSize <<= 1;
+    }
+    this.counters = new int[DEPTH * rowSize];
+    this.mask = rowSize - 1;
+  }
+
+  /**
+   * Count one more occurrence of a key
+   *
+   * @return the new estimated count of the key
+   */
+  public int increment(Object key) {
+    total++;
+    int min = index(key);
+    if (min < Integer.MAX_VALUE) {
+      min++;
+    }
+    for (int i = 0; i < DEPTH; i++) {
+      int c = i * (mask + 1) + columns[i];
+      if (counters[c] < min) {
+        counters[c] = min;
+      }
+    }
+    return min;
+  }
+
+  /**
+   * Get the estimated count of a key, never under its real count since the last halving
+   */
+  public int estimate(Object key) {
+    return index(key);
+  }
+
+  /**
+   * Get the # of occurrences counted, halved along with the counts
+   */
+  public long getTotal() {
+    return total;
+  }
+
+  /**
+   * Halve all counts, so that the keys seen long ago weigh less than the recent ones
+   */
+  public void halve() {
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] >>>= 1;
+    }
+    total >>>= 1;
+  }
+
+  // Fill columns for the key, and return the smallest of its counters
+  private int index(Object key) {
+    int h = key == null ? 0 : key.hashCode();
+    // Derive the columns of the rows from two mixes of the hash code
+    int h1 = mix(h);
+    int h2 = mix(h1) | 1;
+    int min = Integer.MAX_VALUE;
+    for (int i = 0; i < DEPTH; i++) {
+      columns[i] = (h1 + i * h2) & mask;
+      min = Math.min(min, counters[i * (mask + 1) + columns[i]]);
+    }
+    return min;
+  }
+
+  private static int mix(int hash) {
+    // The finalization step of MurmurHash3
+    int h = hash;
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
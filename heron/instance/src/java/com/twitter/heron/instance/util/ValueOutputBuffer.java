@@ -0,0 +1,105 @@
+//  Copyright 2017 Twitter. All rights reserved.
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.twitter.heron.instance.util;
+
+import java.io.OutputStream;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+/**
+ * An append-only OutputStream that serialized tuple values are written into.
+ * <p>
+ * Values are written into a shared chunk one after another. Once a value is complete,
+ * finishValue() wraps the written range as a ByteString without copying it.
+ * Since a wrapped range is never written again, the chunk can be shared by every
+ * ByteString carved out of it. When the chunk is full, a new one is allocated and the old
+ * one is reclaimed by GC once the tuples referencing it have been sent out.
+ * <p>
+ * This class is not thread-safe; it is owned by the output collector of one instance.
+ */
+public class ValueOutputBuffer extends OutputStream {
+  private final int chunkSize;
+
+  private byte[] chunk;
+  // Start of the value currently being written
+  private int valueStart;
+  private int position;
+
+  public ValueOutputBuffer(int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+    }
+    this.chunkSize = chunkSize;
+    this.chunk = new byte[chunkSize];
+    this.valueStart = 0;
+    this.position = 0;
+  }
+
+  @Override
+  public void write(int b) {
+    ensureCapacity(1);
+    chunk[position++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    if (off < 0 || len < 0 || off + len > b.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    ensureCapacity(len);
+    System.arraycopy(b, off, chunk, position, len);
+    position += len;
+  }
+
+  /**
+   * Complete the value currently being written and wrap it as a ByteString.
+   * The returned ByteString shares memory with this buffer.
+   *
+   * @return the bytes written since the previous value was completed
+   */
+  public ByteString finishValue() {
+    ByteString value = UnsafeByteOperations.unsafeWrap(chunk, valueStart, position - valueStart);
+    valueStart = position;
+    return value;
+  }
+
+  /**
+   * Drop any bytes written since the previous value was completed,
+   * for instance, after a serializer failed half way.
+   */
+  public void discardValue() {
+    position = valueStart;
+  }
+
+  // Size in bytes of the value currently being written
+  public int pendingValueSize() {
+    return position - valueStart;
+  }
+
+  private void ensureCapacity(int len) {
+    if (position + len <= chunk.length) {
+      return;
+    }
+
+    // Move the partially written value to a new chunk. Bytes already handed out
+    // stay in the old chunk, so they are never overwritten.
+    int pending = position - valueStart;
+    byte[] newChunk = new byte[Math.max(chunkSize, pending + len)];
+    System.arraycopy(chunk, valueStart, newChunk, 0, pending);
+    chunk = newChunk;
+    valueStart = 0;
+    position = pending;
+  }
+}
@@ -14,6 +14,7 @@
 
 package com.twitter.heron.metrics;
 
+import com.twitter.heron.api.metric.AssignableMetric;
 import com.twitter.heron.api.metric.CountMetric;
 import com.twitter.heron.api.metric.MeanReducer;
 import com.twitter.heron.api.metric.MeanReducerState;
@@ -55,6 +56,25 @@ public class GatewayMetrics {
   // receive more tuples from stream manager
   private final CountMetric inQueueFullCount;
 
+  // The # of packet buffers recycled from or newly allocated by the buffer pools
+  private final CountMetric bufferPoolHitCount;
+  private final CountMetric bufferPoolMissCount;
+  // The direct memory in bytes held by the buffer pools
+  private final AssignableMetric<Long> bufferPoolOffHeapSize;
+  // The pool counters are cumulative, so remember them to report the deltas
+  private long lastBufferPoolHitCount;
+  private long lastBufferPoolMissCount;
+
+  // The # of read and write syscalls made on the sockets
+  private final CountMetric readSyscallsCount;
+  private final CountMetric writeSyscallsCount;
+  // The average # of bytes written by one write syscall
+  private final ReducedMetric<MeanReducerState, Number, Double> bytesPerWrite;
+  // The network counters are cumulative too
+  private long lastReadSyscallsCount;
+  private long lastWriteSyscallsCount;
+  private long lastBytesWritten;
+
   public GatewayMetrics() {
     receivedPacketsCount = new CountMetric();
     sentPacketsCount = new CountMetric();
@@ -72,6 +92,14 @@ public class GatewayMetrics {
     outStreamQueueExpectedCapacity = new ReducedMetric<>(new MeanReducer());
 
     inQueueFullCount = new CountMetric();
+
+    bufferPoolHitCount = new CountMetric();
+    bufferPoolMissCount = new CountMetric();
+    bufferPoolOffHeapSize = new AssignableMetric<>(0L);
+
+    readSyscallsCount = new CountMetric();
+    writeSyscallsCount = new CountMetric();
+    bytesPerWrite = new ReducedMetric<>(new MeanReducer());
   }
 
   /**
@@ -127,6 +155,26 @@ public class GatewayMetrics {
     metricsCollector.registerMetric("__gateway-in-queue-full-count",
         inQueueFullCount,
         interval);
+
+    metricsCollector.registerMetric("__gateway-buffer-pool-hit-count",
+        bufferPoolHitCount,
+        interval);
+    metricsCollector.registerMetric("__gateway-buffer-pool-miss-count",
+        bufferPoolMissCount,
+        interval);
+    metricsCollector.registerMetric("__gateway-buffer-pool-off-heap-size",
+        bufferPoolOffHeapSize,
+        interval);
+
+    metricsCollector.registerMetric("__gateway-read-syscalls-count",
+        readSyscallsCount,
+        interval);
+    metricsCollector.registerMetric("__gateway-write-syscalls-count",
+        writeSyscallsCount,
+        interval);
+    metricsCollector.registerMetric("__gateway-bytes-per-write",
+        bytesPerWrite,
+        interval);
   }
 
   public void updateReceivedPacketsCount(long count) {
@@ -174,4 +222,39 @@ public class GatewayMetrics {
   public void updateInQueueFullCount() {
     inQueueFullCount.incr();
   }
+
+  /**
+   * Update the buffer pool metrics
+   *
+   * @param totalHitCount the cumulative # of hits of all buffer pools
+   * @param totalMissCount the cumulative # of misses of all buffer pools
+   * @param offHeapSize the direct memory in bytes currently held by all buffer pools
+   */
+  public void setBufferPoolStats(long totalHitCount, long totalMissCount, long offHeapSize) {
+    bufferPoolHitCount.incrBy(totalHitCount - lastBufferPoolHitCount);
+    bufferPoolMissCount.incrBy(totalMissCount - lastBufferPoolMissCount);
+    lastBufferPoolHitCount = totalHitCount;
+    lastBufferPoolMissCount = totalMissCount;
+    bufferPoolOffHeapSize.setValue(offHeapSize);
+  }
+
+  /**
+   * Update the syscall metrics
+   *
+   * @param totalReadSyscalls the cumulative # of read syscalls of all connections
+   * @param totalWriteSyscalls the cumulative # of write syscalls of all connections
+   * @param totalBytesWritten the cumulative # of bytes written on all connections
+   */
+  public void setNetworkStats(long totalReadSyscalls, long totalWriteSyscalls,
+                              long totalBytesWritten) {
+    long writeSyscalls = totalWriteSyscalls - lastWriteSyscallsCount;
+    readSyscallsCount.incrBy(totalReadSyscalls - lastReadSyscallsCount);
+    writeSyscallsCount.incrBy(writeSyscalls);
+    if (writeSyscalls > 0) {
+      bytesPerWrite.update((totalBytesWritten - lastBytesWritten) / (double) writeSyscalls);
+    }
+    lastReadSyscallsCount = totalReadSyscalls;
+    lastWriteSyscallsCount = totalWriteSyscalls;
+    lastBytesWritten = totalBytesWritten;
+  }
 }
@@ -0,0 +1,228 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.instance;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.protobuf.Message;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.twitter.heron.common.basics.Communicator;
+import com.twitter.heron.common.basics.SingletonRegistry;
+import com.twitter.heron.common.basics.WakeableLooper;
+import com.twitter.heron.common.config.SystemConfig;
+import com.twitter.heron.common.config.SystemConfigKey;
+import com.twitter.heron.common.utils.metrics.ComponentMetrics;
+import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
+import com.twitter.heron.proto.system.HeronTuples;
+import com.twitter.heron.resource.UnitTestHelper;
+
+public class OutgoingTupleCollectionTest {
+  private static final int QUEUE_CAPACITY = 8;
+  // The test config adapts the data tuple set capacity from 16 tuples up
+  private static final int MIN_CAPACITY = 16;
+
+  private Communicator<Message> outQueue;
+  private TestMetrics metrics;
+  private TestLooper looper;
+  private OutgoingTupleCollection outputter;
+
+  @After
+  public void after() throws NoSuchFieldException, IllegalAccessException {
+    UnitTestHelper.clearSingletonRegistry();
+  }
+
+  @Test
+  public void testFlushReasons() {
+    createOutputter(0);
+    long maxSize = ((SystemConfig) SingletonRegistry.INSTANCE.getSingleton(
+        SystemConfig.HERON_SYSTEM_CONFIG)).getInstanceSetDataTupleSize().asBytes();
+
+    for (int i = 0; i <= MIN_CAPACITY; i++) {
+      addDataTuple("stream-1", 1);
+    }
+    addDataTuple("stream-2", maxSize);
+    addDataTuple("stream-2", 1);
+    outputter.sendOutTuples();
+
+    Assert.assertEquals(1, metrics.getFlushCount(OutgoingTupleCollection.FLUSH_REASON_CAPACITY));
+    Assert.assertEquals(1, metrics.getFlushCount(OutgoingTupleCollection.FLUSH_REASON_SWITCH));
+    Assert.assertEquals(1, metrics.getFlushCount(OutgoingTupleCollection.FLUSH_REASON_SIZE));
+    Assert.assertEquals(1, metrics.getFlushCount(OutgoingTupleCollection.FLUSH_REASON_PASS));
+    Assert.assertEquals(0, metrics.getFlushCount(OutgoingTupleCollection.FLUSH_REASON_TIMER));
+    Assert.assertEquals(MIN_CAPACITY + 1 + 1 + 1, metrics.tupleCount);
+    Assert.assertEquals(4, outQueue.size());
+    Assert.assertTrue(looper.timers.isEmpty());
+  }
+
+  @Test
+  public void testSentOutWhileNotBackingUp() {
+    createOutputter(1000);
+    addDataTuple("stream", 1);
+    outputter.sendOutTuples();
+
+    Assert.assertEquals(1, outQueue.size());
+    Assert.assertEquals(1, metrics.getFlushCount(OutgoingTupleCollection.FLUSH_REASON_PASS));
+    Assert.assertTrue(looper.timers.isEmpty());
+  }
+
+  @Test
+  public void testDeferredWhileBackingUp() {
+    createOutputter(1000);
+    backUpOutQueue();
+    addDataTuple("stream", 1);
+    outputter.sendOutTuples();
+    outputter.sendOutTuples();
+
+    // Held, with a single timer for its deadline
+    Assert.assertEquals(QUEUE_CAPACITY / 4, outQueue.size());
+    Assert.assertEquals(0, metrics.tupleCount);
+    Assert.assertEquals(1, looper.timers.size());
+    Assert.assertTrue(looper.delays.get(0).compareTo(Duration.ofMillis(1000)) <= 0);
+
+    // Still backing up before the deadline, so the timer is registered again
+    looper.timers.remove(0).run();
+    Assert.assertEquals(0, metrics.tupleCount);
+    Assert.assertEquals(1, looper.timers.size());
+
+    // More tuples keep the set held
+    addDataTuple("stream", 1);
+    outputter.sendOutTuples();
+    Assert.assertEquals(0, metrics.tupleCount);
+    Assert.assertEquals(1, looper.timers.size());
+  }
+
+  @Test
+  public void testDeferredSetSentOutAtDeadline() throws InterruptedException {
+    createOutputter(50);
+    backUpOutQueue();
+    addDataTuple("stream", 1);
+    outputter.sendOutTuples();
+    Assert.assertEquals(0, metrics.tupleCount);
+    Assert.assertEquals(1, looper.timers.size());
+
+    // No execute or emit attempt follows, the timer sends the set out although still backing up
+    Thread.sleep(100);
+    looper.timers.remove(0).run();
+    Assert.assertEquals(QUEUE_CAPACITY / 4 + 1, outQueue.size());
+    Assert.assertEquals(1, metrics.getFlushCount(OutgoingTupleCollection.FLUSH_REASON_TIMER));
+    Assert.assertEquals(1, metrics.tupleCount);
+    Assert.assertTrue(looper.timers.isEmpty());
+  }
+
+  @Test
+  public void testTimerAfterSetSentOut() {
+    createOutputter(1000);
+    backUpOutQueue();
+    addDataTuple("stream", 1);
+    outputter.sendOutTuples();
+
+    // The set is sent out by a switch of stream before the timer fires
+    addDataTuple("other-stream", 1);
+    outputter.sendOutTuples();
+    looper.timers.remove(0).run();
+
+    // The new set has a deadline of its own
+    Assert.assertEquals(1, metrics.getFlushCount(OutgoingTupleCollection.FLUSH_REASON_SWITCH));
+    Assert.assertEquals(0, metrics.getFlushCount(OutgoingTupleCollection.FLUSH_REASON_TIMER));
+    Assert.assertEquals(1, looper.timers.size());
+
+    outputter.clear();
+    looper.timers.remove(0).run();
+    Assert.assertTrue(looper.timers.isEmpty());
+  }
+
+  private void createOutputter(long maxDelayMs) {
+    Map<SystemConfigKey, Object> overrides = new HashMap<>();
+    overrides.put(SystemConfigKey.INSTANCE_SET_DATA_TUPLE_MIN_CAPACITY, MIN_CAPACITY);
+    overrides.put(SystemConfigKey.INSTANCE_SET_DATA_TUPLE_MAX_DELAY, maxDelayMs);
+    UnitTestHelper.addSystemConfigToSingleton(overrides);
+
+    PhysicalPlanHelper helper =
+        new PhysicalPlanHelper(UnitTestHelper.getPhysicalPlan(true, -1), "bolt-id");
+    outQueue = new Communicator<>();
+    outQueue.init(QUEUE_CAPACITY, QUEUE_CAPACITY, 0.5);
+    metrics = new TestMetrics();
+    looper = new TestLooper();
+    outputter = new OutgoingTupleCollection(helper, outQueue, metrics);
+    outputter.setLooper(looper);
+  }
+
+  // Fill the out queue up to half of its expected available capacity
+  private void backUpOutQueue() {
+    for (int i = 0; i < QUEUE_CAPACITY / 4; i++) {
+      outQueue.offer(HeronTuples.HeronTupleSet.newBuilder().setSrcTaskId(-1).build());
+    }
+  }
+
+  private void addDataTuple(String streamId, long sizeInBytes) {
+    outputter.addDataTuple(streamId, HeronTuples.HeronDataTuple.newBuilder().setKey(0),
+        sizeInBytes);
+  }
+
+  private static final class TestMetrics implements ComponentMetrics {
+    private final Map<String, Integer> flushCounts = new HashMap<>();
+    private int tupleCount;
+
+    @Override
+    public void serializeDataTuple(String streamId, long latency) {
+    }
+
+    @Override
+    public void emittedTuple(String streamId) {
+    }
+
+    @Override
+    public void flushedDataTupleSet(String reason, int count) {
+      flushCounts.merge(reason, 1, Integer::sum);
+      tupleCount += count;
+    }
+
+    @Override
+    public void updateDataTupleSetCapacity(int capacity) {
+    }
+
+    int getFlushCount(String reason) {
+      return flushCounts.getOrDefault(reason, 0);
+    }
+  }
+
+  // Records the timers instead of running them
+  private static final class TestLooper extends WakeableLooper {
+    private final List<Duration> delays = new ArrayList<>();
+    private final List<Runnable> timers = new ArrayList<>();
+
+    @Override
+    protected void doWait() {
+    }
+
+    @Override
+    public void wakeUp() {
+    }
+
+    @Override
+    public void registerTimerEvent(Duration timerDuration, Runnable task) {
+      delays.add(timerDuration);
+      timers.add(task);
+    }
+  }
+}
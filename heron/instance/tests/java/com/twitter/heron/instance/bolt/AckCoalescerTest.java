@@ -0,0 +1,129 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.instance.bolt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.protobuf.Message;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.heron.api.generated.TopologyAPI;
+import com.twitter.heron.common.basics.Communicator;
+import com.twitter.heron.common.utils.metrics.BoltMetrics;
+import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
+import com.twitter.heron.common.utils.tuple.TupleImpl;
+import com.twitter.heron.instance.OutgoingTupleCollection;
+import com.twitter.heron.proto.system.HeronTuples;
+import com.twitter.heron.resource.UnitTestHelper;
+
+public class AckCoalescerTest {
+  private static final int CAPACITY = 4;
+
+  private PhysicalPlanHelper helper;
+  private Communicator<Message> outQueue;
+  private OutgoingTupleCollection outputter;
+  private AckCoalescer ackCoalescer;
+
+  @Before
+  public void before() {
+    UnitTestHelper.addSystemConfigToSingleton();
+    helper = new PhysicalPlanHelper(UnitTestHelper.getPhysicalPlan(true, -1), "bolt-id");
+    outQueue = new Communicator<>();
+    BoltMetrics boltMetrics = new BoltMetrics();
+    outputter = new OutgoingTupleCollection(helper, outQueue, boltMetrics);
+    ackCoalescer = new AckCoalescer(outputter, boltMetrics, CAPACITY);
+  }
+
+  @After
+  public void after() throws NoSuchFieldException, IllegalAccessException {
+    UnitTestHelper.clearSingletonRegistry();
+  }
+
+  @Test
+  public void testAcksAreXoredByRoot() {
+    ackCoalescer.ack(newTuple(1, root(100), root(200)));
+    ackCoalescer.ack(newTuple(2, root(100)));
+    ackCoalescer.ack(newTuple(4, root(200)));
+    ackCoalescer.ack(newTuple(8, root(100)));
+    Assert.assertEquals(2, ackCoalescer.size());
+
+    List<HeronTuples.AckTuple> acks = sendOut().get(0).getAcksList();
+    Assert.assertEquals(2, acks.size());
+    Assert.assertEquals(root(100), acks.get(0).getRoots(0));
+    Assert.assertEquals(1 ^ 2 ^ 8, acks.get(0).getAckedtuple());
+    Assert.assertEquals(root(200), acks.get(1).getRoots(0));
+    Assert.assertEquals(1 ^ 4, acks.get(1).getAckedtuple());
+    Assert.assertEquals(0, ackCoalescer.size());
+  }
+
+  @Test
+  public void testAcksAndFailsKeepTheirOrder() {
+    ackCoalescer.ack(newTuple(1, root(100)));
+    ackCoalescer.fail(newTuple(2, root(100)));
+    ackCoalescer.fail(newTuple(4, root(100)));
+    ackCoalescer.ack(newTuple(8, root(200)));
+
+    List<HeronTuples.HeronControlTupleSet> sets = sendOut();
+    Assert.assertEquals(3, sets.size());
+    Assert.assertEquals(1, sets.get(0).getAcksCount());
+    Assert.assertEquals(0, sets.get(0).getFailsCount());
+    Assert.assertEquals(1, sets.get(1).getFailsCount());
+    Assert.assertEquals(root(100), sets.get(1).getFails(0).getRoots(0));
+    Assert.assertEquals(1, sets.get(2).getAcksCount());
+    Assert.assertEquals(root(200), sets.get(2).getAcks(0).getRoots(0));
+  }
+
+  @Test
+  public void testFlushedWhenFull() {
+    for (int i = 0; i < CAPACITY; i++) {
+      ackCoalescer.ack(newTuple(i, root(i)));
+    }
+    Assert.assertEquals(0, ackCoalescer.size());
+
+    ackCoalescer.ack(newTuple(CAPACITY, root(CAPACITY)));
+    Assert.assertEquals(1, ackCoalescer.size());
+  }
+
+  private List<HeronTuples.HeronControlTupleSet> sendOut() {
+    ackCoalescer.flush();
+    outputter.sendOutTuples();
+
+    List<HeronTuples.HeronControlTupleSet> sets = new ArrayList<>();
+    while (!outQueue.isEmpty()) {
+      HeronTuples.HeronTupleSet tupleSet = (HeronTuples.HeronTupleSet) outQueue.poll();
+      sets.add(tupleSet.getControl());
+    }
+    return sets;
+  }
+
+  private TupleImpl newTuple(long key, HeronTuples.RootId... roots) {
+    TopologyAPI.StreamId stream = TopologyAPI.StreamId.newBuilder()
+        .setComponentName("test-spout")
+        .setId("default")
+        .build();
+    return new TupleImpl(helper.getTopologyContext(), stream, key, Arrays.asList(roots),
+        Arrays.<Object>asList("A"), 0);
+  }
+
+  private static HeronTuples.RootId root(long key) {
+    return HeronTuples.RootId.newBuilder().setTaskid(0).setKey(key).build();
+  }
+}
@@ -15,20 +15,31 @@
 package com.twitter.heron.instance.bolt;
 
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
 
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.twitter.heron.api.Config;
 import com.twitter.heron.api.generated.TopologyAPI;
 import com.twitter.heron.api.serializer.IPluggableSerializer;
 import com.twitter.heron.api.serializer.JavaSerializer;
+import com.twitter.heron.api.utils.Utils;
 import com.twitter.heron.common.basics.SingletonRegistry;
+import com.twitter.heron.common.config.SystemConfigKey;
 import com.twitter.heron.common.testhelpers.HeronServerTester;
 import com.twitter.heron.common.utils.misc.PhysicalPlanHelper;
 import com.twitter.heron.instance.InstanceControlMsg;
@@ -36,6 +47,7 @@ import com.twitter.heron.instance.SlaveTester;
 import com.twitter.heron.proto.system.HeronTuples;
 import com.twitter.heron.proto.system.PhysicalPlans;
 import com.twitter.heron.resource.Constants;
+import com.twitter.heron.resource.TestForwardingBolt;
 import com.twitter.heron.resource.UnitTestHelper;
 
 /**
@@ -137,4 +149,270 @@ public class BoltInstanceTest {
     Assert.assertEquals(expectedTuples / 2, failCount.intValue());
     Assert.assertEquals("ABABABABAB", receivedStrings.toString());
   }
+
+  /**
+   * Test that tuples are executed by the executor threads when the bolt has several of them,
+   * that the tuples of a key of a fields grouping are all executed by the same thread, and that
+   * the tuples emitted by the executor threads reach the out stream queue
+   */
+  @Test
+  public void testExecutorThreads() throws InterruptedException {
+    PhysicalPlans.PhysicalPlan.Builder physicalPlan =
+        UnitTestHelper.getPhysicalPlan(false, -1).toBuilder();
+    physicalPlan.getTopologyBuilder().getTopologyConfigBuilder().addKvs(
+        TopologyAPI.Config.KeyValue.newBuilder()
+            .setKey(Config.TOPOLOGY_BOLT_EXECUTOR_THREADS)
+            .setValue("4")
+            .setType(TopologyAPI.ConfigValueType.STRING_VALUE));
+    // Group the input of the bolt by the field "word" of the spout
+    physicalPlan.getTopologyBuilder().getBoltsBuilder(0).getInputsBuilder(0)
+        .setGtype(TopologyAPI.Grouping.FIELDS)
+        .setGroupingFields(TopologyAPI.StreamSchema.newBuilder().addKeys(
+            TopologyAPI.StreamSchema.KeyType.newBuilder()
+                .setKey("word")
+                .setType(TopologyAPI.Type.OBJECT)));
+
+    PhysicalPlanHelper physicalPlanHelper =
+        new PhysicalPlanHelper(physicalPlan.build(), BOLT_INSTANCE_ID);
+    InstanceControlMsg instanceControlMsg = InstanceControlMsg.newBuilder().
+        setNewPhysicalPlanHelper(physicalPlanHelper).
+        build();
+
+    slaveTester.getInControlQueue().offer(instanceControlMsg);
+
+    // TestBolt alternates acks and fails per thread, so only the totals are checked
+    final int expectedTuples = 100;
+    CountDownLatch executeLatch = new CountDownLatch(expectedTuples);
+    SingletonRegistry.INSTANCE.registerSingleton(Constants.ACK_COUNT, ackCount);
+    SingletonRegistry.INSTANCE.registerSingleton(Constants.FAIL_COUNT, failCount);
+    SingletonRegistry.INSTANCE.registerSingleton(Constants.EXECUTE_COUNT, tupleExecutedCount);
+    SingletonRegistry.INSTANCE.registerSingleton(Constants.EXECUTE_LATCH, executeLatch);
+    Map<String, Set<String>> executorThreads = new ConcurrentHashMap<>();
+    SingletonRegistry.INSTANCE.registerSingleton(Constants.EXECUTOR_THREADS, executorThreads);
+
+    HeronTuples.HeronTupleSet.Builder heronTupleSet = HeronTuples.HeronTupleSet.newBuilder();
+    heronTupleSet.setSrcTaskId(SRC_TASK_ID);
+    HeronTuples.HeronDataTupleSet.Builder dataTupleSet = HeronTuples.HeronDataTupleSet.newBuilder();
+    TopologyAPI.StreamId.Builder streamId = TopologyAPI.StreamId.newBuilder();
+    streamId.setComponentName("test-spout");
+    streamId.setId("default");
+    dataTupleSet.setStream(streamId);
+
+    for (int i = 0; i < expectedTuples; i++) {
+      HeronTuples.HeronDataTuple.Builder dataTuple = HeronTuples.HeronDataTuple.newBuilder();
+      dataTuple.setKey(19901017 + i);
+
+      HeronTuples.RootId.Builder rootId = HeronTuples.RootId.newBuilder();
+      rootId.setKey(19901017 + i);
+      rootId.setTaskid(0);
+      dataTuple.addRoots(rootId);
+
+      // 10 keys, with 10 tuples each
+      dataTuple.addValues(ByteString.copyFrom(serializer.serialize("key" + i % 10)));
+
+      dataTupleSet.addTuples(dataTuple);
+    }
+
+    heronTupleSet.setData(dataTupleSet);
+    slaveTester.getInStreamQueue().offer(heronTupleSet.build());
+
+    HeronServerTester.await(executeLatch);
+    Assert.assertEquals(expectedTuples, tupleExecutedCount.intValue());
+    Assert.assertEquals(expectedTuples, ackCount.intValue() + failCount.intValue());
+
+    Assert.assertEquals(10, executorThreads.size());
+    for (Map.Entry<String, Set<String>> entry : executorThreads.entrySet()) {
+      Assert.assertEquals("Key " + entry.getKey() + " was executed by several threads",
+          1, entry.getValue().size());
+      String thread = entry.getValue().iterator().next();
+      Assert.assertTrue("Key " + entry.getKey() + " was executed by " + thread,
+          thread.startsWith("heron-bolt-executor-"));
+    }
+
+    // TestBolt emits the value of every tuple it executes
+    Map<String, Integer> emittedCounts = new HashMap<>();
+    int emitted = 0;
+    for (int i = 0; i < Constants.RETRY_TIMES && emitted < expectedTuples; i++) {
+      Message msg;
+      while ((msg = slaveTester.getOutStreamQueue().poll()) != null) {
+        HeronTuples.HeronTupleSet set = (HeronTuples.HeronTupleSet) msg;
+        Assert.assertTrue(set.hasData());
+        for (HeronTuples.HeronDataTuple dataTuple : set.getData().getTuplesList()) {
+          String value = (String) serializer.deserialize(dataTuple.getValues(0).toByteArray());
+          emittedCounts.merge(value, 1, Integer::sum);
+          emitted++;
+        }
+      }
+      if (emitted < expectedTuples) {
+        Thread.sleep(Constants.RETRY_INTERVAL.toMillis());
+      }
+    }
+    Assert.assertEquals(expectedTuples, emitted);
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(Integer.valueOf(10), emittedCounts.get("key" + i));
+    }
+  }
+
+  /**
+   * Test that the instance thread does not block on slow executor threads: each executor thread
+   * gets more tuples than its queue takes, and stops executing them as soon as it has a tuple set
+   * to send out, so they must all be executed while the instance thread keeps moving the output
+   */
+  @Test
+  public void testExecutorThreadsBackPressure()
+      throws InterruptedException, NoSuchFieldException, IllegalAccessException {
+    // Each executor thread waits until its single tuple set is moved to the out stream queue
+    Map<SystemConfigKey, Object> overrides = new HashMap<>();
+    overrides.put(SystemConfigKey.INSTANCE_INTERNAL_BOLT_WRITE_QUEUE_CAPACITY, 2);
+    overrides.put(SystemConfigKey.INSTANCE_TUNING_EXPECTED_BOLT_WRITE_QUEUE_SIZE, 1);
+    UnitTestHelper.clearSingletonRegistry();
+    UnitTestHelper.addSystemConfigToSingleton(overrides);
+
+    PhysicalPlans.PhysicalPlan.Builder physicalPlan =
+        UnitTestHelper.getPhysicalPlan(false, -1).toBuilder();
+    physicalPlan.getTopologyBuilder().getTopologyConfigBuilder().addKvs(
+        TopologyAPI.Config.KeyValue.newBuilder()
+            .setKey(Config.TOPOLOGY_BOLT_EXECUTOR_THREADS)
+            .setValue("2")
+            .setType(TopologyAPI.ConfigValueType.STRING_VALUE));
+
+    PhysicalPlanHelper physicalPlanHelper =
+        new PhysicalPlanHelper(physicalPlan.build(), BOLT_INSTANCE_ID);
+    InstanceControlMsg instanceControlMsg = InstanceControlMsg.newBuilder().
+        setNewPhysicalPlanHelper(physicalPlanHelper).
+        build();
+
+    slaveTester.getInControlQueue().offer(instanceControlMsg);
+
+    // More than the 1024 tuples the queue of each executor thread takes
+    final int expectedTuples = 3000;
+    CountDownLatch executeLatch = new CountDownLatch(expectedTuples);
+    SingletonRegistry.INSTANCE.registerSingleton(Constants.EXECUTE_LATCH, executeLatch);
+    SingletonRegistry.INSTANCE.registerSingleton(Constants.EXECUTE_DELAY, Duration.ofMillis(1));
+
+    HeronTuples.HeronTupleSet.Builder heronTupleSet = HeronTuples.HeronTupleSet.newBuilder();
+    heronTupleSet.setSrcTaskId(SRC_TASK_ID);
+    HeronTuples.HeronDataTupleSet.Builder dataTupleSet = HeronTuples.HeronDataTupleSet.newBuilder();
+    TopologyAPI.StreamId.Builder streamId = TopologyAPI.StreamId.newBuilder();
+    streamId.setComponentName("test-spout");
+    streamId.setId("default");
+    dataTupleSet.setStream(streamId);
+
+    ByteString value = ByteString.copyFrom(serializer.serialize("A"));
+    for (int i = 0; i < expectedTuples; i++) {
+      HeronTuples.HeronDataTuple.Builder dataTuple = HeronTuples.HeronDataTuple.newBuilder();
+      dataTuple.setKey(19901017 + i);
+
+      HeronTuples.RootId.Builder rootId = HeronTuples.RootId.newBuilder();
+      rootId.setKey(19901017 + i);
+      rootId.setTaskid(0);
+      dataTuple.addRoots(rootId);
+
+      dataTuple.addValues(value);
+
+      dataTupleSet.addTuples(dataTuple);
+    }
+
+    heronTupleSet.setData(dataTupleSet);
+    slaveTester.getInStreamQueue().offer(heronTupleSet.build());
+
+    // Take the output as the stream manager would, so only the executor threads hold it back
+    int emitted = 0;
+    for (int i = 0; i < Constants.RETRY_TIMES && emitted < expectedTuples; i++) {
+      long deadline = System.nanoTime() + Constants.RETRY_INTERVAL.toNanos();
+      while (emitted < expectedTuples && System.nanoTime() - deadline < 0) {
+        Message msg;
+        while ((msg = slaveTester.getOutStreamQueue().poll()) != null) {
+          HeronTuples.HeronTupleSet set = (HeronTuples.HeronTupleSet) msg;
+          if (set.hasData()) {
+            emitted += set.getData().getTuplesCount();
+          }
+        }
+        Thread.sleep(1);
+      }
+    }
+    Assert.assertEquals(0, executeLatch.getCount());
+    Assert.assertEquals(expectedTuples, emitted);
+  }
+
+  /**
+   * Test that with lazy deserialization, a bolt emitting the values of its input tuples without
+   * reading them forwards their serialized form as-is: the values here are not even valid
+   * serialized objects, so any attempt to deserialize them would fail the bolt
+   */
+  @Test
+  public void testForwardValuesNeverRead() throws InterruptedException {
+    PhysicalPlans.PhysicalPlan.Builder physicalPlan =
+        UnitTestHelper.getPhysicalPlan(false, -1).toBuilder();
+    physicalPlan.getTopologyBuilder().getTopologyConfigBuilder().addKvs(
+        TopologyAPI.Config.KeyValue.newBuilder()
+            .setKey(Config.TOPOLOGY_LAZY_TUPLE_DESERIALIZATION)
+            .setValue("true")
+            .setType(TopologyAPI.ConfigValueType.STRING_VALUE));
+    physicalPlan.getTopologyBuilder().getBoltsBuilder(0).getCompBuilder()
+        .setSerializedObject(ByteString.copyFrom(Utils.serialize(new TestForwardingBolt())));
+
+    PhysicalPlanHelper physicalPlanHelper =
+        new PhysicalPlanHelper(physicalPlan.build(), BOLT_INSTANCE_ID);
+    InstanceControlMsg instanceControlMsg = InstanceControlMsg.newBuilder().
+        setNewPhysicalPlanHelper(physicalPlanHelper).
+        build();
+
+    slaveTester.getInControlQueue().offer(instanceControlMsg);
+
+    final int expectedTuples = 10;
+    CountDownLatch executeLatch = new CountDownLatch(expectedTuples);
+    SingletonRegistry.INSTANCE.registerSingleton(Constants.EXECUTE_LATCH, executeLatch);
+
+    HeronTuples.HeronTupleSet.Builder heronTupleSet = HeronTuples.HeronTupleSet.newBuilder();
+    heronTupleSet.setSrcTaskId(SRC_TASK_ID);
+    HeronTuples.HeronDataTupleSet.Builder dataTupleSet = HeronTuples.HeronDataTupleSet.newBuilder();
+    TopologyAPI.StreamId.Builder streamId = TopologyAPI.StreamId.newBuilder();
+    streamId.setComponentName("test-spout");
+    streamId.setId("default");
+    dataTupleSet.setStream(streamId);
+
+    List<ByteString> sentValues = new ArrayList<>();
+    for (int i = 0; i < expectedTuples; i++) {
+      HeronTuples.HeronDataTuple.Builder dataTuple = HeronTuples.HeronDataTuple.newBuilder();
+      dataTuple.setKey(19901017 + i);
+
+      HeronTuples.RootId.Builder rootId = HeronTuples.RootId.newBuilder();
+      rootId.setKey(19901017 + i);
+      rootId.setTaskid(0);
+      dataTuple.addRoots(rootId);
+
+      ByteString value = ByteString.copyFrom(new byte[]{(byte) i, 1, 2, 3});
+      dataTuple.addValues(value);
+      sentValues.add(value);
+
+      dataTupleSet.addTuples(dataTuple);
+    }
+
+    heronTupleSet.setData(dataTupleSet);
+    slaveTester.getInStreamQueue().offer(heronTupleSet.build());
+
+    HeronServerTester.await(executeLatch);
+
+    List<ByteString> emittedValues = new ArrayList<>();
+    for (int i = 0; i < Constants.RETRY_TIMES && emittedValues.size() < expectedTuples; i++) {
+      Message msg;
+      while ((msg = slaveTester.getOutStreamQueue().poll()) != null) {
+        HeronTuples.HeronTupleSet set = (HeronTuples.HeronTupleSet) msg;
+        if (!set.hasData()) {
+          // The acks of the input tuples
+          continue;
+        }
+        for (HeronTuples.HeronDataTuple dataTuple : set.getData().getTuplesList()) {
+          Assert.assertEquals(1, dataTuple.getValuesCount());
+          Assert.assertEquals(1, dataTuple.getRootsCount());
+          emittedValues.add(dataTuple.getValues(0));
+        }
+      }
+      if (emittedValues.size() < expectedTuples) {
+        Thread.sleep(Constants.RETRY_INTERVAL.toMillis());
+      }
+    }
+    Assert.assertEquals(sentValues, emittedValues);
+  }
 }
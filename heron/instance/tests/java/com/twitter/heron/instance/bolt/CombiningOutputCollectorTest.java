@@ -0,0 +1,153 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.instance.bolt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.twitter.heron.api.bolt.ICombiner;
+import com.twitter.heron.api.bolt.IOutputCollector;
+import com.twitter.heron.api.tuple.Tuple;
+import com.twitter.heron.api.tuple.Values;
+
+public class CombiningOutputCollectorTest {
+  private static final String STREAM_ID = "default";
+  private static final int CAPACITY = 4;
+
+  // The tuples sent out, as [stream id, values]
+  private List<List<Object>> emitted;
+  private CombiningOutputCollector collector;
+
+  @Before
+  public void before() {
+    emitted = new ArrayList<>();
+    IOutputCollector delegate = new IOutputCollector() {
+      @Override
+      public List<Integer> emit(String streamId, Collection<Tuple> anchors,
+                                List<Object> tuple) {
+        emitted.add(Arrays.asList(streamId, tuple));
+        return null;
+      }
+
+      @Override
+      public void emitDirect(int taskId, String streamId,
+                             Collection<Tuple> anchors, List<Object> tuple) {
+        emitted.add(Arrays.asList(streamId, tuple));
+      }
+
+      @Override
+      public void ack(Tuple input) {
+      }
+
+      @Override
+      public void fail(Tuple input) {
+      }
+
+      @Override
+      public void reportError(Throwable error) {
+      }
+    };
+    collector = new CombiningOutputCollector(delegate, new WordCountCombiner(), CAPACITY);
+  }
+
+  @Test
+  public void testCombineHotKeys() {
+    // Half of the tuples are for the same word
+    int n = 1000;
+    for (int i = 0; i < n; i++) {
+      collector.emit(STREAM_ID, null, new Values("hot", 1));
+      collector.emit(STREAM_ID, null, new Values("cold" + i, 1));
+    }
+    Assert.assertEquals(1, collector.size());
+    // A combined tuple is not sent to any task
+    Assert.assertTrue(collector.emit(STREAM_ID, null, new Values("hot", 1)).isEmpty());
+    collector.flush();
+    Assert.assertEquals(0, collector.size());
+
+    // The counts are kept, but the hot word was sent out a few times only
+    Map<Object, Integer> counts = countWords();
+    Assert.assertEquals(n + 1, counts.size());
+    Assert.assertEquals(n + 1, (int) counts.get("hot"));
+    Assert.assertEquals(1, (int) counts.get("cold0"));
+    Assert.assertTrue(emitted.size() < n + 20);
+  }
+
+  @Test
+  public void testAnchoredTuplesAreNotCombined() {
+    Tuple anchor = Mockito.mock(Tuple.class);
+    for (int i = 0; i < 100; i++) {
+      collector.emit(STREAM_ID, Arrays.asList(anchor), new Values("hot", 1));
+    }
+    Assert.assertEquals(0, collector.size());
+    Assert.assertEquals(100, emitted.size());
+
+    // Tuples without a key are not combined either
+    for (int i = 0; i < 100; i++) {
+      collector.emit(STREAM_ID, null, new Values(null, 1));
+    }
+    Assert.assertEquals(0, collector.size());
+    Assert.assertEquals(200, emitted.size());
+  }
+
+  @Test
+  public void testCapacity() {
+    // Enough hot words to fill the pending tuples
+    int n = 1000;
+    for (int i = 0; i < n; i++) {
+      collector.emit(STREAM_ID, null, new Values("word" + i % (CAPACITY + 1), 1));
+      Assert.assertTrue(collector.size() < CAPACITY);
+    }
+    collector.flush();
+
+    Map<Object, Integer> counts = countWords();
+    Assert.assertEquals(CAPACITY + 1, counts.size());
+    for (int count : counts.values()) {
+      Assert.assertEquals(n / (CAPACITY + 1), count);
+    }
+  }
+
+  private Map<Object, Integer> countWords() {
+    Map<Object, Integer> counts = new HashMap<>();
+    for (List<Object> tuple : emitted) {
+      Assert.assertEquals(STREAM_ID, tuple.get(0));
+      @SuppressWarnings("unchecked")
+      List<Object> values = (List<Object>) tuple.get(1);
+      counts.merge(values.get(0), (Integer) values.get(1), Integer::sum);
+    }
+    return counts;
+  }
+
+  private static class WordCountCombiner implements ICombiner {
+    @Override
+    public Object getCombinerKey(String streamId, List<Object> tuple) {
+      return tuple.get(0);
+    }
+
+    @Override
+    public List<Object> combine(String streamId, List<Object> first, List<Object> second) {
+      return new Values(first.get(0), (Integer) first.get(1) + (Integer) second.get(1));
+    }
+  }
+}
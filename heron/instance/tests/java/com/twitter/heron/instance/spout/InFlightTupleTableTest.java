@@ -0,0 +1,96 @@
+//  Copyright 2017 Twitter. All rights reserved.
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.twitter.heron.instance.spout;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InFlightTupleTableTest {
+  private static final long TIMEOUT = 100;
+
+  @Test
+  public void testPutAndRemove() {
+    InFlightTupleTable table = new InFlightTupleTable(4);
+    // More than the initial capacity, so the table has to grow
+    int n = 5000;
+    for (int i = 0; i < n; i++) {
+      table.put(i * 31L, "stream", "message" + i, i);
+    }
+    Assert.assertEquals(n, table.size());
+
+    for (int i = 0; i < n; i += 2) {
+      RootTupleInfo info = table.remove(i * 31L);
+      Assert.assertEquals("message" + i, info.getMessageId());
+      Assert.assertEquals("stream", info.getStreamId());
+      Assert.assertEquals(i, info.getInsertionTime());
+    }
+    Assert.assertNull(table.remove(0));
+    Assert.assertEquals(n / 2, table.size());
+
+    // The remaining keys are still found after the backward shifts
+    for (int i = 1; i < n; i += 2) {
+      Assert.assertNotNull(table.remove(i * 31L));
+    }
+    Assert.assertEquals(0, table.size());
+  }
+
+  @Test
+  public void testRemoveExpiredInOrder() {
+    InFlightTupleTable table = new InFlightTupleTable(4);
+
+    // Spread the tuples over several ticks of the wheel
+    long time = 0;
+    for (int tick = 0; tick < 3; tick++) {
+      for (int i = 0; i < 10; i++) {
+        long key = tick * 10 + i;
+        table.put(key, "stream", key, time++);
+      }
+      Assert.assertTrue(table.removeExpired(time, TIMEOUT).isEmpty());
+    }
+    table.remove(5L);
+
+    // Tuples 0 to 14, except the acked one, were inserted at least TIMEOUT ago
+    List<RootTupleInfo> expired = table.removeExpired(14 + TIMEOUT, TIMEOUT);
+    Assert.assertEquals(14, expired.size());
+    long previous = -1;
+    for (RootTupleInfo info : expired) {
+      Assert.assertTrue((Long) info.getMessageId() > previous);
+      previous = (Long) info.getMessageId();
+    }
+    Assert.assertEquals(14L, previous);
+    Assert.assertEquals(15, table.size());
+
+    Assert.assertEquals(15, table.removeExpired(Long.MAX_VALUE / 2, TIMEOUT).size());
+    Assert.assertEquals(0, table.size());
+  }
+
+  @Test
+  public void testWheelWrapsAround() {
+    InFlightTupleTable table = new InFlightTupleTable(2);
+
+    // Nothing expires for more ticks than buckets, so the current bucket keeps filling
+    for (long key = 0; key < 10; key++) {
+      table.put(key, "stream", key, key);
+      Assert.assertTrue(table.removeExpired(key, TIMEOUT).isEmpty());
+    }
+
+    List<RootTupleInfo> expired = table.removeExpired(9 + TIMEOUT, TIMEOUT);
+    Assert.assertEquals(10, expired.size());
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals((long) i, expired.get(i).getMessageId());
+    }
+  }
+}
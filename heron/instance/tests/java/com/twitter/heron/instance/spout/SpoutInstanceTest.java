@@ -173,6 +173,7 @@ public class SpoutInstanceTest {
 
             Assert.assertTrue(metricsName.contains("__ack-count/default"));
             Assert.assertTrue(metricsName.contains("__complete-latency/default"));
+            Assert.assertTrue(metricsName.contains("__complete-latency-p99/default"));
             Assert.assertTrue(metricsName.contains("__emit-count/default"));
             Assert.assertTrue(metricsName.contains("__next-tuple-latency"));
             Assert.assertTrue(metricsName.contains("__next-tuple-count"));
@@ -0,0 +1,65 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.instance.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveBatchSizerTest {
+  private static final int EXPECTED_QUEUE_SIZE = 100;
+
+  @Test
+  public void testGrowsWhileBackingUp() {
+    AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(16, 100);
+    Assert.assertEquals(16, batchSizer.getBatchSize());
+
+    Assert.assertEquals(32, batchSizer.update(50, EXPECTED_QUEUE_SIZE));
+    Assert.assertEquals(64, batchSizer.update(80, EXPECTED_QUEUE_SIZE));
+    // Capped by the max batch size
+    Assert.assertEquals(100, batchSizer.update(120, EXPECTED_QUEUE_SIZE));
+    Assert.assertEquals(100, batchSizer.update(120, EXPECTED_QUEUE_SIZE));
+  }
+
+  @Test
+  public void testShrinksWhileIdle() {
+    AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(16, 128);
+    for (int i = 0; i < 3; i++) {
+      batchSizer.update(EXPECTED_QUEUE_SIZE, EXPECTED_QUEUE_SIZE);
+    }
+    Assert.assertEquals(128, batchSizer.getBatchSize());
+
+    // Kept while the queue is neither empty nor backing up
+    Assert.assertEquals(128, batchSizer.update(10, EXPECTED_QUEUE_SIZE));
+    Assert.assertEquals(64, batchSizer.update(0, EXPECTED_QUEUE_SIZE));
+    Assert.assertEquals(32, batchSizer.update(0, EXPECTED_QUEUE_SIZE));
+    Assert.assertEquals(16, batchSizer.update(0, EXPECTED_QUEUE_SIZE));
+    Assert.assertEquals(16, batchSizer.update(0, EXPECTED_QUEUE_SIZE));
+  }
+
+  @Test
+  public void testIsBackingUp() {
+    Assert.assertTrue(AdaptiveBatchSizer.isBackingUp(50, EXPECTED_QUEUE_SIZE));
+    Assert.assertFalse(AdaptiveBatchSizer.isBackingUp(49, EXPECTED_QUEUE_SIZE));
+    Assert.assertTrue(AdaptiveBatchSizer.isBackingUp(1, 1));
+    Assert.assertFalse(AdaptiveBatchSizer.isBackingUp(0, 1));
+    // The expected size of the queue is unknown
+    Assert.assertFalse(AdaptiveBatchSizer.isBackingUp(1000, 0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidBounds() {
+    new AdaptiveBatchSizer(64, 32);
+  }
+}
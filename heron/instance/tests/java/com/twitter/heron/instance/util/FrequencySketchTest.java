@@ -0,0 +1,53 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.instance.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FrequencySketchTest {
+  @Test
+  public void testEstimates() {
+    FrequencySketch sketch = new FrequencySketch(64);
+    for (int i = 0; i < 1000; i++) {
+      sketch.increment("hot");
+      sketch.increment("key" + i);
+    }
+    Assert.assertEquals(2000, sketch.getTotal());
+
+    // Estimates are never under the real counts, and rare keys stay rare
+    Assert.assertTrue(sketch.estimate("hot") >= 1000);
+    Assert.assertTrue(sketch.estimate("hot") < 1100);
+    Assert.assertTrue(sketch.estimate("key1") >= 1);
+    Assert.assertTrue(sketch.estimate("key1") < 100);
+    Assert.assertEquals(0, new FrequencySketch(64).estimate("hot"));
+  }
+
+  @Test
+  public void testHalve() {
+    FrequencySketch sketch = new FrequencySketch(100);
+    for (int i = 0; i < 10; i++) {
+      sketch.increment(i % 2 == 0 ? "even" : null);
+    }
+    Assert.assertEquals(5, sketch.estimate("even"));
+    Assert.assertEquals(5, sketch.estimate(null));
+
+    sketch.halve();
+    Assert.assertEquals(2, sketch.estimate("even"));
+    Assert.assertEquals(5, sketch.getTotal());
+    Assert.assertEquals(3, sketch.increment("even"));
+  }
+}
@@ -0,0 +1,75 @@
+//  Copyright 2017 Twitter. All rights reserved.
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.twitter.heron.instance.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import com.twitter.heron.api.serializer.JavaSerializer;
+
+public class ValueOutputBufferTest {
+  @Test
+  public void testValuesAreNotOverwritten() {
+    ValueOutputBuffer buffer = new ValueOutputBuffer(8);
+
+    buffer.write(new byte[]{1, 2, 3}, 0, 3);
+    ByteString first = buffer.finishValue();
+    // Does not fit in the remaining chunk, so a new chunk is allocated
+    buffer.write(new byte[]{4, 5, 6, 7, 8, 9}, 0, 6);
+    ByteString second = buffer.finishValue();
+    // Larger than a chunk
+    buffer.write(new byte[20], 0, 20);
+    ByteString third = buffer.finishValue();
+
+    Assert.assertArrayEquals(new byte[]{1, 2, 3}, first.toByteArray());
+    Assert.assertArrayEquals(new byte[]{4, 5, 6, 7, 8, 9}, second.toByteArray());
+    Assert.assertEquals(20, third.size());
+  }
+
+  @Test
+  public void testPartialValueSurvivesChunkSwitch() {
+    ValueOutputBuffer buffer = new ValueOutputBuffer(4);
+    buffer.write(1);
+    buffer.write(2);
+    buffer.write(3);
+    buffer.write(new byte[]{4, 5, 6}, 0, 3);
+
+    Assert.assertEquals(6, buffer.pendingValueSize());
+    Assert.assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, buffer.finishValue().toByteArray());
+  }
+
+  @Test
+  public void testDiscardValue() {
+    ValueOutputBuffer buffer = new ValueOutputBuffer(16);
+    buffer.write(new byte[]{1, 2}, 0, 2);
+    buffer.discardValue();
+    buffer.write(3);
+
+    Assert.assertArrayEquals(new byte[]{3}, buffer.finishValue().toByteArray());
+  }
+
+  @Test
+  public void testMatchesPlainSerialization() {
+    JavaSerializer serializer = new JavaSerializer();
+    ValueOutputBuffer buffer = new ValueOutputBuffer(64);
+
+    serializer.serializeTo("value", buffer);
+    ByteString streamed = buffer.finishValue();
+
+    Assert.assertArrayEquals(serializer.serialize("value"), streamed.toByteArray());
+    Assert.assertEquals("value", serializer.deserialize(streamed.toByteArray()));
+  }
+}
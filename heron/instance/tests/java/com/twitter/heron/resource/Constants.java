@@ -41,6 +41,8 @@ public final class Constants {
   public static final String DEACTIVATE_COUNT_LATCH = "deactivate-count-latch";
 
   public static final String RECEIVED_STRING_LIST = "received-string-list";
+  public static final String EXECUTOR_THREADS = "executor-threads";
+  public static final String EXECUTE_DELAY = "execute-delay";
 
   public static final String HERON_SYSTEM_CONFIG = "com.twitter.heron.common.config.SystemConfig";
 
@@ -14,9 +14,13 @@
 
 package com.twitter.heron.resource;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import org.junit.Ignore;
 
@@ -35,6 +39,9 @@ import com.twitter.heron.common.basics.SingletonRegistry;
  * 2. It will increment singleton "execute-count" when it executes once
  * 3. It will ack the tuple and increment singleton Constants.ACK_COUNT when # of tuples executed is odd
  * 4. It will fail the tuple and increment singleton Constants.FAIL_COUNT when # of tuples executed is even
+ * 5. It will add the name of the executing thread to the singleton Constants.EXECUTOR_THREADS,
+ * under the value of the tuple
+ * 6. It will take the Duration in the singleton Constants.EXECUTE_DELAY to execute each tuple
  */
 @Ignore
 public class TestBolt extends BaseRichBolt {
@@ -62,6 +69,15 @@ public class TestBolt extends BaseRichBolt {
         (CountDownLatch) SingletonRegistry.INSTANCE.getSingleton(Constants.EXECUTE_LATCH);
     StringBuilder receivedStrings =
         (StringBuilder) SingletonRegistry.INSTANCE.getSingleton(Constants.RECEIVED_STRING_LIST);
+    @SuppressWarnings("unchecked")
+    Map<String, Set<String>> executorThreads = (Map<String, Set<String>>)
+        SingletonRegistry.INSTANCE.getSingleton(Constants.EXECUTOR_THREADS);
+    Duration executeDelay =
+        (Duration) SingletonRegistry.INSTANCE.getSingleton(Constants.EXECUTE_DELAY);
+
+    if (executeDelay != null) {
+      LockSupport.parkNanos(executeDelay.toNanos());
+    }
 
     if (receivedStrings != null) {
       receivedStrings.append(tuple.getString(0));
@@ -71,6 +87,11 @@ public class TestBolt extends BaseRichBolt {
       tupleExecutedCount.getAndIncrement();
     }
 
+    if (executorThreads != null) {
+      executorThreads.computeIfAbsent(tuple.getString(0), k -> ConcurrentHashMap.newKeySet())
+          .add(Thread.currentThread().getName());
+    }
+
     if ((tupleExecuted & 1) == 0) {
       outputCollector.ack(tuple);
       if (ackCount != null) {
@@ -0,0 +1,63 @@
+// Copyright 2016 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.resource;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Ignore;
+
+import com.twitter.heron.api.bolt.BaseRichBolt;
+import com.twitter.heron.api.bolt.OutputCollector;
+import com.twitter.heron.api.topology.OutputFieldsDeclarer;
+import com.twitter.heron.api.topology.TopologyContext;
+import com.twitter.heron.api.tuple.Fields;
+import com.twitter.heron.api.tuple.Tuple;
+import com.twitter.heron.common.basics.SingletonRegistry;
+
+/**
+ * A Bolt used for unit test, it emits the values of every tuple without reading them,
+ * acks the tuple and counts down the singleton Constants.EXECUTE_LATCH
+ */
+@Ignore
+public class TestForwardingBolt extends BaseRichBolt {
+  private static final long serialVersionUID = 2958437514730916254L;
+  private OutputCollector outputCollector;
+
+  @Override
+  public void prepare(
+      Map<String, Object> map,
+      TopologyContext topologyContext,
+      OutputCollector collector) {
+    this.outputCollector = collector;
+  }
+
+  @Override
+  public void execute(Tuple tuple) {
+    outputCollector.emit(tuple, tuple.getValues());
+    outputCollector.ack(tuple);
+
+    CountDownLatch tupleExecutedLatch =
+        (CountDownLatch) SingletonRegistry.INSTANCE.getSingleton(Constants.EXECUTE_LATCH);
+    if (tupleExecutedLatch != null) {
+      tupleExecutedLatch.countDown();
+    }
+  }
+
+  @Override
+  public void declareOutputFields(OutputFieldsDeclarer outputFieldsDeclarer) {
+    outputFieldsDeclarer.declare(new Fields("word"));
+  }
+}
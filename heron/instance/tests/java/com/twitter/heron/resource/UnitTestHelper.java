@@ -16,6 +16,7 @@ package com.twitter.heron.resource;
 
 import java.lang.reflect.Field;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Map;
 
 import org.junit.Ignore;
@@ -167,6 +168,13 @@ public final class UnitTestHelper {
   }
 
   public static void addSystemConfigToSingleton() {
+    addSystemConfigToSingleton(Collections.<SystemConfigKey, Object>emptyMap());
+  }
+
+  /**
+   * Register the test system config, with some of its values overridden
+   */
+  public static void addSystemConfigToSingleton(Map<SystemConfigKey, Object> overrides) {
     String runFiles = System.getenv(Constants.BUILD_TEST_SRCDIR);
     if (runFiles == null) {
       throw new RuntimeException("Failed to fetch run files resources from built jar");
@@ -177,6 +185,9 @@ public final class UnitTestHelper {
     SystemConfig.Builder sb = SystemConfig.newBuilder(true)
         .putAll(filePath, true)
         .put(SystemConfigKey.HERON_METRICS_EXPORT_INTERVAL, 1);
+    for (Map.Entry<SystemConfigKey, Object> override : overrides.entrySet()) {
+      sb.put(override.getKey(), override.getValue());
+    }
     SingletonRegistry.INSTANCE.registerSingleton(Constants.HERON_SYSTEM_CONFIG, sb.build());
   }
 
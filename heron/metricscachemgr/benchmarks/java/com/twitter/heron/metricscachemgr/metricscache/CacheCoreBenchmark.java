@@ -0,0 +1,133 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.metricscachemgr.metricscache;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.twitter.heron.metricscachemgr.metricscache.query.MetricGranularity;
+import com.twitter.heron.metricscachemgr.metricscache.query.MetricRequest;
+import com.twitter.heron.metricscachemgr.metricscache.query.MetricResponse;
+import com.twitter.heron.proto.tmaster.TopologyMaster;
+import com.twitter.heron.spi.metricsmgr.metrics.MetricsFilter;
+
+/**
+ * Ingest metrics into a CacheCore while querying it, as the metrics cache manager does with
+ * metrics published by the metrics managers and queries from the tracker and health manager.
+ * <p>
+ * The cache is filled for its whole retention first. Each ingest thread publishes the metrics
+ * of its own instances, and each query thread asks for one metric of all the instances of a
+ * component over the retention. Use "-tg" to change the number of threads of each kind,
+ * e.g., "-tg 4,0" for ingestion alone.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheCoreBenchmark {
+  private static final int INSTANCES = 64;
+  private static final int METRICS = 32;
+  private static final Duration RETENTION = Duration.ofMinutes(10);
+  private static final Duration WINDOW = Duration.ofMinutes(1);
+  private static final long PUBLISH_INTERVAL_MS = 10000;
+
+  @Param({"RAW", "AGGREGATE_BY_BUCKET", "AGGREGATE_ALL_METRICS"})
+  public MetricGranularity granularity;
+
+  private final AtomicInteger ingestThreads = new AtomicInteger();
+  private CacheCore cache;
+  private MetricsFilter filter;
+  private MetricRequest request;
+
+  @Setup
+  public void setup() {
+    cache = new CacheCore(RETENTION, WINDOW, 100);
+    filter = new MetricsFilter();
+    long now = System.currentTimeMillis();
+    for (long ts = now - RETENTION.toMillis(); ts < now; ts += PUBLISH_INTERVAL_MS) {
+      for (int instance = 0; instance < INSTANCES; instance++) {
+        cache.addMetricException(publishMetrics(instance, ts));
+      }
+    }
+    for (int metric = 0; metric < METRICS; metric++) {
+      filter.setMetricToType("metric" + metric, MetricsFilter.MetricAggregationType.SUM);
+    }
+    request = new MetricRequest(Collections.<String, Set<String>>singletonMap("component", null),
+        Collections.singleton("metric0"), now - RETENTION.toMillis(), now, granularity);
+  }
+
+  private static TopologyMaster.PublishMetrics publishMetrics(int instance, long timestamp) {
+    TopologyMaster.PublishMetrics.Builder builder = TopologyMaster.PublishMetrics.newBuilder();
+    for (int metric = 0; metric < METRICS; metric++) {
+      builder.addMetrics(TopologyMaster.MetricDatum.newBuilder()
+          .setTimestamp(timestamp)
+          .setComponentName("component")
+          .setInstanceId("instance" + instance)
+          .setName("metric" + metric)
+          .setValue(String.valueOf(instance + metric)));
+    }
+    return builder.build();
+  }
+
+  /**
+   * The instances published to by an ingest thread
+   */
+  @State(Scope.Thread)
+  public static class Publisher {
+    private TopologyMaster.PublishMetrics metrics;
+
+    TopologyMaster.PublishMetrics get(CacheCoreBenchmark benchmark) {
+      if (metrics == null) {
+        // built once, so only the cache is measured
+        int instance = benchmark.ingestThreads.getAndIncrement() % INSTANCES;
+        metrics = publishMetrics(instance, System.currentTimeMillis());
+      }
+      return metrics;
+    }
+  }
+
+  @Benchmark
+  @Group("ingestAndQuery")
+  @GroupThreads(2)
+  public void ingest(Publisher publisher) {
+    cache.addMetricException(publisher.get(this));
+  }
+
+  @Benchmark
+  @Group("ingestAndQuery")
+  @GroupThreads(2)
+  public MetricResponse query() {
+    return cache.getMetrics(request, filter);
+  }
+}
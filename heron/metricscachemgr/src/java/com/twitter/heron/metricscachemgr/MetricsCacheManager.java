@@ -125,7 +125,9 @@ public class MetricsCacheManager {
     metricsCacheManagerServer.registerOnRequest(TopologyMaster.ExceptionLogRequest.newBuilder());
 
     // Construct the server to respond to query request
-    metricsCacheManagerHttpServer = new MetricsCacheManagerHttpServer(metricsCache, statsPort);
+    metricsCacheManagerHttpServer = new MetricsCacheManagerHttpServer(metricsCache, statsPort,
+        systemConfig, metricsCacheManagerServerLoop, METRICS_CACHE_COMPONENT_NAME,
+        String.valueOf(METRICS_CACHE_INSTANCE_ID));
 
     // Add exception handler for any uncaught exception here.
     Thread.setDefaultUncaughtExceptionHandler(new DefaultExceptionHandler());
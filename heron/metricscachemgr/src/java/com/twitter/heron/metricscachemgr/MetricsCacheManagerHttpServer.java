@@ -17,19 +17,37 @@ package com.twitter.heron.metricscachemgr;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.protobuf.GeneratedMessageV3;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
+import com.twitter.heron.api.metric.ConcurrentCountMetric;
+import com.twitter.heron.common.basics.WakeableLooper;
+import com.twitter.heron.common.config.SystemConfig;
 import com.twitter.heron.metricscachemgr.metricscache.MetricsCache;
 import com.twitter.heron.proto.tmaster.TopologyMaster;
+import com.twitter.heron.spi.metricsmgr.metrics.MetricsFilter;
 import com.twitter.heron.spi.utils.NetworkUtils;
 
 
@@ -46,6 +64,12 @@ import com.twitter.heron.spi.utils.NetworkUtils;
  * MetricsCacheManagerHttpServer responds to queries.
  * 2. MetricsCacheManagerServer is a HeronServer;
  * MetricsCacheManagerHttpServer is a http server
+ * <p>
+ * Queries are served concurrently by a bounded pool of threads, and rejected with 503 Service
+ * Unavailable once its queue is full. Identical queries, once
+ * normalized, share the response of the one in flight, and reuse it for a short time after.
+ * The server publishes its own metrics into the cache, under the metrics cache manager
+ * component: request count and latency, queries actually run, queue time and depth.
  */
 public class MetricsCacheManagerHttpServer {
   // http path, compatible with tmaster stat interface
@@ -53,20 +77,95 @@ public class MetricsCacheManagerHttpServer {
   private static final String PATH_EXCEPTIONS = "/exceptions";
   private static final String PATH_EXCEPTIONSUMMARY = "/exceptionsummary";
 
+  // metrics of the http server
+  static final String METRIC_REQUEST_COUNT = "__http-request-count";
+  // requests that ran a query, rather than sharing the response of an identical one
+  static final String METRIC_QUERY_COUNT = "__http-query-count";
+  // requests rejected with 503, as the queue was full
+  static final String METRIC_REJECTED_COUNT = "__http-rejected-count";
+  static final String METRIC_REQUEST_LATENCY = "__http-request-latency-ms";
+  static final String METRIC_QUEUE_TIME = "__http-queue-time-ms";
+  static final String METRIC_QUEUE_DEPTH = "__http-queue-depth";
+
+  // bound on the responses kept for reuse, per path
+  private static final int RESPONSE_CACHE_SIZE = 1024;
+
   private static final Logger LOG = Logger.getLogger(MetricsCacheManagerHttpServer.class.getName());
   // http server
   private final HttpServer server;
+  // serves the requests
+  private final ThreadPoolExecutor executor;
   // reference to MetricsCache object
   private final MetricsCache metricsCache;
+  private final Duration responseCacheTtl;
+  private final Ticker ticker;
+  // set while the thread accepting connections rejects a request
+  private final ThreadLocal<Boolean> rejecting = new ThreadLocal<>();
+
+  // publishes the metrics of the http server
+  private final WakeableLooper looper;
+  private final Duration metricsExportInterval;
+  private final String metricsComponentName;
+  private final String metricsInstanceId;
+  private volatile boolean running;
+
+  private final ConcurrentCountMetric requestCount = new ConcurrentCountMetric();
+  private final ConcurrentCountMetric queryCount = new ConcurrentCountMetric();
+  private final ConcurrentCountMetric rejectedCount = new ConcurrentCountMetric();
+  private final MeanMetric requestLatency = new MeanMetric();
+  private final MeanMetric queueTime = new MeanMetric();
+
+  /**
+   * Construct the http server
+   *
+   * @param cache the metrics cache to query
+   * @param port the port to listen on
+   * @param systemConfig heron config, with the size of the pool and the response cache ttl
+   * @param looper the looper to publish the metrics of the http server from
+   * @param componentName the component name to publish the metrics under
+   * @param instanceId the instance id to publish the metrics under
+   */
+  public MetricsCacheManagerHttpServer(MetricsCache cache, int port, SystemConfig systemConfig,
+                                       WakeableLooper looper, String componentName,
+                                       String instanceId) throws IOException {
+    this(cache, port, systemConfig, looper, componentName, instanceId, Ticker.systemTicker());
+  }
 
-  public MetricsCacheManagerHttpServer(MetricsCache cache, int port) throws IOException {
+  @VisibleForTesting
+  MetricsCacheManagerHttpServer(MetricsCache cache, int port, SystemConfig systemConfig,
+                                WakeableLooper looper, String componentName,
+                                String instanceId, Ticker ticker) throws IOException {
     metricsCache = cache;
+    responseCacheTtl = systemConfig.getTmasterMetricsStatsResponseCacheTtl();
+    this.ticker = ticker;
+    this.looper = looper;
+    metricsExportInterval = systemConfig.getHeronMetricsExportInterval();
+    metricsComponentName = componentName;
+    metricsInstanceId = instanceId;
+
+    int threads = systemConfig.getTmasterMetricsStatsThreads();
+    executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(systemConfig.getTmasterMetricsStatsQueueSize()),
+        new QueryThreadFactory(), new RejectPolicy()) {
+      @Override
+      public void execute(Runnable command) {
+        super.execute(new QueuedRequest(command));
+      }
+    };
 
     server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.setExecutor(executor);
 
     server.createContext(PATH_STATS, new HandleStatsRequest());
     server.createContext(PATH_EXCEPTIONS, new HandleExceptionRequest());
     server.createContext(PATH_EXCEPTIONSUMMARY, new HandleExceptionSummaryRequest());
+
+    cache.setMetricType(METRIC_REQUEST_COUNT, MetricsFilter.MetricAggregationType.SUM);
+    cache.setMetricType(METRIC_QUERY_COUNT, MetricsFilter.MetricAggregationType.SUM);
+    cache.setMetricType(METRIC_REJECTED_COUNT, MetricsFilter.MetricAggregationType.SUM);
+    cache.setMetricType(METRIC_REQUEST_LATENCY, MetricsFilter.MetricAggregationType.AVG);
+    cache.setMetricType(METRIC_QUEUE_TIME, MetricsFilter.MetricAggregationType.AVG);
+    cache.setMetricType(METRIC_QUEUE_DEPTH, MetricsFilter.MetricAggregationType.LAST);
   }
 
   /**
@@ -120,38 +219,116 @@ public class MetricsCacheManagerHttpServer {
 
   public void start() {
     server.start();
+    running = true;
+    looper.registerPeriodicEvent(metricsExportInterval, this::exportMetrics);
   }
 
   public void stop() {
+    running = false;
     server.stop(0);
+    executor.shutdownNow();
+  }
+
+  // publish the metrics of the http server into the cache, as the sinks do for instances
+  @VisibleForTesting
+  void exportMetrics() {
+    if (!running) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    TopologyMaster.PublishMetrics.Builder builder = TopologyMaster.PublishMetrics.newBuilder();
+    addMetric(builder, now, METRIC_REQUEST_COUNT, requestCount.getValueAndReset());
+    addMetric(builder, now, METRIC_QUERY_COUNT, queryCount.getValueAndReset());
+    addMetric(builder, now, METRIC_REJECTED_COUNT, rejectedCount.getValueAndReset());
+    addMetric(builder, now, METRIC_REQUEST_LATENCY, requestLatency.getValueAndReset());
+    addMetric(builder, now, METRIC_QUEUE_TIME, queueTime.getValueAndReset());
+    addMetric(builder, now, METRIC_QUEUE_DEPTH, executor.getQueue().size());
+    metricsCache.addMetrics(builder.build());
+  }
+
+  private void addMetric(TopologyMaster.PublishMetrics.Builder builder, long timestamp,
+                         String name, Object value) {
+    if (value != null) {
+      builder.addMetrics(TopologyMaster.MetricDatum.newBuilder()
+          .setComponentName(metricsComponentName)
+          .setInstanceId(metricsInstanceId)
+          .setName(name)
+          .setValue(value.toString())
+          .setTimestamp(timestamp));
+    }
   }
 
   // T - request, U - response
   abstract class RequestHandler<T extends GeneratedMessageV3, U extends GeneratedMessageV3>
       implements HttpHandler {
+    // responses in flight and recent, by normalized request
+    private final Cache<T, byte[]> responses = CacheBuilder.newBuilder()
+        .expireAfterWrite(responseCacheTtl.toMillis(), TimeUnit.MILLISECONDS)
+        .maximumSize(RESPONSE_CACHE_SIZE)
+        .ticker(ticker)
+        .build();
+
     @Override
     public void handle(HttpExchange httpExchange) throws IOException {
-      // get the entire stuff
-      byte[] payload = NetworkUtils.readHttpRequestBody(httpExchange);
-      T req;
+      long start = System.nanoTime();
+      requestCount.incr();
       try {
-        req = parseRequest(payload);
-      } catch (InvalidProtocolBufferException e) {
-        LOG.log(Level.SEVERE,
-            "Unable to decipher data specified in Request: " + httpExchange, e);
-        httpExchange.sendResponseHeaders(400, -1); // throw exception
-        return;
+        if (Boolean.TRUE.equals(rejecting.get())) {
+          httpExchange.sendResponseHeaders(503, -1); // the queue is full
+          return;
+        }
+        // get the entire stuff
+        byte[] payload = NetworkUtils.readHttpRequestBody(httpExchange);
+        T req;
+        try {
+          req = normalizeRequest(parseRequest(payload));
+        } catch (InvalidProtocolBufferException e) {
+          LOG.log(Level.SEVERE,
+              "Unable to decipher data specified in Request: " + httpExchange, e);
+          httpExchange.sendResponseHeaders(400, -1); // throw exception
+          return;
+        }
+        byte[] res;
+        try {
+          // identical requests in flight wait for this one to complete, and share its response
+          res = responses.get(req, () -> {
+            queryCount.incr();
+            return generateResponse(req, metricsCache).toByteArray();
+          });
+        } catch (ExecutionException e) {
+          LOG.log(Level.SEVERE, "Failed to respond to Request: " + req, e.getCause());
+          httpExchange.sendResponseHeaders(500, -1);
+          return;
+        }
+        NetworkUtils.sendHttpResponse(httpExchange, res);
+      } finally {
+        requestLatency.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        httpExchange.close();
       }
-      U res = generateResponse(req, metricsCache);
-      NetworkUtils.sendHttpResponse(httpExchange, res.toByteArray());
-      httpExchange.close();
     }
 
     abstract T parseRequest(byte[] requestBytes) throws InvalidProtocolBufferException;
 
+    /**
+     * Make identical the requests that only differ by the order of their repeated fields,
+     * so they share responses
+     */
+    abstract T normalizeRequest(T request);
+
     abstract U generateResponse(T request, MetricsCache metricsCache1);
   }
 
+  private static List<String> sortedDistinct(List<String> values) {
+    List<String> sorted = new ArrayList<>(values);
+    Collections.sort(sorted);
+    for (int i = sorted.size() - 1; i > 0; i--) {
+      if (sorted.get(i).equals(sorted.get(i - 1))) {
+        sorted.remove(i);
+      }
+    }
+    return sorted;
+  }
+
   // compatible with tmaster stat interface: http+protobuf
   class HandleStatsRequest
       extends RequestHandler<TopologyMaster.MetricRequest, TopologyMaster.MetricResponse> {
@@ -161,6 +338,14 @@ public class MetricsCacheManagerHttpServer {
       return TopologyMaster.MetricRequest.parseFrom(requestBytes);
     }
 
+    @Override
+    public TopologyMaster.MetricRequest normalizeRequest(TopologyMaster.MetricRequest request) {
+      return request.toBuilder()
+          .clearInstanceId().addAllInstanceId(sortedDistinct(request.getInstanceIdList()))
+          .clearMetric().addAllMetric(sortedDistinct(request.getMetricList()))
+          .build();
+    }
+
     @Override
     public TopologyMaster.MetricResponse generateResponse(
         TopologyMaster.MetricRequest request, MetricsCache metricsCache1) {
@@ -177,6 +362,14 @@ public class MetricsCacheManagerHttpServer {
       return TopologyMaster.ExceptionLogRequest.parseFrom(requestBytes);
     }
 
+    @Override
+    public TopologyMaster.ExceptionLogRequest normalizeRequest(
+        TopologyMaster.ExceptionLogRequest request) {
+      return request.toBuilder()
+          .clearInstances().addAllInstances(sortedDistinct(request.getInstancesList()))
+          .build();
+    }
+
     @Override
     public TopologyMaster.ExceptionLogResponse generateResponse(
         TopologyMaster.ExceptionLogRequest request, MetricsCache metricsCache1) {
@@ -193,6 +386,14 @@ public class MetricsCacheManagerHttpServer {
       return TopologyMaster.ExceptionLogRequest.parseFrom(requestBytes);
     }
 
+    @Override
+    public TopologyMaster.ExceptionLogRequest normalizeRequest(
+        TopologyMaster.ExceptionLogRequest request) {
+      return request.toBuilder()
+          .clearInstances().addAllInstances(sortedDistinct(request.getInstancesList()))
+          .build();
+    }
+
     @Override
     public TopologyMaster.ExceptionLogResponse generateResponse(
         TopologyMaster.ExceptionLogRequest request, MetricsCache metricsCache1) {
@@ -200,6 +401,70 @@ public class MetricsCacheManagerHttpServer {
     }
   }
 
+  // names the threads serving queries
+  private static final class QueryThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "metricscache-http-" + count.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  // a request waiting in the queue, to measure the time it waits
+  private final class QueuedRequest implements Runnable {
+    private final Runnable request;
+    private final long queuedAt = System.nanoTime();
+
+    QueuedRequest(Runnable request) {
+      this.request = request;
+    }
+
+    @Override
+    public void run() {
+      queueTime.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedAt));
+      request.run();
+    }
+  }
+
+  // when the queue is full, reply 503 from the thread accepting connections, without
+  // running the query there
+  private final class RejectPolicy implements RejectedExecutionHandler {
+    @Override
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor pool) {
+      if (pool.isShutdown()) {
+        return;
+      }
+      rejectedCount.incr();
+      rejecting.set(Boolean.TRUE);
+      try {
+        ((QueuedRequest) runnable).request.run();
+      } finally {
+        rejecting.remove();
+      }
+    }
+  }
+
+  // a thread safe mean of values, null if there was none
+  private static final class MeanMetric {
+    private long count;
+    private long sum;
+
+    synchronized void add(long value) {
+      count++;
+      sum += value;
+    }
+
+    synchronized Double getValueAndReset() {
+      Double mean = count == 0 ? null : (double) sum / count;
+      count = 0;
+      sum = 0;
+      return mean;
+    }
+  }
+
   // compatible with tracker: http+json
   // TODO(huijun) add compatible query interface for tracker
   public class MetricsHandler implements HttpHandler {
@@ -16,12 +16,14 @@ package com.twitter.heron.metricscachemgr.metricscache;
 
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -36,14 +38,18 @@ import com.twitter.heron.metricscachemgr.metricscache.query.MetricRequest;
 import com.twitter.heron.metricscachemgr.metricscache.query.MetricResponse;
 import com.twitter.heron.metricscachemgr.metricscache.query.MetricTimeRangeValue;
 import com.twitter.heron.metricscachemgr.metricscache.store.ExceptionDatapoint;
-import com.twitter.heron.metricscachemgr.metricscache.store.MetricDatapoint;
+import com.twitter.heron.metricscachemgr.metricscache.store.MetricRollup;
+import com.twitter.heron.metricscachemgr.metricscache.store.MetricSeries;
 import com.twitter.heron.proto.tmaster.TopologyMaster;
 import com.twitter.heron.spi.metricsmgr.metrics.MetricsFilter;
 
 /**
  * Cache Engine to store metrics and exceptions in memory and to respond to query,
  * implementing insertion and selection methods:
- * 1. Storage for metrics: timestamp_start -(tree)-&gt; [sparse: bucket_id -(map)-&gt; metric bucket]
+ * 1. Storage for metrics: bucket_id -(hash)-&gt; metric series, a columnar store of compressed
+ * timestamps and values, chunked by time window: timestamp_start -(array)-&gt; time window
+ * Each series keeps rollups (count, sum, last) per time window and over the whole series,
+ * so aggregated queries do not scan the datapoints of the time windows they fully cover
  * 2. Storage for exceptions: idxComponentInstance -(hash)-&gt; exception bucket
  * 3. Index for metrics:
  * a. metricName -(map)-&gt; idxMetricName (int: locator)
@@ -55,7 +61,9 @@ import com.twitter.heron.spi.metricsmgr.metrics.MetricsFilter;
  * Different from tmaster:
  * 1. order bucket by metric timestamp rather than metric message arriving time
  * 2. free buckets for instances that are gone during scaling process
- * 3. lock for multiple threads
+ * 3. safe for multiple threads without a global lock: the indexes and stores are concurrent
+ * maps, each series is locked by its writers only, queries never block insertions, and purge
+ * swaps out whole time windows
  * Same as tmaster:
  * 1. support same protobuf message/request format
  */
@@ -63,20 +71,22 @@ public class CacheCore {
   private static final Logger LOG = Logger.getLogger(CacheCore.class.getName());
 
   // index id generators
-  private static int componentInstanceCount = 0;
-  private static int metricNameCount = 0;
+  private static final AtomicInteger COMPONENT_INSTANCE_COUNT = new AtomicInteger();
+  private static final AtomicInteger METRIC_NAME_COUNT = new AtomicInteger();
 
   // index id map: componentName -(map)-&gt; instanceId -(map)-&gt; locator:int
-  private final Map<String, Map<String, Integer>> idxComponentInstance;
+  private final ConcurrentMap<String, ConcurrentMap<String, Integer>> idxComponentInstance;
   // index id map: metricName -(map)-&gt; locator:int
-  private final Map<String, Integer> idxMetricName;
+  private final ConcurrentMap<String, Integer> idxMetricName;
 
-  // exception store: following component-instance hierarchy
-  private final HashMap<Integer, LinkedList<ExceptionDatapoint>> cacheException;
-  // metric store
-  private final TreeMap<Long, Map<Long, LinkedList<MetricDatapoint>>> cacheMetric;
+  // exception store: following component-instance hierarchy, buckets locked on access
+  private final ConcurrentMap<Integer, LinkedList<ExceptionDatapoint>> cacheException;
+  // metric store: bucket_id -(hash)-&gt; series
+  private final ConcurrentMap<Long, MetricSeries> cacheMetric;
+  // the metric time windows, in order; purge swaps in new ones
+  private volatile TimeWindows timeWindows;
 
-  // looper for purge
+  // looper for purge, guarded by this
   private WakeableLooper looper = null;
 
   // metric clock: rotate bucket, in milliseconds
@@ -105,25 +115,32 @@ public class CacheCore {
     this.maxExceptionCount = maxException;
     this.ticker = ticker;
 
-    cacheException = new HashMap<>();
-    cacheMetric = new TreeMap<>();
+    cacheException = new ConcurrentHashMap<>();
+    cacheMetric = new ConcurrentHashMap<>();
+    List<Long> windows = new ArrayList<>();
     long now = ticker.read();
     for (long i = now - this.maxInterval.toMillis(); i < now; i += this.interval.toMillis()) {
-      cacheMetric.put(i, new HashMap<Long, LinkedList<MetricDatapoint>>());
+      windows.add(i);
     }
+    timeWindows = new TimeWindows(0, toArray(windows));
 
-    idxComponentInstance = new HashMap<>();
-    idxMetricName = new HashMap<>();
+    idxComponentInstance = new ConcurrentHashMap<>();
+    idxMetricName = new ConcurrentHashMap<>();
   }
 
-  private void assureComponentInstance(String componentName, String instanceId) {
-    if (!idxComponentInstance.containsKey(componentName)) {
-      idxComponentInstance.put(componentName, new HashMap<String, Integer>());
-    }
-    Map<String, Integer> map = idxComponentInstance.get(componentName);
-    if (!map.containsKey(instanceId)) {
-      map.put(instanceId, componentInstanceCount++);
+  private static long[] toArray(List<Long> windows) {
+    long[] array = new long[windows.size()];
+    int i = 0;
+    for (long window : windows) {
+      array[i++] = window;
     }
+    return array;
+  }
+
+  private int assureComponentInstance(String componentName, String instanceId) {
+    return idxComponentInstance
+        .computeIfAbsent(componentName, name -> new ConcurrentHashMap<>())
+        .computeIfAbsent(instanceId, id -> COMPONENT_INSTANCE_COUNT.getAndIncrement());
   }
 
   public boolean componentInstanceExists(String componentName, String instanceId) {
@@ -142,10 +159,8 @@ public class CacheCore {
     return idxMetricName.containsKey(name);
   }
 
-  private void assureMetricName(String name) {
-    if (!idxMetricName.containsKey(name)) {
-      idxMetricName.put(name, metricNameCount++);
-    }
+  private int assureMetricName(String name) {
+    return idxMetricName.computeIfAbsent(name, n -> METRIC_NAME_COUNT.getAndIncrement());
   }
 
   /**
@@ -153,13 +168,11 @@ public class CacheCore {
    * @param metrics The metrics to be added
    */
   public void addMetricException(TopologyMaster.PublishMetrics metrics) {
-    synchronized (CacheCore.class) {
-      for (TopologyMaster.MetricDatum metricDatum : metrics.getMetricsList()) {
-        addMetric(metricDatum);
-      }
-      for (TopologyMaster.TmasterExceptionLog exceptionLog : metrics.getExceptionsList()) {
-        addException(exceptionLog);
-      }
+    for (TopologyMaster.MetricDatum metricDatum : metrics.getMetricsList()) {
+      addMetric(metricDatum);
+    }
+    for (TopologyMaster.TmasterExceptionLog exceptionLog : metrics.getExceptionsList()) {
+      addException(exceptionLog);
     }
   }
 
@@ -179,13 +192,16 @@ public class CacheCore {
   }
 
   /**
-   * The 'cacheMetric' is a tree map organized by timestamp.
-   * The key indicates the startTime of the time window.
+   * The 'timeWindows' is a sorted array of the startTime of the time windows, numbered
+   * consecutively from the first one: series index their datapoints by time window number.
    * <p>
    * The insertion procedure:
-   * 1. find the leaf according to the metric timestamp. TreeMap.floorEntry finds the leaf whose
-   * time window contains the given timestamp
-   * 2. if the leaf is null, a new bucket is created; else insert into existing bucket.
+   * 1. find the time window according to the metric timestamp. A binary search finds the time
+   * window containing the given timestamp; if there is none, the metric is too old
+   * 2. if the series of the bucket is missing, it is created; then the datapoint is appended
+   * to the chunk of the series for that time window. If purge retired the series meanwhile,
+   * a new one is created.
+   * The value is stored as a double: compatible with tmaster
    *
    * @param metricDatum the metric to be inserted
    */
@@ -194,51 +210,60 @@ public class CacheCore {
     String instanceId = metricDatum.getInstanceId();
     String metricName = metricDatum.getName();
 
-    assureComponentInstance(componentName, instanceId);
-    assureMetricName(metricName);
     // calc bucket idx
-    int idx1 = idxComponentInstance.get(componentName).get(instanceId);
-    int idx2 = idxMetricName.get(metricName);
+    int idx1 = assureComponentInstance(componentName, instanceId);
+    int idx2 = assureMetricName(metricName);
     long bucketId = makeBucketId(idx1, idx2);
 
-    // fetch the bucket
-    Map.Entry<Long, Map<Long, LinkedList<MetricDatapoint>>> entry =
-        cacheMetric.floorEntry(metricDatum.getTimestamp());
-    if (entry != null) {
-      Map<Long, LinkedList<MetricDatapoint>> locator = entry.getValue();
-      if (!locator.containsKey(bucketId)) {
-        locator.put(bucketId, new LinkedList<MetricDatapoint>());
-      }
-      LinkedList<MetricDatapoint> bucket = locator.get(bucketId);
-      // store the metric
-      MetricDatapoint datum =
-          new MetricDatapoint(metricDatum.getTimestamp(), metricDatum.getValue());
-      bucket.offerFirst(datum);
-    } else {
+    // fetch the time window
+    TimeWindows windows = timeWindows;
+    int index = Arrays.binarySearch(windows.starts, metricDatum.getTimestamp());
+    if (index < 0) {
+      // insertion point - 1: the time window before the timestamp
+      index = -index - 2;
+    }
+    if (index < 0) {
       LOG.warning("too old metric, out of cache timestamp window, drop it: " + metricDatum);
+      return;
+    }
+    long window = windows.firstId + index;
+    double value;
+    try {
+      value = Double.parseDouble(metricDatum.getValue());
+    } catch (NumberFormatException e) {
+      LOG.warning("non-numeric metric value, drop it: " + metricDatum);
+      return;
+    }
+    // store the metric
+    while (true) {
+      MetricSeries series = cacheMetric.computeIfAbsent(bucketId, id -> new MetricSeries());
+      if (series.add(window, metricDatum.getTimestamp(), value)) {
+        break;
+      }
+      cacheMetric.remove(bucketId, series);
     }
   }
 
   private void addException(TopologyMaster.TmasterExceptionLog exceptionLog) {
     String componentName = exceptionLog.getComponentName();
     String instanceId = exceptionLog.getInstanceId();
-    assureComponentInstance(componentName, instanceId);
     // get exception idx
-    int idx = idxComponentInstance.get(componentName).get(instanceId);
+    int idx = assureComponentInstance(componentName, instanceId);
     // fetch the bucket
-    if (!cacheException.containsKey(idx)) {
-      cacheException.put(idx, new LinkedList<ExceptionDatapoint>());
-    }
-    LinkedList<ExceptionDatapoint> bucket = cacheException.get(idx);
+    LinkedList<ExceptionDatapoint> bucket =
+        cacheException.computeIfAbsent(idx, i -> new LinkedList<>());
     // store the exception
     ExceptionDatapoint e = new ExceptionDatapoint(exceptionLog.getHostname(),
         exceptionLog.getStacktrace(), exceptionLog.getLasttime(), exceptionLog.getFirsttime(),
         exceptionLog.getCount(), exceptionLog.getLogging());
-    bucket.offerFirst(e);
-    // purge
-    while (bucket.size() > maxExceptionCount) {
-      LOG.warning("too many exception, reach exception cache size cap, drop it: " + exceptionLog);
-      bucket.pollLast();
+    synchronized (bucket) {
+      bucket.offerFirst(e);
+      // purge
+      while (bucket.size() > maxExceptionCount) {
+        LOG.warning("too many exception, reach exception cache size cap, drop it: "
+            + exceptionLog);
+        bucket.pollLast();
+      }
     }
   }
 
@@ -265,178 +290,141 @@ public class CacheCore {
   public MetricResponse getMetrics(
       MetricRequest request, MetricsFilter metricNameType) {
     LOG.fine("received query: " + request.toString());
-    synchronized (CacheCore.class) {
-      List<MetricDatum> response = new LinkedList<>();
+    List<MetricDatum> response = new LinkedList<>();
 
-      // candidate metric names
-      Set<String> metricNameFilter = request.getMetricNames();
-      if (metricNameFilter == null) {
-        metricNameFilter = idxMetricName.keySet();
-      }
+    // candidate metric names
+    Set<String> metricNameFilter = request.getMetricNames();
+    if (metricNameFilter == null) {
+      metricNameFilter = idxMetricName.keySet();
+    }
 
-      // candidate component names
-      Map<String, Set<String>> componentInstanceMap = request.getComponentNameInstanceId();
-      Set<String> componentNameFilter;
-      if (componentInstanceMap == null) {
-        componentNameFilter = idxComponentInstance.keySet();
-      } else {
-        componentNameFilter = componentInstanceMap.keySet();
-      }
+    // candidate component names
+    Map<String, Set<String>> componentInstanceMap = request.getComponentNameInstanceId();
+    Set<String> componentNameFilter;
+    if (componentInstanceMap == null) {
+      componentNameFilter = idxComponentInstance.keySet();
+    } else {
+      componentNameFilter = componentInstanceMap.keySet();
+    }
 
-      for (String metricName : metricNameFilter) {
-        if (!metricExists(metricName)) {
-          continue;
+    for (String metricName : metricNameFilter) {
+      if (!metricExists(metricName)) {
+        continue;
+      }
+      MetricsFilter.MetricAggregationType type = metricNameType.getAggregationType(metricName);
+      for (String componentName : componentNameFilter) {
+        // candidate instance ids
+        Set<String> instanceIdFilter;
+        if (componentInstanceMap == null
+            || componentInstanceMap.get(componentName) == null) {
+          instanceIdFilter = idxComponentInstance.get(componentName).keySet();
+        } else {
+          instanceIdFilter = componentInstanceMap.get(componentName);
         }
-        MetricsFilter.MetricAggregationType type = metricNameType.getAggregationType(metricName);
-        for (String componentName : componentNameFilter) {
-          // candidate instance ids
-          Set<String> instanceIdFilter;
-          if (componentInstanceMap == null
-              || componentInstanceMap.get(componentName) == null) {
-            instanceIdFilter = idxComponentInstance.get(componentName).keySet();
-          } else {
-            instanceIdFilter = componentInstanceMap.get(componentName);
+
+        for (String instanceId : instanceIdFilter) {
+          LOG.fine(componentName + "; " + instanceId + "; " + metricName + "; " + type);
+          // get bucket_id
+          int idx1 = idxComponentInstance.get(componentName).get(instanceId);
+          int idx2 = idxMetricName.get(metricName);
+          long bucketId = makeBucketId(idx1, idx2);
+
+          // iterate buckets: the result may be empty due to the bucketId/hash filter
+          List<MetricTimeRangeValue> metricValue = new LinkedList<>();
+          switch (request.getAggregationGranularity()) {
+            case AGGREGATE_ALL_METRICS:
+            case AGGREGATE_BY_BUCKET:
+              getAggregatedMetrics(metricValue,
+                  request.getStartTime()/*when*/, request.getEndTime()/*when*/,
+                  bucketId/*where*/, type/*how*/, request.getAggregationGranularity());
+              break;
+            case RAW:
+              getRawMetrics(metricValue,
+                  request.getStartTime(), request.getEndTime(), bucketId, type);
+              break;
+            default:
+              LOG.warning("unknown aggregationGranularity type "
+                  + request.getAggregationGranularity());
           }
 
-          for (String instanceId : instanceIdFilter) {
-            LOG.fine(componentName + "; " + instanceId + "; " + metricName + "; " + type);
-            // get bucket_id
-            int idx1 = idxComponentInstance.get(componentName).get(instanceId);
-            int idx2 = idxMetricName.get(metricName);
-            long bucketId = makeBucketId(idx1, idx2);
-
-            // iterate buckets: the result may be empty due to the bucketId/hash filter
-            List<MetricTimeRangeValue> metricValue = new LinkedList<>();
-            switch (request.getAggregationGranularity()) {
-              case AGGREGATE_ALL_METRICS:
-              case AGGREGATE_BY_BUCKET:
-                getAggregatedMetrics(metricValue,
-                    request.getStartTime()/*when*/, request.getEndTime()/*when*/,
-                    bucketId/*where*/, type/*how*/, request.getAggregationGranularity());
-                break;
-              case RAW:
-                getRawMetrics(metricValue,
-                    request.getStartTime(), request.getEndTime(), bucketId, type);
-                break;
-              default:
-                LOG.warning("unknown aggregationGranularity type "
-                    + request.getAggregationGranularity());
-            }
-
-            // make metric list in response
-            response.add(new MetricDatum(componentName, instanceId, metricName, metricValue));
-          } // end for: instance
-        } // end for: component
-      } // end for: metric
-      return new MetricResponse(response);
-    }
+          // make metric list in response
+          response.add(new MetricDatum(componentName, instanceId, metricName, metricValue));
+        } // end for: instance
+      } // end for: component
+    } // end for: metric
+    return new MetricResponse(response);
   }
 
   private void getRawMetrics(List<MetricTimeRangeValue> metricValue,
                              long startTime, long endTime, long bucketId,
                              MetricsFilter.MetricAggregationType type) {
     LOG.fine("getRawMetrics " + startTime + " " + endTime);
-    Long startKey = cacheMetric.floorKey(startTime);
-    for (Long key = startKey != null ? startKey : cacheMetric.firstKey();
-         key != null && key <= endTime;
-         key = cacheMetric.higherKey(key)) {
-      LinkedList<MetricDatapoint> bucket = cacheMetric.get(key).get(bucketId);
-
-      if (bucket != null) {
-        for (MetricDatapoint datapoint : bucket) {
-          if (datapoint.inRange(startTime, endTime)) {
-            // per data point
-            metricValue.add(new MetricTimeRangeValue(datapoint));
-          }
-        } // end bucket
-      }
-
-    } // end tree
+    MetricSeries series = cacheMetric.get(bucketId);
+    if (series != null) {
+      // per data point
+      series.scan(startTime, endTime, (window, timestamp, value) ->
+          metricValue.add(new MetricTimeRangeValue(timestamp, timestamp, toValueString(value))));
+    }
   }
 
   // we assume the metric value is Double: compatible with tmaster
-  @SuppressWarnings("fallthrough")
   private void getAggregatedMetrics(List<MetricTimeRangeValue> metricValue,
                                     long startTime, long endTime, long bucketId,
                                     MetricsFilter.MetricAggregationType type,
                                     MetricGranularity granularity) {
     LOG.fine("getAggregatedMetrics " + startTime + " " + endTime);
-    // per request
-    long outterCountAvg = 0;
-
-    // prepare range value
-    long outterStartTime = Long.MAX_VALUE;
-    long outterEndTime = 0;
-    String outterValue = null;
-
-    double outterResult = 0;
-    Long startKey = cacheMetric.floorKey(startTime);
-    for (Long key = startKey != null ? startKey : cacheMetric.firstKey();
-         key != null && key <= endTime;
-         key = cacheMetric.higherKey(key)) {
-      LinkedList<MetricDatapoint> bucket = cacheMetric.get(key).get(bucketId);
-
-      if (bucket != null) {
-        // per bucket
-        long innerCountAvg = 0;
-
-        // prepare range value
-        long innerStartTime = Long.MAX_VALUE;
-        long innerEndTime = 0;
-        String innerValue = null;
-
-        double innerResult = 0;
-        for (MetricDatapoint datapoint : bucket) {
-          if (datapoint.inRange(startTime, endTime)) {
-            switch (type) {
-              case AVG:
-                outterCountAvg++;
-                innerCountAvg++;
-              case SUM:
-                outterResult += Double.parseDouble(datapoint.getValue());
-                innerResult += Double.parseDouble(datapoint.getValue());
-                break;
-              case LAST:
-                if (outterEndTime < datapoint.getTimestamp()) {
-                  outterValue = datapoint.getValue();
-                }
-                if (innerEndTime < datapoint.getTimestamp()) {
-                  innerValue = datapoint.getValue();
-                }
-                break;
-              case UNKNOWN:
-              default:
-                LOG.warning(
-                    "Unknown metric type, CacheCore does not know how to aggregate " + type);
-                return;
-            }
-            outterStartTime = Math.min(outterStartTime, datapoint.getTimestamp());
-            outterEndTime = Math.max(outterEndTime, datapoint.getTimestamp());
-            innerStartTime = Math.min(innerStartTime, datapoint.getTimestamp());
-            innerEndTime = Math.max(innerEndTime, datapoint.getTimestamp());
-          }
-        } // end bucket
+    switch (type) {
+      case AVG:
+      case SUM:
+      case LAST:
+        break;
+      case UNKNOWN:
+      default:
+        LOG.warning("Unknown metric type, CacheCore does not know how to aggregate " + type);
+        return;
+    }
 
-        if (type.equals(MetricsFilter.MetricAggregationType.AVG) && innerCountAvg > 0) {
-          innerValue = String.valueOf(innerResult / innerCountAvg);
-        } else if (type.equals(MetricsFilter.MetricAggregationType.SUM)) {
-          innerValue = String.valueOf(innerResult);
-        }
-        if (innerValue != null && granularity.equals(MetricGranularity.AGGREGATE_BY_BUCKET)) {
-          metricValue.add(new MetricTimeRangeValue(innerStartTime, innerEndTime, innerValue));
-        }
+    // served from the rollups of the series, maintained on insert
+    MetricSeries series = cacheMetric.get(bucketId);
+    if (granularity.equals(MetricGranularity.AGGREGATE_BY_BUCKET)) {
+      if (series != null) {
+        series.rollup(startTime, endTime, (window, rollup) ->
+            metricValue.add(toMetricTimeRangeValue(rollup, type)));
       }
+    } else {
+      MetricRollup rollup = series == null ? new MetricRollup() : series.rollup(startTime, endTime);
+      // a sum over no datapoint is still 0: compatible with tmaster
+      if (rollup.getCount() > 0 || type.equals(MetricsFilter.MetricAggregationType.SUM)) {
+        metricValue.add(toMetricTimeRangeValue(rollup, type));
+      }
+    }
+  }
 
-    } // end tree
-
-    if (type.equals(MetricsFilter.MetricAggregationType.AVG) && outterCountAvg > 0) {
-      outterValue = String.valueOf(outterResult / outterCountAvg);
-    } else if (type.equals(MetricsFilter.MetricAggregationType.SUM)) {
-      outterValue = String.valueOf(outterResult);
+  private static MetricTimeRangeValue toMetricTimeRangeValue(
+      MetricRollup rollup, MetricsFilter.MetricAggregationType type) {
+    String value;
+    switch (type) {
+      case AVG:
+        value = String.valueOf(rollup.getAverage());
+        break;
+      case SUM:
+        value = String.valueOf(rollup.getSum());
+        break;
+      default:
+        value = toValueString(rollup.getLast());
     }
-    if (outterValue != null && granularity.equals(MetricGranularity.AGGREGATE_ALL_METRICS)) {
-      metricValue.add(new MetricTimeRangeValue(outterStartTime, outterEndTime, outterValue));
+    return new MetricTimeRangeValue(rollup.getStartTime(), rollup.getEndTime(), value);
+  }
+
+  /**
+   * Print a double the way metrics values are published: integral values, e.g., counts,
+   * are printed without fraction
+   */
+  private static String toValueString(double value) {
+    if (value == Math.rint(value) && Math.abs(value) < (1L << 53)) {
+      return Long.toString((long) value);
     }
+    return Double.toString(value);
   }
 
   /**
@@ -453,54 +441,71 @@ public class CacheCore {
    */
   public ExceptionResponse getExceptions(
       ExceptionRequest request) {
-    synchronized (CacheCore.class) {
-      List<ExceptionDatum> response = new ArrayList<>();
+    List<ExceptionDatum> response = new ArrayList<>();
 
-      Map<String, Set<String>> componentNameInstanceId = request.getComponentNameInstanceId();
+    Map<String, Set<String>> componentNameInstanceId = request.getComponentNameInstanceId();
 
-      // candidate component names
-      Set<String> componentNameFilter;
-      if (componentNameInstanceId == null) {
-        componentNameFilter = idxComponentInstance.keySet();
+    // candidate component names
+    Set<String> componentNameFilter;
+    if (componentNameInstanceId == null) {
+      componentNameFilter = idxComponentInstance.keySet();
+    } else {
+      componentNameFilter = componentNameInstanceId.keySet();
+    }
+
+    for (String componentName : componentNameFilter) {
+      // candidate instance ids
+      Set<String> instanceIdFilter;
+      if (componentNameInstanceId == null
+          || componentNameInstanceId.get(componentName) == null) {
+        instanceIdFilter = idxComponentInstance.get(componentName).keySet();
       } else {
-        componentNameFilter = componentNameInstanceId.keySet();
+        instanceIdFilter = componentNameInstanceId.get(componentName);
       }
 
-      for (String componentName : componentNameFilter) {
-        // candidate instance ids
-        Set<String> instanceIdFilter;
-        if (componentNameInstanceId == null
-            || componentNameInstanceId.get(componentName) == null) {
-          instanceIdFilter = idxComponentInstance.get(componentName).keySet();
-        } else {
-          instanceIdFilter = componentNameInstanceId.get(componentName);
+      for (String instanceId : instanceIdFilter) {
+        int idx = idxComponentInstance.get(componentName).get(instanceId);
+        LinkedList<ExceptionDatapoint> bucket = cacheException.get(idx);
+        if (bucket == null) {
+          continue;
         }
-
-        for (String instanceId : instanceIdFilter) {
-          int idx = idxComponentInstance.get(componentName).get(instanceId);
-          for (ExceptionDatapoint exceptionDatapoint : cacheException.get(idx)) {
+        synchronized (bucket) {
+          for (ExceptionDatapoint exceptionDatapoint : bucket) {
             response.add(new ExceptionDatum(componentName, instanceId, exceptionDatapoint));
           }
         }
       }
-
-      return new ExceptionResponse(response);
     }
+
+    return new ExceptionResponse(response);
   }
 
   public void purge() {
     long now = ticker.read();
-    synchronized (CacheCore.class) {
-      // remove old
-      while (!cacheMetric.isEmpty()) {
-        Long firstKey = cacheMetric.firstKey();
-        if (firstKey >= now - maxInterval.toMillis()) {
-          break;
+    synchronized (this) {
+      // remove old, add new, and swap in the new time windows: the numbers of the time
+      // windows left stay the same
+      TimeWindows current = timeWindows;
+      List<Long> windows = new ArrayList<>();
+      int removed = 0;
+      for (long window : current.starts) {
+        if (window >= now - maxInterval.toMillis()) {
+          windows.add(window);
+        } else {
+          removed++;
+        }
+      }
+      if (windows.isEmpty() || windows.get(windows.size() - 1) < now) {
+        windows.add(now);
+      }
+      long oldestWindow = current.firstId + removed;
+      timeWindows = new TimeWindows(oldestWindow, toArray(windows));
+      // drop the datapoints of the removed time windows, and the series left empty
+      for (Map.Entry<Long, MetricSeries> entry : cacheMetric.entrySet()) {
+        if (entry.getValue().purge(oldestWindow)) {
+          cacheMetric.remove(entry.getKey(), entry.getValue());
         }
-        cacheMetric.remove(firstKey);
       }
-      // add new
-      cacheMetric.put(now, new HashMap<Long, LinkedList<MetricDatapoint>>());
       // next timer task
       if (looper != null) {
         looper.registerTimerEvent(interval, new Runnable() {
@@ -518,7 +523,7 @@ public class CacheCore {
    * @param wakeableLooper the looper to run timer
    */
   public void startPurge(WakeableLooper wakeableLooper) {
-    synchronized (CacheCore.class) {
+    synchronized (this) {
       if (looper == null) {
         looper = wakeableLooper;
       }
@@ -536,7 +541,7 @@ public class CacheCore {
    * stop metric purge looper
    */
   public void stopPurge() {
-    synchronized (CacheCore.class) {
+    synchronized (this) {
       if (looper != null) {
         looper = null;
       }
@@ -547,21 +552,26 @@ public class CacheCore {
   public String toString() {
     StringBuilder sb = new StringBuilder();
     sb.append("{");
-    for (Long k = cacheMetric.firstKey(); k != null; k = cacheMetric.higherKey(k)) {
-      sb.append("[").append(k).append(":");
-      for (Long idx : cacheMetric.get(k).keySet()) {
-        sb.append("<").append(Long.toHexString(idx)).append("->");
-        for (MetricDatapoint dp : cacheMetric.get(k).get(idx)) {
-          sb.append(dp.toString());
-        }
-        sb.append(">");
-      }
-      sb.append("]");
+    sb.append(timeWindows.firstId).append(Arrays.toString(timeWindows.starts));
+    for (Map.Entry<Long, MetricSeries> entry : cacheMetric.entrySet()) {
+      sb.append("<").append(Long.toHexString(entry.getKey())).append("->");
+      sb.append(entry.getValue()).append(">");
     }
     sb.append("}");
     return sb.toString();
   }
 
+  // start time of the time windows, in order, and the number of the first one
+  private static final class TimeWindows {
+    private final long firstId;
+    private final long[] starts;
+
+    private TimeWindows(long firstId, long[] starts) {
+      this.firstId = firstId;
+      this.starts = starts;
+    }
+  }
+
   static class Ticker {
     long read() {
       return System.currentTimeMillis();
@@ -86,6 +86,19 @@ public class MetricsCache {
     }
   }
 
+  /**
+   * Set how a metric published by the metrics cache manager itself is aggregated,
+   * unless the sinks config sets it. Not thread-safe: called before queries are served.
+   *
+   * @param metricName the metric name
+   * @param type the aggregation type
+   */
+  public void setMetricType(String metricName, MetricsFilter.MetricAggregationType type) {
+    if (!metricNameType.contains(metricName)) {
+      metricNameType.setMetricToType(metricName, type);
+    }
+  }
+
   /**
    * sink publishes metrics and exceptions to this interface
    *
@@ -0,0 +1,133 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.metricscachemgr.metricscache.store;
+
+import java.util.Arrays;
+
+/**
+ * An append-only stream of bits, packed into longs from the most significant bit down.
+ * One thread at a time may write. Appending never changes the bits already written, so other
+ * threads may read them concurrently, up to a size published by the writer.
+ */
+final class BitStream {
+  // volatile, so readers see the content of the arrays copied when growing
+  private volatile long[] words;
+  private int size;
+
+  BitStream(int initialWords) {
+    words = new long[Math.max(initialWords, 1)];
+  }
+
+  /**
+   * Append the lowest bits of a value
+   *
+   * @param value the value holding the bits
+   * @param count the number of bits to append, between 0 and 64
+   */
+  void write(long value, int count) {
+    if (count == 0) {
+      return;
+    }
+    int index = size >>> 6;
+    long[] w = words;
+    if (index + 1 >= w.length) {
+      w = Arrays.copyOf(w, w.length * 2);
+      words = w;
+    }
+    long bits = count == Long.SIZE ? value : value & ((1L << count) - 1);
+    int free = Long.SIZE - (size & 63);
+    if (count <= free) {
+      w[index] |= bits << (free - count);
+    } else {
+      w[index] |= bits >>> (count - free);
+      w[index + 1] |= bits << (Long.SIZE - (count - free));
+    }
+    size += count;
+  }
+
+  void writeBit(boolean bit) {
+    write(bit ? 1 : 0, 1);
+  }
+
+  /**
+   * Get the number of bits appended so far
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Get the number of bytes held, including the room for the bits to come
+   */
+  int getCapacityBytes() {
+    return words.length * Long.BYTES;
+  }
+
+  /**
+   * Release the room kept for the bits to come
+   */
+  void trim() {
+    int used = (size + 63) >>> 6;
+    if (used + 1 < words.length) {
+      // Keep a spare word, so write() never has to check the index it writes the overflow to
+      words = Arrays.copyOf(words, used + 1);
+    }
+  }
+
+  Reader reader() {
+    return new Reader(0);
+  }
+
+  /**
+   * Get a reader of the bits from the given position on
+   */
+  Reader reader(int position) {
+    return new Reader(position);
+  }
+
+  /**
+   * Reads the bits back from a position in the stream.
+   * Only the bits written before reading started may be read.
+   */
+  final class Reader {
+    private final long[] snapshot = words;
+    private int position;
+
+    private Reader(int position) {
+      this.position = position;
+    }
+
+    long read(int count) {
+      if (count == 0) {
+        return 0;
+      }
+      int index = position >>> 6;
+      int free = Long.SIZE - (position & 63);
+      long bits;
+      if (count <= free) {
+        bits = snapshot[index] >>> (free - count);
+      } else {
+        bits = (snapshot[index] << (count - free))
+            | (snapshot[index + 1] >>> (Long.SIZE - (count - free)));
+      }
+      position += count;
+      return count == Long.SIZE ? bits : bits & ((1L << count) - 1);
+    }
+
+    boolean readBit() {
+      return read(1) == 1;
+    }
+  }
+}
@@ -0,0 +1,230 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.metricscachemgr.metricscache.store;
+
+import java.util.Arrays;
+
+/**
+ * The datapoints of one metric series, compressed as in Facebook's Gorilla:
+ * 1. timestamps: the first one as is, then delta of deltas, zigzag encoded in a variable
+ * number of bits; metrics are published at a fixed interval, so most take a single bit
+ * 2. values: the first one as is, then the xor with the previous value, with the leading and
+ * trailing zeros left out; unchanged values take a single bit
+ * The datapoints are encoded in blocks of BLOCK_SIZE, each starting over with a datapoint as
+ * is, so decoding can start at any block rather than at the first datapoint.
+ * One thread at a time may add datapoints, while others decode the datapoints added before.
+ */
+final class MetricChunk {
+  static final int BLOCK_SIZE = 64;
+  private static final int INITIAL_WORDS = 4;
+
+  private final BitStream bits;
+  // bit offset of the start of each block; volatile, so decoders see the offsets copied
+  // when growing
+  private volatile int[] blockOffsets = new int[1];
+  private int count;
+
+  // encoder state
+  private long previousTimestamp;
+  private long previousDelta;
+  private long previousValue;
+  private int previousLeading;
+  private int previousTrailing;
+
+  MetricChunk() {
+    bits = new BitStream(INITIAL_WORDS);
+  }
+
+  /**
+   * Get the number of datapoints added, which a decoder may only read up to if it got it
+   * under the lock of the series
+   */
+  int size() {
+    return count;
+  }
+
+  int getCapacityBytes() {
+    return bits.getCapacityBytes() + blockOffsets.length * Integer.BYTES;
+  }
+
+  /**
+   * Release the room kept for the datapoints to come
+   */
+  void trim() {
+    bits.trim();
+    int blocks = Math.max((count + BLOCK_SIZE - 1) / BLOCK_SIZE, 1);
+    if (blocks < blockOffsets.length) {
+      blockOffsets = Arrays.copyOf(blockOffsets, blocks);
+    }
+  }
+
+  void add(long timestamp, double value) {
+    long valueBits = Double.doubleToRawLongBits(value);
+    if (count % BLOCK_SIZE == 0) {
+      int block = count / BLOCK_SIZE;
+      if (block == blockOffsets.length) {
+        blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+      }
+      blockOffsets[block] = bits.size();
+      bits.write(timestamp, Long.SIZE);
+      bits.write(valueBits, Long.SIZE);
+      previousDelta = 0;
+      previousLeading = -1;
+    } else {
+      long delta = timestamp - previousTimestamp;
+      writeDeltaOfDelta(delta - previousDelta);
+      writeXor(valueBits ^ previousValue);
+      previousDelta = delta;
+    }
+    previousTimestamp = timestamp;
+    previousValue = valueBits;
+    count++;
+  }
+
+  Decoder decoder() {
+    return new Decoder();
+  }
+
+  private void writeDeltaOfDelta(long deltaOfDelta) {
+    long zigzag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+    if (zigzag == 0) {
+      bits.write(0, 1);
+    } else if (zigzag >>> 7 == 0) {
+      bits.write(0b10, 2);
+      bits.write(zigzag, 7);
+    } else if (zigzag >>> 9 == 0) {
+      bits.write(0b110, 3);
+      bits.write(zigzag, 9);
+    } else if (zigzag >>> 12 == 0) {
+      bits.write(0b1110, 4);
+      bits.write(zigzag, 12);
+    } else {
+      bits.write(0b1111, 4);
+      bits.write(zigzag, Long.SIZE);
+    }
+  }
+
+  private static long readDeltaOfDelta(BitStream.Reader reader) {
+    long zigzag;
+    if (!reader.readBit()) {
+      return 0;
+    } else if (!reader.readBit()) {
+      zigzag = reader.read(7);
+    } else if (!reader.readBit()) {
+      zigzag = reader.read(9);
+    } else if (!reader.readBit()) {
+      zigzag = reader.read(12);
+    } else {
+      zigzag = reader.read(Long.SIZE);
+    }
+    return (zigzag >>> 1) ^ -(zigzag & 1);
+  }
+
+  private void writeXor(long xor) {
+    if (xor == 0) {
+      bits.write(0, 1);
+      return;
+    }
+    // 5 bits for the number of leading zeros
+    int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+    int trailing = Long.numberOfTrailingZeros(xor);
+    if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+      // the meaningful bits fit in those of the previous xor
+      bits.write(0b10, 2);
+      bits.write(xor >>> previousTrailing, Long.SIZE - previousLeading - previousTrailing);
+    } else {
+      int meaningful = Long.SIZE - leading - trailing;
+      bits.write(0b11, 2);
+      bits.write(leading, 5);
+      bits.write(meaningful - 1, 6);
+      bits.write(xor >>> trailing, meaningful);
+      previousLeading = leading;
+      previousTrailing = trailing;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "[" + count + " datapoints, " + bits.size() + " bits]";
+  }
+
+  /**
+   * Decodes the datapoints in the order they were added, from any of them on.
+   * Only the datapoints added before decoding started may be decoded.
+   */
+  final class Decoder {
+    private final int[] offsets = blockOffsets;
+    private BitStream.Reader reader;
+    // index of the next datapoint to decode
+    private int next;
+    private long timestamp;
+    private long valueBits;
+    private long delta;
+    private int leading;
+    private int trailing;
+
+    /**
+     * Position the decoder so that the next datapoint decoded is the one at the given index.
+     * Going forward within a block decodes the datapoints in between, else decoding starts
+     * over at the block of the datapoint.
+     */
+    void seek(int index) {
+      if (reader == null || index < next || index / BLOCK_SIZE != next / BLOCK_SIZE) {
+        int block = index / BLOCK_SIZE;
+        reader = bits.reader(offsets[block]);
+        next = block * BLOCK_SIZE;
+      }
+      while (next < index) {
+        advance();
+      }
+    }
+
+    /**
+     * Decode the next datapoint
+     */
+    void advance() {
+      if (reader == null) {
+        seek(0);
+      }
+      if (next % BLOCK_SIZE == 0) {
+        timestamp = reader.read(Long.SIZE);
+        valueBits = reader.read(Long.SIZE);
+        delta = 0;
+        leading = 0;
+        trailing = 0;
+      } else {
+        delta += readDeltaOfDelta(reader);
+        timestamp += delta;
+        if (reader.readBit()) {
+          if (reader.readBit()) {
+            leading = (int) reader.read(5);
+            int meaningful = (int) reader.read(6) + 1;
+            trailing = Long.SIZE - leading - meaningful;
+          }
+          valueBits ^= reader.read(Long.SIZE - leading - trailing) << trailing;
+        }
+      }
+      next++;
+    }
+
+    long getTimestamp() {
+      return timestamp;
+    }
+
+    double getValue() {
+      return Double.longBitsToDouble(valueBits);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.metricscachemgr.metricscache.store;
+
+/**
+ * Pre-aggregated datapoints of a metric series: enough to answer SUM, AVG and LAST
+ * without going back to the datapoints. This class is not thread-safe.
+ */
+public final class MetricRollup {
+  private long count;
+  private double sum;
+  private double last;
+  private long startTime;
+  private long endTime;
+
+  public MetricRollup() {
+    reset();
+  }
+
+  public MetricRollup(MetricRollup other) {
+    count = other.count;
+    sum = other.sum;
+    last = other.last;
+    startTime = other.startTime;
+    endTime = other.endTime;
+  }
+
+  MetricRollup(long count, double sum, double last, long startTime, long endTime) {
+    this.count = count;
+    this.sum = sum;
+    this.last = last;
+    this.startTime = startTime;
+    this.endTime = endTime;
+  }
+
+  public void reset() {
+    count = 0;
+    sum = 0;
+    last = 0;
+    startTime = Long.MAX_VALUE;
+    endTime = 0;
+  }
+
+  public void add(long timestamp, double value) {
+    count++;
+    sum += value;
+    // the latest datapoint wins, and the last added one among those with the same timestamp
+    if (endTime <= timestamp) {
+      last = value;
+    }
+    startTime = Math.min(startTime, timestamp);
+    endTime = Math.max(endTime, timestamp);
+  }
+
+  /**
+   * Add the datapoints of another rollup, added after those of this one
+   */
+  public void merge(MetricRollup other) {
+    if (other.count == 0) {
+      return;
+    }
+    count += other.count;
+    sum += other.sum;
+    if (endTime <= other.endTime) {
+      last = other.last;
+    }
+    startTime = Math.min(startTime, other.startTime);
+    endTime = Math.max(endTime, other.endTime);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public double getSum() {
+    return sum;
+  }
+
+  public double getAverage() {
+    return count == 0 ? 0 : sum / count;
+  }
+
+  public double getLast() {
+    return last;
+  }
+
+  /**
+   * Get the timestamp of the earliest datapoint
+   */
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Get the timestamp of the latest datapoint
+   */
+  public long getEndTime() {
+    return endTime;
+  }
+
+  /**
+   * test if all the datapoints are in the given time range [start, end]
+   */
+  boolean inRange(long start, long end) {
+    return start <= startTime && endTime <= end;
+  }
+
+  @Override
+  public String toString() {
+    return "(" + startTime + ", " + endTime + ", count=" + count + ", sum=" + sum
+        + ", last=" + last + ")";
+  }
+}
@@ -0,0 +1,433 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.metricscachemgr.metricscache.store;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Columnar store of one metric of one component instance: the datapoints are kept as primitive
+ * timestamps and double values, compressed into a single chunk ordered by time window.
+ * Time windows are numbered, consecutive time windows having consecutive numbers, and indexed
+ * by the number of datapoints in the chunk up to their end: 4 bytes each, as metrics are
+ * usually published once or a few times per time window. Purged time windows are left in the
+ * chunk until they reach half of the others, and the chunk is then encoded again without them.
+ * <p>
+ * Rollups are maintained on insert at two tiers: per time window, and over the whole series.
+ * Time windows with fewer than MIN_ROLLUP_COUNT datapoints keep no rollup, as decoding them
+ * costs about as much as reading one. Aggregating a range only decodes those, and the time
+ * windows partially in the range.
+ * <p>
+ * This class is thread-safe. Writers take the lock of the series, which is not contended as
+ * a series is published by a single instance. Readers never take it: they take a view of the
+ * series in optimistic mode, and then read the chunk and the rollups it refers to, which are
+ * only appended to.
+ */
+public final class MetricSeries {
+  // time windows with fewer datapoints keep no rollup
+  static final int MIN_ROLLUP_COUNT = 4;
+  private static final int INITIAL_WINDOWS = 4;
+
+  private final StampedLock lock = new StampedLock();
+
+  // The fields below are guarded by the lock, and read in optimistic mode. Arrays are replaced
+  // when they grow, and only the entry of the last time window is updated in place.
+
+  // the compressed datapoints, ordered by time window, and as added within a time window
+  private MetricChunk chunk = new MetricChunk();
+  // the number of datapoints in the chunk up to the end of the time windows from baseWindow on
+  private int[] windowEnds = new int[INITIAL_WINDOWS];
+  private long baseWindow;
+  private int windowCount;
+  // the time windows before this one are purged
+  private long purgedWindow = Long.MIN_VALUE;
+  // rollups of the closed time windows with at least MIN_ROLLUP_COUNT datapoints, as columns:
+  // index of the time window from baseWindow, and the rollup but its count
+  private int[] rollupIndexes = new int[0];
+  private double[] rollupSums = new double[0];
+  private double[] rollupLasts = new double[0];
+  private long[] rollupStartTimes = new long[0];
+  private long[] rollupEndTimes = new long[0];
+  private int rollupCount;
+  // rollup of the last time window, open to more datapoints
+  private final MetricRollup openRollup = new MetricRollup();
+  // rollup of the whole series
+  private final MetricRollup total = new MetricRollup();
+  // purged empty, and removed from the cache: no more datapoints are taken
+  private boolean retired;
+  // the number of datapoints not purged
+  private volatile int size;
+
+  public interface DatapointVisitor {
+    void visit(long window, long timestamp, double value);
+  }
+
+  public interface RollupVisitor {
+    void visit(long window, MetricRollup rollup);
+  }
+
+  /**
+   * Add a datapoint
+   *
+   * @param window number of the time window the datapoint falls into
+   * @param timestamp timestamp of the datapoint
+   * @param value value of the datapoint
+   * @return false if the series was retired by purge, and a new one must take the datapoint
+   */
+  public boolean add(long window, long timestamp, double value) {
+    long stamp = lock.writeLock();
+    try {
+      if (retired) {
+        return false;
+      }
+      if (window < purgedWindow) {
+        // the time window was purged meanwhile
+        return true;
+      }
+      if (windowCount > 0 && window < baseWindow + windowCount - 1) {
+        // late for an older time window, which is rare: encode the chunk again, so the
+        // time windows stay in order
+        rewrite(true, window, timestamp, value);
+      } else {
+        append(window, timestamp, value);
+      }
+      total.add(timestamp, value);
+      size = size + 1;
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  // add a datapoint to the last time window, or to a new one after it
+  private void append(long window, long timestamp, double value) {
+    if (windowCount == 0) {
+      baseWindow = window;
+    }
+    int index = (int) (window - baseWindow);
+    if (index >= windowCount) {
+      closeLastWindow();
+      if (index >= windowEnds.length) {
+        int length = windowEnds.length + (windowEnds.length >> 1);
+        windowEnds = Arrays.copyOf(windowEnds, Math.max(length, index + 1));
+      }
+      // the time windows in between have no datapoint
+      Arrays.fill(windowEnds, windowCount, index + 1, chunk.size());
+      windowCount = index + 1;
+    }
+    chunk.add(timestamp, value);
+    openRollup.add(timestamp, value);
+    windowEnds[index] = chunk.size();
+  }
+
+  private void closeLastWindow() {
+    if (openRollup.getCount() >= MIN_ROLLUP_COUNT) {
+      if (rollupCount == rollupIndexes.length) {
+        int length = Math.max(rollupCount * 2, INITIAL_WINDOWS);
+        rollupIndexes = Arrays.copyOf(rollupIndexes, length);
+        rollupSums = Arrays.copyOf(rollupSums, length);
+        rollupLasts = Arrays.copyOf(rollupLasts, length);
+        rollupStartTimes = Arrays.copyOf(rollupStartTimes, length);
+        rollupEndTimes = Arrays.copyOf(rollupEndTimes, length);
+      }
+      rollupIndexes[rollupCount] = windowCount - 1;
+      rollupSums[rollupCount] = openRollup.getSum();
+      rollupLasts[rollupCount] = openRollup.getLast();
+      rollupStartTimes[rollupCount] = openRollup.getStartTime();
+      rollupEndTimes[rollupCount] = openRollup.getEndTime();
+      rollupCount++;
+    }
+    openRollup.reset();
+  }
+
+  // encode the datapoints not purged again, with a late datapoint if any
+  private void rewrite(boolean late, long lateWindow, long lateTimestamp, double lateValue) {
+    View old = new View();
+    read(old);
+
+    chunk = new MetricChunk();
+    windowEnds = new int[Math.max(old.count - old.first + 1, INITIAL_WINDOWS)];
+    windowCount = 0;
+    rollupIndexes = new int[0];
+    rollupSums = new double[0];
+    rollupLasts = new double[0];
+    rollupStartTimes = new long[0];
+    rollupEndTimes = new long[0];
+    rollupCount = 0;
+    openRollup.reset();
+
+    MetricChunk.Decoder decoder = old.chunk.decoder();
+    boolean pending = late;
+    for (int i = old.first; i < old.count; i++) {
+      long window = old.base + i;
+      if (pending && lateWindow < window) {
+        append(lateWindow, lateTimestamp, lateValue);
+        pending = false;
+      }
+      int begin = old.begin(i);
+      int end = old.end(i);
+      if (begin < end) {
+        decoder.seek(begin);
+      }
+      for (int k = begin; k < end; k++) {
+        decoder.advance();
+        append(window, decoder.getTimestamp(), decoder.getValue());
+      }
+      if (pending && lateWindow == window) {
+        append(lateWindow, lateTimestamp, lateValue);
+        pending = false;
+      }
+    }
+    if (pending) {
+      append(lateWindow, lateTimestamp, lateValue);
+    }
+    chunk.trim();
+  }
+
+  // a consistent view of the series, without blocking the writer
+  private View view() {
+    View view = new View();
+    while (true) {
+      long stamp = lock.tryOptimisticRead();
+      read(view);
+      if (lock.validate(stamp)) {
+        return view;
+      }
+    }
+  }
+
+  // read the fields, which may be inconsistent in optimistic mode: must not fail then
+  private void read(View view) {
+    view.chunk = chunk;
+    view.ends = windowEnds;
+    view.base = baseWindow;
+    view.count = Math.min(windowCount, view.ends.length);
+    view.first = firstIndex(purgedWindow, view.base, view.count);
+    view.lastEnd = view.count == 0 ? 0 : view.ends[view.count - 1];
+    view.rollupIndexes = rollupIndexes;
+    view.rollupSums = rollupSums;
+    view.rollupLasts = rollupLasts;
+    view.rollupStartTimes = rollupStartTimes;
+    view.rollupEndTimes = rollupEndTimes;
+    view.rollupCount = rollupCount;
+    view.open = new MetricRollup(openRollup);
+  }
+
+  private static int firstIndex(long purged, long base, int count) {
+    return purged <= base ? 0 : (int) Math.min(purged - base, count);
+  }
+
+  /**
+   * Visit the datapoints in [startTime, endTime], ordered by time window,
+   * and in the order they were added within a time window
+   */
+  public void scan(long startTime, long endTime, DatapointVisitor visitor) {
+    view().scan(startTime, endTime, visitor);
+  }
+
+  /**
+   * Aggregate the datapoints in [startTime, endTime] per time window, visiting the time windows
+   * with datapoints in the range in order
+   */
+  public void rollup(long startTime, long endTime, RollupVisitor visitor) {
+    view().rollup(startTime, endTime, visitor);
+  }
+
+  /**
+   * Aggregate the datapoints in [startTime, endTime]
+   */
+  public MetricRollup rollup(long startTime, long endTime) {
+    MetricRollup all;
+    while (true) {
+      long stamp = lock.tryOptimisticRead();
+      all = new MetricRollup(total);
+      if (lock.validate(stamp)) {
+        break;
+      }
+    }
+    if (all.inRange(startTime, endTime)) {
+      return all;
+    }
+    MetricRollup result = new MetricRollup();
+    rollup(startTime, endTime, (window, rollup) -> result.merge(rollup));
+    return result;
+  }
+
+  /**
+   * Drop the time windows before the given one, and retire the series if it is left empty;
+   * the caller must then remove it from the cache.
+   *
+   * @param oldestWindow number of the oldest time window to keep
+   * @return true if the series is retired
+   */
+  public boolean purge(long oldestWindow) {
+    long stamp = lock.writeLock();
+    try {
+      purgedWindow = Math.max(purgedWindow, oldestWindow);
+      int first = firstIndex(purgedWindow, baseWindow, windowCount);
+      int purged = first == 0 ? 0 : windowEnds[first - 1];
+      int left = chunk.size() - purged;
+      if (left != size) {
+        size = left;
+        // the purged time windows and their datapoints cost up to half of those left
+        if (left > 0 && (2 * purged > left || 2 * first > windowCount - first)) {
+          rewrite(false, 0, 0, 0);
+        }
+        // rebuild from the time windows left, rather than subtracting and accumulating errors
+        total.reset();
+        View view = new View();
+        read(view);
+        view.rollup(Long.MIN_VALUE, Long.MAX_VALUE, (window, rollup) -> total.merge(rollup));
+      }
+      retired = size == 0;
+      return retired;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Get the number of datapoints
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the number of bytes held by the compressed datapoints and their index
+   */
+  public long getCapacityBytes() {
+    View view = view();
+    return view.chunk.getCapacityBytes()
+        + (long) view.ends.length * Integer.BYTES
+        + (long) view.rollupIndexes.length * (Integer.BYTES + 4 * Long.BYTES);
+  }
+
+  @Override
+  public String toString() {
+    View view = view();
+    return "[time windows " + (view.base + view.first) + " to " + (view.base + view.count - 1)
+        + ": " + size + " datapoints, " + view.chunk + "]";
+  }
+
+  // the state of the series at some point, which stays valid as datapoints are added
+  private static final class View {
+    private MetricChunk chunk;
+    private int[] ends;
+    private long base;
+    // the time windows not purged, from base
+    private int first;
+    private int count;
+    // the end of the last time window, which is updated in place
+    private int lastEnd;
+    private int[] rollupIndexes;
+    private double[] rollupSums;
+    private double[] rollupLasts;
+    private long[] rollupStartTimes;
+    private long[] rollupEndTimes;
+    private int rollupCount;
+    private MetricRollup open;
+
+    private int begin(int index) {
+      return index == 0 ? 0 : end(index - 1);
+    }
+
+    private int end(int index) {
+      return index == count - 1 ? lastEnd : ends[index];
+    }
+
+    // the position of the first rollup of a time window from the given one on
+    private int firstRollup(int index) {
+      int position = Arrays.binarySearch(rollupIndexes, 0, rollupCount, index);
+      return position < 0 ? -position - 1 : position;
+    }
+
+    private void scan(long startTime, long endTime, DatapointVisitor visitor) {
+      MetricChunk.Decoder decoder = chunk.decoder();
+      int r = firstRollup(first);
+      for (int i = first; i < count; i++) {
+        int begin = begin(i);
+        int end = end(i);
+        if (r < rollupCount && rollupIndexes[r] == i) {
+          // skip the time windows out of the range, without decoding them
+          boolean outOfRange = rollupEndTimes[r] < startTime || endTime < rollupStartTimes[r];
+          r++;
+          if (outOfRange) {
+            continue;
+          }
+        }
+        if (begin < end) {
+          decoder.seek(begin);
+        }
+        for (int k = begin; k < end; k++) {
+          decoder.advance();
+          long timestamp = decoder.getTimestamp();
+          if (startTime <= timestamp && timestamp <= endTime) {
+            visitor.visit(base + i, timestamp, decoder.getValue());
+          }
+        }
+      }
+    }
+
+    private void rollup(long startTime, long endTime, RollupVisitor visitor) {
+      MetricChunk.Decoder decoder = null;
+      int r = firstRollup(first);
+      for (int i = first; i < count; i++) {
+        int begin = begin(i);
+        int end = end(i);
+        if (begin == end) {
+          continue;
+        }
+        MetricRollup rollup = null;
+        if (i == count - 1) {
+          rollup = open;
+        } else if (r < rollupCount && rollupIndexes[r] == i) {
+          rollup = new MetricRollup(end - begin, rollupSums[r], rollupLasts[r],
+              rollupStartTimes[r], rollupEndTimes[r]);
+          r++;
+        }
+        if (rollup != null) {
+          if (rollup.getEndTime() < startTime || endTime < rollup.getStartTime()) {
+            continue;
+          }
+          if (rollup.inRange(startTime, endTime)) {
+            visitor.visit(base + i, rollup);
+            continue;
+          }
+        }
+        // decode the time windows without rollup, or partially in the range
+        if (decoder == null) {
+          decoder = chunk.decoder();
+        }
+        MetricRollup partial = new MetricRollup();
+        decoder.seek(begin);
+        for (int k = begin; k < end; k++) {
+          decoder.advance();
+          long timestamp = decoder.getTimestamp();
+          if (startTime <= timestamp && timestamp <= endTime) {
+            partial.add(timestamp, decoder.getValue());
+          }
+        }
+        if (partial.getCount() > 0) {
+          visitor.visit(base + i, partial);
+        }
+      }
+    }
+  }
+}
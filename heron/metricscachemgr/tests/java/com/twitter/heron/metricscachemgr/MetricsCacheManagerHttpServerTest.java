@@ -0,0 +1,327 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.metricscachemgr;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Ticker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.heron.common.basics.NIOLooper;
+import com.twitter.heron.common.basics.SysUtils;
+import com.twitter.heron.common.config.SystemConfig;
+import com.twitter.heron.common.config.SystemConfigKey;
+import com.twitter.heron.metricscachemgr.metricscache.MetricsCache;
+import com.twitter.heron.metricscachemgr.metricscache.MetricsCacheTest;
+import com.twitter.heron.metricsmgr.MetricsSinksConfig;
+import com.twitter.heron.proto.tmaster.TopologyMaster;
+import com.twitter.heron.spi.utils.NetworkUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsCacheManagerHttpServerTest {
+  private static final int CLIENTS = 8;
+  private static final int QUEUE_SIZE = 1;
+  private static final String COMPONENT = "__metricscachemgr__";
+
+  private MetricsCache cache;
+  // Set to hold the queries for c1 until it is counted down
+  private volatile CountDownLatch releaseQueries;
+  private final AtomicInteger queriesStarted = new AtomicInteger();
+  private FakeTicker ticker;
+  private Duration responseCacheTtl;
+  private MetricsCacheManagerHttpServer server;
+  private String statsUrl;
+
+  @Before
+  public void before() throws IOException {
+    // A thread for each client, and a single request waiting for one
+    SystemConfig systemConfig = SystemConfig.newBuilder(true)
+        .putAll(MetricsCacheTest.CONFIG_SYSTEM_PATH, true)
+        .put(SystemConfigKey.TMASTER_METRICS_STATS_THREADS, CLIENTS)
+        .put(SystemConfigKey.TMASTER_METRICS_STATS_QUEUE_SIZE, QUEUE_SIZE)
+        .build();
+    MetricsSinksConfig sinksConfig = new MetricsSinksConfig(MetricsCacheTest.CONFIG_SINK_PATH);
+    NIOLooper looper = new NIOLooper();
+    cache = new MetricsCache(systemConfig, sinksConfig, looper) {
+      @Override
+      public TopologyMaster.MetricResponse getMetrics(TopologyMaster.MetricRequest request) {
+        CountDownLatch release = releaseQueries;
+        if (release != null && "c1".equals(request.getComponentName())) {
+          queriesStarted.incrementAndGet();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.getMetrics(request);
+      }
+    };
+
+    for (String instance : new String[]{"i1", "i2"}) {
+      for (String metric : new String[]{"__emit-count", "__jvm-uptime-secs"}) {
+        addMetric(instance, metric);
+      }
+    }
+
+    int port = SysUtils.getFreePort();
+    statsUrl = "http://127.0.0.1:" + port + "/stats";
+    ticker = new FakeTicker();
+    responseCacheTtl = systemConfig.getTmasterMetricsStatsResponseCacheTtl();
+    server = new MetricsCacheManagerHttpServer(cache, port, systemConfig, looper,
+        COMPONENT, "-1", ticker);
+    server.start();
+  }
+
+  @After
+  public void after() {
+    if (releaseQueries != null) {
+      releaseQueries.countDown();
+    }
+    server.stop();
+  }
+
+  /**
+   * Concurrent requests for the same metrics are answered the same, whatever the order of
+   * the instances and metrics they ask for
+   */
+  @Test
+  public void testConcurrentRequests() throws Exception {
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    try {
+      List<Future<TopologyMaster.MetricResponse>> responses = new ArrayList<>();
+      for (int i = 0; i < CLIENTS; i++) {
+        TopologyMaster.MetricRequest.Builder request = TopologyMaster.MetricRequest.newBuilder()
+            .setComponentName("c1").setInterval(60);
+        if (i % 2 == 0) {
+          request.addInstanceId("i1").addInstanceId("i2")
+              .addMetric("__emit-count").addMetric("__jvm-uptime-secs");
+        } else {
+          request.addInstanceId("i2").addInstanceId("i1")
+              .addMetric("__jvm-uptime-secs").addMetric("__emit-count");
+        }
+        responses.add(clients.submit(new Callable<TopologyMaster.MetricResponse>() {
+          @Override
+          public TopologyMaster.MetricResponse call() throws Exception {
+            return TopologyMaster.MetricResponse.parseFrom(post(request.build().toByteArray()));
+          }
+        }));
+      }
+
+      TopologyMaster.MetricResponse expected = responses.get(0).get();
+      assertEquals(2, expected.getMetricCount());
+      assertEquals(2, expected.getMetric(0).getMetricCount());
+      for (Future<TopologyMaster.MetricResponse> response : responses) {
+        assertEquals(expected, response.get());
+      }
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+
+  /**
+   * Identical requests in flight at the same time run a single query
+   */
+  @Test
+  public void testConcurrentRequestsShareQuery() throws Exception {
+    releaseQueries = new CountDownLatch(1);
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    try {
+      // The first query is held until every request is being served
+      List<Future<byte[]>> responses = postAll(clients, CLIENTS);
+      awaitServerMetric(MetricsCacheManagerHttpServer.METRIC_REQUEST_COUNT, CLIENTS);
+      assertEquals(1, queriesStarted.get());
+      releaseQueries.countDown();
+
+      for (Future<byte[]> response : responses) {
+        assertEquals(1, getEmitCount(TopologyMaster.MetricResponse.parseFrom(response.get())), 0);
+      }
+    } finally {
+      clients.shutdownNow();
+    }
+
+    server.exportMetrics();
+    assertEquals(CLIENTS, getServerMetric(MetricsCacheManagerHttpServer.METRIC_REQUEST_COUNT), 0);
+    assertEquals(1, getServerMetric(MetricsCacheManagerHttpServer.METRIC_QUERY_COUNT), 0);
+    assertEquals(1, queriesStarted.get());
+  }
+
+  /**
+   * Once every thread is busy and the queue is full, requests are rejected with 503 without
+   * running their query, and the queued ones are still answered
+   */
+  @Test
+  public void testRejectWhenQueueFull() throws Exception {
+    releaseQueries = new CountDownLatch(1);
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS + QUEUE_SIZE);
+    try {
+      List<Future<byte[]>> responses = postAll(clients, CLIENTS);
+      awaitServerMetric(MetricsCacheManagerHttpServer.METRIC_REQUEST_COUNT, CLIENTS);
+      responses.addAll(postAll(clients, QUEUE_SIZE));
+      awaitServerMetric(MetricsCacheManagerHttpServer.METRIC_QUEUE_DEPTH, QUEUE_SIZE);
+
+      HttpURLConnection connection = NetworkUtils.getHttpConnection(statsUrl);
+      assertTrue(NetworkUtils.sendHttpPostRequest(connection, "X",
+          emitCountRequest().toByteArray()));
+      assertTrue(NetworkUtils.checkHttpResponseCode(connection, 503));
+
+      releaseQueries.countDown();
+      for (Future<byte[]> response : responses) {
+        assertEquals(1, getEmitCount(TopologyMaster.MetricResponse.parseFrom(response.get())), 0);
+      }
+    } finally {
+      clients.shutdownNow();
+    }
+
+    server.exportMetrics();
+    assertEquals(1, getServerMetric(MetricsCacheManagerHttpServer.METRIC_REJECTED_COUNT), 0);
+    assertEquals(1, getServerMetric(MetricsCacheManagerHttpServer.METRIC_QUERY_COUNT), 0);
+    assertEquals(1, queriesStarted.get());
+  }
+
+  /**
+   * A response is reused until the response cache ttl expires
+   */
+  @Test
+  public void testResponseReusedUntilTtl() throws Exception {
+    byte[] request = emitCountRequest().toByteArray();
+    assertEquals(1, getEmitCount(TopologyMaster.MetricResponse.parseFrom(post(request))), 0);
+
+    addMetric("i1", "__emit-count");
+    ticker.advance(responseCacheTtl.minusMillis(1));
+    assertEquals(1, getEmitCount(TopologyMaster.MetricResponse.parseFrom(post(request))), 0);
+
+    ticker.advance(Duration.ofMillis(1));
+    assertEquals(2, getEmitCount(TopologyMaster.MetricResponse.parseFrom(post(request))), 0);
+
+    server.exportMetrics();
+    assertEquals(3, getServerMetric(MetricsCacheManagerHttpServer.METRIC_REQUEST_COUNT), 0);
+    assertEquals(2, getServerMetric(MetricsCacheManagerHttpServer.METRIC_QUERY_COUNT), 0);
+  }
+
+  /**
+   * The http server publishes its metrics into the cache, under its own component
+   */
+  @Test
+  public void testExportedMetrics() throws Exception {
+    post(emitCountRequest().toByteArray());
+    HttpURLConnection connection = NetworkUtils.getHttpConnection(statsUrl);
+    assertTrue(NetworkUtils.sendHttpPostRequest(connection, "X", new byte[]{1, 2, 3}));
+    assertTrue(NetworkUtils.checkHttpResponseCode(connection, 400));
+
+    server.exportMetrics();
+    assertEquals(2, getServerMetric(MetricsCacheManagerHttpServer.METRIC_REQUEST_COUNT), 0);
+    assertEquals(1, getServerMetric(MetricsCacheManagerHttpServer.METRIC_QUERY_COUNT), 0);
+    assertEquals(0, getServerMetric(MetricsCacheManagerHttpServer.METRIC_REJECTED_COUNT), 0);
+    assertEquals(0, getServerMetric(MetricsCacheManagerHttpServer.METRIC_QUEUE_DEPTH), 0);
+    assertTrue(getServerMetric(MetricsCacheManagerHttpServer.METRIC_REQUEST_LATENCY) >= 0);
+    assertTrue(getServerMetric(MetricsCacheManagerHttpServer.METRIC_QUEUE_TIME) >= 0);
+  }
+
+  @Test
+  public void testInvalidRequest() {
+    HttpURLConnection connection = NetworkUtils.getHttpConnection(statsUrl);
+    assertTrue(NetworkUtils.sendHttpPostRequest(connection, "X", new byte[]{1, 2, 3}));
+    assertTrue(NetworkUtils.checkHttpResponseCode(connection, 400));
+  }
+
+  private void addMetric(String instance, String metric) {
+    cache.addMetrics(TopologyMaster.PublishMetrics.newBuilder()
+        .addMetrics(TopologyMaster.MetricDatum.newBuilder()
+            .setComponentName("c1").setInstanceId(instance).setName(metric)
+            .setTimestamp(System.currentTimeMillis()).setValue("1"))
+        .build());
+  }
+
+  private static TopologyMaster.MetricRequest emitCountRequest() {
+    return TopologyMaster.MetricRequest.newBuilder()
+        .setComponentName("c1").setInterval(60).addInstanceId("i1").addMetric("__emit-count")
+        .build();
+  }
+
+  private static double getEmitCount(TopologyMaster.MetricResponse response) {
+    return Double.parseDouble(response.getMetric(0).getMetric(0).getValue());
+  }
+
+  private double getServerMetric(String name) {
+    TopologyMaster.MetricResponse response = cache.getMetrics(
+        TopologyMaster.MetricRequest.newBuilder()
+            .setComponentName(COMPONENT).setInterval(60).addInstanceId("-1").addMetric(name)
+            .build());
+    assertEquals(1, response.getMetric(0).getMetricCount());
+    return Double.parseDouble(response.getMetric(0).getMetric(0).getValue());
+  }
+
+  // post the emit count request from that many clients, without waiting for the responses
+  private List<Future<byte[]>> postAll(ExecutorService clients, int count) {
+    byte[] request = emitCountRequest().toByteArray();
+    List<Future<byte[]>> responses = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      responses.add(clients.submit(new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws Exception {
+          return post(request);
+        }
+      }));
+    }
+    return responses;
+  }
+
+  // export the server metrics until the given one reaches the value
+  private void awaitServerMetric(String name, double value) throws InterruptedException {
+    while (true) {
+      server.exportMetrics();
+      if (getServerMetric(name) >= value) {
+        return;
+      }
+      Thread.sleep(10);
+    }
+  }
+
+  private byte[] post(byte[] request) {
+    HttpURLConnection connection = NetworkUtils.getHttpConnection(statsUrl);
+    NetworkUtils.sendHttpPostRequest(connection, "X", request);
+    return NetworkUtils.readHttpResponse(connection);
+  }
+
+  private static final class FakeTicker extends Ticker {
+    private final AtomicLong now = new AtomicLong();
+
+    void advance(Duration duration) {
+      now.addAndGet(duration.toNanos());
+    }
+
+    @Override
+    public long read() {
+      return now.get();
+    }
+  }
+}
@@ -0,0 +1,282 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.metricscachemgr.metricscache.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetricSeriesTest {
+  private static final long WINDOW = 60000;
+
+  private static List<double[]> scan(MetricSeries series, long startTime, long endTime) {
+    List<double[]> datapoints = new ArrayList<>();
+    series.scan(startTime, endTime, (window, timestamp, value) ->
+        datapoints.add(new double[]{window, timestamp, value}));
+    return datapoints;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    MetricSeries series = new MetricSeries();
+    Random random = new Random(1);
+    long[] timestamps = new long[10000];
+    double[] values = new double[timestamps.length];
+    long timestamp = 1500000000000L;
+    for (int i = 0; i < timestamps.length; i++) {
+      // mostly regular intervals, with jitter, out of order datapoints and large gaps
+      timestamp += 1000 + (i % 7 == 0 ? random.nextInt(200) - 100 : 0)
+          + (i % 1000 == 999 ? 1L << 40 : 0);
+      timestamps[i] = i % 11 == 0 ? timestamp - 3000 : timestamp;
+      switch (i % 4) {
+        case 0:
+          values[i] = i / 10;
+          break;
+        case 1:
+          values[i] = random.nextDouble();
+          break;
+        case 2:
+          values[i] = -random.nextLong();
+          break;
+        default:
+          values[i] = i % 8 == 3 ? Double.NaN : Double.MAX_VALUE;
+      }
+      series.add(0, timestamps[i], values[i]);
+    }
+    assertEquals(timestamps.length, series.size());
+
+    List<double[]> datapoints = scan(series, Long.MIN_VALUE, Long.MAX_VALUE);
+    assertEquals(timestamps.length, datapoints.size());
+    for (int i = 0; i < timestamps.length; i++) {
+      assertEquals(timestamps[i], (long) datapoints.get(i)[1]);
+      assertEquals(Double.doubleToRawLongBits(values[i]),
+          Double.doubleToRawLongBits(datapoints.get(i)[2]));
+    }
+  }
+
+  @Test
+  public void testCompression() {
+    // the layout of the cache: a time window a minute, kept for 3 hours, and a gauge published
+    // every minute, so about one datapoint a time window
+    int retention = 180;
+    Random random = new Random(1);
+    MetricSeries series = new MetricSeries();
+    for (int i = 0; i < 3 * retention; i++) {
+      series.add(i, i * WINDOW + 1000 + random.nextInt(100), 1000 + i / 10);
+      series.purge(i - retention + 1);
+    }
+    assertEquals(retention, series.size());
+    // 16 bytes a datapoint uncompressed: about 2 bytes compressed, and 4 bytes of index for its
+    // time window, with room for the time windows to come and those purged but not dropped yet
+    assertTrue(series.toString(), series.getCapacityBytes() < retention * 12);
+
+    List<double[]> datapoints = scan(series, Long.MIN_VALUE, Long.MAX_VALUE);
+    assertEquals(retention, datapoints.size());
+    for (int j = 0; j < retention; j++) {
+      long window = 2 * retention + j;
+      assertEquals(window, (long) datapoints.get(j)[0]);
+      assertEquals(window, (long) datapoints.get(j)[1] / WINDOW);
+      assertEquals(1000 + window / 10, datapoints.get(j)[2], 0);
+    }
+  }
+
+  @Test
+  public void testRollup() {
+    MetricSeries series = new MetricSeries();
+    Random random = new Random(1);
+    for (int i = 0; i < 1000; i++) {
+      long timestamp = i * 1000 + random.nextInt(1000);
+      series.add(timestamp / WINDOW, timestamp, random.nextInt(100));
+    }
+
+    for (int i = 0; i < 100; i++) {
+      long startTime = random.nextInt(1100000) - 50000;
+      long endTime = i == 0 ? Long.MAX_VALUE : startTime + random.nextInt(1100000);
+      MetricRollup expected = new MetricRollup();
+      List<MetricRollup> expectedByWindow = new ArrayList<>();
+      long currentWindow = -1;
+      for (double[] datapoint : scan(series, startTime, endTime)) {
+        if (currentWindow != (long) datapoint[0]) {
+          currentWindow = (long) datapoint[0];
+          expectedByWindow.add(new MetricRollup());
+        }
+        expected.add((long) datapoint[1], datapoint[2]);
+        expectedByWindow.get(expectedByWindow.size() - 1).add((long) datapoint[1], datapoint[2]);
+      }
+
+      assertRollupEquals(expected, series.rollup(startTime, endTime));
+      List<MetricRollup> actualByWindow = new ArrayList<>();
+      series.rollup(startTime, endTime, (window, rollup) -> {
+        assertEquals(window, rollup.getStartTime() / WINDOW);
+        actualByWindow.add(new MetricRollup(rollup));
+      });
+      assertEquals(expectedByWindow.size(), actualByWindow.size());
+      for (int j = 0; j < actualByWindow.size(); j++) {
+        assertRollupEquals(expectedByWindow.get(j), actualByWindow.get(j));
+      }
+    }
+
+    // the whole series rollup follows purges
+    series.purge(10);
+    MetricRollup expected = new MetricRollup();
+    for (double[] datapoint : scan(series, Long.MIN_VALUE, Long.MAX_VALUE)) {
+      expected.add((long) datapoint[1], datapoint[2]);
+    }
+    assertRollupEquals(expected, series.rollup(0, Long.MAX_VALUE));
+  }
+
+  private static void assertRollupEquals(MetricRollup expected, MetricRollup actual) {
+    assertEquals(expected.getCount(), actual.getCount());
+    assertEquals(expected.getSum(), actual.getSum(), 1e-9);
+    assertEquals(expected.getLast(), actual.getLast(), 0);
+    assertEquals(expected.getStartTime(), actual.getStartTime());
+    assertEquals(expected.getEndTime(), actual.getEndTime());
+  }
+
+  @Test
+  public void testTimeWindows() {
+    MetricSeries series = new MetricSeries();
+    series.add(1, WINDOW + 1, 1);
+    series.add(2, 2 * WINDOW + 1, 2);
+    series.add(4, 4 * WINDOW + 1, 4);
+    // a late datapoint for a window that has none yet
+    series.add(3, 3 * WINDOW + 1, 3);
+    // and for one that has some
+    series.add(1, WINDOW + 2, 1.5);
+    // and for one before all the others
+    series.add(0, 1, 0);
+
+    List<double[]> datapoints = scan(series, 0, Long.MAX_VALUE);
+    assertEquals(6, datapoints.size());
+    double[] expected = {0, 1, 1.5, 2, 3, 4};
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], datapoints.get(i)[2], 0);
+      assertEquals((long) datapoints.get(i)[1] / WINDOW, (long) datapoints.get(i)[0]);
+    }
+
+    // range boundaries are inclusive
+    datapoints = scan(series, WINDOW + 2, 3 * WINDOW + 1);
+    assertEquals(3, datapoints.size());
+    assertEquals(1.5, datapoints.get(0)[2], 0);
+    assertEquals(3, (long) datapoints.get(2)[0]);
+
+    series.purge(3);
+    assertEquals(2, series.size());
+    datapoints = scan(series, 0, Long.MAX_VALUE);
+    assertEquals(3, datapoints.get(0)[2], 0);
+    assertEquals(4, datapoints.get(1)[2], 0);
+    assertEquals(7, series.rollup(0, Long.MAX_VALUE).getSum(), 0);
+
+    // a late datapoint for a purged window is dropped
+    assertTrue(series.add(2, 2 * WINDOW + 2, 2));
+    assertEquals(2, series.size());
+
+    series.purge(5);
+    assertTrue(series.isEmpty());
+    assertTrue(scan(series, 0, Long.MAX_VALUE).isEmpty());
+  }
+
+  @Test
+  public void testWindowRollups() {
+    // windows with enough datapoints keep a rollup, the others are decoded
+    MetricSeries series = new MetricSeries();
+    List<double[]> added = new ArrayList<>();
+    for (int window = 0; window < 20; window++) {
+      for (int i = 0; i < window % (2 * MetricSeries.MIN_ROLLUP_COUNT); i++) {
+        long timestamp = window * WINDOW + i * 1000;
+        series.add(window, timestamp, window + i);
+        added.add(new double[]{window, timestamp, window + i});
+      }
+    }
+    for (int purged = 0; purged < 22; purged += 3) {
+      series.purge(purged);
+      MetricRollup expected = new MetricRollup();
+      int windows = 0;
+      long last = -1;
+      for (double[] datapoint : added) {
+        if (datapoint[0] >= purged && datapoint[1] >= 5 * WINDOW) {
+          expected.add((long) datapoint[1], datapoint[2]);
+          if (last != (long) datapoint[0]) {
+            last = (long) datapoint[0];
+            windows++;
+          }
+        }
+      }
+      assertRollupEquals(expected, series.rollup(5 * WINDOW, Long.MAX_VALUE));
+      List<MetricRollup> byWindow = new ArrayList<>();
+      series.rollup(5 * WINDOW, Long.MAX_VALUE, (window, rollup) -> byWindow.add(rollup));
+      assertEquals(windows, byWindow.size());
+    }
+  }
+
+  @Test
+  public void testConcurrentReaders() throws InterruptedException {
+    MetricSeries series = new MetricSeries();
+    int n = 200000;
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicReference<AssertionError> failure = new AtomicReference<>();
+    Thread[] readers = new Thread[2];
+    for (int r = 0; r < readers.length; r++) {
+      readers[r] = new Thread(() -> {
+        try {
+          while (!done.get()) {
+            // datapoint i has value i: whatever a reader sees is a prefix of the datapoints
+            MetricRollup rollup = series.rollup(Long.MIN_VALUE, Long.MAX_VALUE);
+            long count = rollup.getCount();
+            assertEquals(count * (count - 1) / 2, rollup.getSum(), 0);
+            assertEquals(count == 0 ? 0 : count - 1, rollup.getLast(), 0);
+            long[] expected = {0};
+            series.scan(0, Long.MAX_VALUE, (window, timestamp, value) ->
+                assertEquals(expected[0]++, value, 0));
+            assertTrue(expected[0] >= count);
+          }
+        } catch (AssertionError e) {
+          failure.set(e);
+        }
+      });
+      readers[r].start();
+    }
+    for (int i = 0; i < n; i++) {
+      series.add(i / 1000, i / 1000 * WINDOW + i % 1000, i);
+    }
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+    assertEquals(n, series.rollup(Long.MIN_VALUE, Long.MAX_VALUE).getCount());
+  }
+
+  @Test
+  public void testRetire() {
+    MetricSeries series = new MetricSeries();
+    assertTrue(series.add(0, 1, 1));
+    assertFalse(series.purge(0));
+    assertTrue(series.purge(1));
+    // a retired series takes no datapoint: the cache replaces it
+    assertFalse(series.add(1, WINDOW + 1, 1));
+    assertTrue(series.isEmpty());
+  }
+}
@@ -0,0 +1,130 @@
+// Copyright 2017 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.twitter.heron.metricsmgr.sink;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.twitter.heron.api.metric.MultiCountMetric;
+import com.twitter.heron.spi.metricsmgr.metrics.ExceptionInfo;
+import com.twitter.heron.spi.metricsmgr.metrics.MetricsInfo;
+import com.twitter.heron.spi.metricsmgr.metrics.MetricsRecord;
+
+/**
+ * Scrape a PrometheusSink holding the metrics of a topology, and publish records to it.
+ * <p>
+ * The sink is filled with the metrics of all the instances first, each publishing its metrics in
+ * one record, as the metrics manager does. The scrape benchmark streams the response as an HTTP
+ * scrape does, to a stream that drops it, and the generateResponse one builds it whole. Use
+ * "-prof gc" for the allocations of each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrometheusSinkBenchmark {
+  private static final int RESPONSE_BUFFER_SIZE = 64 * 1024;
+  private static final int COMPONENTS = 10;
+
+  @Param({"500"})
+  public int instances;
+
+  @Param({"100"})
+  public int metrics;
+
+  private final OutputStream discard = new OutputStream() {
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+  };
+
+  private PrometheusSink sink;
+  private List<MetricsRecord> records;
+  private int nextRecord;
+
+  @Setup
+  public void setup() {
+    sink = new PrometheusSink() {
+      @Override
+      protected void startHttpServer(String path, int port) {
+        // only the sink is measured
+      }
+    };
+    Map<String, Object> conf = new HashMap<>();
+    conf.put("port", "9999");
+    conf.put("path", "/metrics");
+    conf.put("metrics-cache-max-size", String.valueOf(instances * metrics));
+    sink.init(conf, new SinkContextImpl("topology", "cluster", "role", "environment",
+        "metricsmgr-0", "prometheus-sink", new MultiCountMetric()));
+
+    records = new ArrayList<>(instances);
+    for (int instance = 0; instance < instances; instance++) {
+      List<MetricsInfo> infos = new ArrayList<>(metrics);
+      for (int metric = 0; metric < metrics; metric++) {
+        infos.add(new MetricsInfo("__metric-" + metric + "/default",
+            String.valueOf(instance * metric)));
+      }
+      MetricsRecord record = new MetricsRecord(
+          "host:1/component" + instance % COMPONENTS + "/container_1_instance_" + instance,
+          infos, Collections.<ExceptionInfo>emptyList());
+      records.add(record);
+      sink.processRecord(record);
+    }
+  }
+
+  @Benchmark
+  public void scrape() throws IOException {
+    OutputStream os = new BufferedOutputStream(discard, RESPONSE_BUFFER_SIZE);
+    sink.writeMetrics(os);
+    os.flush();
+  }
+
+  @Benchmark
+  public byte[] generateResponse() throws IOException {
+    return sink.generateResponse();
+  }
+
+  @Benchmark
+  public void processRecord() {
+    sink.processRecord(records.get(nextRecord));
+    nextRecord = (nextRecord + 1) % instances;
+  }
+}
@@ -31,6 +31,7 @@ import com.google.common.base.Ticker;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 
+import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 
 import com.twitter.heron.common.basics.TypeUtils;
@@ -44,7 +45,7 @@ import com.twitter.heron.spi.metricsmgr.sink.SinkContext;
 abstract class AbstractWebSink implements IMetricsSink {
   private static final Logger LOG = Logger.getLogger(AbstractWebSink.class.getName());
 
-  private static final int HTTP_STATUS_OK = 200;
+  static final int HTTP_STATUS_OK = 200;
 
   // Metrics will be published on http://host:port/path, the port
   private static final String KEY_PORT = "port";
@@ -125,11 +126,7 @@ abstract class AbstractWebSink implements IMetricsSink {
     try {
       httpServer = HttpServer.create(new InetSocketAddress(port), 0);
       httpServer.createContext(path, httpExchange -> {
-        byte[] response = generateResponse();
-        httpExchange.sendResponseHeaders(HTTP_STATUS_OK, response.length);
-        OutputStream os = httpExchange.getResponseBody();
-        os.write(response);
-        os.close();
+        writeResponse(httpExchange);
         LOG.log(Level.INFO, "Received metrics request.");
       });
       httpServer.start();
@@ -138,6 +135,18 @@ abstract class AbstractWebSink implements IMetricsSink {
     }
   }
 
+  /**
+   * Write the response to a request for the metrics. By default, the bytes of generateResponse()
+   * are sent at once; sinks able to write their metrics as they go can stream them instead.
+   */
+  void writeResponse(HttpExchange httpExchange) throws IOException {
+    byte[] response = generateResponse();
+    httpExchange.sendResponseHeaders(HTTP_STATUS_OK, response.length);
+    OutputStream os = httpExchange.getResponseBody();
+    os.write(response);
+    os.close();
+  }
+
   // a convenience method for creating a metrics cache
   <K, V> Cache<K, V> createCache() {
     return CacheBuilder.newBuilder()
@@ -151,6 +160,18 @@ abstract class AbstractWebSink implements IMetricsSink {
     return topologyName;
   }
 
+  long getCacheMaxSize() {
+    return cacheMaxSize;
+  }
+
+  long getCacheTtlSeconds() {
+    return cacheTtlSeconds;
+  }
+
+  Ticker getCacheTicker() {
+    return cacheTicker;
+  }
+
   abstract byte[] generateResponse() throws IOException;
 
   abstract void initialize(Map<String, Object> configuration, SinkContext context);
@@ -13,14 +13,23 @@
 //  limitations under the License.
 package com.twitter.heron.metricsmgr.sink;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
-import com.google.common.cache.Cache;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+
+import com.sun.net.httpserver.HttpExchange;
 
 import com.twitter.heron.metricsmgr.MetricsUtil;
 import com.twitter.heron.spi.metricsmgr.metrics.MetricsInfo;
@@ -35,6 +44,12 @@ import com.twitter.heron.spi.metricsmgr.sink.SinkContext;
  *
  * metrics format:
  * heron_metric{topology="topology-name",component="component-id",instance="instance-id"} value timestamp
+ *
+ * The metrics are indexed by family, i.e., by exported metric name, as they are first seen:
+ * names and labels are parsed and encoded once, and only the values change afterwards. A scrape
+ * streams the families to the response, without building the whole text first. A metric not
+ * updated for metrics-cache-ttl-sec is dropped, at the next scrape or when a new metric would
+ * not fit in metrics-cache-max-size otherwise.
  */
 public class PrometheusSink extends AbstractWebSink {
   private static final Logger LOG = Logger.getLogger(PrometheusSink.class.getName());
@@ -43,133 +58,254 @@ public class PrometheusSink extends AbstractWebSink {
 
   private static final String DELIMITER = "\n";
 
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final int RESPONSE_BUFFER_SIZE = 64 * 1024;
+
   // bolt metric
   private static final String METRIC_EXECUTE_TIME_NS = "__execute-time-ns";
 
   // spout metric
   private static final String METRIC_NEXT_TUPLE_COUNT = "__next-tuple-count";
 
-  // This is the cache that is used to serve the metrics
-  private Cache<String, Map<String, Double>> metricsCache;
+  private static final String COMPONENT_TYPE_BOLT = "bolt";
+  private static final String COMPONENT_TYPE_SPOUT = "spout";
+
+  // The sources of the metrics, by topology/component/instance
+  private final Map<String, MetricSource> metricSources = new ConcurrentHashMap<>();
+  // The metric families, by exported metric name
+  private final Map<String, MetricFamily> families = new ConcurrentHashMap<>();
+  // The number of series indexed, whether new ones were dropped for it, and the earliest time
+  // any of them can expire, guarded by this
+  private long seriesCount;
+  private boolean full;
+  private long nextExpiryNanos;
 
-  private String cluster;
-  private String role;
-  private String environment;
+  // Guards the values cached by the series for scrapes
+  private final Object scrapeLock = new Object();
+
+  private String clusterRoleEnv;
+  private long maxSeries;
+  private long ttlNanos;
+  private Ticker ticker;
 
   public PrometheusSink() {
     super();
   }
 
+  @VisibleForTesting
+  PrometheusSink(Ticker ticker) {
+    super(ticker);
+  }
+
   @Override
   void initialize(Map<String, Object> configuration, SinkContext context) {
-    metricsCache = createCache();
+    String c = context.getCluster();
+    String r = context.getRole();
+    String e = context.getEnvironment();
+    clusterRoleEnv = hasClusterRoleEnvironment(c, r, e)
+        ? String.format("%s/%s/%s", c, r, e) : null;
+
+    maxSeries = getCacheMaxSize();
+    ttlNanos = TimeUnit.SECONDS.toNanos(getCacheTtlSeconds());
+    ticker = getCacheTicker();
+    nextExpiryNanos = ticker.read();
+  }
 
-    cluster = context.getCluster();
-    role = context.getRole();
-    environment = context.getEnvironment();
+  @Override
+  void writeResponse(HttpExchange httpExchange) throws IOException {
+    httpExchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+    // a length of 0 sends the response in chunks, as it is written
+    httpExchange.sendResponseHeaders(HTTP_STATUS_OK, 0);
+    try (OutputStream os =
+             new BufferedOutputStream(httpExchange.getResponseBody(), RESPONSE_BUFFER_SIZE)) {
+      writeMetrics(os);
+    }
   }
 
   @Override
   byte[] generateResponse() throws IOException {
-    metricsCache.cleanUp();
-    final Map<String, Map<String, Double>> metrics = metricsCache.asMap();
-    final StringBuilder sb = new StringBuilder();
-
-    metrics.forEach((String source, Map<String, Double> sourceMetrics) -> {
-      String[] sources = source.split("/");
-      String topology = sources[0];
-      String component = sources[1];
-      String instance = sources[2];
-
-      final boolean componentIsStreamManger = component.contains("stmgr");
-      final String componentType = getComponentType(sourceMetrics);
-
-      String c = this.cluster;
-      String r = this.role;
-      String e = this.environment;
-      final String clusterRoleEnv = hasClusterRoleEnvironment(c, r, e)
-          ? String.format("%s/%s/%s", c, r, e) : null;
-
-      sourceMetrics.forEach((String metric, Double value) -> {
-
-        // some stream manager metrics in heron contain a instance id as part of the metric name
-        // this should be a label when exported to prometheus.
-        // Example: __connection_buffer_by_instanceid/container_1_word_5/packets or
-        // __time_spent_back_pressure_by_compid/container_1_exclaim1_1
-        // TODO convert to small classes for less string manipulation
-        final String metricName;
-        final String metricInstanceId;
-        if (componentIsStreamManger) {
-          final boolean metricHasInstanceId = metric.contains("_by_");
-          final String[] metricParts = metric.split("/");
-          if (metricHasInstanceId && metricParts.length == 3) {
-            metricName = String.format("%s_%s", metricParts[0], metricParts[2]);
-            metricInstanceId = metricParts[1];
-          } else if (metricHasInstanceId && metricParts.length == 2) {
-            metricName = metricParts[0];
-            metricInstanceId = metricParts[1];
-          } else {
-            metricName = metric;
-            metricInstanceId = null;
-          }
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    writeMetrics(os);
+    return os.toByteArray();
+  }
 
-        } else {
-          metricName = metric;
-          metricInstanceId = null;
+  /**
+   * Write all the metrics, family by family, and drop those expired
+   */
+  void writeMetrics(OutputStream os) throws IOException {
+    synchronized (scrapeLock) {
+      final byte[] timestamp = toBytes(" " + currentTimeMillis() + DELIMITER);
+      final long now = ticker.read();
+
+      for (MetricFamily family : families.values()) {
+        for (MetricSeries series : family.series) {
+          if (now - series.updateNanos >= ttlNanos) {
+            expire(series, now);
+            continue;
+          }
+          os.write(family.name);
+          os.write(series.source.labels);
+          os.write(series.source.componentTypeLabel);
+          os.write(series.labels);
+          os.write(series.getValueText());
+          os.write(timestamp);
         }
+      }
+    }
+  }
 
-        String exportedMetricName = String.format("%s_%s", HERON_PREFIX,
-            metricName.replace("__", "").toLowerCase());
-        sb.append(Prometheus.sanitizeMetricName(exportedMetricName))
-            .append("{")
-            .append("topology=\"").append(topology).append("\",")
-            .append("component=\"").append(component).append("\",")
-            .append("instance_id=\"").append(instance).append("\"");
+  @Override
+  public void processRecord(MetricsRecord record) {
+    final String[] sources = MetricsUtil.splitRecordSource(record);
 
-        if (clusterRoleEnv != null) {
-          sb.append(",cluster_role_env=\"").append(clusterRoleEnv).append("\"");
+    if (sources.length > 2) {
+      final String source = String.format("%s/%s/%s", getTopologyName(), sources[1], sources[2]);
+      final long now = ticker.read();
+
+      MetricSource metricSource = metricSources.get(source);
+      for (MetricsInfo info : record.getMetrics()) {
+        final double value;
+        try {
+          value = Double.parseDouble(info.getValue());
+        } catch (NumberFormatException ne) {
+          LOG.log(Level.SEVERE, "Could not parse metric, Name: "
+              + info.getName() + " Value: " + info.getValue(), ne);
+          continue;
         }
 
-        if (componentType != null) {
-          sb.append(",component_type=\"").append(componentType).append("\"");
+        MetricSeries series = metricSource == null ? null : metricSource.series.get(info.getName());
+        if (series != null) {
+          series.update(value, now);
+          if (series.expired) {
+            // expire may have dropped the series before seeing the update, index it again
+            addSeries(source, sources[1], sources[2], info.getName(), value, now);
+          }
+        } else {
+          addSeries(source, sources[1], sources[2], info.getName(), value, now);
+          metricSource = metricSources.get(source);
         }
+      }
+    } else {
+      LOG.log(Level.SEVERE, "Unexpected metrics source: " + record.getSource());
+    }
+  }
 
-        if (metricInstanceId != null) {
-          sb.append(",metric_instance_id=\"").append(metricInstanceId).append("\"");
-        }
+  // Index a new series, parsing its name and labels once for all
+  private synchronized void addSeries(String sourceKey, String component, String instance,
+                                     String metric, double value, long now) {
+    MetricSource source = metricSources.get(sourceKey);
+    MetricSeries series = source == null ? null : source.series.get(metric);
+    if (series != null) {
+      series.update(value, now);
+      return;
+    }
+    if (seriesCount >= maxSeries && now - nextExpiryNanos >= 0) {
+      expireAll(now);
+    }
+    if (seriesCount >= maxSeries) {
+      if (!full) {
+        LOG.log(Level.WARNING, "Serving " + seriesCount + " metrics already, "
+            + "dropping new ones until some expire, starting with: " + sourceKey + "/" + metric);
+        full = true;
+      }
+      return;
+    }
+
+    if (source == null) {
+      source = new MetricSource(sourceKey, sourceLabels(component, instance),
+          component.contains("stmgr"));
+      metricSources.put(sourceKey, source);
+    }
 
-        sb.append("} ")
-            .append(Prometheus.doubleToGoString(value))
-            .append(" ").append(currentTimeMillis())
-            .append(DELIMITER);
-      });
-    });
+    // some stream manager metrics in heron contain a instance id as part of the metric name
+    // this should be a label when exported to prometheus.
+    // Example: __connection_buffer_by_instanceid/container_1_word_5/packets or
+    // __time_spent_back_pressure_by_compid/container_1_exclaim1_1
+    String metricName = metric;
+    String metricInstanceId = null;
+    if (source.isStreamManager && metric.contains("_by_")) {
+      final String[] metricParts = metric.split("/");
+      if (metricParts.length == 3) {
+        metricName = String.format("%s_%s", metricParts[0], metricParts[2]);
+        metricInstanceId = metricParts[1];
+      } else if (metricParts.length == 2) {
+        metricName = metricParts[0];
+        metricInstanceId = metricParts[1];
+      }
+    }
 
-    return sb.toString().getBytes();
+    final String exportedMetricName = Prometheus.sanitizeMetricName(String.format("%s_%s",
+        HERON_PREFIX, metricName.replace("__", "").toLowerCase()));
+    final MetricFamily family = families.computeIfAbsent(exportedMetricName, MetricFamily::new);
+    final String labels = metricInstanceId == null
+        ? "} " : ",metric_instance_id=\"" + metricInstanceId + "\"} ";
+
+    series = new MetricSeries(metric, source, family, toBytes(labels), value, now);
+    source.series.put(metric, series);
+    family.series.add(series);
+    source.setComponentType(getComponentType(source.componentType, metric));
+    seriesCount++;
   }
 
-  @Override
-  public void processRecord(MetricsRecord record) {
-    final String[] sources = MetricsUtil.splitRecordSource(record);
+  // Drop all the expired series, and note when the next one can expire
+  private synchronized void expireAll(long now) {
+    long oldestNanos = now;
+    for (MetricFamily family : families.values()) {
+      for (MetricSeries series : family.series) {
+        final long updateNanos = series.updateNanos;
+        if (now - updateNanos >= ttlNanos) {
+          expire(series, now);
+        } else if (updateNanos - oldestNanos < 0) {
+          oldestNanos = updateNanos;
+        }
+      }
+    }
+    nextExpiryNanos = oldestNanos + ttlNanos;
+  }
 
-    if (sources.length > 2) {
-      final String source = String.format("%s/%s/%s", getTopologyName(), sources[1], sources[2]);
+  // Drop a series, unless it was updated since it was found expired. The series is marked expired
+  // before its update time is read again, and an update reads the mark after writing the time:
+  // either this sees the update and keeps the series, or the update sees the mark and adds the
+  // series again.
+  private synchronized void expire(MetricSeries series, long now) {
+    if (series.expired) {
+      return;
+    }
+    series.expired = true;
+    if (now - series.updateNanos < ttlNanos) {
+      series.expired = false;
+      return;
+    }
+    series.family.series.remove(series);
+    if (series.family.series.isEmpty()) {
+      families.remove(series.family.key, series.family);
+    }
+    MetricSource source = series.source;
+    source.series.remove(series.metric, series);
+    if (source.series.isEmpty()) {
+      metricSources.remove(source.key, source);
+    }
+    seriesCount--;
+    full = false;
+  }
 
-      Map<String, Double> sourceCache = metricsCache.getIfPresent(source);
-      if (sourceCache == null) {
-        final Cache<String, Double> newSourceCache = createCache();
-        sourceCache = newSourceCache.asMap();
-      }
+  // The labels of all the metrics of a source, from the opening brace
+  private byte[] sourceLabels(String component, String instance) {
+    final StringBuilder sb = new StringBuilder()
+        .append("{")
+        .append("topology=\"").append(getTopologyName()).append("\",")
+        .append("component=\"").append(component).append("\",")
+        .append("instance_id=\"").append(instance).append("\"");
 
-      sourceCache.putAll(processMetrics(record.getMetrics()));
-      metricsCache.put(source, sourceCache);
-    } else {
-      LOG.log(Level.SEVERE, "Unexpected metrics source: " + record.getSource());
+    if (clusterRoleEnv != null) {
+      sb.append(",cluster_role_env=\"").append(clusterRoleEnv).append("\"");
     }
+    return toBytes(sb.toString());
   }
 
-  Cache<String, Map<String, Double>> getMetricsCache() {
-    return metricsCache;
+  Map<String, MetricSource> getMetricSources() {
+    return metricSources;
   }
 
   long currentTimeMillis() {
@@ -184,31 +320,103 @@ public class PrometheusSink extends AbstractWebSink {
     return string != null && !string.isEmpty();
   }
 
-  static String getComponentType(Map<String, Double> sourceMetrics) {
-    for (String metric : sourceMetrics.keySet()) {
-      if (metric.contains(METRIC_EXECUTE_TIME_NS)) {
-        return "bolt";
-      }
+  /**
+   * Get the type of a component, from one more of its metrics
+   *
+   * @param componentType the type known from its other metrics, or null
+   * @param metric the name of the metric
+   * @return bolt if any metric is a bolt one, else spout if any is a spout one, else null
+   */
+  static String getComponentType(String componentType, String metric) {
+    if (metric.contains(METRIC_EXECUTE_TIME_NS)) {
+      return COMPONENT_TYPE_BOLT;
     }
 
-    if (sourceMetrics.containsKey(METRIC_NEXT_TUPLE_COUNT)) {
-      return "spout";
+    if (componentType == null && metric.equals(METRIC_NEXT_TUPLE_COUNT)) {
+      return COMPONENT_TYPE_SPOUT;
     }
-    return null;
+    return componentType;
+  }
+
+  private static byte[] toBytes(String string) {
+    return string.getBytes(StandardCharsets.UTF_8);
   }
 
-  static Map<String, Double> processMetrics(Iterable<MetricsInfo> metrics) {
-    Map<String, Double> map = new HashMap<>();
-    for (MetricsInfo r : metrics) {
-      try {
-        map.put(r.getName(), Double.valueOf(r.getValue()));
-      } catch (NumberFormatException ne) {
-        LOG.log(Level.SEVERE, "Could not parse metric, Name: "
-            + r.getName() + " Value: " + r.getValue(), ne);
+  // The metrics of an instance
+  static final class MetricSource {
+    private static final byte[] NO_LABEL = new byte[0];
+
+    private final String key;
+    private final byte[] labels;
+    private final boolean isStreamManager;
+    private final Map<String, MetricSeries> series = new ConcurrentHashMap<>();
+    private volatile String componentType;
+    private volatile byte[] componentTypeLabel = NO_LABEL;
+
+    MetricSource(String key, byte[] labels, boolean isStreamManager) {
+      this.key = key;
+      this.labels = labels;
+      this.isStreamManager = isStreamManager;
+    }
+
+    void setComponentType(String type) {
+      if (type != null && !type.equals(componentType)) {
+        componentTypeLabel = toBytes(",component_type=\"" + type + "\"");
+        componentType = type;
       }
     }
+  }
+
+  // The series of all the sources sharing an exported metric name
+  static final class MetricFamily {
+    private final String key;
+    private final byte[] name;
+    private final Set<MetricSeries> series = ConcurrentHashMap.newKeySet();
+
+    MetricFamily(String name) {
+      this.key = name;
+      this.name = toBytes(name);
+    }
+  }
+
+  // The value of a metric of a source
+  static final class MetricSeries {
+    private final String metric;
+    private final MetricSource source;
+    private final MetricFamily family;
+    // the labels after those of the source, to the space before the value
+    private final byte[] labels;
+    private volatile double value;
+    private volatile long updateNanos;
+    // set once the series is dropped, under the lock of the sink
+    private volatile boolean expired;
+
+    // the text of the value last written, only accessed by scrapes
+    private double textValue;
+    private byte[] text;
+
+    MetricSeries(String metric, MetricSource source, MetricFamily family, byte[] labels,
+                 double value, long now) {
+      this.metric = metric;
+      this.source = source;
+      this.family = family;
+      this.labels = labels;
+      update(value, now);
+    }
 
-    return map;
+    void update(double newValue, long now) {
+      value = newValue;
+      updateNanos = now;
+    }
+
+    byte[] getValueText() {
+      double v = value;
+      if (text == null || Double.doubleToLongBits(v) != Double.doubleToLongBits(textValue)) {
+        text = toBytes(Prometheus.doubleToGoString(v));
+        textValue = v;
+      }
+      return text;
+    }
   }
 
   // code taken from prometheus java_client repo
@@ -21,11 +21,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import com.google.common.base.Ticker;
+
 import com.twitter.heron.spi.metricsmgr.metrics.ExceptionInfo;
 import com.twitter.heron.spi.metricsmgr.metrics.MetricsInfo;
 import com.twitter.heron.spi.metricsmgr.metrics.MetricsRecord;
@@ -44,13 +48,17 @@ public class PrometheusSinkTests {
     private PrometheusTestSink() {
     }
 
+    private PrometheusTestSink(Ticker ticker) {
+      super(ticker);
+    }
+
     @Override
     protected void startHttpServer(String path, int port) {
       // no need to start the server for tests
     }
 
-    public Map<String, Map<String, Double>> getMetrics() {
-      return getMetricsCache().asMap();
+    public Map<String, MetricSource> getMetrics() {
+      return getMetricSources();
     }
 
     long currentTimeMillis() {
@@ -91,7 +99,7 @@ public class PrometheusSinkTests {
       sink.processRecord(r);
     }
 
-    final Map<String, Map<String, Double>> metrics = sink.getMetrics();
+    final Map<String, PrometheusSink.MetricSource> metrics = sink.getMetrics();
     assertTrue(metrics.containsKey("testTopology/component/instance_1"));
     assertTrue(metrics.containsKey("testTopology/component/instance_2"));
   }
@@ -163,20 +171,131 @@ public class PrometheusSinkTests {
 
   @Test
   public void testComponentType() {
-    Map<String, Double> metrics = new HashMap<>();
-    metrics.put("__execute-time-ns/default", 1d);
-    assertEquals("bolt", PrometheusSink.getComponentType(metrics));
+    assertEquals("bolt", PrometheusSink.getComponentType(null, "__execute-time-ns/default"));
+    assertEquals("bolt", PrometheusSink.getComponentType(null, "__execute-time-ns/stream1"));
+    assertEquals("spout", PrometheusSink.getComponentType(null, "__next-tuple-count"));
+    assertNull(PrometheusSink.getComponentType(null, "metric_1"));
+
+    // a bolt metric wins over a spout metric, whatever the order they come in
+    assertEquals("bolt", PrometheusSink.getComponentType("bolt", "__next-tuple-count"));
+    assertEquals("bolt", PrometheusSink.getComponentType("spout", "__execute-time-ns/default"));
+    assertEquals("spout", PrometheusSink.getComponentType("spout", "metric_1"));
+  }
+
+  @Test
+  public void testComponentTypeLabel() throws IOException {
+    PrometheusTestSink sink = new PrometheusTestSink();
+    sink.init(defaultConf, context);
+    sink.processRecord(newRecord("machine/component/instance_1", records.get(0).getMetrics(),
+        Collections.emptyList()));
+    sink.processRecord(newRecord("machine/component/instance_1",
+        Arrays.asList(new MetricsInfo("__execute-time-ns/default", "3.0")),
+        Collections.emptyList()));
+
+    // the type is known once any metric tells it, and labels all the metrics of the component
+    final String suffix = ",component_type=\"bolt\"} 1.0 " + NOW;
+    final String line =
+        "heron_metric_1{topology=\"testTopology\",component=\"component\","
+            + "instance_id=\"instance_1\"" + suffix;
+    final Set<String> generatedLines =
+        new HashSet<>(Arrays.asList(new String(sink.generateResponse()).split("\n")));
+    assertEquals(3, generatedLines.size());
+    assertTrue(generatedLines.contains(line));
+  }
+
+  @Test
+  public void testFamiliesAreContiguous() throws IOException {
+    PrometheusTestSink sink = new PrometheusTestSink();
+    sink.init(defaultConf, context);
+    for (int i = 0; i < 10; i++) {
+      for (MetricsRecord r : records) {
+        sink.processRecord(newRecord(r.getSource() + "_" + i, r.getMetrics(),
+            Collections.emptyList()));
+      }
+    }
+
+    // all the lines of a metric family come together
+    Set<String> seenFamilies = new HashSet<>();
+    String previousFamily = null;
+    String[] lines = new String(sink.generateResponse()).split("\n");
+    assertEquals(40, lines.length);
+    for (String line : lines) {
+      String family = line.substring(0, line.indexOf('{'));
+      if (!family.equals(previousFamily)) {
+        assertTrue(seenFamilies.add(family));
+        previousFamily = family;
+      }
+    }
+    assertEquals(2, seenFamilies.size());
+  }
 
-    metrics = new HashMap<>();
-    metrics.put("__execute-time-ns/stream1", 1d);
-    assertEquals("bolt", PrometheusSink.getComponentType(metrics));
+  @Test
+  public void testExpiry() throws IOException {
+    final AtomicLong nanos = new AtomicLong();
+    PrometheusTestSink sink = new PrometheusTestSink(new Ticker() {
+      @Override
+      public long read() {
+        return nanos.get();
+      }
+    });
+    defaultConf.put("metrics-cache-ttl-sec", "60");
+    sink.init(defaultConf, context);
+    for (MetricsRecord r : records) {
+      sink.processRecord(r);
+    }
+    assertEquals(4, new String(sink.generateResponse()).split("\n").length);
+
+    // only metric_1 of instance_1 keeps being updated
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+    sink.processRecord(newRecord("machine/component/instance_1",
+        Arrays.asList(new MetricsInfo("metric_1", "5.0")), Collections.emptyList()));
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+    final List<String> lines = Arrays.asList(new String(sink.generateResponse()).split("\n"));
+    assertEquals(Collections.singletonList(
+        createMetric("testTopology", "component", "instance_1", "metric_1", "5.0")), lines);
+    assertEquals(Collections.singleton("testTopology/component/instance_1"),
+        sink.getMetrics().keySet());
 
-    metrics = new HashMap<>();
-    metrics.put("__next-tuple-count", 1d);
-    assertEquals("spout", PrometheusSink.getComponentType(metrics));
+    // an expired metric comes back when it is updated again
+    for (MetricsRecord r : records) {
+      sink.processRecord(r);
+    }
+    assertEquals(4, new String(sink.generateResponse()).split("\n").length);
+  }
+
+  @Test
+  public void testExpiryWhenFull() throws IOException {
+    final AtomicLong nanos = new AtomicLong();
+    PrometheusTestSink sink = new PrometheusTestSink(new Ticker() {
+      @Override
+      public long read() {
+        return nanos.get();
+      }
+    });
+    defaultConf.put("metrics-cache-max-size", "4");
+    defaultConf.put("metrics-cache-ttl-sec", "60");
+    sink.init(defaultConf, context);
+    for (MetricsRecord r : records) {
+      sink.processRecord(r);
+    }
 
-    metrics = new HashMap<>();
-    assertNull(PrometheusSink.getComponentType(metrics));
+    // a new metric is dropped while all the others are live
+    final MetricsRecord newRecord = newRecord("machine/component/instance_3",
+        Arrays.asList(new MetricsInfo("metric_1", "3.0")), Collections.emptyList());
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+    sink.processRecord(newRecord);
+    assertEquals(4, new String(sink.generateResponse()).split("\n").length);
+
+    // and makes room for itself once some expire, even without a scrape in between
+    sink.processRecord(newRecord("machine/component/instance_1",
+        Arrays.asList(new MetricsInfo("metric_1", "5.0")), Collections.emptyList()));
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+    sink.processRecord(newRecord);
+    assertEquals(new HashSet<>(Arrays.asList(
+        "testTopology/component/instance_1", "testTopology/component/instance_3")),
+        sink.getMetrics().keySet());
+    assertEquals(2, new String(sink.generateResponse()).split("\n").length);
   }
 
   private String createMetric(String topology, String component, String instance,
@@ -64,13 +64,17 @@ public class MetricsFilter {
     return metricsFiltered;
   }
 
+  // The longest matching prefix wins, so e.g. __execute-latency-bucket can be summed
+  // while the other __execute-latency metrics are averaged
   public MetricAggregationType getAggregationType(String metricName) {
+    String matched = null;
     for (String prefix : prefixToType.keySet()) {
-      if (metricName.contains(prefix)) {
-        return prefixToType.get(prefix);
+      if (metricName.contains(prefix)
+          && (matched == null || prefix.length() > matched.length())) {
+        matched = prefix;
       }
     }
-    return MetricAggregationType.UNKNOWN;
+    return matched == null ? MetricAggregationType.UNKNOWN : prefixToType.get(matched);
   }
 
   public enum MetricAggregationType {
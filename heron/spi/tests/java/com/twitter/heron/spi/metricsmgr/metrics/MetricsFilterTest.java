@@ -0,0 +1,44 @@
+// Copyright 2016 Twitter. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.twitter.heron.spi.metricsmgr.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.twitter.heron.spi.metricsmgr.metrics.MetricsFilter.MetricAggregationType;
+
+public class MetricsFilterTest {
+
+  /**
+   * Method: getAggregationType(String metricName)
+   */
+  @Test
+  public void testLongestPrefixWins() throws Exception {
+    MetricsFilter filter = new MetricsFilter();
+    filter.setPrefixToType("__execute-latency", MetricAggregationType.AVG);
+    filter.setPrefixToType("__execute-latency-bucket", MetricAggregationType.SUM);
+    filter.setPrefixToType("__execute-count", MetricAggregationType.SUM);
+
+    Assert.assertEquals(MetricAggregationType.AVG,
+        filter.getAggregationType("__execute-latency/default"));
+    Assert.assertEquals(MetricAggregationType.AVG,
+        filter.getAggregationType("__execute-latency-p99/default"));
+    Assert.assertEquals(MetricAggregationType.SUM,
+        filter.getAggregationType("__execute-latency-bucket-1024/default"));
+    Assert.assertEquals(MetricAggregationType.UNKNOWN,
+        filter.getAggregationType("__emit-count/default"));
+    Assert.assertTrue(filter.contains("__execute-latency-bucket-1024/default"));
+  }
+}
@@ -18,6 +18,8 @@
 
 package org.apache.storm.serialization;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
 
 import com.esotericsoftware.kryo.Kryo;
@@ -25,7 +27,7 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 public class HeronPluggableSerializerDelegate implements
-    com.twitter.heron.api.serializer.IPluggableSerializer {
+    com.twitter.heron.api.serializer.IStreamSerializer {
   private Kryo kryo;
   private Output kryoOut;
   private Input kryoIn;
@@ -48,6 +50,17 @@ public class HeronPluggableSerializerDelegate implements
     return kryoOut.toBytes();
   }
 
+  @Override
+  public void serializeTo(Object object, OutputStream out) {
+    kryoOut.clear();
+    kryo.writeClassAndObject(kryoOut, object);
+    try {
+      out.write(kryoOut.getBuffer(), 0, kryoOut.position());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @Override
   public Object deserialize(byte[] input) {
     kryoIn.setBuffer(input);